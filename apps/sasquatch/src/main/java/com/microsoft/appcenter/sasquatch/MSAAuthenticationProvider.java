@@ -11,6 +11,7 @@ import android.widget.Toast;
 
 import com.microsoft.appcenter.AppCenter;
 import com.microsoft.appcenter.analytics.AuthenticationProvider;
+import com.microsoft.appcenter.http.CallOptions;
 import com.microsoft.appcenter.http.DefaultHttpClient;
 import com.microsoft.appcenter.http.HttpClient;
 import com.microsoft.appcenter.http.HttpException;
@@ -117,6 +118,11 @@ public class MSAAuthenticationProvider implements AuthenticationProvider.TokenPr
                     public void onBeforeCalling(URL url, Map<String, String> headers) {
                         AppCenterLog.verbose(AppCenter.LOG_TAG, "Calling " + url + "...");
                     }
+
+                    @Override
+                    public CallOptions getCallOptions() {
+                        return null;
+                    }
                 },
                 new ServiceCallback() {
 
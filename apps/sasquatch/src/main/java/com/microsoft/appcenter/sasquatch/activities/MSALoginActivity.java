@@ -27,6 +27,7 @@ import android.widget.Toast;
 import com.microsoft.appcenter.AppCenter;
 import com.microsoft.appcenter.analytics.AnalyticsTransmissionTarget;
 import com.microsoft.appcenter.analytics.AuthenticationProvider;
+import com.microsoft.appcenter.http.CallOptions;
 import com.microsoft.appcenter.http.DefaultHttpClient;
 import com.microsoft.appcenter.http.HttpClient;
 import com.microsoft.appcenter.http.HttpException;
@@ -298,6 +299,11 @@ public class MSALoginActivity extends AppCompatActivity {
                     public void onBeforeCalling(URL url, Map<String, String> headers) {
                         AppCenterLog.verbose(AppCenter.LOG_TAG, "Calling " + url + "...");
                     }
+
+                    @Override
+                    public CallOptions getCallOptions() {
+                        return null;
+                    }
                 },
                 new ServiceCallback() {
 
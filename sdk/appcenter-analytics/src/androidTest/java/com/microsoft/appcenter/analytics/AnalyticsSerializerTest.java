@@ -138,5 +138,10 @@ public class AnalyticsSerializerTest {
         android.util.Log.v(TAG, payload);
         LogContainer actualContainer = serializer.deserializeContainer(payload, null);
         Assert.assertEquals(expectedContainer, actualContainer);
+
+        /* Check the streaming path used when the type is known. */
+        for (Log log : logs) {
+            Assert.assertEquals(log, serializer.deserializeLog(serializer.serializeLog(log), log.getType()));
+        }
     }
 }
\ No newline at end of file
@@ -30,20 +30,19 @@ import com.microsoft.appcenter.analytics.ingestion.models.one.json.CommonSchemaE
 import com.microsoft.appcenter.channel.Channel;
 import com.microsoft.appcenter.ingestion.models.Log;
 import com.microsoft.appcenter.ingestion.models.json.LogFactory;
-import com.microsoft.appcenter.ingestion.models.properties.StringTypedProperty;
 import com.microsoft.appcenter.ingestion.models.properties.TypedProperty;
+import com.microsoft.appcenter.ingestion.models.properties.TypedPropertyBag;
 import com.microsoft.appcenter.utils.AppCenterLog;
+import com.microsoft.appcenter.utils.IdHelper;
 import com.microsoft.appcenter.utils.async.AppCenterFuture;
 import com.microsoft.appcenter.utils.async.DefaultAppCenterFuture;
 import com.microsoft.appcenter.utils.context.UserIdContext;
 
 import java.lang.ref.WeakReference;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -484,7 +483,7 @@ public class Analytics extends AbstractAppCenterService {
         }
 
         /* Make a copy to avoid concurrent modifications after trackEvent. */
-        return new ArrayList<>(properties.getProperties().values());
+        return properties.copyProperties();
     }
 
     /**
@@ -497,12 +496,9 @@ public class Analytics extends AbstractAppCenterService {
         if (properties == null) {
             return null;
         }
-        List<TypedProperty> typedProperties = new ArrayList<>(properties.size());
+        TypedPropertyBag typedProperties = new TypedPropertyBag(properties.size());
         for (Map.Entry<String, String> property : properties.entrySet()) {
-            StringTypedProperty typedProperty = new StringTypedProperty();
-            typedProperty.setName(property.getKey());
-            typedProperty.setValue(property.getValue());
-            typedProperties.add(typedProperty);
+            typedProperties.put(property.getKey(), property.getValue());
         }
         return typedProperties;
     }
@@ -825,7 +821,7 @@ public class Analytics extends AbstractAppCenterService {
                     AppCenterLog.error(LOG_TAG, "Cannot track event using Analytics.trackEvent if not started from app, please start from the application or use Analytics.getTransmissionTarget.");
                     return;
                 }
-                eventLog.setId(UUID.randomUUID());
+                eventLog.setId(IdHelper.generateId());
                 eventLog.setName(name);
                 eventLog.setTypedProperties(properties);
 
@@ -259,7 +259,9 @@ public class AnalyticsTransmissionTarget {
 
         /* Override with parameter. */
         if (properties != null) {
-            mergedProperties.getProperties().putAll(properties.getProperties());
+            synchronized (properties) {
+                mergedProperties.getProperties().putAll(properties.getProperties(), true);
+            }
         }
 
         /*
@@ -5,17 +5,10 @@
 
 package com.microsoft.appcenter.analytics;
 
-import com.microsoft.appcenter.ingestion.models.properties.BooleanTypedProperty;
-import com.microsoft.appcenter.ingestion.models.properties.DateTimeTypedProperty;
-import com.microsoft.appcenter.ingestion.models.properties.DoubleTypedProperty;
-import com.microsoft.appcenter.ingestion.models.properties.LongTypedProperty;
-import com.microsoft.appcenter.ingestion.models.properties.StringTypedProperty;
-import com.microsoft.appcenter.ingestion.models.properties.TypedProperty;
+import com.microsoft.appcenter.ingestion.models.properties.TypedPropertyBag;
 import com.microsoft.appcenter.utils.AppCenterLog;
 
 import java.util.Date;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 import static com.microsoft.appcenter.analytics.Analytics.LOG_TAG;
 
@@ -27,17 +20,29 @@ public class EventProperties {
     private static final String VALUE_NULL_ERROR_MESSAGE = "Property value cannot be null";
 
     /**
-     * Properties key/value pairs.
-     * Using a concurrent map to avoid concurrent modification exception when doing the traversal copy.
-     * We also need to traverse a snapshot of properties when doing property inheritance between targets.
-     * There is no need to block in a more global way than the snapshot traversal.
+     * Properties stored without a {@link com.microsoft.appcenter.ingestion.models.properties.TypedProperty} object per property.
+     * The bag is not thread safe, every access is synchronized on this instance.
      */
-    private final Map<String, TypedProperty> mProperties = new ConcurrentHashMap<>();
+    private final TypedPropertyBag mProperties = new TypedPropertyBag();
 
-    Map<String, TypedProperty> getProperties() {
+    /**
+     * Get the properties, callers must synchronize on this instance.
+     *
+     * @return properties.
+     */
+    TypedPropertyBag getProperties() {
         return mProperties;
     }
 
+    /**
+     * Get a copy of the properties that will not be affected by later changes.
+     *
+     * @return properties copy.
+     */
+    synchronized TypedPropertyBag copyProperties() {
+        return new TypedPropertyBag(mProperties);
+    }
+
     /**
      * Set the specified property value with the specified key.
      * If the properties previously contained a property for the key, the old
@@ -47,12 +52,9 @@ public class EventProperties {
      * @param value value to be set with the specified key.
      * @return this instance.
      */
-    public EventProperties set(String key, boolean value) {
+    public synchronized EventProperties set(String key, boolean value) {
         if (isValidKey(key)) {
-            BooleanTypedProperty property = new BooleanTypedProperty();
-            property.setName(key);
-            property.setValue(value);
-            mProperties.put(key, property);
+            mProperties.put(key, value);
         }
         return this;
     }
@@ -66,12 +68,9 @@ public class EventProperties {
      * @param value value to be set with the specified key.
      * @return this instance.
      */
-    public EventProperties set(String key, Date value) {
+    public synchronized EventProperties set(String key, Date value) {
         if (isValidKey(key) && isValidValue(value)) {
-            DateTimeTypedProperty property = new DateTimeTypedProperty();
-            property.setName(key);
-            property.setValue(value);
-            mProperties.put(key, property);
+            mProperties.put(key, value);
         }
         return this;
     }
@@ -85,15 +84,12 @@ public class EventProperties {
      * @param value value to be set with the specified key.
      * @return this instance.
      */
-    public EventProperties set(String key, double value) {
+    public synchronized EventProperties set(String key, double value) {
         if (isValidKey(key)) {
             if (Double.isInfinite(value) || Double.isNaN(value)) {
                 AppCenterLog.error(LOG_TAG, "Double property value cannot be NaN or infinite.");
             } else {
-                DoubleTypedProperty property = new DoubleTypedProperty();
-                property.setName(key);
-                property.setValue(value);
-                mProperties.put(key, property);
+                mProperties.put(key, value);
             }
         }
         return this;
@@ -108,12 +104,9 @@ public class EventProperties {
      * @param value value to be set with the specified key.
      * @return this instance.
      */
-    public EventProperties set(String key, long value) {
+    public synchronized EventProperties set(String key, long value) {
         if (isValidKey(key)) {
-            LongTypedProperty property = new LongTypedProperty();
-            property.setName(key);
-            property.setValue(value);
-            mProperties.put(key, property);
+            mProperties.put(key, value);
         }
         return this;
     }
@@ -127,12 +120,9 @@ public class EventProperties {
      * @param value value to be set with the specified key.
      * @return this instance.
      */
-    public EventProperties set(String key, String value) {
+    public synchronized EventProperties set(String key, String value) {
         if (isValidKey(key) && isValidValue(value)) {
-            StringTypedProperty property = new StringTypedProperty();
-            property.setName(key);
-            property.setValue(value);
-            mProperties.put(key, property);
+            mProperties.put(key, value);
         }
         return this;
     }
@@ -145,7 +135,7 @@ public class EventProperties {
             AppCenterLog.error(LOG_TAG, "Property key must not be null");
             return false;
         }
-        if (mProperties.containsKey(key)) {
+        if (mProperties.indexOfName(key) >= 0) {
             AppCenterLog.warn(LOG_TAG, "Property \"" + key + "\" is already set and will be overridden.");
         }
         return true;
@@ -15,11 +15,9 @@ import com.microsoft.appcenter.ingestion.models.one.AppExtension;
 import com.microsoft.appcenter.ingestion.models.one.CommonSchemaLog;
 import com.microsoft.appcenter.ingestion.models.one.DeviceExtension;
 import com.microsoft.appcenter.ingestion.models.one.UserExtension;
-import com.microsoft.appcenter.ingestion.models.properties.TypedProperty;
 import com.microsoft.appcenter.utils.context.UserIdContext;
 
 import java.util.Date;
-import java.util.Map;
 
 import static com.microsoft.appcenter.Constants.COMMON_SCHEMA_PREFIX_SEPARATOR;
 
@@ -326,7 +324,9 @@ public class PropertyConfigurator extends AbstractChannelListener {
      * @param key The property key to be removed.
      */
     public synchronized void removeEventProperty(String key) {
-        mEventProperties.getProperties().remove(key);
+        synchronized (mEventProperties) {
+            mEventProperties.getProperties().removeName(key);
+        }
     }
 
     /**
@@ -348,11 +348,8 @@ public class PropertyConfigurator extends AbstractChannelListener {
      * Nesting synchronize between parent/child could lead to deadlocks.
      */
     synchronized void mergeEventProperties(EventProperties mergedProperties) {
-        for (Map.Entry<String, TypedProperty> property : mEventProperties.getProperties().entrySet()) {
-            String key = property.getKey();
-            if (!mergedProperties.getProperties().containsKey(key)) {
-                mergedProperties.getProperties().put(key, property.getValue());
-            }
+        synchronized (mEventProperties) {
+            mergedProperties.getProperties().putAll(mEventProperties.getProperties(), false);
         }
     }
 }
@@ -13,17 +13,13 @@ import com.microsoft.appcenter.analytics.ingestion.models.LogWithNameAndProperti
 import com.microsoft.appcenter.analytics.ingestion.models.PageLog;
 import com.microsoft.appcenter.channel.AbstractChannelListener;
 import com.microsoft.appcenter.ingestion.models.Log;
-import com.microsoft.appcenter.ingestion.models.properties.BooleanTypedProperty;
-import com.microsoft.appcenter.ingestion.models.properties.DateTimeTypedProperty;
-import com.microsoft.appcenter.ingestion.models.properties.DoubleTypedProperty;
-import com.microsoft.appcenter.ingestion.models.properties.LongTypedProperty;
 import com.microsoft.appcenter.ingestion.models.properties.StringTypedProperty;
 import com.microsoft.appcenter.ingestion.models.properties.TypedProperty;
+import com.microsoft.appcenter.ingestion.models.properties.TypedPropertyBag;
 import com.microsoft.appcenter.utils.AppCenterLog;
 
 import java.util.HashMap;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Map;
 
 import static com.microsoft.appcenter.analytics.Analytics.LOG_TAG;
@@ -76,7 +72,7 @@ public class AnalyticsValidator extends AbstractChannelListener {
         if (name == null) {
             return false;
         }
-        validateProperties(log.getTypedProperties());
+        validateProperties(log);
         log.setName(name);
         return true;
     }
@@ -150,96 +146,66 @@ public class AnalyticsValidator extends AbstractChannelListener {
     /**
      * Validates typed properties.
      *
-     * @param properties Typed properties collection to validate.
+     * @param log Event log with the typed properties to validate.
      */
-    private static void validateProperties(List<TypedProperty> properties) {
-        if (properties == null) {
+    private static void validateProperties(EventLog log) {
+        List<TypedProperty> typedProperties = log.getTypedProperties();
+        if (typedProperties == null) {
             return;
         }
-        int count = 0;
-        boolean maxCountReached = false;
+
+        /*
+         * Work on a bag: modifications happen on its arrays, so property objects that were added by callers are never modified.
+         * Properties from Analytics APIs are already in a bag.
+         */
+        TypedPropertyBag properties;
+        if (typedProperties instanceof TypedPropertyBag) {
+            properties = (TypedPropertyBag) typedProperties;
+        } else {
+            properties = new TypedPropertyBag(typedProperties);
+            log.setTypedProperties(properties);
+        }
         String message;
-        for (ListIterator<TypedProperty> iterator = properties.listIterator(); iterator.hasNext(); ) {
-            boolean copyNeededOnModification = true;
-            TypedProperty property = iterator.next();
-            String key = property.getName();
-            if (count >= MAX_PROPERTY_COUNT) {
-                if (!maxCountReached) {
-                    message = String.format("Typed properties cannot contain more than %s items. Skipping other properties.", MAX_PROPERTY_COUNT);
-                    AppCenterLog.warn(LOG_TAG, message);
-                    maxCountReached = true;
+
+        /* Every property before index is valid. */
+        int index = 0;
+        while (index < properties.size()) {
+            if (index >= MAX_PROPERTY_COUNT) {
+                message = String.format("Typed properties cannot contain more than %s items. Skipping other properties.", MAX_PROPERTY_COUNT);
+                AppCenterLog.warn(LOG_TAG, message);
+                while (properties.size() > MAX_PROPERTY_COUNT) {
+                    properties.removeAt(properties.size() - 1);
                 }
-                iterator.remove();
-                continue;
+                break;
             }
+            String key = properties.getName(index);
             if (key == null || key.isEmpty()) {
                 AppCenterLog.warn(LOG_TAG, "A typed property key cannot be null or empty. Property will be skipped.");
-                iterator.remove();
+                properties.removeAt(index);
                 continue;
             }
             if (key.length() > MAX_PROPERTY_ITEM_LENGTH) {
                 message = String.format("Typed property '%s' : property key length cannot be longer than %s characters. Property key will be truncated.", key, MAX_PROPERTY_ITEM_LENGTH);
                 AppCenterLog.warn(LOG_TAG, message);
                 key = key.substring(0, MAX_PROPERTY_ITEM_LENGTH);
-                property = copyProperty(property, key);
-                iterator.set(property);
-                copyNeededOnModification = false;
+                properties.setName(index, key);
             }
-            if (property instanceof StringTypedProperty) {
-                StringTypedProperty stringTypedProperty = (StringTypedProperty) property;
-                String value = stringTypedProperty.getValue();
+            if (StringTypedProperty.TYPE.equals(properties.getType(index))) {
+                String value = properties.getStringValue(index);
                 if (value == null) {
                     message = String.format("Typed property '%s' : property value cannot be null. Property '%s' will be skipped.", key, key);
                     AppCenterLog.warn(LOG_TAG, message);
-                    iterator.remove();
+                    properties.removeAt(index);
                     continue;
                 }
                 if (value.length() > MAX_PROPERTY_ITEM_LENGTH) {
                     message = String.format("A String property '%s' : property value cannot be longer than %s characters. Property value will be truncated.", key, MAX_PROPERTY_ITEM_LENGTH);
                     AppCenterLog.warn(LOG_TAG, message);
-                    value = value.substring(0, MAX_PROPERTY_ITEM_LENGTH);
-                    if (copyNeededOnModification) {
-                        stringTypedProperty = new StringTypedProperty();
-                        stringTypedProperty.setName(key);
-                        stringTypedProperty.setValue(value);
-                        iterator.set(stringTypedProperty);
-                    } else {
-                        stringTypedProperty.setValue(value);
-                    }
+                    properties.setStringValue(index, value.substring(0, MAX_PROPERTY_ITEM_LENGTH));
                 }
             }
-            count++;
-        }
-    }
-
-    private static TypedProperty copyProperty(TypedProperty property, String newKey) {
-        String type = property.getType();
-        TypedProperty copy;
-        if (BooleanTypedProperty.TYPE.equals(type)) {
-            BooleanTypedProperty typedCopy = new BooleanTypedProperty();
-            typedCopy.setValue(((BooleanTypedProperty) property).getValue());
-            copy = typedCopy;
-        } else if (DateTimeTypedProperty.TYPE.equals(type)) {
-            DateTimeTypedProperty typedCopy = new DateTimeTypedProperty();
-            typedCopy.setValue(((DateTimeTypedProperty) property).getValue());
-            copy = typedCopy;
-        } else if (DoubleTypedProperty.TYPE.equals(type)) {
-            DoubleTypedProperty typedCopy = new DoubleTypedProperty();
-            typedCopy.setValue(((DoubleTypedProperty) property).getValue());
-            copy = typedCopy;
-        } else if (LongTypedProperty.TYPE.equals(type)) {
-            LongTypedProperty typedCopy = new LongTypedProperty();
-            typedCopy.setValue(((LongTypedProperty) property).getValue());
-            copy = typedCopy;
-        } else {
-
-            /* SDK invariant: unknown property type is not possible with public APIs. */
-            StringTypedProperty typedCopy = new StringTypedProperty();
-            typedCopy.setValue(((StringTypedProperty) property).getValue());
-            copy = typedCopy;
+            index++;
         }
-        copy.setName(newKey);
-        return copy;
     }
 
     @Override
@@ -5,14 +5,18 @@
 
 package com.microsoft.appcenter.analytics.ingestion.models;
 
+import android.util.JsonReader;
+
 import com.microsoft.appcenter.ingestion.models.json.JSONUtils;
 import com.microsoft.appcenter.ingestion.models.properties.TypedProperty;
+import com.microsoft.appcenter.ingestion.models.properties.TypedPropertyBag;
 import com.microsoft.appcenter.ingestion.models.properties.TypedPropertyUtils;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.UUID;
 
@@ -85,11 +89,37 @@ public class EventLog extends LogWithNameAndProperties {
         setTypedProperties(TypedPropertyUtils.read(object));
     }
 
+    @Override
+    protected boolean readField(String name, JsonReader reader) throws IOException, JSONException {
+        if (name.equals(ID)) {
+            setId(UUID.fromString(reader.nextString()));
+        } else if (name.equals(TYPED_PROPERTIES)) {
+            setTypedProperties(TypedPropertyUtils.read(reader));
+        } else {
+            return super.readField(name, reader);
+        }
+        return true;
+    }
+
+    @Override
+    protected void checkRequiredFields() throws JSONException {
+        super.checkRequiredFields();
+        JSONUtils.checkRequired(ID, getId());
+    }
+
     @Override
     public void write(JSONStringer writer) throws JSONException {
         super.write(writer);
         writer.key(ID).value(getId());
-        JSONUtils.writeArray(writer, TYPED_PROPERTIES, getTypedProperties());
+        List<TypedProperty> typedProperties = getTypedProperties();
+        if (typedProperties instanceof TypedPropertyBag) {
+
+            /* Write values directly from the bag arrays. */
+            writer.key(TYPED_PROPERTIES);
+            ((TypedPropertyBag) typedProperties).write(writer);
+        } else {
+            JSONUtils.writeArray(writer, TYPED_PROPERTIES, typedProperties);
+        }
     }
 
     @SuppressWarnings("SimplifiableIfStatement")
@@ -5,12 +5,17 @@
 
 package com.microsoft.appcenter.analytics.ingestion.models;
 
+import android.util.JsonReader;
+
 import com.microsoft.appcenter.ingestion.models.LogWithProperties;
+import com.microsoft.appcenter.ingestion.models.json.JSONUtils;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
+
 import static com.microsoft.appcenter.ingestion.models.CommonProperties.NAME;
 
 public abstract class LogWithNameAndProperties extends LogWithProperties {
@@ -44,6 +49,21 @@ public abstract class LogWithNameAndProperties extends LogWithProperties {
         setName(object.getString(NAME));
     }
 
+    @Override
+    protected boolean readField(String name, JsonReader reader) throws IOException, JSONException {
+        if (name.equals(NAME)) {
+            setName(reader.nextString());
+            return true;
+        }
+        return super.readField(name, reader);
+    }
+
+    @Override
+    protected void checkRequiredFields() throws JSONException {
+        super.checkRequiredFields();
+        JSONUtils.checkRequired(NAME, getName());
+    }
+
     @Override
     public void write(JSONStringer writer) throws JSONException {
         super.write(writer);
@@ -96,7 +96,7 @@ public class EventPropertiesTest {
         StringTypedProperty expected = new StringTypedProperty();
         expected.setName(key);
         expected.setValue(normalValue);
-        assertEquals(expected, properties.getProperties().get(key));
+        assertEquals(expected, properties.getProperties().get(properties.getProperties().indexOfName(key)));
         verifyStatic(times(1));
         AppCenterLog.error(eq(Analytics.LOG_TAG), anyString());
     }
@@ -120,7 +120,7 @@ public class EventPropertiesTest {
         DateTimeTypedProperty expected = new DateTimeTypedProperty();
         expected.setName(key);
         expected.setValue(normalValue);
-        assertEquals(expected, properties.getProperties().get(key));
+        assertEquals(expected, properties.getProperties().get(properties.getProperties().indexOfName(key)));
         verifyStatic(times(1));
         AppCenterLog.error(eq(Analytics.LOG_TAG), anyString());
     }
@@ -138,7 +138,7 @@ public class EventPropertiesTest {
         LongTypedProperty expected = new LongTypedProperty();
         expected.setName(key);
         expected.setValue(normalValue);
-        assertEquals(expected, properties.getProperties().get(key));
+        assertEquals(expected, properties.getProperties().get(properties.getProperties().indexOfName(key)));
         verifyStatic(never());
         AppCenterLog.error(eq(Analytics.LOG_TAG), anyString());
     }
@@ -37,6 +37,9 @@ public class ErrorModelTest {
         String payload = serializer.serializeLog(log);
         Log deSerializedLog = serializer.deserializeLog(payload, null);
         checkEquals(log, deSerializedLog);
+
+        /* Also check the streaming path used when the type is known. */
+        checkEquals(log, serializer.deserializeLog(payload, log.getType()));
     }
 
     private static void checkSerializationThrowsException(Log log, LogSerializer serializer, Class expectedException) {
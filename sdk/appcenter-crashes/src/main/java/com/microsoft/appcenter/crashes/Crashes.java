@@ -15,8 +15,10 @@ import androidx.annotation.VisibleForTesting;
 import androidx.annotation.WorkerThread;
 
 import com.microsoft.appcenter.AbstractAppCenterService;
+import com.microsoft.appcenter.AppCenterService;
 import com.microsoft.appcenter.Constants;
 import com.microsoft.appcenter.Flags;
+import com.microsoft.appcenter.StartupTracer;
 import com.microsoft.appcenter.channel.Channel;
 import com.microsoft.appcenter.crashes.ingestion.models.ErrorAttachmentLog;
 import com.microsoft.appcenter.crashes.ingestion.models.Exception;
@@ -38,6 +40,7 @@ import com.microsoft.appcenter.ingestion.models.json.LogSerializer;
 import com.microsoft.appcenter.utils.AppCenterLog;
 import com.microsoft.appcenter.utils.DeviceInfoHelper;
 import com.microsoft.appcenter.utils.HandlerUtils;
+import com.microsoft.appcenter.utils.IdHelper;
 import com.microsoft.appcenter.utils.async.AppCenterFuture;
 import com.microsoft.appcenter.utils.async.DefaultAppCenterFuture;
 import com.microsoft.appcenter.utils.context.SessionContext;
@@ -57,6 +60,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.UUID;
@@ -72,7 +76,7 @@ import static com.microsoft.appcenter.crashes.utils.ErrorLogHelper.MINIDUMP_FILE
 /**
  * Crashes service.
  */
-public class Crashes extends AbstractAppCenterService {
+public class Crashes extends AbstractAppCenterService implements AppCenterService.ParallelInitializingService {
 
     /**
      * Constant for SEND crash report.
@@ -133,6 +137,26 @@ public class Crashes extends AbstractAppCenterService {
      */
     private static final CrashesListener DEFAULT_ERROR_REPORTING_LISTENER = new DefaultCrashesListener();
 
+    /**
+     * Startup phase of crash handler registration and minidump processing.
+     */
+    private static final String PHASE_INITIALIZE = SERVICE_NAME + ".initialize";
+
+    /**
+     * Startup phase of minidump processing.
+     */
+    private static final String PHASE_PROCESS_MINIDUMPS = SERVICE_NAME + ".processMinidumpFiles";
+
+    /**
+     * Startup phase of pending error files processing.
+     */
+    private static final String PHASE_PROCESS_PENDING_ERRORS = SERVICE_NAME + ".processPendingErrors";
+
+    /**
+     * Startup phase of pending error files reading.
+     */
+    private static final String PHASE_READ_PENDING_ERRORS = SERVICE_NAME + ".readPendingErrors";
+
     /**
      * Singleton.
      */
@@ -209,6 +233,17 @@ public class Crashes extends AbstractAppCenterService {
      */
     private boolean mHasReceivedMemoryWarningInLastSession;
 
+    /**
+     * True when the crash handler was registered and minidump files were processed by {@link #onInitializing(Context)},
+     * they must not be done again on start.
+     */
+    private boolean mInitializedInParallel;
+
+    /**
+     * Pending error logs read by {@link #onInitializing(Context)}, null if not read yet.
+     */
+    private List<ManagedErrorLog> mPendingErrorLogs;
+
     /**
      * Init.
      */
@@ -463,6 +498,21 @@ public class Crashes extends AbstractAppCenterService {
         }
     }
 
+    @Override
+    public synchronized void onInitializing(@NonNull Context context) {
+        mContext = context;
+        if (isInstanceEnabled()) {
+
+            /* Register Java crash handler first so that crashes are saved while files are processed. */
+            registerUncaughtExceptionHandler();
+
+            /* Convert minidumps and read error files before start, what is left needs the channel. */
+            processMinidumpFiles();
+            mInitializedInParallel = true;
+            mPendingErrorLogs = readPendingErrors();
+        }
+    }
+
     @Override
     public synchronized void onStarted(@NonNull Context context, @NonNull Channel channel, String appSecret, String transmissionTargetToken, boolean startedFromApp) {
         mContext = context;
@@ -660,25 +710,41 @@ public class Crashes extends AbstractAppCenterService {
     }
 
     private void initialize() {
-        boolean enabled = isInstanceEnabled();
-        mInitializeTimestamp = enabled ? System.currentTimeMillis() : -1;
-        if (!enabled) {
+        StartupTracer.Section section = StartupTracer.beginSection(PHASE_INITIALIZE);
+        if (!isInstanceEnabled()) {
+            mInitializeTimestamp = -1;
+            mInitializedInParallel = false;
+            mPendingErrorLogs = null;
             if (mUncaughtExceptionHandler != null) {
                 mUncaughtExceptionHandler.unregister();
                 mUncaughtExceptionHandler = null;
             }
+        } else if (mInitializedInParallel) {
+
+            /* Crash handler was registered and minidump files were processed while initializing in parallel. */
+            mInitializedInParallel = false;
         } else {
 
             /* Register Java crash handler. */
-            mUncaughtExceptionHandler = new UncaughtExceptionHandler();
-            mUncaughtExceptionHandler.register();
+            registerUncaughtExceptionHandler();
 
             /* Process minidump files. */
             processMinidumpFiles();
         }
+        StartupTracer.endSection(section);
+    }
+
+    /**
+     * Register Java crash handler, crash logs use the registration time as application start time.
+     */
+    private void registerUncaughtExceptionHandler() {
+        mInitializeTimestamp = System.currentTimeMillis();
+        mUncaughtExceptionHandler = new UncaughtExceptionHandler();
+        mUncaughtExceptionHandler.register();
     }
 
     private void processMinidumpFiles() {
+        StartupTracer.Section section = StartupTracer.beginSection(PHASE_PROCESS_MINIDUMPS);
 
         /* Convert minidump files to App Center crash files. */
         for (File minidumpSubfolder : ErrorLogHelper.getNewMinidumpFiles()) {
@@ -731,6 +797,7 @@ public class Crashes extends AbstractAppCenterService {
 
         /* Remove the minidump subfolders from previous sessions. */
         ErrorLogHelper.removeStaleMinidumpSubfolders();
+        StartupTracer.endSection(section);
     }
 
     /**
@@ -805,26 +872,24 @@ public class Crashes extends AbstractAppCenterService {
         }
     }
 
-    private void processPendingErrors() {
+    /**
+     * Read and parse pending error files, and build their reports. Invalid files are deleted.
+     *
+     * @return pending error logs.
+     */
+    private List<ManagedErrorLog> readPendingErrors() {
+        StartupTracer.Section section = StartupTracer.beginSection(PHASE_READ_PENDING_ERRORS);
+        List<ManagedErrorLog> errorLogs = new ArrayList<>();
         for (File logFile : ErrorLogHelper.getStoredErrorLogFiles()) {
             AppCenterLog.debug(LOG_TAG, "Process pending error file: " + logFile);
             String logfileContents = FileManager.read(logFile);
             if (logfileContents != null) {
                 try {
                     ManagedErrorLog log = (ManagedErrorLog) mLogSerializer.deserializeLog(logfileContents, null);
-                    UUID id = log.getId();
-                    ErrorReport report = buildErrorReport(log);
-                    if (report == null) {
-                        removeAllStoredErrorLogFiles(id);
-                    } else if (!mAutomaticProcessing || mCrashesListener.shouldProcess(report)) {
-                        if (!mAutomaticProcessing) {
-                            AppCenterLog.debug(LOG_TAG, "CrashesListener.shouldProcess returned true, continue processing log: " + id.toString());
-                        }
-                        mUnprocessedErrorReports.put(id, mErrorReportCache.get(id));
-                    } else {
-                        AppCenterLog.debug(LOG_TAG, "CrashesListener.shouldProcess returned false, clean up and ignore log: " + id.toString());
-                        removeAllStoredErrorLogFiles(id);
-                    }
+
+                    /* Build the report now as it reads the throwable file, it is cached for processing. */
+                    buildErrorReport(log);
+                    errorLogs.add(log);
                 } catch (JSONException e) {
                     AppCenterLog.error(LOG_TAG, "Error parsing error log. Deleting invalid file: " + logFile, e);
 
@@ -833,6 +898,29 @@ public class Crashes extends AbstractAppCenterService {
                 }
             }
         }
+        StartupTracer.endSection(section);
+        return errorLogs;
+    }
+
+    private void processPendingErrors() {
+        StartupTracer.Section section = StartupTracer.beginSection(PHASE_PROCESS_PENDING_ERRORS);
+        List<ManagedErrorLog> errorLogs = mPendingErrorLogs != null ? mPendingErrorLogs : readPendingErrors();
+        mPendingErrorLogs = null;
+        for (ManagedErrorLog log : errorLogs) {
+            UUID id = log.getId();
+            ErrorReport report = buildErrorReport(log);
+            if (report == null) {
+                removeAllStoredErrorLogFiles(id);
+            } else if (!mAutomaticProcessing || mCrashesListener.shouldProcess(report)) {
+                if (!mAutomaticProcessing) {
+                    AppCenterLog.debug(LOG_TAG, "CrashesListener.shouldProcess returned true, continue processing log: " + id.toString());
+                }
+                mUnprocessedErrorReports.put(id, mErrorReportCache.get(id));
+            } else {
+                AppCenterLog.debug(LOG_TAG, "CrashesListener.shouldProcess returned false, clean up and ignore log: " + id.toString());
+                removeAllStoredErrorLogFiles(id);
+            }
+        }
         mHasReceivedMemoryWarningInLastSession = isMemoryRunningLevelWasReceived(SharedPreferencesManager.getInt(PREF_KEY_MEMORY_RUNNING_LEVEL, -1));
         if (mHasReceivedMemoryWarningInLastSession) {
             AppCenterLog.debug(LOG_TAG, "The application received a low memory warning in the last session.");
@@ -845,6 +933,7 @@ public class Crashes extends AbstractAppCenterService {
             /* Proceed to check if user confirmation is needed. */
             sendCrashReportsOrAwaitUserConfirmation();
         }
+        StartupTracer.endSection(section);
     }
 
     private static boolean isMemoryRunningLevelWasReceived(int memoryLevel) {
@@ -1074,7 +1163,7 @@ public class Crashes extends AbstractAppCenterService {
         } else {
             for (ErrorAttachmentLog attachment : attachments) {
                 if (attachment != null) {
-                    attachment.setId(UUID.randomUUID());
+                    attachment.setId(IdHelper.generateId());
                     attachment.setErrorId(errorId);
                     if (!attachment.isValid()) {
                         AppCenterLog.error(LOG_TAG, "Not all required fields are present in ErrorAttachmentLog.");
@@ -5,6 +5,8 @@
 
 package com.microsoft.appcenter.crashes.ingestion.models;
 
+import android.util.JsonReader;
+
 import com.microsoft.appcenter.ingestion.models.AbstractLog;
 import com.microsoft.appcenter.ingestion.models.json.JSONDateUtils;
 import com.microsoft.appcenter.ingestion.models.json.JSONUtils;
@@ -13,6 +15,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
 import java.util.Date;
 import java.util.UUID;
 
@@ -288,6 +291,41 @@ public abstract class AbstractErrorLog extends AbstractLog {
         setArchitecture(object.optString(ARCHITECTURE, null));
     }
 
+    @Override
+    protected boolean readField(String name, JsonReader reader) throws IOException, JSONException {
+        if (name.equals(ID)) {
+            setId(UUID.fromString(reader.nextString()));
+        } else if (name.equals(PROCESS_ID)) {
+            setProcessId(reader.nextInt());
+        } else if (name.equals(PROCESS_NAME)) {
+            setProcessName(reader.nextString());
+        } else if (name.equals(PARENT_PROCESS_ID)) {
+            setParentProcessId(reader.nextInt());
+        } else if (name.equals(PARENT_PROCESS_NAME)) {
+            setParentProcessName(reader.nextString());
+        } else if (name.equals(ERROR_THREAD_ID)) {
+            setErrorThreadId(reader.nextLong());
+        } else if (name.equals(ERROR_THREAD_NAME)) {
+            setErrorThreadName(reader.nextString());
+        } else if (name.equals(FATAL)) {
+            setFatal(reader.nextBoolean());
+        } else if (name.equals(APP_LAUNCH_TIMESTAMP)) {
+            setAppLaunchTimestamp(JSONDateUtils.toDate(reader.nextString()));
+        } else if (name.equals(ARCHITECTURE)) {
+            setArchitecture(reader.nextString());
+        } else {
+            return super.readField(name, reader);
+        }
+        return true;
+    }
+
+    @Override
+    protected void checkRequiredFields() throws JSONException {
+        super.checkRequiredFields();
+        JSONUtils.checkRequired(ID, getId());
+        JSONUtils.checkRequired(APP_LAUNCH_TIMESTAMP, getAppLaunchTimestamp());
+    }
+
     @Override
     public void write(JSONStringer writer) throws JSONException {
         super.write(writer);
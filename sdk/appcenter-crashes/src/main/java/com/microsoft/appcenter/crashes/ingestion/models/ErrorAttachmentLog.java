@@ -7,6 +7,7 @@ package com.microsoft.appcenter.crashes.ingestion.models;
 
 import androidx.annotation.VisibleForTesting;
 import android.util.Base64;
+import android.util.JsonReader;
 
 import com.microsoft.appcenter.ingestion.models.AbstractLog;
 import com.microsoft.appcenter.ingestion.models.json.JSONUtils;
@@ -15,6 +16,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.UUID;
@@ -222,6 +224,37 @@ public class ErrorAttachmentLog extends AbstractLog {
         }
     }
 
+    @Override
+    protected boolean readField(String name, JsonReader reader) throws IOException, JSONException {
+        if (name.equals(ID)) {
+            setId(UUID.fromString(reader.nextString()));
+        } else if (name.equals(ERROR_ID)) {
+            setErrorId(UUID.fromString(reader.nextString()));
+        } else if (name.equals(CONTENT_TYPE)) {
+            setContentType(reader.nextString());
+        } else if (name.equals(FILE_NAME)) {
+            setFileName(reader.nextString());
+        } else if (name.equals(DATA)) {
+            try {
+                setData(Base64.decode(reader.nextString(), Base64.DEFAULT));
+            } catch (IllegalArgumentException e) {
+                throw new JSONException(e.getMessage());
+            }
+        } else {
+            return super.readField(name, reader);
+        }
+        return true;
+    }
+
+    @Override
+    protected void checkRequiredFields() throws JSONException {
+        super.checkRequiredFields();
+        JSONUtils.checkRequired(ID, getId());
+        JSONUtils.checkRequired(ERROR_ID, getErrorId());
+        JSONUtils.checkRequired(CONTENT_TYPE, getContentType());
+        JSONUtils.checkRequired(DATA, getData());
+    }
+
     @Override
     public void write(JSONStringer writer) throws JSONException {
         super.write(writer);
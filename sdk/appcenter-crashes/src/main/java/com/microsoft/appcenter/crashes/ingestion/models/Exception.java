@@ -5,6 +5,8 @@
 
 package com.microsoft.appcenter.crashes.ingestion.models;
 
+import android.util.JsonReader;
+
 import com.microsoft.appcenter.crashes.ingestion.models.json.ExceptionFactory;
 import com.microsoft.appcenter.crashes.ingestion.models.json.StackFrameFactory;
 import com.microsoft.appcenter.ingestion.models.Model;
@@ -14,6 +16,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
 import java.util.List;
 
 import static com.microsoft.appcenter.ingestion.models.CommonProperties.FRAMES;
@@ -211,6 +214,32 @@ public class Exception implements Model {
         setMinidumpFilePath(object.optString(MINIDUMP_FILE_PATH, null));
     }
 
+    @Override
+    public void read(JsonReader reader) throws IOException, JSONException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals(TYPE)) {
+                setType(reader.nextString());
+            } else if (name.equals(MESSAGE)) {
+                setMessage(reader.nextString());
+            } else if (name.equals(STACK_TRACE)) {
+                setStackTrace(reader.nextString());
+            } else if (name.equals(FRAMES)) {
+                setFrames(JSONUtils.readArray(reader, StackFrameFactory.getInstance()));
+            } else if (name.equals(INNER_EXCEPTIONS)) {
+                setInnerExceptions(JSONUtils.readArray(reader, ExceptionFactory.getInstance()));
+            } else if (name.equals(WRAPPER_SDK_NAME)) {
+                setWrapperSdkName(reader.nextString());
+            } else if (name.equals(MINIDUMP_FILE_PATH)) {
+                setMinidumpFilePath(reader.nextString());
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
     @Override
     public void write(JSONStringer writer) throws JSONException {
         JSONUtils.write(writer, TYPE, getType());
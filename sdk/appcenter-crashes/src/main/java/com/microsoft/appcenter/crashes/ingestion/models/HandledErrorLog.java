@@ -5,12 +5,16 @@
 
 package com.microsoft.appcenter.crashes.ingestion.models;
 
+import android.util.JsonReader;
+
 import com.microsoft.appcenter.ingestion.models.LogWithProperties;
+import com.microsoft.appcenter.ingestion.models.json.JSONUtils;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
 import java.util.UUID;
 
 import static com.microsoft.appcenter.ingestion.models.CommonProperties.ID;
@@ -94,6 +98,26 @@ public class HandledErrorLog extends LogWithProperties {
         }
     }
 
+    @Override
+    protected boolean readField(String name, JsonReader reader) throws IOException, JSONException {
+        if (name.equals(ID)) {
+            setId(UUID.fromString(reader.nextString()));
+        } else if (name.equals(EXCEPTION)) {
+            Exception exception = new Exception();
+            exception.read(reader);
+            setException(exception);
+        } else {
+            return super.readField(name, reader);
+        }
+        return true;
+    }
+
+    @Override
+    protected void checkRequiredFields() throws JSONException {
+        super.checkRequiredFields();
+        JSONUtils.checkRequired(ID, getId());
+    }
+
     @Override
     public void write(JSONStringer writer) throws JSONException {
         super.write(writer);
@@ -5,6 +5,8 @@
 
 package com.microsoft.appcenter.crashes.ingestion.models;
 
+import android.util.JsonReader;
+
 import com.microsoft.appcenter.crashes.ingestion.models.json.ThreadFactory;
 import com.microsoft.appcenter.ingestion.models.json.JSONUtils;
 
@@ -12,6 +14,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -91,6 +94,20 @@ public class ManagedErrorLog extends AbstractErrorLog {
         setThreads(JSONUtils.readArray(object, THREADS, ThreadFactory.getInstance()));
     }
 
+    @Override
+    protected boolean readField(String name, JsonReader reader) throws IOException, JSONException {
+        if (name.equals(EXCEPTION)) {
+            Exception exception = new Exception();
+            exception.read(reader);
+            setException(exception);
+        } else if (name.equals(THREADS)) {
+            setThreads(JSONUtils.readArray(reader, ThreadFactory.getInstance()));
+        } else {
+            return super.readField(name, reader);
+        }
+        return true;
+    }
+
     @Override
     public void write(JSONStringer writer) throws JSONException {
         super.write(writer);
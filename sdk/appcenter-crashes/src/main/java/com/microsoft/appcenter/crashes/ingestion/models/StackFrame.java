@@ -5,6 +5,8 @@
 
 package com.microsoft.appcenter.crashes.ingestion.models;
 
+import android.util.JsonReader;
+
 import com.microsoft.appcenter.ingestion.models.Model;
 import com.microsoft.appcenter.ingestion.models.json.JSONUtils;
 
@@ -12,6 +14,8 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
+
 /**
  * The StackFrame model.
  */
@@ -129,6 +133,26 @@ public class StackFrame implements Model {
         setFileName(object.optString(FILE_NAME, null));
     }
 
+    @Override
+    public void read(JsonReader reader) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals(CLASS_NAME)) {
+                setClassName(reader.nextString());
+            } else if (name.equals(METHOD_NAME)) {
+                setMethodName(reader.nextString());
+            } else if (name.equals(LINE_NUMBER)) {
+                setLineNumber(reader.nextInt());
+            } else if (name.equals(FILE_NAME)) {
+                setFileName(reader.nextString());
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
     @Override
     public void write(JSONStringer writer) throws JSONException {
         JSONUtils.write(writer, CLASS_NAME, getClassName());
@@ -5,6 +5,8 @@
 
 package com.microsoft.appcenter.crashes.ingestion.models;
 
+import android.util.JsonReader;
+
 import com.microsoft.appcenter.crashes.ingestion.models.json.StackFrameFactory;
 import com.microsoft.appcenter.ingestion.models.Model;
 import com.microsoft.appcenter.ingestion.models.json.JSONUtils;
@@ -13,6 +15,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
 import java.util.List;
 
 import static com.microsoft.appcenter.ingestion.models.CommonProperties.FRAMES;
@@ -100,6 +103,29 @@ public class Thread implements Model {
         setFrames(JSONUtils.readArray(object, FRAMES, StackFrameFactory.getInstance()));
     }
 
+    @Override
+    public void read(JsonReader reader) throws IOException, JSONException {
+        boolean hasId = false;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals(ID)) {
+                setId(reader.nextLong());
+                hasId = true;
+            } else if (name.equals(NAME)) {
+                setName(reader.nextString());
+            } else if (name.equals(FRAMES)) {
+                setFrames(JSONUtils.readArray(reader, StackFrameFactory.getInstance()));
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (!hasId) {
+            throw new JSONException("Missing " + ID);
+        }
+    }
+
     @Override
     public void write(JSONStringer writer) throws JSONException {
         JSONUtils.write(writer, ID, getId());
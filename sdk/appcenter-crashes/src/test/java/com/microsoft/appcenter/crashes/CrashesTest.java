@@ -84,6 +84,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
@@ -368,6 +369,49 @@ public class CrashesTest extends AbstractCrashesTest {
         verify(mockChannel, never()).enqueue(any(Log.class), eq(crashes.getGroupName()), anyInt());
     }
 
+    @Test
+    public void readPendingCrashesWhileInitializing() throws JSONException {
+        Context mockContext = mock(Context.class);
+        Channel mockChannel = mock(Channel.class);
+        ErrorReport report = new ErrorReport();
+        mockStatic(ErrorLogHelper.class);
+        when(ErrorLogHelper.getStoredErrorLogFiles()).thenReturn(new File[]{mock(File.class)});
+        when(ErrorLogHelper.getNewMinidumpFiles()).thenReturn(new File[0]);
+        when(ErrorLogHelper.getErrorReportFromErrorLog(any(ManagedErrorLog.class), anyString())).thenReturn(report);
+        when(FileManager.read(any(File.class))).thenReturn("");
+        CrashesListener mockListener = mock(CrashesListener.class);
+        when(mockListener.shouldProcess(report)).thenReturn(false);
+        LogSerializer logSerializer = mock(LogSerializer.class);
+        when(logSerializer.deserializeLog(anyString(), anyString())).thenReturn(mErrorLog);
+        Crashes crashes = Crashes.getInstance();
+        crashes.setLogSerializer(logSerializer);
+        crashes.setInstanceListener(mockListener);
+
+        /* Crash handler is registered, then files are read and reports built before start, listener is not called yet. */
+        crashes.onInitializing(mockContext);
+        UncaughtExceptionHandler handler = crashes.getUncaughtExceptionHandler();
+        assertNotNull(handler);
+        assertSame(handler, Thread.getDefaultUncaughtExceptionHandler());
+        verify(logSerializer).deserializeLog(anyString(), anyString());
+        verifyStatic();
+        ErrorLogHelper.getNewMinidumpFiles();
+        verify(mockListener, never()).shouldProcess(any(ErrorReport.class));
+
+        /* Start processes what was read without reading files again. */
+        crashes.onStarting(mAppCenterHandler);
+        crashes.onStarted(mockContext, mockChannel, "", null, true);
+        verify(mockListener).shouldProcess(report);
+        verify(logSerializer).deserializeLog(anyString(), anyString());
+        verifyStatic();
+        ErrorLogHelper.getStoredErrorLogFiles();
+        verifyStatic();
+        ErrorLogHelper.getNewMinidumpFiles();
+
+        /* Crash handler is not registered again. */
+        assertSame(handler, crashes.getUncaughtExceptionHandler());
+        assertSame(handler, Thread.getDefaultUncaughtExceptionHandler());
+    }
+
     @Test
     public void queuePendingCrashesAlwaysSend() throws JSONException {
         Context mockContext = mock(Context.class);
@@ -14,6 +14,7 @@ import com.microsoft.appcenter.http.HttpUtils;
 import com.microsoft.appcenter.http.ServiceCall;
 import com.microsoft.appcenter.http.ServiceCallback;
 import com.microsoft.appcenter.ingestion.AbstractAppCenterIngestion;
+import com.microsoft.appcenter.http.CallOptions;
 import com.microsoft.appcenter.http.HttpClient;
 import com.microsoft.appcenter.utils.AppCenterLog;
 
@@ -67,6 +68,11 @@ public class DistributeIngestion extends AbstractAppCenterIngestion {
                     AppCenterLog.verbose(LOG_TAG, "Headers: " + logHeaders);
                 }
             }
+
+            @Override
+            public CallOptions getCallOptions() {
+                return null;
+            }
         }, serviceCallback);
     }
 }
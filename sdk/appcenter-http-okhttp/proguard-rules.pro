@@ -0,0 +1,10 @@
+# The following options are set by default.
+# Make sure they are always set, even if the default proguard config changes.
+-dontskipnonpubliclibraryclasses
+-verbose
+
+# OkHttp platform used only on JVM and when Conscrypt dependency is available.
+-dontwarn okhttp3.internal.platform.ConscryptPlatform
+-dontwarn org.conscrypt.**
+-dontwarn org.codehaus.mojo.animal_sniffer.*
+-dontwarn javax.annotation.**
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.http.okhttp;
+
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.microsoft.appcenter.http.DefaultHttpClient;
+import com.microsoft.appcenter.http.CallOptions;
+import com.microsoft.appcenter.http.HttpClient;
+import com.microsoft.appcenter.http.HttpResponse;
+import com.microsoft.appcenter.http.ServiceCallback;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSession;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.tls.HandshakeCertificates;
+import okhttp3.tls.HeldCertificate;
+
+import static com.microsoft.appcenter.http.DefaultHttpClient.METHOD_POST;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Compares {@link OkHttpHttpClient} with {@link DefaultHttpClient} sending batches of parallel log uploads
+ * to a local HTTPS server that supports HTTP/2.
+ */
+public class OkHttpHttpClientBenchmarkTest {
+
+    private static final String TAG = "OkHttpBenchmark";
+
+    /**
+     * Number of calls running in parallel, like a channel flushing several groups at once.
+     */
+    private static final int PARALLEL_CALLS = 8;
+
+    /**
+     * Number of batches of parallel calls.
+     */
+    private static final int ROUNDS = 10;
+
+    /**
+     * Simulated server processing time.
+     */
+    private static final long SERVER_DELAY = 20;
+
+    private static final String PAYLOAD = "{\"logs\":[]}";
+
+    private MockWebServer mServer;
+
+    private HandlerThread mCallerThread;
+
+    private HandshakeCertificates mClientCertificates;
+
+    @Before
+    public void setUp() throws Exception {
+
+        /* OkHttp 3.12 negotiates HTTP/2 with ALPN, available from Lollipop. */
+        assumeTrue(Build.VERSION.SDK_INT > Build.VERSION_CODES.LOLLIPOP);
+        mServer = new MockWebServer();
+        mServer.setProtocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1));
+        mServer.start();
+        HeldCertificate certificate = new HeldCertificate.Builder()
+                .addSubjectAlternativeName(mServer.getHostName())
+                .build();
+        HandshakeCertificates serverCertificates = new HandshakeCertificates.Builder()
+                .heldCertificate(certificate)
+                .build();
+        mServer.useHttps(serverCertificates.sslSocketFactory(), false);
+        mClientCertificates = new HandshakeCertificates.Builder()
+                .addTrustedCertificate(certificate.certificate())
+                .build();
+
+        /* The default client uses the platform defaults, the shared connection pool is not created before this test. */
+        HttpsURLConnection.setDefaultSSLSocketFactory(mClientCertificates.sslSocketFactory());
+        final String hostName = mServer.getHostName();
+        HttpsURLConnection.setDefaultHostnameVerifier(new HostnameVerifier() {
+
+            @Override
+            public boolean verify(String hostname, SSLSession session) {
+                return hostName.equals(hostname);
+            }
+        });
+        mCallerThread = new HandlerThread(TAG);
+        mCallerThread.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (mServer != null) {
+            mServer.shutdown();
+        }
+        if (mCallerThread != null) {
+            mCallerThread.quit();
+        }
+    }
+
+    /**
+     * Send all batches and get the total duration.
+     */
+    private long runBenchmark(final HttpClient httpClient) throws Exception {
+        for (int i = 0; i < ROUNDS * PARALLEL_CALLS; i++) {
+            mServer.enqueue(new MockResponse().setBody("{}").setHeadersDelay(SERVER_DELAY, TimeUnit.MILLISECONDS));
+        }
+        final String url = mServer.url("/logs").toString();
+        final HttpClient.CallTemplate callTemplate = new HttpClient.CallTemplate() {
+
+            @Override
+            public String buildRequestBody() {
+                return PAYLOAD;
+            }
+
+            @Override
+            public void onBeforeCalling(URL url, Map<String, String> headers) {
+            }
+
+            @Override
+            public CallOptions getCallOptions() {
+                return null;
+            }
+        };
+        final AtomicInteger failures = new AtomicInteger();
+        Handler callerHandler = new Handler(mCallerThread.getLooper());
+        long startTime = SystemClock.elapsedRealtime();
+        for (int round = 0; round < ROUNDS; round++) {
+            final CountDownLatch latch = new CountDownLatch(PARALLEL_CALLS);
+            callerHandler.post(new Runnable() {
+
+                @Override
+                public void run() {
+                    for (int i = 0; i < PARALLEL_CALLS; i++) {
+                        httpClient.callAsync(url, METHOD_POST, new HashMap<String, String>(), callTemplate, new ServiceCallback() {
+
+                            @Override
+                            public void onCallSucceeded(HttpResponse httpResponse) {
+                                latch.countDown();
+                            }
+
+                            @Override
+                            public void onCallFailed(Exception e) {
+                                Log.e(TAG, "Call failed", e);
+                                failures.incrementAndGet();
+                                latch.countDown();
+                            }
+                        });
+                    }
+                }
+            });
+            assertTrue(latch.await(30, TimeUnit.SECONDS));
+        }
+        long duration = SystemClock.elapsedRealtime() - startTime;
+        assertEquals(0, failures.get());
+        return duration;
+    }
+
+    @Test
+    public void compareWithDefaultHttpClient() throws Exception {
+
+        /* Warm up both clients so that one-time initialization is not measured. */
+        OkHttpHttpClient okHttpClient = new OkHttpHttpClient(new OkHttpClient.Builder()
+                .sslSocketFactory(mClientCertificates.sslSocketFactory(), mClientCertificates.trustManager())
+                .build(), true);
+        DefaultHttpClient defaultClient = new DefaultHttpClient();
+        runBenchmark(okHttpClient);
+        runBenchmark(defaultClient);
+
+        /* Measure. */
+        long okHttpDuration = runBenchmark(okHttpClient);
+        int okHttpConnections = okHttpClient.getClient().connectionPool().connectionCount();
+        long defaultDuration = runBenchmark(defaultClient);
+        Log.i(TAG, "Sent " + ROUNDS + " batches of " + PARALLEL_CALLS + " parallel calls:" +
+                " OkHttpHttpClient=" + okHttpDuration + "ms over " + okHttpConnections + " connection(s)," +
+                " DefaultHttpClient=" + defaultDuration + "ms.");
+        okHttpClient.close();
+        defaultClient.close();
+
+        /* All parallel calls were multiplexed on the same connection. */
+        assertEquals(1, okHttpConnections);
+    }
+}
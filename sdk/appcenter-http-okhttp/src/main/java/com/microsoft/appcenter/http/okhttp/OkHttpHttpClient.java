@@ -0,0 +1,505 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.http.okhttp;
+
+import android.content.Context;
+import android.os.Handler;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import com.microsoft.appcenter.http.CallOptions;
+import com.microsoft.appcenter.http.CountingOutputStream;
+import com.microsoft.appcenter.http.HttpClient;
+import com.microsoft.appcenter.http.HttpException;
+import com.microsoft.appcenter.http.HttpResponse;
+import com.microsoft.appcenter.http.HttpUtils;
+import com.microsoft.appcenter.http.RequestBodyCache;
+import com.microsoft.appcenter.http.RequestBodyRecorder;
+import com.microsoft.appcenter.http.ServiceCall;
+import com.microsoft.appcenter.http.ServiceCallback;
+import com.microsoft.appcenter.utils.AppCenterLog;
+import com.microsoft.appcenter.utils.HandlerUtils;
+
+import org.json.JSONException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Headers;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.BufferedSink;
+
+import static com.microsoft.appcenter.AppCenter.LOG_TAG;
+import static com.microsoft.appcenter.http.DefaultHttpClient.CHARSET_NAME;
+import static com.microsoft.appcenter.http.DefaultHttpClient.CONTENT_TYPE_KEY;
+import static com.microsoft.appcenter.http.DefaultHttpClient.METHOD_POST;
+import static com.microsoft.appcenter.http.HttpUtils.WRITE_BUFFER_SIZE;
+
+/**
+ * HTTP client based on OkHttp.
+ * Parallel calls to the same host share a single connection when the server supports HTTP/2.
+ * Use {@link #create(Context)} to get a client with the same retry and network state behaviors as the default one.
+ */
+public class OkHttpHttpClient implements HttpClient {
+
+    /**
+     * Content type header value used when the call does not specify one.
+     */
+    @VisibleForTesting
+    static final String CONTENT_TYPE_VALUE = "application/json";
+
+    /**
+     * Content encoding header key.
+     */
+    @VisibleForTesting
+    static final String CONTENT_ENCODING_KEY = "Content-Encoding";
+
+    /**
+     * Content encoding header value.
+     */
+    @VisibleForTesting
+    static final String CONTENT_ENCODING_VALUE = "gzip";
+
+    /**
+     * Minimum payload length in bytes to use gzip.
+     */
+    @VisibleForTesting
+    static final int MIN_GZIP_LENGTH = 1400;
+
+    /**
+     * OkHttp client.
+     */
+    private final OkHttpClient mClient;
+
+    /**
+     * Indicates whether compression is enabled.
+     */
+    private final boolean mCompressionEnabled;
+
+    /**
+     * Ongoing calls.
+     */
+    private final Set<Call> mCalls = new HashSet<>();
+
+    /**
+     * Init with compression enabled.
+     */
+    public OkHttpHttpClient() {
+        this(true);
+    }
+
+    /**
+     * Init.
+     *
+     * @param compressionEnabled true to compress request bodies with gzip.
+     */
+    public OkHttpHttpClient(boolean compressionEnabled) {
+        this(new OkHttpClient(), compressionEnabled);
+    }
+
+    /**
+     * Init with an application configured client.
+     * The client connection pool and dispatcher are shared with the application.
+     *
+     * @param client             OkHttp client to derive the SDK client from.
+     * @param compressionEnabled true to compress request bodies with gzip.
+     */
+    public OkHttpHttpClient(@NonNull OkHttpClient client, boolean compressionEnabled) {
+        mClient = client.newBuilder().addInterceptor(new CallTemplateInterceptor()).build();
+        mCompressionEnabled = compressionEnabled;
+    }
+
+    /**
+     * Create a client with the retry and network state behaviors of the SDK,
+     * to pass to {@link com.microsoft.appcenter.DependencyConfiguration#setHttpClient(HttpClient)} before starting the SDK.
+     *
+     * @param context context.
+     * @return HTTP client.
+     */
+    public static HttpClient create(@NonNull Context context) {
+        return HttpUtils.decorateHttpClient(context, new OkHttpHttpClient());
+    }
+
+    /**
+     * Copy response headers.
+     *
+     * @param names header names to copy, null to copy all headers.
+     */
+    private static Map<String, String> readResponseHeaders(Response response, Collection<String> names) {
+        if (names == null) {
+            Headers headers = response.headers();
+            Map<String, String> responseHeaders = new HashMap<>(headers.size());
+            for (int i = 0; i < headers.size(); i++) {
+                String name = headers.name(i);
+                if (!responseHeaders.containsKey(name)) {
+                    responseHeaders.put(name, headers.value(i));
+                }
+            }
+            return responseHeaders;
+        }
+        if (names.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> responseHeaders = new HashMap<>(names.size());
+        for (String name : names) {
+            String value = response.header(name);
+            if (value != null) {
+                responseHeaders.put(name, value);
+            }
+        }
+        return responseHeaders;
+    }
+
+    @VisibleForTesting
+    OkHttpClient getClient() {
+        return mClient;
+    }
+
+    @VisibleForTesting
+    synchronized Set<Call> getCalls() {
+        return mCalls;
+    }
+
+    @Override
+    public ServiceCall callAsync(String url, String method, Map<String, String> headers, final CallTemplate callTemplate, final ServiceCallback serviceCallback) {
+        final Handler handler = CallOptions.of(callTemplate).isCallerLooperCallback() ? HandlerUtils.getCallerHandler() : HandlerUtils.getMainHandler();
+
+        /* Body and final headers are built on the OkHttp thread, POST needs a placeholder until then. */
+        Request.Builder builder = new Request.Builder().tag(PendingCall.class, new PendingCall(headers, callTemplate, mCompressionEnabled));
+        final Call call;
+        try {
+            builder.url(url);
+            builder.method(method, METHOD_POST.equals(method) ? RequestBody.create(null, new byte[0]) : null);
+            call = mClient.newCall(builder.build());
+        } catch (final IllegalArgumentException e) {
+
+            /* Invalid URL or method, we need to return the method before calling the listener. */
+            handler.post(new Runnable() {
+
+                @Override
+                public void run() {
+                    serviceCallback.onCallFailed(e);
+                }
+            });
+            return new ServiceCall() {
+
+                @Override
+                public void cancel() {
+                }
+            };
+        }
+        synchronized (this) {
+            mCalls.add(call);
+        }
+        call.enqueue(new Callback() {
+
+            @Override
+            public void onFailure(@NonNull Call call, @NonNull IOException e) {
+                onCallFinished(call);
+                if (call.isCanceled()) {
+                    return;
+                }
+                final Exception exception = e instanceof CallTemplateException ? (Exception) e.getCause() : e;
+                handler.post(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        serviceCallback.onCallFailed(exception);
+                    }
+                });
+            }
+
+            @Override
+            public void onResponse(@NonNull Call call, @NonNull Response response) {
+                onCallFinished(call);
+                final Object result = readResponse(response, callTemplate);
+
+                /* Reading the body fails when the call is canceled meanwhile. */
+                if (call.isCanceled()) {
+                    return;
+                }
+                handler.post(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        if (result instanceof Exception) {
+                            serviceCallback.onCallFailed((Exception) result);
+                        } else {
+                            serviceCallback.onCallSucceeded((HttpResponse) result);
+                        }
+                    }
+                });
+            }
+        });
+        return new ServiceCall() {
+
+            @Override
+            public void cancel() {
+                call.cancel();
+            }
+        };
+    }
+
+    /**
+     * Convert a response.
+     *
+     * @return {@link HttpResponse} on success, exception otherwise.
+     */
+    private Object readResponse(Response response, CallTemplate callTemplate) {
+
+        //noinspection TryFinallyCanBeTryWithResources
+        try {
+            int status = response.code();
+            boolean isSuccess = response.isSuccessful();
+            CallOptions options = CallOptions.of(callTemplate);
+
+            /* Closing the response without reading the body only resets the stream, the connection is kept. */
+            String payload = "";
+            if ((!isSuccess || options.isResponseBodyNeeded()) && response.body() != null) {
+                payload = response.body().string();
+            }
+            AppCenterLog.verbose(LOG_TAG, "HTTP response status=" + status + " protocol=" + response.protocol());
+            Map<String, String> headers = readResponseHeaders(response, isSuccess ? options.getResponseHeaderNames() : null);
+            HttpResponse httpResponse = new HttpResponse(status, payload, headers);
+            return isSuccess ? httpResponse : new HttpException(httpResponse);
+        } catch (IOException e) {
+            return e;
+        } finally {
+            response.close();
+        }
+    }
+
+    private synchronized void onCallFinished(Call call) {
+        mCalls.remove(call);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (mCalls.size() > 0) {
+            AppCenterLog.debug(LOG_TAG, "Cancelling " + mCalls.size() + " network call(s).");
+            for (Call call : mCalls) {
+                call.cancel();
+            }
+            mCalls.clear();
+        }
+
+        /* Release connections kept open for calls that will not happen. */
+        mClient.connectionPool().evictAll();
+    }
+
+    @Override
+    public void reopen() {
+
+        /* Nothing to do. */
+    }
+
+    /**
+     * Call template and headers of a call, attached to the request until the body is built.
+     */
+    private static class PendingCall {
+
+        private final Map<String, String> mHeaders;
+
+        private final CallTemplate mCallTemplate;
+
+        private final boolean mCompressionEnabled;
+
+        PendingCall(Map<String, String> headers, CallTemplate callTemplate, boolean compressionEnabled) {
+            mHeaders = headers;
+            mCallTemplate = callTemplate;
+            mCompressionEnabled = compressionEnabled;
+        }
+
+        /**
+         * Build the request to send.
+         *
+         * @param request request with the URL and method.
+         * @return request with final headers and body.
+         */
+        Request buildRequest(Request request) throws IOException {
+
+            /* Headers are completed here, the map of the caller is left untouched. */
+            Map<String, String> headers = new HashMap<>(mHeaders);
+            RequestBody body = null;
+            if (METHOD_POST.equals(request.method()) && mCallTemplate != null) {
+
+                /* If no content type specified, assume json. */
+                if (!headers.containsKey(CONTENT_TYPE_KEY)) {
+                    headers.put(CONTENT_TYPE_KEY, CONTENT_TYPE_VALUE);
+                }
+                MediaType contentType = MediaType.parse(headers.get(CONTENT_TYPE_KEY));
+                RequestBodyCache bodyCache = CallOptions.of(mCallTemplate).getRequestBodyCache();
+                byte[] payload = bodyCache != null ? bodyCache.getBody() : null;
+                boolean compressed;
+                if (payload != null) {
+
+                    /* Send the payload of the previous try as is. */
+                    compressed = bodyCache.isCompressed();
+                } else if (mCallTemplate instanceof StreamingCallTemplate) {
+
+                    /* Size is unknown before writing, always compress when enabled. */
+                    compressed = mCompressionEnabled;
+                    body = new StreamingRequestBody(contentType, (StreamingCallTemplate) mCallTemplate, compressed, bodyCache);
+                } else {
+                    try {
+                        payload = mCallTemplate.buildRequestBody().getBytes(CHARSET_NAME);
+                    } catch (JSONException e) {
+                        throw new CallTemplateException(e);
+                    }
+
+                    /* Compress payload if large enough to be worth it. */
+                    int uncompressedLength = payload.length;
+                    compressed = mCompressionEnabled && uncompressedLength >= MIN_GZIP_LENGTH;
+                    if (compressed) {
+                        payload = compress(payload);
+                    }
+                    if (bodyCache != null) {
+                        bodyCache.setBody(payload, compressed, uncompressedLength);
+                    }
+                }
+                if (compressed) {
+                    headers.put(CONTENT_ENCODING_KEY, CONTENT_ENCODING_VALUE);
+                }
+                if (body == null) {
+                    body = RequestBody.create(contentType, payload);
+                }
+            }
+            if (mCallTemplate != null) {
+                mCallTemplate.onBeforeCalling(request.url().url(), headers);
+            }
+            Headers requestHeaders;
+            try {
+                requestHeaders = Headers.of(headers);
+            } catch (IllegalArgumentException e) {
+
+                /* Invalid header name or value. */
+                throw new IOException(e);
+            }
+            Request.Builder builder = request.newBuilder().headers(requestHeaders);
+            if (body != null) {
+                builder.method(request.method(), body);
+            }
+            return builder.build();
+        }
+    }
+
+    /**
+     * Builds the request from the call template on the OkHttp thread, just before sending it.
+     */
+    private static class CallTemplateInterceptor implements Interceptor {
+
+        @Override
+        public Response intercept(@NonNull Chain chain) throws IOException {
+            Request request = chain.request();
+            PendingCall pendingCall = request.tag(PendingCall.class);
+            if (pendingCall != null) {
+                request = pendingCall.buildRequest(request);
+            }
+            return chain.proceed(request);
+        }
+    }
+
+    /**
+     * Request body written by the call template, possibly more than once if OkHttp retries the request.
+     */
+    private static class StreamingRequestBody extends RequestBody {
+
+        private final MediaType mContentType;
+
+        private final StreamingCallTemplate mCallTemplate;
+
+        private final boolean mCompress;
+
+        private final RequestBodyCache mRequestBodyCache;
+
+        StreamingRequestBody(MediaType contentType, StreamingCallTemplate callTemplate, boolean compress, RequestBodyCache requestBodyCache) {
+            mContentType = contentType;
+            mCallTemplate = callTemplate;
+            mCompress = compress;
+            mRequestBodyCache = requestBodyCache;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return mContentType;
+        }
+
+        @Override
+        public void writeTo(@NonNull BufferedSink sink) throws IOException {
+
+            /* The sink is closed by OkHttp. Bytes sent are copied for retries so that the body is serialized once. */
+            OutputStream out = sink.outputStream();
+            RequestBodyRecorder recorder = null;
+            if (mRequestBodyCache != null) {
+                out = recorder = new RequestBodyRecorder(out, mRequestBodyCache, mCompress);
+            }
+            long uncompressedLength = writeStreamingPayload(mCallTemplate, out, mCompress);
+            if (recorder != null) {
+                recorder.finish(uncompressedLength);
+            }
+        }
+    }
+
+    /**
+     * Write the payload of a streaming call template, compressing on the fly if enabled.
+     * The stream is not closed.
+     *
+     * @return payload length before compression.
+     */
+    private static long writeStreamingPayload(StreamingCallTemplate callTemplate, OutputStream out, boolean compress) throws IOException {
+        GZIPOutputStream gzipStream = null;
+        if (compress) {
+            out = gzipStream = new GZIPOutputStream(out, WRITE_BUFFER_SIZE);
+        }
+        CountingOutputStream countingOut = new CountingOutputStream(out);
+        try {
+            callTemplate.writeRequestBody(countingOut);
+        } catch (JSONException e) {
+            throw new CallTemplateException(e);
+        }
+        if (gzipStream != null) {
+            gzipStream.finish();
+        }
+        return countingOut.getCount();
+    }
+
+    /**
+     * Compress a payload with gzip.
+     */
+    private static byte[] compress(byte[] payload) throws IOException {
+        ByteArrayOutputStream gzipBuffer = new ByteArrayOutputStream(payload.length);
+        GZIPOutputStream gzipStream = new GZIPOutputStream(gzipBuffer);
+        gzipStream.write(payload);
+        gzipStream.close();
+        return gzipBuffer.toByteArray();
+    }
+
+    /**
+     * Wraps a call template error to go through OkHttp, unwrapped before calling back.
+     */
+    private static class CallTemplateException extends IOException {
+
+        CallTemplateException(JSONException cause) {
+            super(cause);
+        }
+    }
+}
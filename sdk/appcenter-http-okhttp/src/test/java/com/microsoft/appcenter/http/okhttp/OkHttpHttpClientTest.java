@@ -0,0 +1,415 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.http.okhttp;
+
+import android.os.Handler;
+
+import com.microsoft.appcenter.http.CallOptions;
+import com.microsoft.appcenter.http.HttpClient;
+import com.microsoft.appcenter.http.HttpException;
+import com.microsoft.appcenter.http.HttpResponse;
+import com.microsoft.appcenter.http.RequestBodyCache;
+import com.microsoft.appcenter.http.ServiceCall;
+import com.microsoft.appcenter.http.ServiceCallback;
+import com.microsoft.appcenter.utils.AppCenterLog;
+import com.microsoft.appcenter.utils.HandlerUtils;
+
+import org.json.JSONException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.rule.PowerMockRule;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static com.microsoft.appcenter.http.DefaultHttpClient.METHOD_GET;
+import static com.microsoft.appcenter.http.DefaultHttpClient.METHOD_POST;
+import static com.microsoft.appcenter.http.okhttp.OkHttpHttpClient.CONTENT_ENCODING_KEY;
+import static com.microsoft.appcenter.http.okhttp.OkHttpHttpClient.CONTENT_ENCODING_VALUE;
+import static com.microsoft.appcenter.http.okhttp.OkHttpHttpClient.CONTENT_TYPE_VALUE;
+import static com.microsoft.appcenter.http.okhttp.OkHttpHttpClient.MIN_GZIP_LENGTH;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+
+@SuppressWarnings("unused")
+@PrepareForTest({AppCenterLog.class, HandlerUtils.class})
+public class OkHttpHttpClientTest {
+
+    @Rule
+    public PowerMockRule mPowerMockRule = new PowerMockRule();
+
+    private MockWebServer mServer;
+
+    private OkHttpHttpClient mHttpClient;
+
+    /**
+     * Released each time a callback is posted to the caller thread.
+     */
+    private Semaphore mCallbackSemaphore;
+
+    private static String gunzip(byte[] compressed) throws IOException {
+        InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toString("UTF-8");
+    }
+
+    private static String largePayload() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < MIN_GZIP_LENGTH; i++) {
+            builder.append('a');
+        }
+        return builder.toString();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        mockStatic(AppCenterLog.class);
+
+        /* Run callbacks directly, signaling each one. */
+        mCallbackSemaphore = new Semaphore(0);
+        Handler handler = mock(Handler.class);
+        when(handler.post(any(Runnable.class))).then(new Answer<Boolean>() {
+
+            @Override
+            public Boolean answer(InvocationOnMock invocation) {
+                ((Runnable) invocation.getArguments()[0]).run();
+                mCallbackSemaphore.release();
+                return true;
+            }
+        });
+        mockStatic(HandlerUtils.class);
+        when(HandlerUtils.getMainHandler()).thenReturn(handler);
+        when(HandlerUtils.getCallerHandler()).thenReturn(handler);
+        mServer = new MockWebServer();
+        mServer.start();
+        mHttpClient = new OkHttpHttpClient();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mHttpClient.close();
+        mServer.shutdown();
+    }
+
+    private String url() {
+        return mServer.url("/logs").toString();
+    }
+
+    private void waitForCallback() throws InterruptedException {
+        assertTrue(mCallbackSemaphore.tryAcquire(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void postSuccess() throws Exception {
+        mServer.enqueue(new MockResponse().setBody("OK").setHeader("x-ms-test", "value"));
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Install-ID", "42");
+        HttpClient.CallTemplate callTemplate = mock(HttpClient.CallTemplate.class);
+        when(callTemplate.buildRequestBody()).thenReturn("{}");
+        ServiceCallback serviceCallback = mock(ServiceCallback.class);
+        mHttpClient.callAsync(url(), METHOD_POST, headers, callTemplate, serviceCallback);
+        waitForCallback();
+
+        /* Verify request. */
+        RecordedRequest request = mServer.takeRequest();
+        assertEquals(METHOD_POST, request.getMethod());
+        assertEquals("42", request.getHeader("Install-ID"));
+        assertTrue(request.getHeader("Content-Type").startsWith(CONTENT_TYPE_VALUE));
+        assertNull(request.getHeader(CONTENT_ENCODING_KEY));
+        assertEquals("{}", request.getBody().readUtf8());
+        verify(callTemplate).onBeforeCalling(eq(new URL(url())), anyMapOf(String.class, String.class));
+
+        /* Verify response. */
+        ArgumentCaptor<HttpResponse> response = ArgumentCaptor.forClass(HttpResponse.class);
+        verify(serviceCallback).onCallSucceeded(response.capture());
+        assertEquals(200, response.getValue().getStatusCode());
+        assertEquals("OK", response.getValue().getPayload());
+        assertEquals("value", response.getValue().getHeaders().get("x-ms-test"));
+        assertTrue(mHttpClient.getCalls().isEmpty());
+    }
+
+    @Test
+    public void callbackOnCallerLooperOnlyIfAllowed() throws Exception {
+        Handler callerHandler = mock(Handler.class);
+        when(HandlerUtils.getCallerHandler()).thenReturn(callerHandler);
+
+        /* Other templates are called back on the main thread. */
+        mServer.enqueue(new MockResponse());
+        ServiceCallback serviceCallback = mock(ServiceCallback.class);
+        mHttpClient.callAsync(url(), METHOD_GET, new HashMap<String, String>(), mock(HttpClient.CallTemplate.class), serviceCallback);
+        waitForCallback();
+        verify(serviceCallback).onCallSucceeded(any(HttpResponse.class));
+        verify(callerHandler, never()).post(any(Runnable.class));
+
+        /* Templates that allow it are called back on the caller looper. */
+        mServer.enqueue(new MockResponse());
+        HttpClient.CallTemplate callTemplate = mock(HttpClient.CallTemplate.class);
+        CallOptions callOptions = new CallOptions();
+        callOptions.setCallerLooperCallback(true);
+        when(callTemplate.getCallOptions()).thenReturn(callOptions);
+        mHttpClient.callAsync(url(), METHOD_GET, new HashMap<String, String>(), callTemplate, mock(ServiceCallback.class));
+        verify(callerHandler, timeout(5000)).post(any(Runnable.class));
+    }
+
+    @Test
+    public void postLargePayloadIsCompressed() throws Exception {
+        mServer.enqueue(new MockResponse());
+        String payload = largePayload();
+        HttpClient.CallTemplate callTemplate = mock(HttpClient.CallTemplate.class);
+        when(callTemplate.buildRequestBody()).thenReturn(payload);
+        ServiceCallback serviceCallback = mock(ServiceCallback.class);
+        Map<String, String> headers = new HashMap<>();
+        mHttpClient.callAsync(url(), METHOD_POST, headers, callTemplate, serviceCallback);
+        waitForCallback();
+        RecordedRequest request = mServer.takeRequest();
+        assertEquals(CONTENT_ENCODING_VALUE, request.getHeader(CONTENT_ENCODING_KEY));
+        assertEquals(payload, gunzip(request.getBody().readByteArray()));
+        verify(serviceCallback).onCallSucceeded(any(HttpResponse.class));
+
+        /* Headers of the caller are reused by retries, they must not be modified. */
+        assertTrue(headers.isEmpty());
+    }
+
+    @Test
+    public void postLargePayloadWithoutCompression() throws Exception {
+        mHttpClient.close();
+        mHttpClient = new OkHttpHttpClient(false);
+        mServer.enqueue(new MockResponse());
+        String payload = largePayload();
+        HttpClient.CallTemplate callTemplate = mock(HttpClient.CallTemplate.class);
+        when(callTemplate.buildRequestBody()).thenReturn(payload);
+        mHttpClient.callAsync(url(), METHOD_POST, new HashMap<String, String>(), callTemplate, mock(ServiceCallback.class));
+        waitForCallback();
+        RecordedRequest request = mServer.takeRequest();
+        assertNull(request.getHeader(CONTENT_ENCODING_KEY));
+        assertEquals(payload, request.getBody().readUtf8());
+    }
+
+    @Test
+    public void postStreamingBody() throws Exception {
+        mServer.enqueue(new MockResponse());
+        HttpClient.StreamingCallTemplate callTemplate = mock(HttpClient.StreamingCallTemplate.class);
+        doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                ((OutputStream) invocation.getArguments()[0]).write("{\"streamed\":true}".getBytes("UTF-8"));
+                return null;
+            }
+        }).when(callTemplate).writeRequestBody(any(OutputStream.class));
+        ServiceCallback serviceCallback = mock(ServiceCallback.class);
+        mHttpClient.callAsync(url(), METHOD_POST, new HashMap<String, String>(), callTemplate, serviceCallback);
+        waitForCallback();
+
+        /* Body is streamed and compressed regardless of its size. */
+        RecordedRequest request = mServer.takeRequest();
+        assertEquals(CONTENT_ENCODING_VALUE, request.getHeader(CONTENT_ENCODING_KEY));
+        assertEquals("{\"streamed\":true}", gunzip(request.getBody().readByteArray()));
+        verify(callTemplate, never()).buildRequestBody();
+        verify(serviceCallback).onCallSucceeded(any(HttpResponse.class));
+    }
+
+    @Test
+    public void sendStoredPayloadOnRetry() throws Exception {
+        mServer.enqueue(new MockResponse().setResponseCode(503));
+        mServer.enqueue(new MockResponse().setResponseCode(503));
+        mServer.enqueue(new MockResponse());
+        HttpClient.StreamingCallTemplate callTemplate = mock(HttpClient.StreamingCallTemplate.class);
+        RequestBodyCache requestBodyCache = new RequestBodyCache();
+        CallOptions callOptions = new CallOptions();
+        callOptions.setRequestBodyCache(requestBodyCache);
+        when(callTemplate.getCallOptions()).thenReturn(callOptions);
+        doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                ((OutputStream) invocation.getArguments()[0]).write("{}".getBytes("UTF-8"));
+                return null;
+            }
+        }).when(callTemplate).writeRequestBody(any(OutputStream.class));
+        ServiceCallback serviceCallback = mock(ServiceCallback.class);
+
+        /* First try is streamed and the bytes sent are kept. */
+        mHttpClient.callAsync(url(), METHOD_POST, new HashMap<String, String>(), callTemplate, serviceCallback);
+        waitForCallback();
+        byte[] streamedBody = mServer.takeRequest().getBody().readByteArray();
+        assertEquals("{}", gunzip(streamedBody));
+        assertArrayEquals(streamedBody, requestBodyCache.getBody());
+        assertEquals(2, requestBodyCache.getUncompressedLength());
+
+        /* Call twice with the same template like retries. */
+        mHttpClient.callAsync(url(), METHOD_POST, new HashMap<String, String>(), callTemplate, serviceCallback);
+        waitForCallback();
+        verify(serviceCallback, times(2)).onCallFailed(any(HttpException.class));
+        mHttpClient.callAsync(url(), METHOD_POST, new HashMap<String, String>(), callTemplate, serviceCallback);
+        waitForCallback();
+        verify(serviceCallback).onCallSucceeded(any(HttpResponse.class));
+
+        /* Body was serialized once and both retries sent the same compressed body. */
+        verify(callTemplate).writeRequestBody(any(OutputStream.class));
+        RecordedRequest firstRequest = mServer.takeRequest();
+        RecordedRequest secondRequest = mServer.takeRequest();
+        assertEquals(CONTENT_ENCODING_VALUE, secondRequest.getHeader(CONTENT_ENCODING_KEY));
+        assertArrayEquals(streamedBody, firstRequest.getBody().readByteArray());
+        assertArrayEquals(streamedBody, secondRequest.getBody().readByteArray());
+    }
+
+    @Test
+    public void filteredResponse() throws Exception {
+        mServer.enqueue(new MockResponse().setBody("ignored").setHeader("ETag", "1").setHeader("x-ms-other", "2"));
+        HttpClient.CallTemplate callTemplate = mock(HttpClient.CallTemplate.class);
+        CallOptions callOptions = new CallOptions();
+        callOptions.setResponseBodyNeeded(false);
+        callOptions.setResponseHeaderNames(Collections.singletonList("ETag"));
+        when(callTemplate.getCallOptions()).thenReturn(callOptions);
+        ServiceCallback serviceCallback = mock(ServiceCallback.class);
+        mHttpClient.callAsync(url(), METHOD_GET, new HashMap<String, String>(), callTemplate, serviceCallback);
+        waitForCallback();
+        ArgumentCaptor<HttpResponse> response = ArgumentCaptor.forClass(HttpResponse.class);
+        verify(serviceCallback).onCallSucceeded(response.capture());
+        assertEquals("", response.getValue().getPayload());
+        assertEquals(Collections.singletonMap("ETag", "1"), response.getValue().getHeaders());
+        verify(callTemplate, never()).buildRequestBody();
+    }
+
+    @Test
+    public void errorResponse() throws Exception {
+        mServer.enqueue(new MockResponse().setResponseCode(503).setBody("Busy").setHeader("Retry-After", "5"));
+        HttpClient.CallTemplate callTemplate = mock(HttpClient.CallTemplate.class);
+        CallOptions callOptions = new CallOptions();
+        callOptions.setResponseBodyNeeded(false);
+        callOptions.setResponseHeaderNames(Collections.<String>emptyList());
+        when(callTemplate.getCallOptions()).thenReturn(callOptions);
+        ServiceCallback serviceCallback = mock(ServiceCallback.class);
+        mHttpClient.callAsync(url(), METHOD_GET, new HashMap<String, String>(), callTemplate, serviceCallback);
+        waitForCallback();
+
+        /* Failed responses are never filtered. */
+        ArgumentCaptor<Exception> exception = ArgumentCaptor.forClass(Exception.class);
+        verify(serviceCallback).onCallFailed(exception.capture());
+        assertTrue(exception.getValue() instanceof HttpException);
+        HttpResponse response = ((HttpException) exception.getValue()).getHttpResponse();
+        assertEquals(503, response.getStatusCode());
+        assertEquals("Busy", response.getPayload());
+        assertEquals("5", response.getHeaders().get("Retry-After"));
+    }
+
+    @Test
+    public void buildRequestBodyFails() throws Exception {
+        HttpClient.CallTemplate callTemplate = mock(HttpClient.CallTemplate.class);
+        JSONException jsonException = new JSONException("mock");
+        when(callTemplate.buildRequestBody()).thenThrow(jsonException);
+        ServiceCallback serviceCallback = mock(ServiceCallback.class);
+        mHttpClient.callAsync(url(), METHOD_POST, new HashMap<String, String>(), callTemplate, serviceCallback);
+        waitForCallback();
+        verify(serviceCallback).onCallFailed(jsonException);
+        assertEquals(0, mServer.getRequestCount());
+    }
+
+    @Test
+    public void invalidUrl() throws Exception {
+        ServiceCallback serviceCallback = mock(ServiceCallback.class);
+        ServiceCall call = mHttpClient.callAsync("not a url", METHOD_GET, new HashMap<String, String>(), null, serviceCallback);
+        waitForCallback();
+        verify(serviceCallback).onCallFailed(any(IllegalArgumentException.class));
+        call.cancel();
+        assertTrue(mHttpClient.getCalls().isEmpty());
+    }
+
+    @Test
+    public void invalidHeader() throws Exception {
+        mServer.enqueue(new MockResponse());
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Bad\nName", "value");
+        ServiceCallback serviceCallback = mock(ServiceCallback.class);
+        mHttpClient.callAsync(url(), METHOD_GET, headers, null, serviceCallback);
+        waitForCallback();
+        verify(serviceCallback).onCallFailed(any(IOException.class));
+        assertEquals(0, mServer.getRequestCount());
+    }
+
+    @Test
+    public void cancelledCallDoesNotCallBack() throws Exception {
+        mServer.enqueue(new MockResponse().setBodyDelay(5, TimeUnit.SECONDS));
+        ServiceCallback serviceCallback = mock(ServiceCallback.class);
+        ServiceCall call = mHttpClient.callAsync(url(), METHOD_GET, new HashMap<String, String>(), null, serviceCallback);
+        mServer.takeRequest();
+        call.cancel();
+        assertFalse(mCallbackSemaphore.tryAcquire(500, TimeUnit.MILLISECONDS));
+        verify(serviceCallback, never()).onCallSucceeded(any(HttpResponse.class));
+        verify(serviceCallback, never()).onCallFailed(any(Exception.class));
+    }
+
+    @Test
+    public void closeCancelsCalls() throws Exception {
+        mServer.enqueue(new MockResponse().setBodyDelay(5, TimeUnit.SECONDS));
+        ServiceCallback serviceCallback = mock(ServiceCallback.class);
+        mHttpClient.callAsync(url(), METHOD_GET, new HashMap<String, String>(), null, serviceCallback);
+        mServer.takeRequest();
+        assertEquals(1, mHttpClient.getCalls().size());
+        mHttpClient.close();
+        assertTrue(mHttpClient.getCalls().isEmpty());
+        assertFalse(mCallbackSemaphore.tryAcquire(500, TimeUnit.MILLISECONDS));
+        verify(serviceCallback, never()).onCallFailed(any(Exception.class));
+
+        /* Client can be used again after reopening. */
+        mHttpClient.reopen();
+        mServer.enqueue(new MockResponse());
+        mHttpClient.callAsync(url(), METHOD_GET, new HashMap<String, String>(), null, serviceCallback);
+        waitForCallback();
+        verify(serviceCallback).onCallSucceeded(any(HttpResponse.class));
+    }
+
+    @Test
+    public void applicationClientIsNotModified() {
+        okhttp3.OkHttpClient applicationClient = new okhttp3.OkHttpClient();
+        OkHttpHttpClient httpClient = new OkHttpHttpClient(applicationClient, true);
+        assertTrue(applicationClient.interceptors().isEmpty());
+        assertEquals(1, httpClient.getClient().interceptors().size());
+        assertSame(applicationClient.connectionPool(), httpClient.getClient().connectionPool());
+        assertSame(applicationClient.dispatcher(), httpClient.getClient().dispatcher());
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter;
+
+import android.app.Application;
+import android.app.Instrumentation;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures how long App Center keeps its background thread busy at startup, until it can accept logs,
+ * with and without staged initialization.
+ */
+public class AppCenterStartupAndroidTest {
+
+    private static final String TAG = "AppCenterStartup";
+
+    private static final int ITERATIONS = 10;
+
+    private Application mApplication;
+
+    @Before
+    public void setUp() throws Exception {
+        Constants.APPLICATION_DEBUGGABLE = false;
+        mApplication = Instrumentation.newApplication(Application.class, InstrumentationRegistry.getInstrumentation().getContext());
+    }
+
+    @After
+    public void tearDown() {
+        AppCenter.unsetInstance();
+    }
+
+    /**
+     * Start App Center and wait until start is processed by its background thread.
+     *
+     * @return elapsed time in microseconds.
+     */
+    private long measureStart(boolean staged) {
+        AppCenter.unsetInstance();
+        AppCenter.setStagedInitializationEnabled(staged);
+        long startTime = SystemClock.elapsedRealtimeNanos();
+        AppCenter.start(mApplication, UUID.randomUUID().toString());
+        assertTrue(AppCenter.isEnabled().get());
+        return (SystemClock.elapsedRealtimeNanos() - startTime) / 1000;
+    }
+
+    private long measureMedianStart(boolean staged) {
+        long[] durations = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            durations[i] = measureStart(staged);
+        }
+        Arrays.sort(durations);
+        return durations[ITERATIONS / 2];
+    }
+
+    @Test
+    public void startupTime() {
+
+        /* Warm up class loading and storage files so that the first mode measured is not penalized. */
+        measureStart(false);
+        long eager = measureMedianStart(false);
+        long staged = measureMedianStart(true);
+        Log.i(TAG, "Median time to accept logs: eager=" + eager + "us, staged=" + staged + "us");
+    }
+}
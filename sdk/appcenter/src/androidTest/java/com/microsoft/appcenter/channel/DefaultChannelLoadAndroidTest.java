@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.channel;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.microsoft.appcenter.Constants;
+import com.microsoft.appcenter.Flags;
+import com.microsoft.appcenter.http.HttpClient;
+import com.microsoft.appcenter.http.HttpUtils;
+import com.microsoft.appcenter.http.MockIngestionServer;
+import com.microsoft.appcenter.ingestion.Ingestion;
+import com.microsoft.appcenter.ingestion.OneCollectorIngestion;
+import com.microsoft.appcenter.ingestion.models.json.DefaultLogSerializer;
+import com.microsoft.appcenter.ingestion.models.json.LogSerializer;
+import com.microsoft.appcenter.ingestion.models.json.MockLog;
+import com.microsoft.appcenter.ingestion.models.json.MockLogFactory;
+import com.microsoft.appcenter.ingestion.models.one.CommonSchemaLog;
+import com.microsoft.appcenter.ingestion.models.one.Extensions;
+import com.microsoft.appcenter.ingestion.models.one.MockCommonSchemaLog;
+import com.microsoft.appcenter.ingestion.models.one.MockCommonSchemaLogFactory;
+import com.microsoft.appcenter.ingestion.models.one.ProtocolExtension;
+import com.microsoft.appcenter.utils.storage.FileManager;
+import com.microsoft.appcenter.utils.storage.SharedPreferencesManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Sends logs through the real channel, database, ingestion and HTTP client to a local HTTPS server,
+ * and reports throughput, delivery latency, bytes on the wire and retained heap.
+ */
+public class DefaultChannelLoadAndroidTest {
+
+    private static final String TAG = "ChannelLoad";
+
+    private static final String DATABASE = "com.microsoft.appcenter.persistence";
+
+    private static final String GROUP = "group_load";
+
+    private static final int MAX_LOGS_PER_BATCH = 50;
+
+    private static final long BATCH_TIME_INTERVAL = 100;
+
+    private static final int MAX_PARALLEL_BATCHES = 3;
+
+    /**
+     * Logs enqueued per handler message, so that sending can start while enqueuing.
+     */
+    private static final int ENQUEUE_CHUNK_SIZE = 50;
+
+    private static final String TARGET_TOKEN = "4aed4dd8b4f84f2eae9b2fe21e8e96a7-1f8d2a6b-4f19-4b76-b3df-0e8c6e5a9a84-7002";
+
+    private static Context sContext;
+
+    private MockIngestionServer mServer;
+
+    private HandlerThread mHandlerThread;
+
+    private Handler mHandler;
+
+    private DefaultChannel mChannel;
+
+    @BeforeClass
+    public static void setUpClass() {
+        sContext = InstrumentationRegistry.getInstrumentation().getContext();
+        FileManager.initialize(sContext);
+        SharedPreferencesManager.initialize(sContext);
+        Constants.loadFromContext(sContext);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        sContext.deleteDatabase(DATABASE);
+        mServer = new MockIngestionServer();
+        mServer.start();
+
+        /* Retry quickly so that injected faults do not make the test wait for minutes. */
+        HttpUtils.setRetryBackoff(20, 50, 1000);
+        mHandlerThread = new HandlerThread(TAG);
+        mHandlerThread.start();
+        mHandler = new Handler(mHandlerThread.getLooper());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        runOnHandler(new Runnable() {
+
+            @Override
+            public void run() {
+                if (mChannel != null) {
+                    mChannel.shutdown();
+                }
+            }
+        });
+        mHandlerThread.quit();
+        mServer.shutdown();
+        HttpUtils.setRetryBackoff(0, 0, 0);
+        sContext.deleteDatabase(DATABASE);
+    }
+
+    private void runOnHandler(final Runnable runnable) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        mHandler.post(new Runnable() {
+
+            @Override
+            public void run() {
+                runnable.run();
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+    }
+
+    private static long getUsedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        runtime.gc();
+        runtime.runFinalization();
+        runtime.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static com.microsoft.appcenter.ingestion.models.Log createLog(boolean oneCollector) {
+        if (oneCollector) {
+            CommonSchemaLog log = new MockCommonSchemaLog();
+            log.setVer("3.0");
+            log.setName("load");
+            log.setIKey("o:" + TARGET_TOKEN.split("-")[0]);
+            log.addTransmissionTarget(TARGET_TOKEN);
+            Extensions ext = new Extensions();
+            ext.setProtocol(new ProtocolExtension());
+            log.setExt(ext);
+            return log;
+        }
+        return new MockLog();
+    }
+
+    /**
+     * Enqueue logs and wait until they are all delivered.
+     */
+    private void runScenario(String scenario, final boolean oneCollector, final int logCount) throws Exception {
+        long heapBefore = getUsedHeap();
+        final CountDownLatch delivered = new CountDownLatch(logCount);
+        final AtomicInteger failures = new AtomicInteger();
+        runOnHandler(new Runnable() {
+
+            @Override
+            public void run() {
+                LogSerializer logSerializer = new DefaultLogSerializer();
+                logSerializer.addLogFactory(MockLog.MOCK_LOG_TYPE, new MockLogFactory());
+                logSerializer.addLogFactory(MockCommonSchemaLog.TYPE, new MockCommonSchemaLogFactory());
+                HttpClient httpClient = HttpUtils.createHttpClient(sContext);
+                mChannel = new DefaultChannel(sContext, UUID.randomUUID().toString(), logSerializer, httpClient, mHandler);
+                mChannel.setLogUrl(mServer.getAppCenterLogUrl());
+                Ingestion ingestion = null;
+                if (oneCollector) {
+                    ingestion = new OneCollectorIngestion(httpClient, logSerializer);
+                    ingestion.setLogUrl(mServer.getOneCollectorLogUrl());
+                }
+                mChannel.addGroup(GROUP, MAX_LOGS_PER_BATCH, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, ingestion, new Channel.GroupListener() {
+
+                    @Override
+                    public void onBeforeSending(com.microsoft.appcenter.ingestion.models.Log log) {
+                    }
+
+                    @Override
+                    public void onSuccess(com.microsoft.appcenter.ingestion.models.Log log) {
+                        delivered.countDown();
+                    }
+
+                    @Override
+                    public void onFailure(com.microsoft.appcenter.ingestion.models.Log log, Exception e) {
+                        Log.e(TAG, "Log failed", e);
+                        failures.incrementAndGet();
+                        delivered.countDown();
+                    }
+                });
+            }
+        });
+
+        /* Enqueue by chunks like an application tracking events over time. */
+        long startTime = SystemClock.elapsedRealtime();
+        for (int i = 0; i < logCount; i += ENQUEUE_CHUNK_SIZE) {
+            final int chunkSize = Math.min(ENQUEUE_CHUNK_SIZE, logCount - i);
+            mHandler.post(new Runnable() {
+
+                @Override
+                public void run() {
+                    for (int j = 0; j < chunkSize; j++) {
+                        mChannel.enqueue(createLog(oneCollector), GROUP, Flags.DEFAULTS);
+                    }
+                }
+            });
+        }
+        assertTrue(delivered.await(120, TimeUnit.SECONDS));
+        long duration = Math.max(SystemClock.elapsedRealtime() - startTime, 1);
+        long retainedHeap = getUsedHeap() - heapBefore;
+        Log.i(TAG, scenario + ": " + logCount * 1000L / duration + " events/s, " + mServer +
+                ", retainedHeap=" + retainedHeap + " bytes, " + HttpUtils.getConnectionStatistics());
+        assertEquals(0, failures.get());
+        assertEquals(0, mServer.getInvalidLogCount());
+        assertEquals(logCount, mServer.getDeliveredLogCount());
+    }
+
+    @Test
+    public void appCenterThroughput() throws Exception {
+        runScenario("App Center", false, 2000);
+    }
+
+    @Test
+    public void oneCollectorThroughput() throws Exception {
+        runScenario("One Collector", true, 2000);
+    }
+
+    @Test
+    public void appCenterWithFaults() throws Exception {
+        mServer.setLatency(50);
+        mServer.setServerErrorRate(0.1);
+        mServer.setThrottleRate(0.05, 200);
+        mServer.setDropRate(0.05);
+        runScenario("App Center with faults", false, 1000);
+        assertTrue(mServer.getFailedRequestCount() > 0);
+    }
+
+    @Test
+    public void oneCollectorWithFaults() throws Exception {
+        mServer.setLatency(50);
+        mServer.setServerErrorRate(0.1);
+        mServer.setThrottleRate(0.05, 200);
+        mServer.setDropRate(0.05);
+        runScenario("One Collector with faults", true, 1000);
+        assertTrue(mServer.getFailedRequestCount() > 0);
+    }
+}
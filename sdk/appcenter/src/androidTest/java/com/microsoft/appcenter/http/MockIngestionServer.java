@@ -0,0 +1,314 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.http;
+
+import androidx.annotation.NonNull;
+
+import com.microsoft.appcenter.ingestion.models.json.JSONDateUtils;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocketFactory;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okhttp3.tls.HandshakeCertificates;
+import okhttp3.tls.HeldCertificate;
+
+import static com.microsoft.appcenter.http.DefaultHttpClient.CHARSET_NAME;
+import static com.microsoft.appcenter.http.DefaultHttpClient.X_MS_RETRY_AFTER_MS_HEADER;
+
+/**
+ * Local HTTPS server that accepts logs like App Center ingestion ({@code /logs}, JSON object with a {@code logs} array)
+ * and One Collector (any other path, one JSON log per line). It can inject latency, server errors, throttling with
+ * retry after delay and dropped connections, and records what was delivered to measure the SDK end to end.
+ * Faults are random but the sequence is the same for every run.
+ */
+public class MockIngestionServer {
+
+    /**
+     * App Center ingestion path.
+     */
+    private static final String APP_CENTER_PATH = "/logs";
+
+    /**
+     * One Collector ingestion path.
+     */
+    private static final String ONE_COLLECTOR_PATH = "/OneCollector/1.0";
+
+    private final MockWebServer mServer = new MockWebServer();
+
+    private final Random mRandom = new Random(42);
+
+    private final List<Long> mDeliveryLatencies = new ArrayList<>();
+
+    private long mLatency;
+
+    private double mServerErrorRate;
+
+    private double mThrottleRate;
+
+    private long mRetryAfter;
+
+    private double mDropRate;
+
+    private int mRequestCount;
+
+    private int mFailedRequestCount;
+
+    private long mBytesReceived;
+
+    private int mInvalidLogCount;
+
+    /**
+     * Default socket factory of the process before the server replaced it, restored on shutdown.
+     */
+    private SSLSocketFactory mDefaultSocketFactory;
+
+    /**
+     * Default host name verifier of the process before the server replaced it, restored on shutdown.
+     */
+    private HostnameVerifier mDefaultHostnameVerifier;
+
+    /**
+     * Start the server and make the SDK trust its certificate.
+     * Must be called before the first call of the test process or the shared connection pool is reset.
+     */
+    public void start() throws IOException {
+        mServer.setDispatcher(new Dispatcher() {
+
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return handle(request);
+            }
+        });
+        mServer.start();
+        HeldCertificate certificate = new HeldCertificate.Builder()
+                .addSubjectAlternativeName(mServer.getHostName())
+                .build();
+        HandshakeCertificates serverCertificates = new HandshakeCertificates.Builder()
+                .heldCertificate(certificate)
+                .build();
+        mServer.useHttps(serverCertificates.sslSocketFactory(), false);
+        HandshakeCertificates clientCertificates = new HandshakeCertificates.Builder()
+                .addTrustedCertificate(certificate.certificate())
+                .build();
+
+        /* The connection pool keeps the default factory when it is replaced, it has to be created again. */
+        mDefaultSocketFactory = HttpsURLConnection.getDefaultSSLSocketFactory();
+        mDefaultHostnameVerifier = HttpsURLConnection.getDefaultHostnameVerifier();
+        HttpsURLConnection.setDefaultSSLSocketFactory(clientCertificates.sslSocketFactory());
+        final String hostName = mServer.getHostName();
+        HttpsURLConnection.setDefaultHostnameVerifier(new HostnameVerifier() {
+
+            @Override
+            public boolean verify(String hostname, SSLSession session) {
+                return hostName.equals(hostname);
+            }
+        });
+        ConnectionPool.unsetSharedInstance();
+        CircuitBreaker.unsetSharedInstance();
+    }
+
+    /**
+     * Stop the server and restore the default HTTPS configuration of the process for the next tests.
+     */
+    public void shutdown() throws IOException {
+        mServer.shutdown();
+        if (mDefaultSocketFactory != null) {
+            HttpsURLConnection.setDefaultSSLSocketFactory(mDefaultSocketFactory);
+            HttpsURLConnection.setDefaultHostnameVerifier(mDefaultHostnameVerifier);
+            mDefaultSocketFactory = null;
+            mDefaultHostnameVerifier = null;
+        }
+        ConnectionPool.unsetSharedInstance();
+        CircuitBreaker.unsetSharedInstance();
+    }
+
+    /**
+     * Get the base URL to use as App Center log URL.
+     */
+    public String getAppCenterLogUrl() {
+        String url = mServer.url("/").toString();
+        return url.substring(0, url.length() - 1);
+    }
+
+    /**
+     * Get the URL to use as One Collector log URL.
+     */
+    public String getOneCollectorLogUrl() {
+        return mServer.url(ONE_COLLECTOR_PATH).toString();
+    }
+
+    /**
+     * Delay every response.
+     */
+    public synchronized void setLatency(long latency) {
+        mLatency = latency;
+    }
+
+    /**
+     * Answer a ratio of requests with 503.
+     */
+    public synchronized void setServerErrorRate(double serverErrorRate) {
+        mServerErrorRate = serverErrorRate;
+    }
+
+    /**
+     * Answer a ratio of requests with 429 and a retry after delay.
+     */
+    public synchronized void setThrottleRate(double throttleRate, long retryAfter) {
+        mThrottleRate = throttleRate;
+        mRetryAfter = retryAfter;
+    }
+
+    /**
+     * Close the connection without answering a ratio of requests.
+     */
+    public synchronized void setDropRate(double dropRate) {
+        mDropRate = dropRate;
+    }
+
+    private synchronized MockResponse handle(RecordedRequest request) {
+        mRequestCount++;
+        mBytesReceived += request.getBodySize();
+        MockResponse response = new MockResponse().setHeadersDelay(mLatency, TimeUnit.MILLISECONDS);
+        double fault = mRandom.nextDouble();
+        if (fault < mDropRate) {
+            mFailedRequestCount++;
+            return response.setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST);
+        }
+        fault -= mDropRate;
+        if (fault < mServerErrorRate) {
+            mFailedRequestCount++;
+            return response.setResponseCode(503);
+        }
+        fault -= mServerErrorRate;
+        if (fault < mThrottleRate) {
+            mFailedRequestCount++;
+            return response.setResponseCode(429).setHeader(X_MS_RETRY_AFTER_MS_HEADER, String.valueOf(mRetryAfter));
+        }
+        try {
+            long now = System.currentTimeMillis();
+            String body = readBody(request);
+            String path = request.getPath();
+            if (path != null && path.startsWith(APP_CENTER_PATH)) {
+                JSONArray logs = new JSONObject(body).getJSONArray("logs");
+                for (int i = 0; i < logs.length(); i++) {
+                    recordLog(now, logs.getJSONObject(i).getString("timestamp"));
+                }
+            } else {
+                for (String line : body.split("\n")) {
+                    if (!line.isEmpty()) {
+                        recordLog(now, new JSONObject(line).getString("time"));
+                    }
+                }
+            }
+        } catch (IOException | JSONException e) {
+            mInvalidLogCount++;
+            return response.setResponseCode(400);
+        }
+        return response.setResponseCode(200).setBody("{}");
+    }
+
+    private void recordLog(long now, String timestamp) throws JSONException {
+        mDeliveryLatencies.add(now - JSONDateUtils.toDate(timestamp).getTime());
+    }
+
+    private static String readBody(RecordedRequest request) throws IOException {
+        InputStream stream = request.getBody().inputStream();
+        if ("gzip".equals(request.getHeader(DefaultHttpClient.CONTENT_ENCODING_KEY))) {
+            stream = new GZIPInputStream(stream);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[HttpUtils.READ_BUFFER_SIZE];
+        int length;
+        while ((length = stream.read(buffer)) != -1) {
+            out.write(buffer, 0, length);
+        }
+        return out.toString(CHARSET_NAME);
+    }
+
+    /**
+     * Get the number of logs accepted.
+     */
+    public synchronized int getDeliveredLogCount() {
+        return mDeliveryLatencies.size();
+    }
+
+    /**
+     * Get the number of requests, including failed ones.
+     */
+    public synchronized int getRequestCount() {
+        return mRequestCount;
+    }
+
+    /**
+     * Get the number of requests that got an injected fault.
+     */
+    public synchronized int getFailedRequestCount() {
+        return mFailedRequestCount;
+    }
+
+    /**
+     * Get the number of request body bytes received, as sent on the wire.
+     */
+    public synchronized long getBytesReceived() {
+        return mBytesReceived;
+    }
+
+    /**
+     * Get the number of requests that could not be parsed.
+     */
+    public synchronized int getInvalidLogCount() {
+        return mInvalidLogCount;
+    }
+
+    /**
+     * Get a percentile of the time between a log timestamp and its delivery.
+     *
+     * @param percentile between 0 and 100.
+     * @return latency in milliseconds.
+     */
+    public synchronized long getDeliveryLatency(int percentile) {
+        if (mDeliveryLatencies.isEmpty()) {
+            return 0;
+        }
+        List<Long> latencies = new ArrayList<>(mDeliveryLatencies);
+        Collections.sort(latencies);
+        int index = (int) Math.ceil(percentile / 100.0 * latencies.size()) - 1;
+        return latencies.get(Math.max(index, 0));
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        return "delivered=" + getDeliveredLogCount() +
+                ", requests=" + mRequestCount +
+                ", failedRequests=" + mFailedRequestCount +
+                ", bytes=" + mBytesReceived +
+                ", p50=" + getDeliveryLatency(50) + "ms" +
+                ", p99=" + getDeliveryLatency(99) + "ms";
+    }
+}
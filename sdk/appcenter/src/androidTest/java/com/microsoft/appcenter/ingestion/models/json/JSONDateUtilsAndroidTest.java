@@ -5,11 +5,20 @@
 
 package com.microsoft.appcenter.ingestion.models.json;
 
+import android.os.SystemClock;
+
 import org.json.JSONException;
 import org.junit.Test;
 
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
 
+import static com.microsoft.appcenter.test.TestUtils.TAG;
 import static org.junit.Assert.assertEquals;
 
 @SuppressWarnings("unused")
@@ -45,4 +54,94 @@ public class JSONDateUtilsAndroidTest {
     public void parseInvalidDate() throws JSONException {
         JSONDateUtils.toDate("Fri Jul 07 17:43:56 PDT 2017");
     }
+
+    @Test
+    public void sameFormatAsSimpleDateFormat() throws JSONException, ParseException {
+        DateFormat dateFormat = newSimpleDateFormat();
+        long[] times = {
+                0, -1, 1,
+                951782400000L, /* 2000-02-29 */
+                -12212553600000L, /* First date handled without SimpleDateFormat. */
+                -12212553600001L,
+                -62135769600000L, /* Year 1 in Julian calendar. */
+                253402300799999L, /* Last date with 4 year digits. */
+                253402300800000L
+        };
+        for (long time : times) {
+            checkSameFormat(dateFormat, time);
+        }
+        Random random = new Random(0);
+        for (int i = 0; i < 10000; i++) {
+            checkSameFormat(dateFormat, random.nextLong() % 300000000000000L);
+        }
+    }
+
+    @Test
+    public void parseNonCanonicalDate() throws JSONException, ParseException {
+
+        /* Dates not written by toString keep being parsed like before. */
+        String date = "2017-13-01T00:00:00.000Z";
+        assertEquals(newSimpleDateFormat().parse(date), JSONDateUtils.toDate(date));
+        date = "2017-7-7T17:43:56.123Z";
+        assertEquals(newSimpleDateFormat().parse(date), JSONDateUtils.toDate(date));
+    }
+
+    @Test(expected = JSONException.class)
+    public void parseTruncatedDate() throws JSONException {
+        JSONDateUtils.toDate("2017-07-07T17:43");
+    }
+
+    @Test
+    public void benchmark() throws JSONException, ParseException {
+        int iterations = 10000;
+        long[] times = new long[iterations];
+        String[] dates = new String[iterations];
+        Random random = new Random(0);
+        DateFormat dateFormat = newSimpleDateFormat();
+        for (int i = 0; i < iterations; i++) {
+            times[i] = System.currentTimeMillis() - random.nextInt(Integer.MAX_VALUE);
+            dates[i] = JSONDateUtils.toString(times[i]);
+
+            /* Warm up both implementations. */
+            dateFormat.parse(dateFormat.format(new Date(times[i])));
+        }
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (long time : times) {
+            dateFormat.format(new Date(time));
+        }
+        long legacyFormatTime = SystemClock.elapsedRealtimeNanos() - start;
+        start = SystemClock.elapsedRealtimeNanos();
+        for (long time : times) {
+            JSONDateUtils.toString(time);
+        }
+        long formatTime = SystemClock.elapsedRealtimeNanos() - start;
+        start = SystemClock.elapsedRealtimeNanos();
+        for (String date : dates) {
+            dateFormat.parse(date);
+        }
+        long legacyParseTime = SystemClock.elapsedRealtimeNanos() - start;
+        start = SystemClock.elapsedRealtimeNanos();
+        for (String date : dates) {
+            JSONDateUtils.toTime(date);
+        }
+        long parseTime = SystemClock.elapsedRealtimeNanos() - start;
+        android.util.Log.i(TAG, "Format " + iterations + " dates: SimpleDateFormat=" + legacyFormatTime / 1000 + "us JSONDateUtils=" + formatTime / 1000 + "us");
+        android.util.Log.i(TAG, "Parse " + iterations + " dates: SimpleDateFormat=" + legacyParseTime / 1000 + "us JSONDateUtils=" + parseTime / 1000 + "us");
+        for (int i = 0; i < iterations; i++) {
+            assertEquals(times[i], JSONDateUtils.toTime(dates[i]));
+        }
+    }
+
+    private static DateFormat newSimpleDateFormat() {
+        DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return dateFormat;
+    }
+
+    private static void checkSameFormat(DateFormat dateFormat, long time) throws JSONException, ParseException {
+        String expected = dateFormat.format(new Date(time));
+        assertEquals(expected, JSONDateUtils.toString(time));
+        assertEquals(expected, JSONDateUtils.toString(new Date(time)));
+        assertEquals(dateFormat.parse(expected).getTime(), JSONDateUtils.toTime(expected));
+    }
 }
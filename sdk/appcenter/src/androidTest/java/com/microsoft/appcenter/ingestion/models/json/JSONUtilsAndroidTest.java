@@ -5,6 +5,7 @@
 
 package com.microsoft.appcenter.ingestion.models.json;
 
+import android.util.JsonReader;
 import android.util.Log;
 
 import com.microsoft.appcenter.AndroidTestUtils;
@@ -16,6 +17,8 @@ import org.json.JSONObject;
 import org.json.JSONStringer;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -24,6 +27,7 @@ import java.util.Map;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 
 @SuppressWarnings("unused")
@@ -56,6 +60,34 @@ public class JSONUtilsAndroidTest {
         assertEquals(true, JSONUtils.readBoolean(object, "boolean"));
     }
 
+    @Test
+    public void readObjectFromStream() throws JSONException, IOException {
+        String json = "{\"int\":1,\"long\":10000000000,\"big\":100000000000000000000,\"double\":1.5,\"exp\":1e3," +
+                "\"boolean\":true,\"string\":\"a\",\"null\":null,\"array\":[1,\"b\"],\"object\":{\"c\":false}}";
+        JSONObject object = JSONUtils.readObject(new JsonReader(new StringReader(json)));
+
+        /* Value types must match what JSONObject parses, so both read paths give equal models. */
+        JSONObject expected = new JSONObject(json);
+        assertEquals(expected.toString(), object.toString());
+        assertEquals(Integer.class, object.get("int").getClass());
+        assertEquals(Long.class, object.get("long").getClass());
+        assertEquals(Double.class, object.get("big").getClass());
+        assertEquals(Double.class, object.get("double").getClass());
+        assertEquals(Double.class, object.get("exp").getClass());
+        assertEquals(JSONObject.NULL, object.get("null"));
+    }
+
+    @Test
+    public void checkRequired() throws JSONException {
+        JSONUtils.checkRequired("key", "value");
+        try {
+            JSONUtils.checkRequired("key", null);
+            fail();
+        } catch (JSONException e) {
+            assertEquals("Missing key", e.getMessage());
+        }
+    }
+
     @Test
     public void writeReadMap() throws JSONException {
 
@@ -5,15 +5,23 @@
 
 package com.microsoft.appcenter.ingestion.models.json;
 
+import android.os.SystemClock;
+import android.util.JsonWriter;
+
 import com.microsoft.appcenter.AndroidTestUtils;
+import com.microsoft.appcenter.ingestion.models.AbstractLog;
 import com.microsoft.appcenter.ingestion.models.CustomPropertiesLog;
+import com.microsoft.appcenter.ingestion.models.Device;
 import com.microsoft.appcenter.ingestion.models.Log;
 import com.microsoft.appcenter.ingestion.models.LogContainer;
 import com.microsoft.appcenter.ingestion.models.StartServiceLog;
 
 import org.json.JSONException;
+import org.json.JSONObject;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
@@ -25,6 +33,9 @@ import java.util.UUID;
 import static com.microsoft.appcenter.ingestion.models.json.MockLog.MOCK_LOG_TYPE;
 import static com.microsoft.appcenter.test.TestUtils.TAG;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 
@@ -54,6 +65,300 @@ public class LogSerializerAndroidTest {
         assertEquals(expectedContainer.hashCode(), actualContainer.hashCode());
     }
 
+    @Test
+    public void streamContainer() throws JSONException {
+        LogContainer expectedContainer = AndroidTestUtils.generateMockLogContainer();
+        CustomPropertiesLog customPropertiesLog = new CustomPropertiesLog();
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("t1", "test");
+        properties.put("t2", new Date(0));
+        properties.put("t3", 0.5);
+        properties.put("t4", false);
+        customPropertiesLog.setProperties(properties);
+        customPropertiesLog.setTimestamp(new Date());
+        List<Log> logs = new ArrayList<>(expectedContainer.getLogs());
+        logs.add(customPropertiesLog);
+        expectedContainer.setLogs(logs);
+        DefaultLogSerializer serializer = new DefaultLogSerializer();
+        serializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+        serializer.addLogFactory(CustomPropertiesLog.TYPE, new CustomPropertiesLogFactory());
+
+        /* Stream and verify it reads back the same as the in-memory serialization. */
+        StringWriter stringWriter = new StringWriter();
+        serializer.serializeContainer(stringWriter, expectedContainer);
+        String payload = stringWriter.toString();
+        android.util.Log.v(TAG, payload);
+        assertEquals(expectedContainer, serializer.deserializeContainer(payload, null));
+        assertEquals(serializer.deserializeContainer(serializer.serializeContainer(expectedContainer), null), serializer.deserializeContainer(payload, null));
+    }
+
+    @Test
+    public void streamLog() throws JSONException, IOException {
+        MockLog expectedLog = AndroidTestUtils.generateMockLog();
+        expectedLog.setTimestamp(new Date());
+        DefaultLogSerializer serializer = new DefaultLogSerializer();
+        serializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+        StringWriter stringWriter = new StringWriter();
+        JsonWriter writer = new JsonWriter(stringWriter);
+        serializer.writeLog(writer, expectedLog);
+        writer.flush();
+        assertEquals(expectedLog, serializer.deserializeLog(stringWriter.toString(), null));
+    }
+
+    @Test(expected = JSONException.class)
+    public void streamInvalidLog() throws JSONException {
+        CustomPropertiesLog invalidLog = new CustomPropertiesLog();
+        invalidLog.setTimestamp(new Date());
+        new DefaultLogSerializer().writeLog(new JsonWriter(new StringWriter()), invalidLog);
+    }
+
+    @Test
+    public void readLogWithKnownType() throws JSONException {
+        StartServiceLog startServiceLog = new StartServiceLog();
+        startServiceLog.setServices(Collections.singletonList("FIRST"));
+        startServiceLog.setSid(UUID.randomUUID());
+        startServiceLog.setTimestamp(new Date());
+        CustomPropertiesLog customPropertiesLog = new CustomPropertiesLog();
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("t1", "test");
+        properties.put("t2", new Date(0));
+        properties.put("t3", 0);
+        properties.put("t4", 10000000000L);
+        properties.put("t5", 0.5);
+        properties.put("t6", false);
+
+        //noinspection ConstantConditions
+        properties.put("t7", null);
+        customPropertiesLog.setProperties(properties);
+        customPropertiesLog.setTimestamp(new Date());
+        MockLog mockLog = AndroidTestUtils.generateMockLog();
+        mockLog.setUserId("charlie");
+        mockLog.setDistributionGroupId("group");
+        DefaultLogSerializer serializer = new DefaultLogSerializer();
+        serializer.addLogFactory(StartServiceLog.TYPE, new StartServiceLogFactory());
+        serializer.addLogFactory(CustomPropertiesLog.TYPE, new CustomPropertiesLogFactory());
+        serializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+
+        /* Streaming read must give the same result as the JSONObject path. */
+        for (Log log : new Log[]{startServiceLog, customPropertiesLog, mockLog}) {
+            String payload = serializer.serializeLog(log);
+            assertEquals(serializer.deserializeLog(payload, null), serializer.deserializeLog(payload, log.getType()));
+            assertEquals(log, serializer.deserializeLog(payload, log.getType()));
+        }
+    }
+
+    @Test
+    public void readLogIgnoresUnknownFields() throws JSONException {
+        LogSerializer serializer = new DefaultLogSerializer();
+        serializer.addLogFactory(StartServiceLog.TYPE, new StartServiceLogFactory());
+        StartServiceLog log = (StartServiceLog) serializer.deserializeLog("{" +
+                "\"unknown\": {\"a\": [1, 2, {\"b\": null}]}," +
+                "\"services\": [\"FIRST\"]," +
+                "\"timestamp\": \"2017-07-08T00:32:58.123Z\"," +
+                "\"type\": \"startService\"" +
+                "}", StartServiceLog.TYPE);
+        assertEquals(Collections.singletonList("FIRST"), log.getServices());
+    }
+
+    @Test(expected = JSONException.class)
+    public void readLogWithMismatchingType() throws JSONException {
+        LogSerializer serializer = new DefaultLogSerializer();
+        serializer.addLogFactory(StartServiceLog.TYPE, new StartServiceLogFactory());
+        serializer.deserializeLog("{" +
+                "\"type\": \"customProperties\"," +
+                "\"timestamp\": \"2017-07-08T00:32:58.123Z\"" +
+                "}", StartServiceLog.TYPE);
+    }
+
+    @Test(expected = JSONException.class)
+    public void readLogWithoutTimestamp() throws JSONException {
+        LogSerializer serializer = new DefaultLogSerializer();
+        serializer.addLogFactory(StartServiceLog.TYPE, new StartServiceLogFactory());
+        serializer.deserializeLog("{\"type\": \"startService\"}", StartServiceLog.TYPE);
+    }
+
+    @Test(expected = JSONException.class)
+    public void readLogWithoutCustomProperties() throws JSONException {
+        LogSerializer serializer = new DefaultLogSerializer();
+        serializer.addLogFactory(CustomPropertiesLog.TYPE, new CustomPropertiesLogFactory());
+        serializer.deserializeLog("{" +
+                "\"type\": \"customProperties\"," +
+                "\"timestamp\": \"2017-07-08T00:32:58.123Z\"" +
+                "}", CustomPropertiesLog.TYPE);
+    }
+
+    @Test(expected = JSONException.class)
+    public void readLogWithInvalidSid() throws JSONException {
+        LogSerializer serializer = new DefaultLogSerializer();
+        serializer.addLogFactory(StartServiceLog.TYPE, new StartServiceLogFactory());
+        serializer.deserializeLog("{" +
+                "\"type\": \"startService\"," +
+                "\"sid\": \"not a uuid\"," +
+                "\"timestamp\": \"2017-07-08T00:32:58.123Z\"" +
+                "}", StartServiceLog.TYPE);
+    }
+
+    @Test(expected = JSONException.class)
+    public void readTruncatedLog() throws JSONException {
+        LogSerializer serializer = new DefaultLogSerializer();
+        serializer.addLogFactory(StartServiceLog.TYPE, new StartServiceLogFactory());
+        serializer.deserializeLog("{\"type\": \"startService\", \"timestamp\": \"2017-07-08T00:32:58.123Z\"", StartServiceLog.TYPE);
+    }
+
+    @Test(expected = JSONException.class)
+    public void readLogWithTrailingContent() throws JSONException {
+        LogSerializer serializer = new DefaultLogSerializer();
+        serializer.addLogFactory(StartServiceLog.TYPE, new StartServiceLogFactory());
+        serializer.deserializeLog("{\"type\": \"startService\", \"timestamp\": \"2017-07-08T00:32:58.123Z\"} {}", StartServiceLog.TYPE);
+    }
+
+    @Test
+    public void readContainerWithKnownType() throws JSONException {
+        List<Log> logs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            logs.add(AndroidTestUtils.generateMockLog());
+        }
+        LogContainer expectedContainer = new LogContainer();
+        expectedContainer.setLogs(logs);
+        LogSerializer serializer = new DefaultLogSerializer();
+        serializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+        String payload = serializer.serializeContainer(expectedContainer);
+        assertEquals(expectedContainer, serializer.deserializeContainer(payload, MOCK_LOG_TYPE));
+    }
+
+    @Test(expected = JSONException.class)
+    public void readContainerWithoutLogs() throws JSONException {
+        new DefaultLogSerializer().deserializeContainer("{}", MOCK_LOG_TYPE);
+    }
+
+    /**
+     * Compare reading a batch of 1000 logs through {@link org.json.JSONObject} and through the stream.
+     * Timings are only logged as they depend on the device.
+     */
+    @Test
+    public void readBenchmark() throws JSONException {
+        List<Log> logs = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            MockLog log = AndroidTestUtils.generateMockLog();
+            Map<String, String> properties = new HashMap<>();
+            properties.put("key", "value" + i);
+            log.setProperties(properties);
+            logs.add(log);
+        }
+        LogContainer container = new LogContainer();
+        container.setLogs(logs);
+        LogSerializer serializer = new DefaultLogSerializer();
+        serializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+        String payload = serializer.serializeContainer(container);
+
+        /* Warm up both paths before measuring. */
+        serializer.deserializeContainer(payload, null);
+        serializer.deserializeContainer(payload, MOCK_LOG_TYPE);
+        long start = SystemClock.elapsedRealtimeNanos();
+        LogContainer objectContainer = serializer.deserializeContainer(payload, null);
+        long objectTime = SystemClock.elapsedRealtimeNanos() - start;
+        start = SystemClock.elapsedRealtimeNanos();
+        LogContainer streamContainer = serializer.deserializeContainer(payload, MOCK_LOG_TYPE);
+        long streamTime = SystemClock.elapsedRealtimeNanos() - start;
+        android.util.Log.i(TAG, "Read 1000 logs (" + payload.length() + " chars): JSONObject=" + objectTime / 1000 + "us stream=" + streamTime / 1000 + "us");
+        assertEquals(container, objectContainer);
+        assertEquals(container, streamContainer);
+    }
+
+    @Test
+    public void deviceSplicedInContainer() throws JSONException {
+        List<Log> logs = new ArrayList<>();
+        MockLog firstLog = AndroidTestUtils.generateMockLog();
+        Device device = firstLog.getDevice();
+        logs.add(firstLog);
+        for (int i = 0; i < 2; i++) {
+            MockLog log = AndroidTestUtils.generateMockLog();
+            log.setDevice(device);
+            logs.add(log);
+        }
+        LogContainer container = new LogContainer();
+        container.setLogs(logs);
+        DefaultLogSerializer serializer = new DefaultLogSerializer();
+        serializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+        String payload = serializer.serializeContainer(container);
+        android.util.Log.v(TAG, payload);
+        assertEquals(container, serializer.deserializeContainer(payload, null));
+        assertEquals(container, serializer.deserializeContainer(payload, MOCK_LOG_TYPE));
+
+        /* Logs keep their device. */
+        for (int i = 1; i < 3; i++) {
+            assertSame(device, logs.get(i).getDevice());
+        }
+
+        /* Device instance is cached until invalidated. */
+        device.setModel("S6");
+        assertEquals("S5", serializer.deserializeContainer(serializer.serializeContainer(container), null).getLogs().get(0).getDevice().getModel());
+        serializer.invalidateDeviceCache();
+        assertEquals(container, serializer.deserializeContainer(serializer.serializeContainer(container), null));
+    }
+
+    @Test
+    public void serializeLogWithoutDevice() throws JSONException {
+        MockLog log = AndroidTestUtils.generateMockLog();
+        Device device = log.getDevice();
+        DefaultLogSerializer serializer = new DefaultLogSerializer();
+        serializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+        String payload = serializer.serializeLogWithoutDevice(log);
+        android.util.Log.v(TAG, payload);
+        assertFalse(new JSONObject(payload).has(AbstractLog.DEVICE));
+        assertSame(device, log.getDevice());
+
+        /* Other fields are kept. */
+        Log actualLog = serializer.deserializeLog(payload, MOCK_LOG_TYPE);
+        actualLog.setDevice(device);
+        assertEquals(log, actualLog);
+    }
+
+    @Test
+    public void writeBenchmark() throws JSONException {
+
+        /* Same 50-log batch with one device instance per log or shared by all logs. */
+        List<Log> distinctLogs = new ArrayList<>();
+        List<Log> sharedLogs = new ArrayList<>();
+        Device device = null;
+        for (int i = 0; i < 50; i++) {
+            MockLog log = AndroidTestUtils.generateMockLog();
+            distinctLogs.add(log);
+            MockLog sharedLog = new MockLog();
+            sharedLog.setSid(log.getSid());
+            sharedLog.setTimestamp(log.getTimestamp());
+            if (device == null) {
+                device = log.getDevice();
+            }
+            sharedLog.setDevice(device);
+            sharedLogs.add(sharedLog);
+        }
+        LogContainer distinctContainer = new LogContainer();
+        distinctContainer.setLogs(distinctLogs);
+        LogContainer sharedContainer = new LogContainer();
+        sharedContainer.setLogs(sharedLogs);
+        DefaultLogSerializer serializer = new DefaultLogSerializer();
+        serializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+
+        /* Warm up both paths before measuring. */
+        serializer.serializeContainer(distinctContainer);
+        serializer.serializeContainer(sharedContainer);
+        int iterations = 100;
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < iterations; i++) {
+            serializer.serializeContainer(distinctContainer);
+        }
+        long distinctTime = SystemClock.elapsedRealtimeNanos() - start;
+        start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < iterations; i++) {
+            serializer.serializeContainer(sharedContainer);
+        }
+        long sharedTime = SystemClock.elapsedRealtimeNanos() - start;
+        android.util.Log.i(TAG, "Write 50 logs: distinct devices=" + distinctTime / iterations / 1000 + "us shared device=" + sharedTime / iterations / 1000 + "us");
+        assertEquals(distinctContainer, serializer.deserializeContainer(serializer.serializeContainer(distinctContainer), null));
+        assertEquals(sharedContainer, serializer.deserializeContainer(serializer.serializeContainer(sharedContainer), null));
+    }
+
     @Test(expected = JSONException.class)
     public void deserializeUnknownType() throws JSONException {
         MockLog log = AndroidTestUtils.generateMockLog();
@@ -193,4 +498,33 @@ public class LogSerializerAndroidTest {
         serializer.toCommonSchemaLog(log);
         verify(logFactory).toCommonSchemaLogs(log);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void rawFieldAfterCompleteField() throws JSONException {
+        StringWriter out = new StringWriter();
+        JsonWriterStringer writer = new JsonWriterStringer(out);
+        writer.object();
+
+        /* The writer would not separate the next field from a raw first field. */
+        try {
+            writer.rawField("raw", "1");
+            fail();
+        } catch (JSONException ignored) {
+        }
+        writer.key("first").value(1);
+
+        /* A name waiting for its value can't be followed by a raw field. */
+        writer.key("nested").object().key("pending");
+        try {
+            writer.rawField("raw", "1");
+            fail();
+        } catch (JSONException ignored) {
+        }
+        writer.value(2).endObject();
+        writer.rawField("raw", "{\"a\":[true]}");
+        writer.key("last").value("3");
+        writer.endObject();
+        writer.flush();
+        assertEquals("{\"first\":1,\"nested\":{\"pending\":2},\"raw\":{\"a\":[true]},\"last\":\"3\"}", out.toString());
+    }
+}
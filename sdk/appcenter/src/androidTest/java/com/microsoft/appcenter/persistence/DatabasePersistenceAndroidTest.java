@@ -20,6 +20,7 @@ import com.microsoft.appcenter.AndroidTestUtils;
 import com.microsoft.appcenter.AppCenter;
 import com.microsoft.appcenter.Constants;
 import com.microsoft.appcenter.Flags;
+import com.microsoft.appcenter.ingestion.models.Device;
 import com.microsoft.appcenter.ingestion.models.Log;
 import com.microsoft.appcenter.ingestion.models.LogWithProperties;
 import com.microsoft.appcenter.ingestion.models.json.DefaultLogSerializer;
@@ -66,7 +67,9 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.anyString;
@@ -1178,4 +1181,203 @@ public class DatabasePersistenceAndroidTest {
             persistence.close();
         }
     }
+
+    private static int countDevices(DatabasePersistence persistence) {
+        Cursor cursor = persistence.mDatabaseManager.getCursor(DatabasePersistence.DEVICES_TABLE, null, null, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void deviceStoredOnceAndShared() throws PersistenceException {
+        DatabasePersistence persistence = new DatabasePersistence(sContext);
+        LogSerializer logSerializer = new DefaultLogSerializer();
+        logSerializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+        persistence.setLogSerializer(logSerializer);
+        try {
+
+            /* Put logs sharing the same device. */
+            Device device = AndroidTestUtils.generateMockLog().getDevice();
+            List<Log> logs = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                MockLog log = AndroidTestUtils.generateMockLog();
+                log.setDevice(device);
+                persistence.putLog(log, "test", NORMAL);
+                logs.add(log);
+
+                /* Log is not modified by serialization. */
+                assertSame(device, log.getDevice());
+            }
+            assertEquals(1, countDevices(persistence));
+
+            /* Device is referenced, not in the payload. */
+            ContentValues values = getContentValues(persistence, "test");
+            assertNotNull(values.getAsString(DatabasePersistence.COLUMN_DEVICE_HASH));
+            assertFalse(values.getAsString(DatabasePersistence.COLUMN_LOG).contains(device.getModel()));
+
+            /* Logs read back are equal and share one device instance. */
+            List<Log> outputLogs = new ArrayList<>();
+            persistence.getLogs("test", Collections.<String>emptyList(), 10, outputLogs);
+            assertEquals(logs, outputLogs);
+            assertSame(outputLogs.get(0).getDevice(), outputLogs.get(1).getDevice());
+            assertSame(outputLogs.get(0).getDevice(), outputLogs.get(2).getDevice());
+
+            /* An equal device instance reuses the stored snapshot. */
+            assertNotSame(device, outputLogs.get(0).getDevice());
+            MockLog log = AndroidTestUtils.generateMockLog();
+            log.setDevice(outputLogs.get(0).getDevice());
+            persistence.putLog(log, "test", NORMAL);
+            assertEquals(1, countDevices(persistence));
+        } finally {
+            persistence.close();
+        }
+    }
+
+    @Test
+    public void unusedDevicesDeleted() throws PersistenceException {
+        DatabasePersistence persistence = new DatabasePersistence(sContext);
+        LogSerializer logSerializer = new DefaultLogSerializer();
+        logSerializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+        persistence.setLogSerializer(logSerializer);
+        try {
+
+            /* Each device change stores a new snapshot, previous one is kept while logs reference it. */
+            persistence.putLog(AndroidTestUtils.generateMockLog(), "test", NORMAL);
+            persistence.putLog(AndroidTestUtils.generateMockLog(), "test", NORMAL);
+            assertEquals(2, countDevices(persistence));
+
+            /* Clearing logs drops snapshots. */
+            persistence.deleteLogs("test");
+            assertEquals(0, countDevices(persistence));
+
+            /* Same device is stored again for next log. */
+            MockLog log = AndroidTestUtils.generateMockLog();
+            persistence.putLog(log, "test", NORMAL);
+            persistence.putLog(log, "test", NORMAL);
+            assertEquals(1, countDevices(persistence));
+            List<Log> outputLogs = new ArrayList<>();
+            persistence.getLogs("test", Collections.<String>emptyList(), 10, outputLogs);
+            assertEquals(Arrays.<Log>asList(log, log), outputLogs);
+        } finally {
+            persistence.close();
+        }
+    }
+
+    @Test
+    public void getLogsWithMissingDevice() throws PersistenceException {
+        DatabasePersistence persistence = new DatabasePersistence(sContext);
+        LogSerializer logSerializer = new DefaultLogSerializer();
+        logSerializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+        persistence.setLogSerializer(logSerializer);
+        try {
+            persistence.putLog(AndroidTestUtils.generateMockLog(), "test", NORMAL);
+            persistence.mDatabaseManager.deleteWhere(DatabasePersistence.DEVICES_TABLE, "1", null);
+
+            /* Log cannot be restored without its device and is discarded. */
+            List<Log> outputLogs = new ArrayList<>();
+            assertNull(persistence.getLogs("test", Collections.<String>emptyList(), 10, outputLogs));
+            assertEquals(0, persistence.countLogs("test"));
+        } finally {
+            persistence.close();
+        }
+    }
+
+    @Test
+    public void reloadLogsOfPendingBatch() throws PersistenceException {
+        DatabasePersistence persistence = new DatabasePersistence(sContext);
+        LogSerializer logSerializer = new DefaultLogSerializer();
+        logSerializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+        persistence.setLogSerializer(logSerializer);
+        try {
+
+            /* Put logs with mixed priorities and get a batch. */
+            MockLog normalLog = AndroidTestUtils.generateMockLog();
+            MockLog criticalLog = AndroidTestUtils.generateMockLog();
+            persistence.putLog(normalLog, "test", NORMAL);
+            persistence.putLog(criticalLog, "test", CRITICAL);
+            persistence.putLog(AndroidTestUtils.generateMockLog(), "other", NORMAL);
+            List<Log> outputLogs = new ArrayList<>();
+            String batchId = persistence.getLogs("test", Collections.<String>emptyList(), 10, outputLogs);
+            assertNotNull(batchId);
+            assertEquals(Arrays.<Log>asList(criticalLog, normalLog), outputLogs);
+
+            /* Unknown batches have no identifiers. */
+            assertNull(persistence.getLogIdentifiers("test", "unknown"));
+            assertNull(persistence.getLogIdentifiers("other", batchId));
+            List<Long> logIdentifiers = persistence.getLogIdentifiers("test", batchId);
+            assertNotNull(logIdentifiers);
+            assertEquals(2, logIdentifiers.size());
+
+            /* Logs are reloaded by identifier and stay pending. */
+            Map<Long, Log> reloadedLogs = new HashMap<>();
+            persistence.reloadLogs("test", logIdentifiers, reloadedLogs);
+            assertEquals(2, reloadedLogs.size());
+            assertEquals(outputLogs.get(0), reloadedLogs.get(logIdentifiers.get(0)));
+            assertEquals(outputLogs.get(1), reloadedLogs.get(logIdentifiers.get(1)));
+            assertNotSame(outputLogs.get(0), reloadedLogs.get(logIdentifiers.get(0)));
+            assertNull(persistence.getLogs("test", Collections.<String>emptyList(), 10, new ArrayList<Log>()));
+
+            /* Identifiers from another group are not read. */
+            reloadedLogs.clear();
+            persistence.reloadLogs("other", logIdentifiers, reloadedLogs);
+            assertTrue(reloadedLogs.isEmpty());
+
+            /* Deleted logs are skipped. */
+            persistence.deleteLogs("test", batchId);
+            assertNull(persistence.getLogIdentifiers("test", batchId));
+            persistence.reloadLogs("test", logIdentifiers, reloadedLogs);
+            assertTrue(reloadedLogs.isEmpty());
+        } finally {
+            persistence.close();
+        }
+    }
+
+    @Test
+    public void upgradeFromVersion6to7() throws PersistenceException, JSONException {
+
+        /* Initialize database with the schema where the device is in the payload. */
+        ContentValues schema = new ContentValues(SCHEMA);
+        schema.remove(DatabasePersistence.COLUMN_DEVICE_HASH);
+        String createVersion6 = "CREATE TABLE IF NOT EXISTS `logs`" +
+                "(`oid` INTEGER PRIMARY KEY AUTOINCREMENT," +
+                "`target_token` TEXT," +
+                "`type` TEXT," +
+                "`priority` INTEGER," +
+                "`log` TEXT," +
+                "`persistence_group` TEXT," +
+                "`target_key` TEXT);";
+        DatabaseManager databaseManager = new DatabaseManager(sContext, DatabasePersistence.DATABASE, DatabasePersistence.TABLE, DatabasePersistence.VERSION_INLINE_DEVICE, schema, createVersion6, mock(DatabaseManager.Listener.class));
+        LogSerializer logSerializer = new DefaultLogSerializer();
+        logSerializer.addLogFactory(MOCK_LOG_TYPE, new MockLogFactory());
+
+        /* Insert old data before upgrade. */
+        Log oldLog = AndroidTestUtils.generateMockLog();
+        try {
+            ContentValues contentValues = new ContentValues();
+            contentValues.put(DatabasePersistence.COLUMN_GROUP, "test");
+            contentValues.put(DatabasePersistence.COLUMN_LOG, logSerializer.serializeLog(oldLog));
+            contentValues.put(DatabasePersistence.COLUMN_PRIORITY, NORMAL);
+            databaseManager.put(contentValues, DatabasePersistence.COLUMN_PRIORITY);
+        } finally {
+            databaseManager.close();
+        }
+
+        /* Upgrade keeps the old log with its inline device and stores new ones by reference. */
+        DatabasePersistence persistence = new DatabasePersistence(sContext);
+        persistence.setLogSerializer(logSerializer);
+        try {
+            Log newLog = AndroidTestUtils.generateMockLog();
+            persistence.putLog(newLog, "test", NORMAL);
+            assertEquals(2, persistence.countLogs("test"));
+            assertEquals(1, countDevices(persistence));
+            List<Log> outputLogs = new ArrayList<>();
+            persistence.getLogs("test", Collections.<String>emptyList(), 10, outputLogs);
+            assertEquals(Arrays.asList(oldLog, newLog), outputLogs);
+        } finally {
+            persistence.close();
+        }
+    }
 }
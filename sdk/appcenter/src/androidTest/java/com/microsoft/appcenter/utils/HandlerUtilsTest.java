@@ -5,6 +5,9 @@
 
 package com.microsoft.appcenter.utils;
 
+import android.os.Handler;
+import android.os.HandlerThread;
+
 import org.junit.Test;
 
 import java.util.concurrent.Semaphore;
@@ -28,6 +31,31 @@ public class HandlerUtilsTest {
         assertSame(HandlerUtils.getMainHandler(), HandlerUtils.getMainHandler());
     }
 
+    @Test
+    public void getCallerHandler() throws InterruptedException {
+
+        /* Test thread has no looper. */
+        assertSame(HandlerUtils.getMainHandler(), HandlerUtils.getCallerHandler());
+
+        /* Thread with a looper. */
+        HandlerThread thread = new HandlerThread("getCallerHandler");
+        thread.start();
+        final AtomicReference<Handler> handler = new AtomicReference<>();
+        final Semaphore semaphore = new Semaphore(0);
+        new Handler(thread.getLooper()).post(new Runnable() {
+
+            @Override
+            public void run() {
+                handler.set(HandlerUtils.getCallerHandler());
+                semaphore.release();
+            }
+        });
+        semaphore.acquireUninterruptibly();
+        assertSame(thread.getLooper(), handler.get().getLooper());
+        thread.quit();
+        thread.join();
+    }
+
     @Test
     public void runOnUiThread() {
         final AtomicReference<Thread> mainThreadFirstRun = new AtomicReference<>();
@@ -11,8 +11,11 @@ import android.content.Context;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.MessageQueue;
 import androidx.annotation.IntRange;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 import androidx.annotation.WorkerThread;
 import android.util.Log;
@@ -21,6 +24,9 @@ import com.microsoft.appcenter.channel.Channel;
 import com.microsoft.appcenter.channel.DefaultChannel;
 import com.microsoft.appcenter.channel.OneCollectorChannelListener;
 import com.microsoft.appcenter.http.HttpClient;
+import com.microsoft.appcenter.http.HttpUtils;
+import com.microsoft.appcenter.ingestion.AppCenterIngestion;
+import com.microsoft.appcenter.ingestion.OneCollectorIngestion;
 import com.microsoft.appcenter.ingestion.models.CustomPropertiesLog;
 import com.microsoft.appcenter.ingestion.models.StartServiceLog;
 import com.microsoft.appcenter.ingestion.models.WrapperSdk;
@@ -31,6 +37,7 @@ import com.microsoft.appcenter.ingestion.models.json.LogSerializer;
 import com.microsoft.appcenter.ingestion.models.json.StartServiceLogFactory;
 import com.microsoft.appcenter.utils.AppCenterLog;
 import com.microsoft.appcenter.utils.ApplicationLifecycleListener;
+import com.microsoft.appcenter.utils.AsyncTaskUtils;
 import com.microsoft.appcenter.utils.DeviceInfoHelper;
 import com.microsoft.appcenter.utils.IdHelper;
 import com.microsoft.appcenter.utils.InstrumentationRegistryHelper;
@@ -45,6 +52,7 @@ import com.microsoft.appcenter.utils.storage.SharedPreferencesManager;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -119,6 +127,42 @@ public class AppCenter {
      */
     private static final String TRUE_ENVIRONMENT_STRING = "1";
 
+    /**
+     * Startup phase of configuration on the calling thread.
+     */
+    @VisibleForTesting
+    static final String PHASE_CONFIGURE = "AppCenter.configure";
+
+    /**
+     * Startup phase of configuration on the App Center thread, also prefix of its steps.
+     */
+    @VisibleForTesting
+    static final String PHASE_FINISH_CONFIGURATION = "AppCenter.finishConfiguration";
+
+    /**
+     * Startup phase of configuration deferred by staged initialization.
+     */
+    @VisibleForTesting
+    static final String PHASE_FINISH_STAGED_CONFIGURATION = "AppCenter.finishStagedConfiguration";
+
+    /**
+     * Startup phase prefix of a service starting on the calling thread.
+     */
+    @VisibleForTesting
+    static final String PHASE_START_SERVICE = "AppCenter.startService";
+
+    /**
+     * Startup phase prefix of a service starting on the App Center thread.
+     */
+    @VisibleForTesting
+    static final String PHASE_ON_STARTED = "AppCenter.onStarted";
+
+    /**
+     * Startup phase prefix of the independent initialization of a service in background.
+     */
+    @VisibleForTesting
+    static final String PHASE_ON_INITIALIZING = "AppCenter.onInitializing";
+
     /**
      * Shared instance.
      */
@@ -135,6 +179,21 @@ public class AppCenter {
      */
     private String mLogUrl;
 
+    /**
+     * True to open the connection to the ingestion endpoint at startup.
+     */
+    private boolean mConnectionWarmUpEnabled;
+
+    /**
+     * True to defer the parts of initialization that the first logs do not need.
+     */
+    private boolean mStagedInitializationEnabled;
+
+    /**
+     * Handlers of the services initializing in background, until they are started.
+     */
+    private final Map<AppCenterService, StartingServiceHandler> mStartingServiceHandlers = new HashMap<>();
+
     /**
      * Application context.
      */
@@ -290,6 +349,51 @@ public class AppCenter {
         getInstance().setInstanceLogUrl(logUrl);
     }
 
+    /**
+     * Open the connection to the ingestion endpoint while the SDK starts, so that the first logs are sent
+     * without waiting for DNS resolution, TCP connect and TLS handshake.
+     * This makes a small request at startup when network requests are allowed and the SDK is enabled.
+     * It must be called before {@link #start}, disabled by default.
+     *
+     * @param enabled true to warm up the connection at startup.
+     */
+    public static void setConnectionWarmUpEnabled(boolean enabled) {
+        getInstance().setInstanceConnectionWarmUpEnabled(enabled);
+    }
+
+    /**
+     * Defer the parts of initialization that are not needed to accept the first logs: opening the database,
+     * loading the session history and listening to network changes. Each is done on first use, or when the
+     * App Center background thread is idle after start.
+     * It must be called before {@link #start}, disabled by default.
+     *
+     * @param enabled true to initialize in stages.
+     */
+    public static void setStagedInitializationEnabled(boolean enabled) {
+        getInstance().setInstanceStagedInitializationEnabled(enabled);
+    }
+
+    /**
+     * Record how long each phase of SDK startup takes, as {@link android.os.Trace} sections
+     * and in {@link #getStartupMetrics()}. It should be called before {@link #start}, disabled by default.
+     *
+     * @param enabled true to record startup phases.
+     */
+    public static void setStartupTracingEnabled(boolean enabled) {
+        StartupTracer.setEnabled(enabled);
+    }
+
+    /**
+     * Get the startup phases recorded so far, see {@link #setStartupTracingEnabled(boolean)}.
+     * Phases of the SDK background thread and of services are added while they complete.
+     *
+     * @return snapshot of startup metrics.
+     */
+    @NonNull
+    public static StartupMetrics getStartupMetrics() {
+        return StartupTracer.getMetrics();
+    }
+
     /**
      * Get the current version of App Center SDK.
      *
@@ -465,6 +569,20 @@ public class AppCenter {
         return getInstance().getInstanceInstallIdAsync();
     }
 
+    /**
+     * Send all stored logs now instead of waiting for batch timers.
+     * <p>
+     * The returned future completes when all stored logs have been sent, when logs cannot be sent anymore
+     * (offline mode, network error...) or when the timeout expires, whichever comes first.
+     *
+     * @param timeoutMs maximum time to wait for logs to be sent, in milliseconds.
+     * @return future with result being the number of logs still in storage, or null if App Center is not configured or disabled.
+     * @see AppCenterFuture
+     */
+    public static AppCenterFuture<FlushResult> flush(long timeoutMs) {
+        return getInstance().flushInstanceAsync(timeoutMs);
+    }
+
     /**
      * Set the SQLite database storage size. Returns true if the operation succeeded. If the new size
      * is smaller than the previous size (database is shrinking) and the capacity is greater than
@@ -577,6 +695,32 @@ public class AppCenter {
         }
     }
 
+    /**
+     * {@link #setConnectionWarmUpEnabled(boolean)} implementation at instance level.
+     *
+     * @param enabled true to warm up the connection at startup.
+     */
+    private synchronized void setInstanceConnectionWarmUpEnabled(boolean enabled) {
+        if (mHandler != null) {
+            AppCenterLog.warn(LOG_TAG, "Connection warm up must be configured before App Center is started.");
+            return;
+        }
+        mConnectionWarmUpEnabled = enabled;
+    }
+
+    /**
+     * {@link #setStagedInitializationEnabled(boolean)} implementation at instance level.
+     *
+     * @param enabled true to initialize in stages.
+     */
+    private synchronized void setInstanceStagedInitializationEnabled(boolean enabled) {
+        if (mHandler != null) {
+            AppCenterLog.warn(LOG_TAG, "Staged initialization must be configured before App Center is started.");
+            return;
+        }
+        mStagedInitializationEnabled = enabled;
+    }
+
     /**
      * {@link #setNetworkRequestsAllowed(boolean)} implementation at instance level.
      *
@@ -691,70 +835,75 @@ public class AppCenter {
      * @return true if configuration was successful, false otherwise.
      */
     private synchronized boolean configureInstance(Application application, String secretString, final boolean configureFromApp) {
+        StartupTracer.Section section = StartupTracer.beginSection(PHASE_CONFIGURE);
+        try {
 
-        /* Check parameters. */
-        if (application == null) {
-            AppCenterLog.error(LOG_TAG, "Application context may not be null.");
-            return false;
-        }
+            /* Check parameters. */
+            if (application == null) {
+                AppCenterLog.error(LOG_TAG, "Application context may not be null.");
+                return false;
+            }
 
-        /* Enable a default log level for debuggable applications. */
-        if (!mLogLevelConfigured && (application.getApplicationInfo().flags & FLAG_DEBUGGABLE) == FLAG_DEBUGGABLE) {
-            AppCenterLog.setLogLevel(Log.WARN);
-        }
+            /* Enable a default log level for debuggable applications. */
+            if (!mLogLevelConfigured && (application.getApplicationInfo().flags & FLAG_DEBUGGABLE) == FLAG_DEBUGGABLE) {
+                AppCenterLog.setLogLevel(Log.WARN);
+            }
 
-        /* Configure app secret and/or transmission target. */
-        String previousAppSecret = mAppSecret;
-        if (configureFromApp && !configureSecretString(secretString)) {
-            return false;
-        }
+            /* Configure app secret and/or transmission target. */
+            String previousAppSecret = mAppSecret;
+            if (configureFromApp && !configureSecretString(secretString)) {
+                return false;
+            }
 
-        /* Skip configuration of global states if already done. */
-        if (mHandler != null) {
+            /* Skip configuration of global states if already done. */
+            if (mHandler != null) {
 
-            /* If app started after library with an app secret, set app secret on channel now. */
-            if (mAppSecret != null && !mAppSecret.equals(previousAppSecret)) {
-                mHandler.post(new Runnable() {
+                /* If app started after library with an app secret, set app secret on channel now. */
+                if (mAppSecret != null && !mAppSecret.equals(previousAppSecret)) {
+                    mHandler.post(new Runnable() {
 
-                    @Override
-                    public void run() {
-                        mChannel.setAppSecret(mAppSecret);
-                        applyStorageMaxSize();
-                    }
-                });
+                        @Override
+                        public void run() {
+                            mChannel.setAppSecret(mAppSecret);
+                            applyStorageMaxSize();
+                        }
+                    });
+                }
+                return true;
             }
-            return true;
-        }
 
-        /* Store state. */
-        mApplication = application;
+            /* Store state. */
+            mApplication = application;
 
-        /* Start looper. */
-        mHandlerThread = new HandlerThread("AppCenter.Looper");
-        mHandlerThread.start();
-        mHandler = new Handler(mHandlerThread.getLooper());
-        mAppCenterHandler = new AppCenterHandler() {
+            /* Start looper. */
+            mHandlerThread = new HandlerThread("AppCenter.Looper");
+            mHandlerThread.start();
+            mHandler = new Handler(mHandlerThread.getLooper());
+            mAppCenterHandler = new AppCenterHandler() {
 
-            @Override
-            public void post(@NonNull Runnable runnable, Runnable disabledRunnable) {
-                handlerAppCenterOperation(runnable, disabledRunnable);
-            }
-        };
-        mApplicationLifecycleListener = new ApplicationLifecycleListener(mHandler);
-        mApplication.registerActivityLifecycleCallbacks(mApplicationLifecycleListener);
+                @Override
+                public void post(@NonNull Runnable runnable, Runnable disabledRunnable) {
+                    handlerAppCenterOperation(runnable, disabledRunnable);
+                }
+            };
+            mApplicationLifecycleListener = new ApplicationLifecycleListener(mHandler);
+            mApplication.registerActivityLifecycleCallbacks(mApplicationLifecycleListener);
 
-        /* The rest of initialization is done in background as we need storage. */
-        mServices = new HashSet<>();
-        mServicesStartedFromLibrary = new HashSet<>();
-        mHandler.post(new Runnable() {
+            /* The rest of initialization is done in background as we need storage. */
+            mServices = new HashSet<>();
+            mServicesStartedFromLibrary = new HashSet<>();
+            mHandler.post(new Runnable() {
 
-            @Override
-            public void run() {
-                finishConfiguration(configureFromApp);
-            }
-        });
-        AppCenterLog.info(LOG_TAG, "App Center SDK configured successfully.");
-        return true;
+                @Override
+                public void run() {
+                    finishConfiguration(configureFromApp);
+                }
+            });
+            AppCenterLog.info(LOG_TAG, "App Center SDK configured successfully.");
+            return true;
+        } finally {
+            StartupTracer.endSection(section);
+        }
     }
 
 
@@ -839,8 +988,10 @@ public class AppCenter {
 
     @WorkerThread
     private void finishConfiguration(boolean configureFromApp) {
+        StartupTracer.Section section = StartupTracer.beginSection(PHASE_FINISH_CONFIGURATION);
 
         /* Load some global constants. */
+        StartupTracer.Section stepSection = StartupTracer.beginSection(PHASE_FINISH_CONFIGURATION, "storage");
         Constants.loadFromContext(mApplication);
 
         /* If parameters are valid, init context related resources. */
@@ -851,35 +1002,55 @@ public class AppCenter {
         if (mAllowedNetworkRequests != null) {
             SharedPreferencesManager.putBoolean(PrefStorageConstants.ALLOWED_NETWORK_REQUEST, mAllowedNetworkRequests);
         }
+        StartupTracer.endSection(stepSection);
 
-        /* Initialize session storage. */
-        SessionContext.getInstance();
+        /* Initialize session storage, or let it load on first use. */
+        if (!mStagedInitializationEnabled) {
+            stepSection = StartupTracer.beginSection(PHASE_FINISH_CONFIGURATION, "session");
+            SessionContext.getInstance();
+            StartupTracer.endSection(stepSection);
+        }
 
         /* Get enabled state. */
         boolean enabled = isInstanceEnabled();
 
+        /* Listen to network changes only once network state is needed. */
+        if (mStagedInitializationEnabled) {
+            NetworkStateHelper.getSharedInstance(mApplication, true);
+        }
+
         /* Instantiate HTTP client if it doesn't exist as a dependency. */
+        stepSection = StartupTracer.beginSection(PHASE_FINISH_CONFIGURATION, "httpClient");
         HttpClient httpClient = DependencyConfiguration.getHttpClient();
         if (httpClient == null) {
             httpClient = createHttpClient(mApplication);
         }
+        StartupTracer.endSection(stepSection);
 
         /* Init channel. */
+        stepSection = StartupTracer.beginSection(PHASE_FINISH_CONFIGURATION, "channel");
         mLogSerializer = new DefaultLogSerializer();
         mLogSerializer.addLogFactory(StartServiceLog.TYPE, new StartServiceLogFactory());
         mLogSerializer.addLogFactory(CustomPropertiesLog.TYPE, new CustomPropertiesLogFactory());
-        mChannel = new DefaultChannel(mApplication, mAppSecret, mLogSerializer, httpClient, mHandler);
+        final DefaultChannel channel = new DefaultChannel(mApplication, mAppSecret, mLogSerializer, httpClient, mHandler);
+        mChannel = channel;
+        if (mStagedInitializationEnabled) {
+            channel.deferStorage();
+            Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
 
-        /* Complete set maximum storage size future if starting from app. */
-        if (configureFromApp) {
-            applyStorageMaxSize();
+                @Override
+                public boolean queueIdle() {
+                    finishStagedConfiguration(channel, configureFromApp);
+                    return false;
+                }
+            });
         } else {
-
-            /* If from library, we apply storage size only later, we have to try using the default value in the mean time. */
-            mChannel.setMaxStorageSize(DEFAULT_MAX_STORAGE_SIZE_IN_BYTES);
+            applyStorageMaxSize(configureFromApp);
         }
         mChannel.setEnabled(enabled);
         mChannel.addGroup(CORE_GROUP, DEFAULT_TRIGGER_COUNT, DEFAULT_TRIGGER_INTERVAL, DEFAULT_TRIGGER_MAX_PARALLEL_REQUESTS, null, null);
+        StartupTracer.endSection(stepSection);
+        stepSection = StartupTracer.beginSection(PHASE_FINISH_CONFIGURATION, "oneCollector");
         mOneCollectorChannelListener = new OneCollectorChannelListener(mChannel, mLogSerializer, httpClient, IdHelper.getInstallId());
         if (mLogUrl != null) {
             if (mAppSecret != null) {
@@ -891,6 +1062,16 @@ public class AppCenter {
             }
         }
         mChannel.addListener(mOneCollectorChannelListener);
+        StartupTracer.endSection(stepSection);
+
+        /* Open the connection to the ingestion endpoint while services start. */
+        if (mConnectionWarmUpEnabled && enabled && isInstanceNetworkRequestsAllowed()) {
+            String warmUpUrl = mLogUrl;
+            if (warmUpUrl == null) {
+                warmUpUrl = mAppSecret != null ? AppCenterIngestion.DEFAULT_LOG_URL : OneCollectorIngestion.DEFAULT_LOG_URL;
+            }
+            HttpUtils.warmUpConnection(httpClient, warmUpUrl);
+        }
 
         /* Disable listening network if we start while being disabled. */
         if (!enabled) {
@@ -903,6 +1084,45 @@ public class AppCenter {
             mUncaughtExceptionHandler.register();
         }
         AppCenterLog.debug(LOG_TAG, "App Center initialized.");
+        StartupTracer.endSection(section);
+    }
+
+    /**
+     * Run the initialization deferred by staged initialization, when the App Center thread is idle.
+     * Loading steps that first use already did are skipped.
+     *
+     * @param channel          channel to load storage of.
+     * @param configureFromApp true if configured from application.
+     */
+    @WorkerThread
+    private void finishStagedConfiguration(DefaultChannel channel, boolean configureFromApp) {
+        StartupTracer.Section section = StartupTracer.beginSection(PHASE_FINISH_STAGED_CONFIGURATION);
+
+        /* The application may have configured App Center after a library did, while this was waiting. */
+        applyStorageMaxSize(configureFromApp || mConfiguredFromApp);
+        channel.loadDeferredStorage();
+        SessionContext.getInstance();
+        NetworkStateHelper.getSharedInstance(mApplication).registerIfDeferred();
+        AppCenterLog.debug(LOG_TAG, "App Center staged initialization finished.");
+        StartupTracer.endSection(section);
+    }
+
+    /**
+     * Apply maximum storage size when configuring.
+     *
+     * @param configureFromApp true if configured from application.
+     */
+    @WorkerThread
+    private void applyStorageMaxSize(boolean configureFromApp) {
+
+        /* Complete set maximum storage size future if starting from app. */
+        if (configureFromApp) {
+            applyStorageMaxSize();
+        } else {
+
+            /* If from library, we apply storage size only later, we have to try using the default value in the mean time. */
+            mChannel.setMaxStorageSize(DEFAULT_MAX_STORAGE_SIZE_IN_BYTES);
+        }
     }
 
     @WorkerThread
@@ -997,17 +1217,25 @@ public class AppCenter {
             AppCenterLog.debug(LOG_TAG, "Instrumentation variable to disable service has been set; not starting service " + serviceName + ".");
             return false;
         } else {
-            serviceInstance.onStarting(mAppCenterHandler);
+            StartupTracer.Section section = StartupTracer.beginSection(PHASE_START_SERVICE, serviceName);
+            AppCenterHandler handler = mAppCenterHandler;
+            if (serviceInstance instanceof AppCenterService.ParallelInitializingService) {
+                StartingServiceHandler startingServiceHandler = new StartingServiceHandler();
+                mStartingServiceHandlers.put(serviceInstance, startingServiceHandler);
+                handler = startingServiceHandler;
+            }
+            serviceInstance.onStarting(handler);
             mApplicationLifecycleListener.registerApplicationLifecycleCallbacks(serviceInstance);
             mApplication.registerActivityLifecycleCallbacks(serviceInstance);
             mServices.add(serviceInstance);
             startedServices.add(serviceInstance);
+            StartupTracer.endSection(section);
             return true;
         }
     }
 
     @WorkerThread
-    private void finishStartServices(Iterable<AppCenterService> updatedServices, Iterable<AppCenterService> startedServices, boolean startFromApp) {
+    private void finishStartServices(Iterable<AppCenterService> updatedServices, Iterable<AppCenterService> startedServices, final boolean startFromApp) {
 
         /* Update existing services with app secret and/or transmission target. */
         for (AppCenterService service : updatedServices) {
@@ -1027,12 +1255,31 @@ public class AppCenter {
             if (!enabled && service.isInstanceEnabled()) {
                 service.setInstanceEnabled(false);
             }
-            if (startFromApp) {
-                service.onStarted(mApplication, mChannel, mAppSecret, mTransmissionTargetToken, true);
-                AppCenterLog.info(LOG_TAG, service.getClass().getSimpleName() + " service started from application.");
+        }
+
+        /*
+         * Start services in order, except the ones with independent initialization work: they start once that work
+         * is done in background, without holding this thread. Until then their handler holds the calls they post,
+         * so that these calls still run after the service registered its channel group.
+         */
+        for (final AppCenterService service : startedServices) {
+            if (service instanceof AppCenterService.ParallelInitializingService) {
+                AsyncTaskUtils.execute(LOG_TAG, new ServiceInitializationTask((AppCenterService.ParallelInitializingService) service, mApplication, mHandler, new Runnable() {
+
+                    @Override
+                    public void run() {
+                        onServiceStarted(service, startFromApp);
+                        StartingServiceHandler startingServiceHandler;
+                        synchronized (AppCenter.this) {
+                            startingServiceHandler = mStartingServiceHandlers.remove(service);
+                        }
+                        if (startingServiceHandler != null) {
+                            startingServiceHandler.releaseHeldCalls();
+                        }
+                    }
+                }));
             } else {
-                service.onStarted(mApplication, mChannel, null, null, false);
-                AppCenterLog.info(LOG_TAG, service.getClass().getSimpleName() + " service started from library.");
+                onServiceStarted(service, startFromApp);
             }
         }
 
@@ -1050,6 +1297,25 @@ public class AppCenter {
         }
     }
 
+    /**
+     * Call {@link AppCenterService#onStarted} on a service.
+     *
+     * @param service      service to start.
+     * @param startFromApp true if started from application, false if from a library.
+     */
+    @WorkerThread
+    private void onServiceStarted(AppCenterService service, boolean startFromApp) {
+        StartupTracer.Section section = StartupTracer.beginSection(PHASE_ON_STARTED, service.getServiceName());
+        if (startFromApp) {
+            service.onStarted(mApplication, mChannel, mAppSecret, mTransmissionTargetToken, true);
+            AppCenterLog.info(LOG_TAG, service.getClass().getSimpleName() + " service started from application.");
+        } else {
+            service.onStarted(mApplication, mChannel, null, null, false);
+            AppCenterLog.info(LOG_TAG, service.getClass().getSimpleName() + " service started from library.");
+        }
+        StartupTracer.endSection(section);
+    }
+
     /**
      * Queue start service log.
      */
@@ -1232,6 +1498,37 @@ public class AppCenter {
         return future;
     }
 
+    /**
+     * Implements {@link #flush(long)}.
+     */
+    private synchronized AppCenterFuture<FlushResult> flushInstanceAsync(final long timeoutMs) {
+        final DefaultAppCenterFuture<FlushResult> future = new DefaultAppCenterFuture<>();
+        if (checkPrecondition()) {
+            mAppCenterHandler.post(new Runnable() {
+
+                @Override
+                public void run() {
+                    mChannel.flush(timeoutMs, new Channel.FlushListener() {
+
+                        @Override
+                        public void onFlushCompleted(int remainingLogCount) {
+                            future.complete(new FlushResult(remainingLogCount));
+                        }
+                    });
+                }
+            }, new Runnable() {
+
+                @Override
+                public void run() {
+                    future.complete(null);
+                }
+            });
+        } else {
+            future.complete(null);
+        }
+        return future;
+    }
+
     /**
      * Set the user identifier for logs sent for the default target token when the secret
      * passed in {@link AppCenter#start(Application, String, Class[])} contains "target={targetToken}".
@@ -1265,4 +1562,48 @@ public class AppCenter {
     public void setChannel(Channel channel) {
         mChannel = channel;
     }
+
+    /**
+     * Handler of a service initializing in background, holding the calls it posts until it is started.
+     */
+    private class StartingServiceHandler implements AppCenterHandler {
+
+        /**
+         * Calls posted before the service started, null once they are released.
+         */
+        private List<Runnable> mHeldCalls = new ArrayList<>();
+
+        @Override
+        public void post(@NonNull final Runnable runnable, @Nullable final Runnable disabledRunnable) {
+            synchronized (this) {
+                if (mHeldCalls != null) {
+                    mHeldCalls.add(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            mAppCenterHandler.post(runnable, disabledRunnable);
+                        }
+                    });
+                    return;
+                }
+            }
+            mAppCenterHandler.post(runnable, disabledRunnable);
+        }
+
+        /**
+         * Run the calls held so far in the order they were posted, later calls are not held.
+         * The lock is not kept while running them as services post while holding their own lock.
+         */
+        @WorkerThread
+        void releaseHeldCalls() {
+            List<Runnable> heldCalls;
+            synchronized (this) {
+                heldCalls = mHeldCalls;
+                mHeldCalls = null;
+            }
+            for (Runnable call : heldCalls) {
+                call.run();
+            }
+        }
+    }
 }
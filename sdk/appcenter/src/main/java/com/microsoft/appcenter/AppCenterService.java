@@ -88,4 +88,21 @@ public interface AppCenterService extends Application.ActivityLifecycleCallbacks
      */
     @WorkerThread
     void onConfigurationUpdated(@SuppressWarnings("unused") String appSecret, @SuppressWarnings("unused") String transmissionTargetToken);
+
+    /**
+     * Service with initialization work that uses neither the channel nor other services, such as reading files.
+     * That work runs on the {@link android.os.AsyncTask} thread pool concurrently with other services starting.
+     */
+    interface ParallelInitializingService extends AppCenterService {
+
+        /**
+         * Called on a thread of the {@link android.os.AsyncTask} pool once storage is accessible, before {@link #onStarted}.
+         * {@link #onStarted} is called on the background thread after this returns, other services do not wait for it.
+         * Commands the service posts to its handler until then are held and run after {@link #onStarted}.
+         *
+         * @param context application context.
+         */
+        @WorkerThread
+        void onInitializing(@NonNull Context context);
+    }
 }
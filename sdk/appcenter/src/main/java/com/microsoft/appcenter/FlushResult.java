@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter;
+
+/**
+ * Result of {@link AppCenter#flush(long)}.
+ */
+public class FlushResult {
+
+    /**
+     * Number of logs still in storage when flush completed.
+     */
+    private final int mRemainingLogCount;
+
+    /**
+     * Init.
+     *
+     * @param remainingLogCount number of logs still in storage when flush completed.
+     */
+    public FlushResult(int remainingLogCount) {
+        mRemainingLogCount = remainingLogCount;
+    }
+
+    /**
+     * Get the number of logs that were not sent before flush completed,
+     * either because the timeout expired or because logs could not be sent (offline mode, network error, paused group...).
+     *
+     * @return number of logs still in storage.
+     */
+    public int getRemainingLogCount() {
+        return mRemainingLogCount;
+    }
+
+    /**
+     * Check whether every stored log was sent.
+     *
+     * @return true if no log remains in storage, false otherwise.
+     */
+    public boolean isDrained() {
+        return mRemainingLogCount == 0;
+    }
+}
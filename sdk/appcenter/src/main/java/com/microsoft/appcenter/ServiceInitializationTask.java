@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.os.AsyncTask;
+import android.os.Handler;
+
+import androidx.annotation.NonNull;
+
+import com.microsoft.appcenter.utils.AppCenterLog;
+
+import static com.microsoft.appcenter.AppCenter.LOG_TAG;
+import static com.microsoft.appcenter.AppCenter.PHASE_ON_INITIALIZING;
+
+/**
+ * Runs the independent initialization work of a service in background, then starts the service on the App Center thread.
+ */
+class ServiceInitializationTask extends AsyncTask<Void, Void, Void> {
+
+    /**
+     * Service to initialize.
+     */
+    private final AppCenterService.ParallelInitializingService mService;
+
+    /**
+     * Application context.
+     */
+    @SuppressLint("StaticFieldLeak")
+    private final Context mContext;
+
+    /**
+     * Handler of the App Center thread.
+     */
+    private final Handler mHandler;
+
+    /**
+     * Command starting the service, posted to {@link #mHandler} once initialized.
+     */
+    private final Runnable mStartRunnable;
+
+    /**
+     * Init.
+     *
+     * @param service       service to initialize.
+     * @param context       application context.
+     * @param handler       handler of the App Center thread.
+     * @param startRunnable command starting the service.
+     */
+    ServiceInitializationTask(@NonNull AppCenterService.ParallelInitializingService service, @NonNull Context context, @NonNull Handler handler, @NonNull Runnable startRunnable) {
+        mService = service;
+        mContext = context;
+        mHandler = handler;
+        mStartRunnable = startRunnable;
+    }
+
+    @Override
+    protected Void doInBackground(Void... args) {
+        String serviceName = mService.getServiceName();
+        StartupTracer.Section section = StartupTracer.beginSection(PHASE_ON_INITIALIZING, serviceName);
+        try {
+            mService.onInitializing(mContext);
+        } catch (RuntimeException e) {
+
+            /* Start the service anyway so that the calls it posted are not held forever. */
+            AppCenterLog.error(LOG_TAG, serviceName + " service failed to initialize.", e);
+        } finally {
+            StartupTracer.endSection(section);
+        }
+        mHandler.post(mStartRunnable);
+        return null;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Snapshot of the phases of SDK startup recorded while startup tracing is enabled.
+ *
+ * @see AppCenter#setStartupTracingEnabled(boolean)
+ * @see AppCenter#getStartupMetrics()
+ */
+public class StartupMetrics {
+
+    /**
+     * Recorded phases by start time.
+     */
+    private final List<Phase> mPhases;
+
+    StartupMetrics(@NonNull List<Phase> phases) {
+        Collections.sort(phases, new Comparator<Phase>() {
+
+            @Override
+            public int compare(Phase phase1, Phase phase2) {
+                return Long.compare(phase1.mStartTime, phase2.mStartTime);
+            }
+        });
+        mPhases = Collections.unmodifiableList(phases);
+    }
+
+    /**
+     * Get the recorded phases, ordered by start time. Nested phases are listed after the phase containing them.
+     *
+     * @return recorded phases.
+     */
+    @NonNull
+    public List<Phase> getPhases() {
+        return mPhases;
+    }
+
+    /**
+     * Get the first recorded phase with a given name.
+     *
+     * @param name phase name, for example "AppCenter.finishConfiguration".
+     * @return the phase or null if not recorded.
+     */
+    @Nullable
+    public Phase getPhase(@NonNull String name) {
+        for (Phase phase : mPhases) {
+            if (phase.mName.equals(name)) {
+                return phase;
+            }
+        }
+        return null;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("StartupMetrics{");
+        for (Phase phase : mPhases) {
+            builder.append("\n  ").append(phase);
+        }
+        return builder.append("\n}").toString();
+    }
+
+    /**
+     * A timed phase of SDK startup. Times are measured with a monotonic clock.
+     */
+    public static class Phase {
+
+        private final String mName;
+
+        private final String mThreadName;
+
+        private final long mStartTime;
+
+        private final long mDuration;
+
+        Phase(String name, String threadName, long startTime, long duration) {
+            mName = name;
+            mThreadName = threadName;
+            mStartTime = startTime;
+            mDuration = duration;
+        }
+
+        /**
+         * Get the phase name, which is also the name of its {@link android.os.Trace} section.
+         *
+         * @return phase name.
+         */
+        @NonNull
+        public String getName() {
+            return mName;
+        }
+
+        /**
+         * Get the name of the thread that ran the phase.
+         *
+         * @return thread name.
+         */
+        @NonNull
+        public String getThreadName() {
+            return mThreadName;
+        }
+
+        /**
+         * Get the time at which the phase started.
+         *
+         * @return microseconds since startup tracing was first enabled.
+         */
+        public long getStartTime() {
+            return mStartTime;
+        }
+
+        /**
+         * Get the duration of the phase.
+         *
+         * @return duration in microseconds.
+         */
+        public long getDuration() {
+            return mDuration;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return mName + " [" + mThreadName + "] start=" + mStartTime + "us duration=" + mDuration + "us";
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter;
+
+import android.os.Trace;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Records phases of SDK startup as {@link Trace} sections and as {@link StartupMetrics}.
+ * When disabled, beginning a section costs a volatile read and nothing is allocated.
+ * Each phase is recorded once, sections that run again later, such as when services are disabled and enabled, are only traced.
+ * A section must be ended on the thread that began it.
+ */
+public class StartupTracer {
+
+    /**
+     * Maximum length of a {@link Trace} section name.
+     */
+    private static final int MAX_SECTION_NAME_LENGTH = 127;
+
+    /**
+     * Whether tracing is enabled.
+     */
+    private static volatile boolean sEnabled;
+
+    /**
+     * Time when tracing was first enabled, in nanoseconds.
+     */
+    private static long sOriginTime;
+
+    /**
+     * Whether {@link #sOriginTime} is set.
+     */
+    private static boolean sOriginTimeSet;
+
+    /**
+     * Phases recorded so far, by name.
+     */
+    private static final Map<String, StartupMetrics.Phase> sPhases = new HashMap<>();
+
+    /**
+     * Enable or disable tracing. Phases already recorded are kept.
+     *
+     * @param enabled true to record startup phases.
+     */
+    public static synchronized void setEnabled(boolean enabled) {
+        if (enabled && !sOriginTimeSet) {
+            sOriginTime = System.nanoTime();
+            sOriginTimeSet = true;
+        }
+        sEnabled = enabled;
+    }
+
+    /**
+     * Check whether tracing is enabled.
+     *
+     * @return true if enabled.
+     */
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * Begin a section.
+     *
+     * @param name section name.
+     * @return the section to pass to {@link #endSection(Section)}, null if tracing is disabled.
+     */
+    @Nullable
+    public static Section beginSection(@NonNull String name) {
+        return beginSection(name, null);
+    }
+
+    /**
+     * Begin a section whose name has a variable part, which is only concatenated when tracing is enabled.
+     *
+     * @param name   section name.
+     * @param detail appended to the name after a dot, can be null.
+     * @return the section to pass to {@link #endSection(Section)}, null if tracing is disabled.
+     */
+    @Nullable
+    public static Section beginSection(@NonNull String name, @Nullable String detail) {
+        if (!sEnabled) {
+            return null;
+        }
+        if (detail != null) {
+            name = name + "." + detail;
+        }
+        Trace.beginSection(name.length() > MAX_SECTION_NAME_LENGTH ? name.substring(0, MAX_SECTION_NAME_LENGTH) : name);
+        return new Section(name, Thread.currentThread().getName(), System.nanoTime());
+    }
+
+    /**
+     * End a section and record it as a phase, unless a phase with the same name is already recorded.
+     * The section is recorded even if tracing was disabled after it began, as the trace section must be closed anyway.
+     *
+     * @param section section returned by {@link #beginSection(String)}, nothing is done if null.
+     */
+    public static void endSection(@Nullable Section section) {
+        if (section == null) {
+            return;
+        }
+        long endTime = System.nanoTime();
+        Trace.endSection();
+        synchronized (StartupTracer.class) {
+            if (sPhases.containsKey(section.mName)) {
+                return;
+            }
+            long startTime = (section.mStartTime - sOriginTime) / 1000L;
+            long duration = (endTime - section.mStartTime) / 1000L;
+            sPhases.put(section.mName, new StartupMetrics.Phase(section.mName, section.mThreadName, startTime, duration));
+        }
+    }
+
+    /**
+     * Get a snapshot of the phases recorded so far.
+     *
+     * @return startup metrics.
+     */
+    @NonNull
+    public static synchronized StartupMetrics getMetrics() {
+        return new StartupMetrics(new ArrayList<>(sPhases.values()));
+    }
+
+    @VisibleForTesting
+    static synchronized void reset() {
+        sEnabled = false;
+        sOriginTimeSet = false;
+        sPhases.clear();
+    }
+
+    /**
+     * A section that began and is not ended yet.
+     */
+    public static class Section {
+
+        private final String mName;
+
+        private final String mThreadName;
+
+        private final long mStartTime;
+
+        private Section(String name, String threadName, long startTime) {
+            mName = name;
+            mThreadName = threadName;
+            mStartTime = startTime;
+        }
+    }
+}
@@ -141,6 +141,14 @@ public interface Channel {
      */
     void setNetworkRequests(boolean isAllowed);
 
+    /**
+     * Send all pending logs of every group now, ignoring batch timers and using every parallel batch slot.
+     *
+     * @param timeout  maximum time to wait for storage to be drained, in ms.
+     * @param listener listener called once storage is drained, logs cannot be sent anymore or timeout expired.
+     */
+    void flush(long timeout, @NonNull FlushListener listener);
+
     /**
      * Channel global listener specification.
      */
@@ -248,4 +256,17 @@ public interface Channel {
          */
         void onFailure(Log log, Exception e);
     }
+
+    /**
+     * Channel flush listener specification.
+     */
+    interface FlushListener {
+
+        /**
+         * Called when a flush completes.
+         *
+         * @param remainingLogCount number of logs still in storage.
+         */
+        void onFlushCompleted(int remainingLogCount);
+    }
 }
@@ -7,16 +7,18 @@ package com.microsoft.appcenter.channel;
 
 import android.content.Context;
 import android.os.Handler;
+import android.os.SystemClock;
 import androidx.annotation.MainThread;
 import androidx.annotation.NonNull;
 import androidx.annotation.VisibleForTesting;
 import androidx.annotation.WorkerThread;
 
 import com.microsoft.appcenter.CancellationException;
+import com.microsoft.appcenter.Flags;
 import com.microsoft.appcenter.http.HttpClient;
 import com.microsoft.appcenter.http.HttpResponse;
 import com.microsoft.appcenter.http.HttpUtils;
-import com.microsoft.appcenter.http.ServiceCallback;
+import com.microsoft.appcenter.http.RetryAwareServiceCallback;
 import com.microsoft.appcenter.ingestion.AppCenterIngestion;
 import com.microsoft.appcenter.ingestion.Ingestion;
 import com.microsoft.appcenter.ingestion.models.Device;
@@ -29,9 +31,11 @@ import com.microsoft.appcenter.persistence.Persistence;
 import com.microsoft.appcenter.utils.AppCenterLog;
 import com.microsoft.appcenter.utils.DeviceInfoHelper;
 import com.microsoft.appcenter.utils.IdHelper;
+import com.microsoft.appcenter.utils.NetworkStateHelper;
 import com.microsoft.appcenter.utils.storage.SharedPreferencesManager;
 
 import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -47,7 +51,7 @@ import java.util.UUID;
 
 import static com.microsoft.appcenter.AppCenter.LOG_TAG;
 
-public class DefaultChannel implements Channel {
+public class DefaultChannel implements Channel, NetworkStateHelper.MeteredListener {
 
     /**
      * Persistence batch size for {@link Persistence#getLogs(String, Collection, int, List)} when clearing.
@@ -66,6 +70,24 @@ public class DefaultChannel implements Channel {
      */
     private static final long MINIMUM_TRANSMISSION_INTERVAL = 3000;
 
+    /**
+     * Default factor applied to the batch time interval of groups without pending critical logs while on a metered network.
+     */
+    @VisibleForTesting
+    static final int METERED_BATCH_TIME_INTERVAL_FACTOR = 10;
+
+    /**
+     * Default factor applied to the maximum batch size of groups while on a metered network.
+     */
+    @VisibleForTesting
+    static final int METERED_MAX_LOGS_PER_BATCH_FACTOR = 4;
+
+    /**
+     * Default timer slack, in ms. Groups due within that delay are triggered together.
+     */
+    @VisibleForTesting
+    static final long DEFAULT_TIMER_SLACK = 1000;
+
     /**
      * Application context.
      */
@@ -111,6 +133,11 @@ public class DefaultChannel implements Channel {
      */
     private final Handler mAppCenterHandler;
 
+    /**
+     * Network state helper used to apply metered network policies, can be null.
+     */
+    private final NetworkStateHelper mNetworkStateHelper;
+
     /**
      * Is channel enabled?
      */
@@ -122,17 +149,52 @@ public class DefaultChannel implements Channel {
      */
     private boolean mDiscardLogs;
 
+    /**
+     * True while storage is not used yet: pending logs are counted on first use instead of when adding groups.
+     */
+    private boolean mStorageDeferred;
+
     /**
      * Device properties.
      */
     private Device mDevice;
 
+    /**
+     * Log serializer, its device cache is reset with {@link #mDevice}. Null when ingestion is injected.
+     */
+    private LogSerializer mLogSerializer;
+
     /**
      * State checker. If this counter changes during an async call, we have to ignore the result in the callback.
      * Cancelling a database call would be unreliable, and if it's too fast you could still have the callback being called.
      */
     private int mCurrentState;
 
+    /**
+     * Maximum delay a group trigger can be advanced to be coalesced with another group trigger, in ms.
+     */
+    private long mTimerSlack = DEFAULT_TIMER_SLACK;
+
+    /**
+     * Runnable shared by all groups for their batch timers, created on first use.
+     */
+    private Runnable mTimerRunnable;
+
+    /**
+     * Is the shared timer scheduled.
+     */
+    private boolean mTimerScheduled;
+
+    /**
+     * Uptime at which the shared timer is scheduled to fire.
+     */
+    private long mTimerTime;
+
+    /**
+     * Flush requests in progress, batch timers are bypassed while not empty.
+     */
+    private final List<FlushRequest> mFlushRequests = new ArrayList<>();
+
     /**
      * Creates and initializes a new instance.
      *
@@ -143,7 +205,8 @@ public class DefaultChannel implements Channel {
      * @param appCenterHandler App Center looper thread handler.
      */
     public DefaultChannel(@NonNull Context context, String appSecret, @NonNull LogSerializer logSerializer, @NonNull HttpClient httpClient, @NonNull Handler appCenterHandler) {
-        this(context, appSecret, buildDefaultPersistence(context, logSerializer), new AppCenterIngestion(httpClient, logSerializer), appCenterHandler);
+        this(context, appSecret, buildDefaultPersistence(context, logSerializer), new AppCenterIngestion(httpClient, logSerializer), appCenterHandler, NetworkStateHelper.getSharedInstance(context));
+        mLogSerializer = logSerializer;
     }
 
     /**
@@ -157,6 +220,21 @@ public class DefaultChannel implements Channel {
      */
     @VisibleForTesting
     DefaultChannel(@NonNull Context context, String appSecret, @NonNull Persistence persistence, @NonNull Ingestion ingestion, @NonNull Handler appCenterHandler) {
+        this(context, appSecret, persistence, ingestion, appCenterHandler, null);
+    }
+
+    /**
+     * Overloaded constructor with limited visibility that allows for dependency injection.
+     *
+     * @param context            The context.
+     * @param appSecret          The application secret.
+     * @param persistence        Persistence object for dependency injection.
+     * @param ingestion          Ingestion object for dependency injection.
+     * @param appCenterHandler   App Center looper thread handler.
+     * @param networkStateHelper Network state helper to apply metered network policies, null to ignore network type.
+     */
+    @VisibleForTesting
+    DefaultChannel(@NonNull Context context, String appSecret, @NonNull Persistence persistence, @NonNull Ingestion ingestion, @NonNull Handler appCenterHandler, NetworkStateHelper networkStateHelper) {
         mContext = context;
         mAppSecret = appSecret;
         mInstallId = IdHelper.getInstallId();
@@ -167,6 +245,10 @@ public class DefaultChannel implements Channel {
         mIngestions = new HashSet<>();
         mIngestions.add(mIngestion);
         mAppCenterHandler = appCenterHandler;
+        mNetworkStateHelper = networkStateHelper;
+        if (mNetworkStateHelper != null) {
+            mNetworkStateHelper.addMeteredListener(this);
+        }
         mEnabled = true;
     }
 
@@ -179,6 +261,33 @@ public class DefaultChannel implements Channel {
         return persistence;
     }
 
+    /**
+     * Do not use storage until needed: adding groups does not count pending logs, so that the database is not
+     * opened at startup. Storage is loaded on first enqueue, flush or group resume, or by calling
+     * {@link #loadDeferredStorage()}. Must be called before adding groups.
+     */
+    public void deferStorage() {
+        mStorageDeferred = true;
+    }
+
+    /**
+     * Load storage if it was deferred: count pending logs of all groups and schedule sending them.
+     */
+    @WorkerThread
+    public void loadDeferredStorage() {
+        if (!mStorageDeferred) {
+            return;
+        }
+        mStorageDeferred = false;
+        AppCenterLog.debug(LOG_TAG, "Loading deferred storage.");
+        for (GroupState groupState : new ArrayList<>(mGroupStates.values())) {
+            countPendingLogs(groupState);
+            if (mEnabled && (mAppSecret != null || groupState.mIngestion != mIngestion)) {
+                checkPendingLogs(groupState);
+            }
+        }
+    }
+
     @WorkerThread
     @Override
     public boolean setMaxStorageSize(long maxStorageSizeInBytes) {
@@ -226,8 +335,10 @@ public class DefaultChannel implements Channel {
         final GroupState groupState = new GroupState(groupName, maxLogsPerBatch, batchTimeInterval, maxParallelBatches, ingestion, groupListener);
         mGroupStates.put(groupName, groupState);
 
-        /* Count pending logs. */
-        groupState.mPendingLogCount = mPersistence.countLogs(groupName);
+        /* Count pending logs, unless storage is deferred: it will be done on first use. */
+        if (!mStorageDeferred) {
+            countPendingLogs(groupState);
+        }
 
         /*
          * If no app secret, don't resume sending App Center logs from storage.
@@ -284,6 +395,7 @@ public class DefaultChannel implements Channel {
 
     @Override
     public void resumeGroup(String groupName, String targetToken) {
+        loadDeferredStorage();
         GroupState groupState = mGroupStates.get(groupName);
         if (groupState != null) {
             if (targetToken != null) {
@@ -298,7 +410,7 @@ public class DefaultChannel implements Channel {
                      * that does not seem necessary for now.
                      */
                     AppCenterLog.debug(LOG_TAG, "resumeGroup(" + groupName + ", " + targetKey + ")");
-                    groupState.mPendingLogCount = mPersistence.countLogs(groupName);
+                    countPendingLogs(groupState);
                     checkPendingLogs(groupState);
                 }
             } else if (groupState.mPaused) {
@@ -379,6 +491,9 @@ public class DefaultChannel implements Channel {
     @Override
     public void invalidateDeviceCache() {
         mDevice = null;
+        if (mLogSerializer != null) {
+            mLogSerializer.invalidateDeviceCache();
+        }
     }
 
     /**
@@ -394,13 +509,13 @@ public class DefaultChannel implements Channel {
             cancelTimer(groupState);
 
             /* Delete all other batches and call callback method that are currently in progress. */
-            for (Iterator<Map.Entry<String, List<Log>>> iterator = groupState.mSendingBatches.entrySet().iterator(); iterator.hasNext(); ) {
-                Map.Entry<String, List<Log>> entry = iterator.next();
+            for (Iterator<Map.Entry<String, SendingBatch>> iterator = groupState.mSendingBatches.entrySet().iterator(); iterator.hasNext(); ) {
+                Map.Entry<String, SendingBatch> entry = iterator.next();
                 iterator.remove();
                 if (deleteLogs) {
                     GroupListener groupListener = groupState.mListener;
                     if (groupListener != null) {
-                        for (Log log : entry.getValue()) {
+                        for (Log log : entry.getValue().getLogs()) {
                             groupListener.onFailure(log, exception);
                         }
                     }
@@ -421,6 +536,7 @@ public class DefaultChannel implements Channel {
         } else {
             mPersistence.clearPendingLogState();
         }
+        checkFlushCompleted();
     }
 
     private void deleteLogsOnSuspended(final GroupState groupState) {
@@ -439,15 +555,118 @@ public class DefaultChannel implements Channel {
         }
     }
 
+    /**
+     * Set how much a batch timer can be advanced so that groups due at about the same time
+     * are triggered together by a single timer.
+     *
+     * @param timerSlack timer slack in ms, 0 to trigger every group at its exact time.
+     */
+    @VisibleForTesting
+    void setTimerSlack(long timerSlack) {
+        mTimerSlack = Math.max(timerSlack, 0);
+    }
+
     @VisibleForTesting
     void cancelTimer(GroupState groupState) {
         if (groupState.mScheduled) {
             groupState.mScheduled = false;
-            mAppCenterHandler.removeCallbacks(groupState.mRunnable);
+            scheduleTimer();
             SharedPreferencesManager.remove(START_TIMER_PREFIX + groupState.mName);
         }
     }
 
+    /**
+     * Schedule a group trigger on the shared timer.
+     *
+     * @param groupState the group state.
+     * @param delay      delay before triggering ingestion, in ms.
+     */
+    private void scheduleTimer(@NonNull GroupState groupState, long delay) {
+        groupState.mScheduled = true;
+        groupState.mDeadline = SystemClock.uptimeMillis() + delay;
+        scheduleTimer();
+    }
+
+    /**
+     * Make the shared timer fire at the earliest group deadline.
+     * The current timer is kept if no group would be triggered earlier or later than its own slack allows,
+     * so groups without slack are never triggered late. The timer is removed when no group is scheduled.
+     */
+    private void scheduleTimer() {
+        GroupState nextGroup = null;
+        long latestTimerTime = Long.MAX_VALUE;
+        for (GroupState groupState : mGroupStates.values()) {
+            if (groupState.mScheduled) {
+                if (nextGroup == null || groupState.mDeadline < nextGroup.mDeadline) {
+                    nextGroup = groupState;
+                }
+                latestTimerTime = Math.min(latestTimerTime, groupState.mDeadline + getTimerSlack(groupState));
+            }
+        }
+        if (nextGroup == null) {
+            if (mTimerScheduled) {
+                mTimerScheduled = false;
+                mAppCenterHandler.removeCallbacks(mTimerRunnable);
+            }
+            return;
+        }
+        long deadline = nextGroup.mDeadline;
+        if (mTimerScheduled) {
+            if (mTimerTime >= deadline - getTimerSlack(nextGroup) && mTimerTime <= latestTimerTime) {
+                return;
+            }
+            mAppCenterHandler.removeCallbacks(mTimerRunnable);
+        }
+        if (mTimerRunnable == null) {
+            mTimerRunnable = new Runnable() {
+
+                @Override
+                public void run() {
+                    onTimer();
+                }
+            };
+        }
+        mTimerScheduled = true;
+        mTimerTime = deadline;
+        mAppCenterHandler.postDelayed(mTimerRunnable, Math.max(deadline - SystemClock.uptimeMillis(), 0));
+    }
+
+    /**
+     * Trigger ingestion of every group that is due within the timer slack, then schedule the next timer.
+     */
+    private void onTimer() {
+        mTimerScheduled = false;
+
+        /* The handler never fires early, use scheduled time if the clock says otherwise. */
+        long now = Math.max(SystemClock.uptimeMillis(), mTimerTime);
+        List<GroupState> dueGroups = new ArrayList<>();
+        for (GroupState groupState : mGroupStates.values()) {
+            if (groupState.mScheduled && groupState.mDeadline <= now + getTimerSlack(groupState)) {
+                dueGroups.add(groupState);
+            }
+        }
+        for (GroupState groupState : dueGroups) {
+
+            /* A previous trigger in this pass can cancel timers (e.g. on fatal error). */
+            if (groupState.mScheduled) {
+                groupState.mScheduled = false;
+                triggerIngestion(groupState);
+            }
+        }
+        scheduleTimer();
+    }
+
+    /**
+     * Get how much a group trigger can be advanced or delayed to be coalesced.
+     * Custom intervals are persisted across launches and triggered at their exact time.
+     *
+     * @param groupState the group state.
+     * @return slack in ms.
+     */
+    private long getTimerSlack(@NonNull GroupState groupState) {
+        return groupState.mCustomBatchTimeInterval ? 0 : mTimerSlack;
+    }
+
     /**
      * This will, if we're not using the limit for pending batches, trigger sending of a new request.
      * It will also reset the counters for sending out items for both the number of items enqueued and
@@ -465,7 +684,7 @@ public class DefaultChannel implements Channel {
             return;
         }
         int pendingLogCount = groupState.mPendingLogCount;
-        int maxFetch = Math.min(pendingLogCount, groupState.mMaxLogsPerBatch);
+        int maxFetch = resolveMaxFetch(groupState);
         AppCenterLog.debug(LOG_TAG, "triggerIngestion(" + groupState.mName + ") pendingLogCount=" + pendingLogCount);
         cancelTimer(groupState);
 
@@ -479,11 +698,13 @@ public class DefaultChannel implements Channel {
         final List<Log> batch = new ArrayList<>(maxFetch);
         final String batchId = mPersistence.getLogs(groupState.mName, groupState.mPausedTargetKeys, maxFetch, batch);
 
-        /* Decrement counter. */
+        /* Decrement counters, critical logs are always fetched first. */
         groupState.mPendingLogCount -= maxFetch;
+        groupState.mPendingCriticalLogCount = Math.max(groupState.mPendingCriticalLogCount - maxFetch, 0);
 
         /* Nothing more to do if no logs. */
         if (batchId == null) {
+            checkFlushCompleted();
             return;
         }
         AppCenterLog.debug(LOG_TAG, "ingestLogs(" + groupState.mName + "," + batchId + ") pendingLogCount=" + groupState.mPendingLogCount);
@@ -496,8 +717,9 @@ public class DefaultChannel implements Channel {
         }
 
         /* Remember this batch. */
-        groupState.mSendingBatches.put(batchId, batch);
-        sendLogs(groupState, mCurrentState, batch, batchId);
+        SendingBatch sendingBatch = new SendingBatch(groupState.mName, batch);
+        groupState.mSendingBatches.put(batchId, sendingBatch);
+        sendLogs(groupState, mCurrentState, sendingBatch, batchId);
     }
 
     /**
@@ -509,12 +731,26 @@ public class DefaultChannel implements Channel {
      * @param batchId      The batch ID.
      */
     @MainThread
-    private void sendLogs(final GroupState groupState, final int currentState, List<Log> batch, final String batchId) {
+    private void sendLogs(final GroupState groupState, final int currentState, SendingBatch batch, final String batchId) {
 
         /* Send logs. */
-        LogContainer logContainer = new LogContainer();
-        logContainer.setLogs(batch);
-        groupState.mIngestion.sendAsync(mAppSecret, mInstallId, logContainer, new ServiceCallback() {
+        groupState.mIngestion.sendAsync(mAppSecret, mInstallId, batch, new RetryAwareServiceCallback() {
+
+            @Override
+            public void onCallRetryScheduled(Exception e, long delay, boolean requestBodyKept) {
+
+                /* Logs are needed again on the HTTP thread if the retry builds the body, keep them. */
+                if (!requestBodyKept) {
+                    return;
+                }
+                mAppCenterHandler.post(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        releaseSendingBatch(groupState, batchId);
+                    }
+                });
+            }
 
             @Override
             public void onCallSucceeded(HttpResponse httpResponse) {
@@ -549,6 +785,24 @@ public class DefaultChannel implements Channel {
         });
     }
 
+    /**
+     * Release the logs of a batch while it waits for a retry that sends the encoded body kept from the failed try.
+     * Only their identifiers are kept to reload them when needed, on this thread, for the group listener.
+     *
+     * @param groupState The group state.
+     * @param batchId    The batch ID.
+     */
+    private void releaseSendingBatch(@NonNull GroupState groupState, @NonNull String batchId) {
+        SendingBatch sendingBatch = groupState.mSendingBatches.get(batchId);
+        if (sendingBatch != null && !sendingBatch.isReleased()) {
+            List<Long> logIdentifiers = mPersistence.getLogIdentifiers(groupState.mName, batchId);
+            if (logIdentifiers != null) {
+                AppCenterLog.debug(LOG_TAG, "Releasing logs of batch " + batchId + " while waiting for retry.");
+                sendingBatch.release(logIdentifiers);
+            }
+        }
+    }
+
     private void checkPendingLogsAfterPost(@NonNull final GroupState groupState, int currentState) {
         if (checkStateDidNotChange(groupState, currentState)) {
             checkPendingLogs(groupState);
@@ -562,16 +816,20 @@ public class DefaultChannel implements Channel {
      * @param batchId    The batch ID.
      */
     private void handleSendingSuccess(@NonNull GroupState groupState, @NonNull String batchId) {
-        List<Log> removedLogsForBatchId = groupState.mSendingBatches.remove(batchId);
-        if (removedLogsForBatchId != null) {
-            mPersistence.deleteLogs(groupState.mName, batchId);
+        SendingBatch removedBatch = groupState.mSendingBatches.remove(batchId);
+        if (removedBatch != null) {
+
+            /* Get logs before deleting them as they might need to be reloaded from persistence. */
             GroupListener groupListener = groupState.mListener;
-            if (groupListener != null) {
+            List<Log> removedLogsForBatchId = groupListener != null ? removedBatch.getLogs() : null;
+            mPersistence.deleteLogs(groupState.mName, batchId);
+            if (removedLogsForBatchId != null) {
                 for (Log log : removedLogsForBatchId) {
                     groupListener.onSuccess(log);
                 }
             }
             checkPendingLogs(groupState);
+            checkFlushCompleted();
         }
     }
 
@@ -586,16 +844,16 @@ public class DefaultChannel implements Channel {
      */
     private void handleSendingFailure(@NonNull GroupState groupState, @NonNull String batchId, @NonNull Exception e) {
         String groupName = groupState.mName;
-        List<Log> removedLogsForBatchId = groupState.mSendingBatches.remove(batchId);
-        if (removedLogsForBatchId != null) {
+        SendingBatch removedBatch = groupState.mSendingBatches.remove(batchId);
+        if (removedBatch != null) {
             AppCenterLog.error(LOG_TAG, "Sending logs groupName=" + groupName + " id=" + batchId + " failed", e);
             boolean recoverableError = HttpUtils.isRecoverableError(e);
             if (recoverableError) {
-                groupState.mPendingLogCount += removedLogsForBatchId.size();
+                groupState.mPendingLogCount += removedBatch.mLogCount;
             } else {
                 GroupListener groupListener = groupState.mListener;
                 if (groupListener != null) {
-                    for (Log log : removedLogsForBatchId) {
+                    for (Log log : removedBatch.getLogs()) {
                         groupListener.onFailure(log, e);
                     }
                 }
@@ -607,6 +865,7 @@ public class DefaultChannel implements Channel {
 
     @Override
     public void enqueue(@NonNull Log log, @NonNull final String groupName, int flags) {
+        loadDeferredStorage();
 
         /* Check group name is registered. */
         GroupState groupState = mGroupStates.get(groupName);
@@ -696,6 +955,9 @@ public class DefaultChannel implements Channel {
 
             /* Increment counters and schedule ingestion if we are enabled. */
             groupState.mPendingLogCount++;
+            if (Flags.getPersistenceFlag(flags, false) == Flags.CRITICAL) {
+                groupState.mPendingCriticalLogCount++;
+            }
             AppCenterLog.debug(LOG_TAG, "enqueue(" + groupState.mName + ") pendingLogCount=" + groupState.mPendingLogCount);
             if (mEnabled) {
                 checkPendingLogs(groupState);
@@ -712,9 +974,14 @@ public class DefaultChannel implements Channel {
      */
     @VisibleForTesting
     void checkPendingLogs(@NonNull GroupState groupState) {
+
+        /* Pending logs are not counted yet, this is checked again when storage is loaded. */
+        if (mStorageDeferred) {
+            return;
+        }
         AppCenterLog.debug(LOG_TAG, String.format("checkPendingLogs(%s) pendingLogCount=%s batchTimeInterval=%s",
                 groupState.mName, groupState.mPendingLogCount, groupState.mBatchTimeInterval));
-        Long batchTimeInterval = resolveTriggerInterval(groupState);
+        Long batchTimeInterval = !mFlushRequests.isEmpty() && groupState.mPendingLogCount > 0 ? Long.valueOf(0) : resolveTriggerInterval(groupState);
 
         /* Check if there is no need to trigger ingestion. */
         if (batchTimeInterval == null || groupState.mPaused) {
@@ -726,10 +993,9 @@ public class DefaultChannel implements Channel {
             triggerIngestion(groupState);
         }
 
-        /* Postpone triggering ingestion. */
-        else if (!groupState.mScheduled) {
-            groupState.mScheduled = true;
-            mAppCenterHandler.postDelayed(groupState.mRunnable, batchTimeInterval);
+        /* Postpone triggering ingestion, a critical log on a metered network can bring the deadline forward. */
+        else if (!groupState.mScheduled || (isNetworkMetered() && SystemClock.uptimeMillis() + batchTimeInterval < groupState.mDeadline)) {
+            scheduleTimer(groupState, batchTimeInterval);
         }
     }
 
@@ -743,7 +1009,7 @@ public class DefaultChannel implements Channel {
     private Long resolveTriggerInterval(@NonNull GroupState groupState) {
 
         /* If the interval is custom. */
-        if (groupState.mBatchTimeInterval > MINIMUM_TRANSMISSION_INTERVAL) {
+        if (groupState.mCustomBatchTimeInterval) {
             return resolveCustomTriggerInterval(groupState);
         } else {
             return resolveDefaultTriggerInterval(groupState);
@@ -777,10 +1043,178 @@ public class DefaultChannel implements Channel {
     }
 
     private Long resolveDefaultTriggerInterval(@NonNull GroupState groupState) {
+
+        /* On metered networks, only critical logs are sent at the regular pace, others wait for bigger batches. */
+        if (isNetworkMetered()) {
+            if (groupState.mPendingLogCount <= 0) {
+                return null;
+            }
+            if (groupState.mPendingCriticalLogCount >= groupState.mMaxLogsPerBatch || groupState.mPendingLogCount >= groupState.mMeteredMaxLogsPerBatch) {
+                return 0L;
+            }
+            return groupState.mPendingCriticalLogCount > 0 ? groupState.mBatchTimeInterval : groupState.mMeteredBatchTimeInterval;
+        }
         if (groupState.mPendingLogCount >= groupState.mMaxLogsPerBatch) {
             return 0L;
         }
-        return groupState.mPendingLogCount > 0 ? groupState.mBatchTimeInterval : null;
+        if (groupState.mPendingLogCount <= 0) {
+            return null;
+        }
+        return groupState.mBatchTimeInterval;
+    }
+
+    /**
+     * Get how many logs to fetch for the next batch of a group.
+     *
+     * @param groupState the group state.
+     * @return maximum number of logs to fetch.
+     */
+    private int resolveMaxFetch(@NonNull GroupState groupState) {
+        int pendingLogCount = groupState.mPendingLogCount;
+        if (!isNetworkMetered() || !mFlushRequests.isEmpty() || groupState.mCustomBatchTimeInterval) {
+            return Math.min(pendingLogCount, groupState.mMaxLogsPerBatch);
+        }
+
+        /* Critical logs are fetched first: send them alone, normal logs wait for a bigger batch. */
+        if (groupState.mPendingCriticalLogCount > 0) {
+            return Math.min(groupState.mPendingCriticalLogCount, groupState.mMaxLogsPerBatch);
+        }
+        return Math.min(pendingLogCount, groupState.mMeteredMaxLogsPerBatch);
+    }
+
+    /**
+     * Count the logs of a group from storage.
+     *
+     * @param groupState the group state.
+     */
+    private void countPendingLogs(@NonNull GroupState groupState) {
+        groupState.mPendingLogCount = mPersistence.countLogs(groupState.mName);
+
+        /* Critical logs stored by a previous process must still be sent at the regular pace on metered networks. */
+        if (mNetworkStateHelper != null) {
+            groupState.mPendingCriticalLogCount = mPersistence.countLogs(groupState.mName, Flags.CRITICAL);
+        }
+    }
+
+    /**
+     * Set how a group batches logs while the current network is metered.
+     * Critical logs are still sent on their own at the regular interval of the group.
+     * This applies to groups with the default batch time interval, custom intervals are persisted and not affected.
+     *
+     * @param groupName         the name of a group.
+     * @param batchTimeInterval time interval for a next batch of normal logs on metered networks.
+     * @param maxLogsPerBatch   maximum log count per batch on metered networks.
+     */
+    @VisibleForTesting
+    void setMeteredNetworkPolicy(@NonNull String groupName, long batchTimeInterval, int maxLogsPerBatch) {
+        GroupState groupState = mGroupStates.get(groupName);
+        if (groupState == null) {
+            AppCenterLog.warn(LOG_TAG, "Cannot set metered network policy of unknown group " + groupName);
+            return;
+        }
+        groupState.mMeteredBatchTimeInterval = batchTimeInterval;
+        groupState.mMeteredMaxLogsPerBatch = maxLogsPerBatch;
+    }
+
+    /**
+     * Check whether the metered network policy applies.
+     *
+     * @return true if current network is metered, false otherwise.
+     */
+    private boolean isNetworkMetered() {
+        return mNetworkStateHelper != null && mNetworkStateHelper.isNetworkMetered();
+    }
+
+    @Override
+    public void onNetworkMeteredUpdated(boolean metered) {
+        if (metered) {
+            return;
+        }
+
+        /* This is called from a connectivity thread, all channel operations happen on the App Center thread. */
+        mAppCenterHandler.post(new Runnable() {
+
+            @Override
+            public void run() {
+                flushOnUnmeteredNetwork();
+            }
+        });
+    }
+
+    /**
+     * Send everything that was held back while on a metered network.
+     */
+    @VisibleForTesting
+    void flushOnUnmeteredNetwork() {
+        if (!mEnabled) {
+            return;
+        }
+        AppCenterLog.debug(LOG_TAG, "Network is unmetered, sending pending logs now.");
+        for (GroupState groupState : mGroupStates.values()) {
+            boolean canSend = mAppSecret != null || groupState.mIngestion != mIngestion;
+            if (canSend && !groupState.mPaused && groupState.mPendingLogCount > 0) {
+                triggerIngestion(groupState);
+            }
+        }
+    }
+
+    @Override
+    public void flush(long timeout, @NonNull FlushListener listener) {
+        AppCenterLog.debug(LOG_TAG, "flush(" + timeout + ")");
+        loadDeferredStorage();
+        FlushRequest flushRequest = new FlushRequest(listener);
+        mFlushRequests.add(flushRequest);
+        mAppCenterHandler.postDelayed(flushRequest, Math.max(timeout, 0));
+
+        /* Trigger every group right away, each success triggers again until storage is drained. */
+        if (mEnabled) {
+            for (GroupState groupState : new ArrayList<>(mGroupStates.values())) {
+                if (mAppSecret != null || groupState.mIngestion != mIngestion) {
+                    checkPendingLogs(groupState);
+                }
+            }
+        }
+        checkFlushCompleted();
+    }
+
+    /**
+     * Complete flush requests if there is nothing more that can be sent.
+     */
+    private void checkFlushCompleted() {
+        if (mFlushRequests.isEmpty()) {
+            return;
+        }
+        if (mEnabled && mIngestion.isEnabled()) {
+            for (GroupState groupState : mGroupStates.values()) {
+                if (!groupState.mSendingBatches.isEmpty()) {
+                    return;
+                }
+                boolean canSend = mAppSecret != null || groupState.mIngestion != mIngestion;
+                if (canSend && !groupState.mPaused && groupState.mPendingLogCount > 0) {
+                    return;
+                }
+            }
+        }
+        int remainingLogCount = countRemainingLogs();
+        List<FlushRequest> flushRequests = new ArrayList<>(mFlushRequests);
+        mFlushRequests.clear();
+        for (FlushRequest flushRequest : flushRequests) {
+            mAppCenterHandler.removeCallbacks(flushRequest);
+            flushRequest.mListener.onFlushCompleted(remainingLogCount);
+        }
+    }
+
+    /**
+     * Count logs still in storage for all groups.
+     *
+     * @return log count.
+     */
+    private int countRemainingLogs() {
+        int count = 0;
+        for (String groupName : mGroupStates.keySet()) {
+            count += mPersistence.countLogs(groupName);
+        }
+        return count;
     }
 
     @VisibleForTesting
@@ -801,6 +1235,9 @@ public class DefaultChannel implements Channel {
     @Override
     public void shutdown() {
         mEnabled = false;
+        if (mNetworkStateHelper != null) {
+            mNetworkStateHelper.removeMeteredListener(this);
+        }
         suspend(false, new CancellationException());
     }
 
@@ -817,6 +1254,35 @@ public class DefaultChannel implements Channel {
         }
     }
 
+    /**
+     * Flush in progress, runs when its timeout expires.
+     */
+    private class FlushRequest implements Runnable {
+
+        /**
+         * Listener to call on completion.
+         */
+        final FlushListener mListener;
+
+        /**
+         * Init.
+         *
+         * @param listener listener to call on completion.
+         */
+        FlushRequest(FlushListener listener) {
+            mListener = listener;
+        }
+
+        @Override
+        public void run() {
+            if (mFlushRequests.remove(this)) {
+                int remainingLogCount = countRemainingLogs();
+                AppCenterLog.debug(LOG_TAG, "Flush timed out with " + remainingLogCount + " logs remaining.");
+                mListener.onFlushCompleted(remainingLogCount);
+            }
+        }
+    }
+
     /**
      * State for a specific log group.
      */
@@ -838,6 +1304,12 @@ public class DefaultChannel implements Channel {
          */
         final long mBatchTimeInterval;
 
+        /**
+         * Whether the batch time interval was customized, such intervals are persisted across launches
+         * and exempt from the metered network policy and timer slack.
+         */
+        final boolean mCustomBatchTimeInterval;
+
         /**
          * Maximum number of batches in parallel.
          */
@@ -846,7 +1318,7 @@ public class DefaultChannel implements Channel {
         /**
          * Batches being currently sent to ingestion.
          */
-        final Map<String, List<Log>> mSendingBatches = new HashMap<>();
+        final Map<String, SendingBatch> mSendingBatches = new HashMap<>();
 
         /**
          * Ingestion for the group state.
@@ -863,11 +1335,31 @@ public class DefaultChannel implements Channel {
          */
         int mPendingLogCount;
 
+        /**
+         * Pending critical log count not part of a batch yet.
+         */
+        int mPendingCriticalLogCount;
+
+        /**
+         * Time to wait before 2 batches of normal logs on metered networks, in ms.
+         */
+        long mMeteredBatchTimeInterval;
+
+        /**
+         * Maximum log count per batch on metered networks.
+         */
+        int mMeteredMaxLogsPerBatch;
+
         /**
          * Is timer scheduled.
          */
         boolean mScheduled;
 
+        /**
+         * Uptime at which ingestion is due when {@link #mScheduled} is true.
+         */
+        long mDeadline;
+
         /**
          * Indicates if the group is paused.
          */
@@ -878,19 +1370,6 @@ public class DefaultChannel implements Channel {
          */
         final Collection<String> mPausedTargetKeys = new HashSet<>();
 
-        /**
-         * Runnable that triggers ingestion of this group data
-         * and triggers itself in {@link #mBatchTimeInterval} ms.
-         */
-        final Runnable mRunnable = new Runnable() {
-
-            @Override
-            public void run() {
-                mScheduled = false;
-                triggerIngestion(GroupState.this);
-            }
-        };
-
         /**
          * Init.
          *
@@ -905,9 +1384,126 @@ public class DefaultChannel implements Channel {
             mName = name;
             mMaxLogsPerBatch = maxLogsPerBatch;
             mBatchTimeInterval = batchTimeInterval;
+            mCustomBatchTimeInterval = batchTimeInterval > MINIMUM_TRANSMISSION_INTERVAL;
+            mMeteredBatchTimeInterval = batchTimeInterval * METERED_BATCH_TIME_INTERVAL_FACTOR;
+            mMeteredMaxLogsPerBatch = maxLogsPerBatch * METERED_MAX_LOGS_PER_BATCH_FACTOR;
             mMaxParallelBatches = maxParallelBatches;
             mIngestion = ingestion;
             mListener = listener;
         }
     }
+
+    /**
+     * Batch of logs being sent.
+     * While the batch waits for a retry, logs are released and reloaded from persistence when needed again.
+     * Released logs are weakly referenced so that listeners keep getting the same instances as long as they are used.
+     */
+    @VisibleForTesting
+    class SendingBatch extends LogContainer {
+
+        /**
+         * Group name.
+         */
+        final String mGroupName;
+
+        /**
+         * Number of logs in the batch.
+         */
+        final int mLogCount;
+
+        /**
+         * Log identifiers in persistence once logs are released, null otherwise.
+         */
+        private List<Long> mLogIdentifiers;
+
+        /**
+         * Released logs, in the same order as {@link #mLogIdentifiers}.
+         */
+        private List<WeakReference<Log>> mReleasedLogs;
+
+        /**
+         * Init.
+         *
+         * @param groupName group name.
+         * @param logs      logs of the batch.
+         */
+        SendingBatch(String groupName, List<Log> logs) {
+            mGroupName = groupName;
+            mLogCount = logs.size();
+            super.setLogs(logs);
+        }
+
+        /**
+         * Get the logs, reloading them from persistence if they were released and are not used anymore.
+         * Reloaded logs are not kept in the batch.
+         *
+         * @return logs of the batch.
+         */
+        @Override
+        public synchronized List<Log> getLogs() {
+            if (mLogIdentifiers == null) {
+                return super.getLogs();
+            }
+            Log[] logs = new Log[mLogIdentifiers.size()];
+            List<Long> reloadedIdentifiers = new ArrayList<>();
+            for (int i = 0; i < logs.length; i++) {
+                logs[i] = mReleasedLogs.get(i).get();
+                if (logs[i] == null) {
+                    reloadedIdentifiers.add(mLogIdentifiers.get(i));
+                }
+            }
+            if (!reloadedIdentifiers.isEmpty()) {
+                Map<Long, Log> reloadedLogs = new HashMap<>();
+                mPersistence.reloadLogs(mGroupName, reloadedIdentifiers, reloadedLogs);
+                for (int i = 0; i < logs.length; i++) {
+                    if (logs[i] == null) {
+                        logs[i] = reloadedLogs.get(mLogIdentifiers.get(i));
+                    }
+                }
+            }
+
+            /* Logs that cannot be read anymore are skipped. */
+            List<Log> result = new ArrayList<>(logs.length);
+            for (Log log : logs) {
+                if (log != null) {
+                    result.add(log);
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public synchronized void setLogs(List<Log> logs) {
+            mLogIdentifiers = null;
+            mReleasedLogs = null;
+            super.setLogs(logs);
+        }
+
+        /**
+         * Release logs and keep only their identifiers in persistence.
+         *
+         * @param logIdentifiers log identifiers in persistence, in the same order as the logs.
+         */
+        synchronized void release(@NonNull List<Long> logIdentifiers) {
+            List<Log> logs = super.getLogs();
+            if (logs == null || logs.size() != logIdentifiers.size()) {
+                return;
+            }
+            mReleasedLogs = new ArrayList<>(logs.size());
+            for (Log log : logs) {
+                mReleasedLogs.add(new WeakReference<>(log));
+            }
+            mLogIdentifiers = logIdentifiers;
+            super.setLogs(null);
+        }
+
+        /**
+         * Check if logs are released.
+         *
+         * @return true if logs are reloaded from persistence when needed.
+         */
+        synchronized boolean isReleased() {
+            return mLogIdentifiers != null;
+        }
+    }
 }
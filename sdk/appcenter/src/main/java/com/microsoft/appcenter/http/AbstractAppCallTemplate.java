@@ -36,4 +36,9 @@ public abstract class AbstractAppCallTemplate implements HttpClient.CallTemplate
             AppCenterLog.verbose(LOG_TAG, "Headers: " + logHeaders);
         }
     }
+
+    @Override
+    public CallOptions getCallOptions() {
+        return null;
+    }
 }
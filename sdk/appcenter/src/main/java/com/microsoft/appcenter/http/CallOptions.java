@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.http;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Collection;
+
+/**
+ * Options of a call, provided by {@link HttpClient.CallTemplate#getCallOptions()}.
+ * Clients are free to ignore options they don't support, the defaults match a call without options.
+ */
+public class CallOptions {
+
+    /**
+     * Priority of the call, one of the PRIORITY constants of {@link HttpClient}.
+     */
+    private int mPriority = HttpClient.PRIORITY_DEFAULT;
+
+    /**
+     * Whether the response body of a successful call is used.
+     */
+    private boolean mResponseBodyNeeded = true;
+
+    /**
+     * Response headers of a successful call that are used, null for all of them.
+     */
+    private Collection<String> mResponseHeaderNames;
+
+    /**
+     * Storage of the request body between tries, null to build the body again for every try.
+     */
+    private RequestBodyCache mRequestBodyCache;
+
+    /**
+     * Whether the call can be called back on the looper of the thread that started it.
+     */
+    private boolean mCallerLooperCallback;
+
+    /**
+     * Get the options of a call.
+     *
+     * @param callTemplate call template, can be null.
+     * @return options of the call template, or default options if it has none.
+     */
+    @NonNull
+    public static CallOptions of(@Nullable HttpClient.CallTemplate callTemplate) {
+        CallOptions options = callTemplate != null ? callTemplate.getCallOptions() : null;
+        return options != null ? options : new CallOptions();
+    }
+
+    /**
+     * Get the priority of the call.
+     * When calls are waiting for a thread, the ones with the highest priority start first.
+     *
+     * @return priority, higher values start first. {@link HttpClient#PRIORITY_DEFAULT} by default.
+     */
+    public int getPriority() {
+        return mPriority;
+    }
+
+    /**
+     * Set the priority of the call.
+     *
+     * @param priority priority, higher values start first.
+     */
+    public void setPriority(int priority) {
+        mPriority = priority;
+    }
+
+    /**
+     * Check if the response body of a successful call is used.
+     * Clients can read and discard it instead of copying it into {@link HttpResponse},
+     * failed responses are still provided in full to {@link HttpException}.
+     *
+     * @return true to get the body in {@link HttpResponse#getPayload()}, false to get an empty payload. True by default.
+     */
+    public boolean isResponseBodyNeeded() {
+        return mResponseBodyNeeded;
+    }
+
+    /**
+     * Set whether the response body of a successful call is used.
+     * Calls like log uploads only need the status code on success,
+     * buffering a response body that is never read is wasted memory and work on every batch.
+     *
+     * @param responseBodyNeeded false to get an empty payload.
+     */
+    public void setResponseBodyNeeded(boolean responseBodyNeeded) {
+        mResponseBodyNeeded = responseBodyNeeded;
+    }
+
+    /**
+     * Get the response headers of a successful call that are used.
+     *
+     * @return header names to get in {@link HttpResponse#getHeaders()}, null for all headers (default).
+     */
+    @Nullable
+    public Collection<String> getResponseHeaderNames() {
+        return mResponseHeaderNames;
+    }
+
+    /**
+     * Set the response headers of a successful call that are used.
+     *
+     * @param responseHeaderNames header names, can be empty. Null for all headers.
+     */
+    public void setResponseHeaderNames(@Nullable Collection<String> responseHeaderNames) {
+        mResponseHeaderNames = responseHeaderNames;
+    }
+
+    /**
+     * Get the storage of the request body as sent on the wire, after serialization and compression.
+     * When the call is made again with the same options, clients send the stored body
+     * instead of building it again. Streamed bodies are stored with a {@link RequestBodyRecorder}.
+     *
+     * @return request body cache, null by default.
+     */
+    @Nullable
+    public RequestBodyCache getRequestBodyCache() {
+        return mRequestBodyCache;
+    }
+
+    /**
+     * Set the storage of the request body, the same options must be returned for every try of the call.
+     *
+     * @param requestBodyCache request body cache, null to build the body for every try.
+     */
+    public void setRequestBodyCache(@Nullable RequestBodyCache requestBodyCache) {
+        mRequestBodyCache = requestBodyCache;
+    }
+
+    /**
+     * Check if the call can be called back on the looper of the thread that started it.
+     * Otherwise callbacks run on the main thread, which can be required by them.
+     *
+     * @return true to call back on the caller looper, false by default.
+     */
+    public boolean isCallerLooperCallback() {
+        return mCallerLooperCallback;
+    }
+
+    /**
+     * Set whether the call can be called back on the looper of the thread that started it.
+     * The calling thread can be a system thread, such as the one of network callbacks when calls are resumed,
+     * so the callbacks must not depend on any specific thread.
+     *
+     * @param callerLooperCallback true to call back on the caller looper.
+     */
+    public void setCallerLooperCallback(boolean callerLooperCallback) {
+        mCallerLooperCallback = callerLooperCallback;
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.http;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.microsoft.appcenter.utils.AppCenterLog;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static com.microsoft.appcenter.AppCenter.LOG_TAG;
+import static com.microsoft.appcenter.http.HttpClientRetryer.RETRY_INTERVALS;
+
+/**
+ * Retry state shared by all the calls made through {@link HttpClientRetryer}, whatever the client or log group.
+ * After a number of consecutive failures to a host, its circuit opens and calls to that host wait instead of being
+ * made. Once the wait is over, a single call is made to probe the host while others keep waiting: its success closes
+ * the circuit and its failure opens it again for a longer time. A retry after delay received from a host applies to
+ * all the calls to that host.
+ */
+class CircuitBreaker {
+
+    /**
+     * Default number of consecutive failures to a host that opens its circuit.
+     */
+    static final int DEFAULT_FAILURE_THRESHOLD = 3;
+
+    /**
+     * Shared instance.
+     */
+    private static CircuitBreaker sInstance;
+
+    /**
+     * State per host name.
+     */
+    private final Map<String, HostState> mHosts = new HashMap<>();
+
+    /**
+     * Number of consecutive failures to a host that opens its circuit.
+     */
+    private int mFailureThreshold = DEFAULT_FAILURE_THRESHOLD;
+
+    /**
+     * Maximum number of retries of a call when using exponential backoff.
+     */
+    private int mMaxRetries;
+
+    /**
+     * Base delay of exponential backoff in milliseconds, 0 to use {@link HttpClientRetryer#RETRY_INTERVALS}.
+     */
+    private long mBaseDelay;
+
+    /**
+     * Maximum delay of exponential backoff in milliseconds.
+     */
+    private long mMaxDelay;
+
+    @VisibleForTesting
+    CircuitBreaker() {
+    }
+
+    /**
+     * Get shared instance.
+     *
+     * @return shared instance.
+     */
+    static synchronized CircuitBreaker getSharedInstance() {
+        if (sInstance == null) {
+            sInstance = new CircuitBreaker();
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    static synchronized void setSharedInstance(CircuitBreaker circuitBreaker) {
+        sInstance = circuitBreaker;
+    }
+
+    @VisibleForTesting
+    static synchronized void unsetSharedInstance() {
+        sInstance = null;
+    }
+
+    /**
+     * Set the number of consecutive failures to a host that opens its circuit.
+     *
+     * @param failureThreshold number of failures.
+     */
+    synchronized void setFailureThreshold(int failureThreshold) {
+        mFailureThreshold = failureThreshold;
+    }
+
+    /**
+     * Use exponential backoff with full jitter, or restore the default retry schedule.
+     *
+     * @param maxRetries maximum number of retries of a call.
+     * @param baseDelay  delay in milliseconds that is doubled for every retry, 0 to restore the default schedule.
+     * @param maxDelay   maximum delay in milliseconds.
+     */
+    synchronized void setBackoff(int maxRetries, long baseDelay, long maxDelay) {
+        mMaxRetries = maxRetries;
+        mBaseDelay = baseDelay;
+        mMaxDelay = maxDelay;
+    }
+
+    /**
+     * Get the maximum number of retries of a call.
+     *
+     * @return maximum number of retries.
+     */
+    synchronized int getMaxRetries() {
+        return mBaseDelay > 0 ? mMaxRetries : RETRY_INTERVALS.length;
+    }
+
+    /**
+     * Get a delay before retrying.
+     *
+     * @param attempt number of previous retries, 0 for the first retry.
+     * @param random  random generator for jitter.
+     * @return delay in milliseconds.
+     */
+    synchronized long getBackoffDelay(int attempt, Random random) {
+        if (mBaseDelay > 0) {
+
+            /* Full jitter: anywhere between 0 and the exponential delay, capped. */
+            long delay = mMaxDelay;
+            if (attempt < Long.SIZE - 1 && mBaseDelay <= mMaxDelay >> attempt) {
+                delay = mBaseDelay << attempt;
+            }
+            return (long) (random.nextDouble() * delay);
+        }
+        long interval = RETRY_INTERVALS[Math.min(attempt, RETRY_INTERVALS.length - 1)];
+        long delay = interval / 2;
+        return delay + random.nextInt((int) delay);
+    }
+
+    /**
+     * Get how long a call to a host must wait before being made.
+     * When the circuit of the host is half open, the first caller gets no delay and is the probe.
+     *
+     * @param host host name.
+     * @param call the call asking.
+     * @return delay in milliseconds, 0 to make the call now.
+     */
+    synchronized long getCallDelay(String host, Object call) {
+        HostState hostState = getHostState(host);
+        long now = monotonicTimeMillis();
+        long delay = Math.max(hostState.mRetryAfterTime - now, 0);
+        if (hostState.mOpenCount > 0) {
+            if (now < hostState.mOpenTime) {
+                delay = Math.max(hostState.mOpenTime - now, delay);
+            } else if (hostState.mProbe == null && delay == 0) {
+                AppCenterLog.debug(LOG_TAG, "Circuit for " + host + " is half open, probing.");
+                hostState.mProbe = call;
+            } else if (hostState.mProbe != call) {
+                delay = Math.max(hostState.mOpenDuration, delay);
+            }
+        }
+        return delay;
+    }
+
+    /**
+     * Called when a host answered a call, even with a non recoverable error.
+     *
+     * @param host host name.
+     */
+    synchronized void onCallSucceeded(String host) {
+        HostState hostState = getHostState(host);
+        if (hostState.mOpenCount > 0) {
+            AppCenterLog.debug(LOG_TAG, "Circuit for " + host + " is closed.");
+        }
+        hostState.mFailureCount = 0;
+        hostState.mOpenCount = 0;
+        hostState.mProbe = null;
+    }
+
+    /**
+     * Called when a call to a host failed with a recoverable error.
+     *
+     * @param host       host name.
+     * @param call       the call that failed.
+     * @param retryAfter delay requested by the host in milliseconds, 0 if none.
+     * @param random     random generator for jitter.
+     */
+    synchronized void onCallFailed(String host, Object call, long retryAfter, Random random) {
+        HostState hostState = getHostState(host);
+        long now = monotonicTimeMillis();
+        if (retryAfter > 0) {
+            hostState.mRetryAfterTime = Math.max(hostState.mRetryAfterTime, now + retryAfter);
+        }
+        hostState.mFailureCount++;
+        boolean probeFailed = hostState.mProbe != null && hostState.mProbe == call;
+        if (probeFailed || (hostState.mOpenCount == 0 && hostState.mFailureCount >= mFailureThreshold)) {
+            hostState.mProbe = null;
+            hostState.mOpenDuration = getBackoffDelay(hostState.mOpenCount, random);
+            hostState.mOpenTime = now + hostState.mOpenDuration;
+            hostState.mOpenCount++;
+            AppCenterLog.warn(LOG_TAG, "Circuit for " + host + " is open for " + hostState.mOpenDuration + " ms after " + hostState.mFailureCount + " consecutive failures.");
+        }
+    }
+
+    /**
+     * Called when a call ends without telling whether the host is failing (canceled or failed before reaching it),
+     * so that another call can probe the host if that one was probing.
+     *
+     * @param host host name.
+     * @param call the call that ended.
+     */
+    synchronized void releaseProbe(String host, Object call) {
+        HostState hostState = getHostState(host);
+        if (hostState.mProbe == call) {
+            hostState.mProbe = null;
+        }
+    }
+
+    /**
+     * Get or create the state of a host. Must be called while holding the lock.
+     *
+     * @param host host name.
+     * @return host state.
+     */
+    private HostState getHostState(String host) {
+        HostState hostState = mHosts.get(host);
+        if (hostState == null) {
+            hostState = new HostState();
+            mHosts.put(host, hostState);
+        }
+        return hostState;
+    }
+
+    /**
+     * Get a time that is not affected by clock changes.
+     *
+     * @return time in milliseconds.
+     */
+    @VisibleForTesting
+    long monotonicTimeMillis() {
+        return System.nanoTime() / 1000000L;
+    }
+
+    /**
+     * Circuit state of a host.
+     */
+    private static class HostState {
+
+        /**
+         * Number of consecutive failures.
+         */
+        int mFailureCount;
+
+        /**
+         * Number of times the circuit opened since it was last closed, 0 when closed.
+         */
+        int mOpenCount;
+
+        /**
+         * Time until which the circuit stays open.
+         */
+        long mOpenTime;
+
+        /**
+         * Duration of the last opening, calls wait that long while another call is probing.
+         */
+        long mOpenDuration;
+
+        /**
+         * Time until which calls wait as requested by the host.
+         */
+        long mRetryAfterTime;
+
+        /**
+         * The call probing the host while the circuit is half open, null otherwise.
+         */
+        Object mProbe;
+    }
+}
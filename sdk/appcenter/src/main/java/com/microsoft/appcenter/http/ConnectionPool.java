@@ -0,0 +1,393 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.http;
+
+import android.annotation.SuppressLint;
+import android.net.ssl.SSLSockets;
+import android.os.Build;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.microsoft.appcenter.utils.AppCenterLog;
+
+import java.io.IOException;
+import java.security.KeyManagementException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.net.ssl.HandshakeCompletedEvent;
+import javax.net.ssl.HandshakeCompletedListener;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+import static com.microsoft.appcenter.AppCenter.LOG_TAG;
+
+/**
+ * Keeps track of the sockets of HTTPS connections made by the SDK.
+ * {@link HttpsURLConnection} keeps connections open in a pool per host and reuses them as long as response streams are
+ * read to the end and closed. This class measures how often that happens and closes the sockets of a host
+ * once no call used it for longer than the idle timeout.
+ * Idle sockets are closed when the next call starts or when a client is closed, there is no timer.
+ * All the sockets come from a single SSL context, so that TLS sessions are cached and resumed across connections.
+ */
+class ConnectionPool implements ConnectionTrackingSocketFactory.Listener {
+
+    /**
+     * Default idle timeout in milliseconds.
+     */
+    static final long DEFAULT_IDLE_TIMEOUT = 60 * 1000;
+
+    /**
+     * Protocol of the SSL context when TLS 1.2 does not need to be forced.
+     */
+    @VisibleForTesting
+    static final String DEFAULT_PROTOCOL = "TLS";
+
+    /**
+     * Number of TLS sessions kept for resumption, the SDK only calls a few hosts.
+     */
+    @VisibleForTesting
+    static final int SESSION_CACHE_SIZE = 16;
+
+    /**
+     * How long a TLS session can be resumed in seconds.
+     */
+    @VisibleForTesting
+    static final int SESSION_TIMEOUT = 24 * 60 * 60;
+
+    /**
+     * Shared instance.
+     */
+    private static ConnectionPool sInstance;
+
+    /**
+     * Socket factory to use for all SDK connections, sockets can only be reused by connections using the same factory.
+     */
+    private final SSLSocketFactory mSocketFactory;
+
+    /**
+     * Statistics.
+     */
+    private final ConnectionStatistics mStatistics = new ConnectionStatistics();
+
+    /**
+     * State per host name.
+     */
+    private final Map<String, HostState> mHosts = new HashMap<>();
+
+    /**
+     * Flag set when a socket is created by the current thread during a call.
+     */
+    private final ThreadLocal<Boolean> mSocketCreated = new ThreadLocal<>();
+
+    /**
+     * Idle timeout in milliseconds, 0 to close sockets as soon as no call uses them.
+     */
+    private long mIdleTimeout = DEFAULT_IDLE_TIMEOUT;
+
+    /**
+     * Listener of call timings.
+     */
+    private volatile HttpCallTimingListener mCallTimingListener;
+
+    /**
+     * Init.
+     *
+     * @param socketFactory factory creating the sockets.
+     */
+    @VisibleForTesting
+    ConnectionPool(SSLSocketFactory socketFactory) {
+        mSocketFactory = new ConnectionTrackingSocketFactory(socketFactory, this);
+    }
+
+    /**
+     * Get shared instance.
+     *
+     * @return shared instance.
+     */
+    static synchronized ConnectionPool getSharedInstance() {
+        if (sInstance == null) {
+
+            /*
+             * Make sure we use TLS 1.2 when the device supports it but not enabled by default.
+             * Don't hardcode TLS version when enabled by default to support future versions of TLS
+             * such as say 1.3 without having to patch this code.
+             *
+             * TLS 1.2 was enabled by default only on Android 5.0:
+             * https://developer.android.com/about/versions/android-5.0-changes#ssl
+             * https://developer.android.com/reference/javax/net/ssl/SSLSocket#default-configuration-for-different-android-versions
+             *
+             * There is a problem that TLS 1.2 is still disabled by default on some Samsung devices
+             * with API 21, so apply the rule to this API level as well.
+             * See https://github.com/square/okhttp/issues/2372#issuecomment-244807676
+             */
+            SSLSocketFactory socketFactory;
+            if (Build.VERSION.SDK_INT <= Build.VERSION_CODES.LOLLIPOP) {
+                socketFactory = new TLS1_2SocketFactory();
+            } else {
+
+                /* Keep the default factory if the application replaced it, for example to trust its own certificates. */
+                socketFactory = HttpsURLConnection.getDefaultSSLSocketFactory();
+                if (socketFactory == SSLSocketFactory.getDefault()) {
+                    SSLContext sslContext = createSSLContext(DEFAULT_PROTOCOL);
+                    if (sslContext != null) {
+                        socketFactory = sslContext.getSocketFactory();
+                    }
+                }
+            }
+            sInstance = new ConnectionPool(socketFactory);
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    static synchronized void unsetSharedInstance() {
+        sInstance = null;
+    }
+
+    /**
+     * Create an SSL context with a client session cache sized for the SDK.
+     *
+     * @param protocol protocol name.
+     * @return SSL context, null if it cannot be created.
+     */
+    static SSLContext createSSLContext(String protocol) {
+        try {
+            SSLContext sslContext = SSLContext.getInstance(protocol);
+            sslContext.init(null, null, null);
+            SSLSessionContext sessionContext = sslContext.getClientSessionContext();
+            if (sessionContext != null) {
+                sessionContext.setSessionCacheSize(SESSION_CACHE_SIZE);
+                sessionContext.setSessionTimeout(SESSION_TIMEOUT);
+            }
+            return sslContext;
+        } catch (KeyManagementException | NoSuchAlgorithmException e) {
+            AppCenterLog.warn(LOG_TAG, "Failed to create SSL context for " + protocol, e);
+            return null;
+        }
+    }
+
+    /**
+     * Get the socket factory to set on connections.
+     *
+     * @return socket factory.
+     */
+    SSLSocketFactory getSocketFactory() {
+        return mSocketFactory;
+    }
+
+    /**
+     * Get statistics.
+     *
+     * @return statistics.
+     */
+    ConnectionStatistics getStatistics() {
+        return mStatistics;
+    }
+
+    /**
+     * Set idle timeout.
+     *
+     * @param idleTimeout idle timeout in milliseconds, 0 to close sockets as soon as no call uses them.
+     */
+    synchronized void setIdleTimeout(long idleTimeout) {
+        mIdleTimeout = idleTimeout;
+    }
+
+    /**
+     * Set the listener of call timings.
+     *
+     * @param listener listener, null to remove it.
+     */
+    void setCallTimingListener(HttpCallTimingListener listener) {
+        mCallTimingListener = listener;
+    }
+
+    /**
+     * Called on the calling thread before connecting.
+     *
+     * @param host host name.
+     */
+    void onCallStarted(String host) {
+        closeIdleSockets(false);
+        synchronized (this) {
+            getHostState(host).mActiveCalls++;
+        }
+        mSocketCreated.set(false);
+    }
+
+    /**
+     * Called on the calling thread when the response status was received.
+     */
+    void onResponse() {
+        mStatistics.onResponse(isNewConnection());
+    }
+
+    /**
+     * Check if the current call opened a new connection.
+     *
+     * @return true if a socket was created by the calling thread since the call started.
+     */
+    boolean isNewConnection() {
+        return Boolean.TRUE.equals(mSocketCreated.get());
+    }
+
+    /**
+     * Called on the calling thread when the timing of a call is known.
+     * Listener errors are logged, they must not change the outcome of the call.
+     *
+     * @param timing call timing.
+     */
+    void onCallTiming(HttpCallTiming timing) {
+        mStatistics.onCallTiming(timing);
+        HttpCallTimingListener listener = mCallTimingListener;
+        if (listener != null) {
+            try {
+                listener.onCallCompleted(timing);
+            } catch (RuntimeException e) {
+                AppCenterLog.error(LOG_TAG, "Call timing listener failed.", e);
+            }
+        }
+    }
+
+    /**
+     * Called on the calling thread when a call completes.
+     *
+     * @param host host name.
+     */
+    void onCallFinished(String host) {
+        synchronized (this) {
+            HostState hostState = getHostState(host);
+            hostState.mActiveCalls--;
+            hostState.mLastUsedTime = monotonicTimeMillis();
+        }
+        mSocketCreated.remove();
+        closeIdleSockets(false);
+    }
+
+    /**
+     * Close the sockets of hosts that have no active call.
+     *
+     * @param all true to close them whatever the idle time, false to close only the ones idle for longer than the timeout.
+     */
+    synchronized void closeIdleSockets(boolean all) {
+        long now = monotonicTimeMillis();
+        for (Map.Entry<String, HostState> entry : mHosts.entrySet()) {
+            HostState hostState = entry.getValue();
+            if (hostState.mActiveCalls == 0 && !hostState.mSockets.isEmpty() && (all || now - hostState.mLastUsedTime >= mIdleTimeout)) {
+                AppCenterLog.debug(LOG_TAG, "Closing " + hostState.mSockets.size() + " idle connection(s) to " + entry.getKey());
+
+                /* No call to this host is in progress, so sockets are either idle in the platform pool or already closed. */
+                for (SSLSocket socket : hostState.mSockets) {
+                    try {
+                        socket.close();
+                    } catch (IOException e) {
+                        AppCenterLog.verbose(LOG_TAG, "Failed to close idle connection.", e);
+                    }
+                }
+                hostState.mSockets.clear();
+            }
+        }
+    }
+
+    @Override
+    public void onSocketCreated(SSLSocket socket, final String host) {
+        mSocketCreated.set(true);
+        enableSessionTickets(socket);
+        final long startTime = monotonicTimeMillis();
+        final long startWallTime = System.currentTimeMillis();
+        socket.addHandshakeCompletedListener(new HandshakeCompletedListener() {
+
+            @Override
+            public void handshakeCompleted(HandshakeCompletedEvent event) {
+
+                /* A resumed session was created before this socket. */
+                SSLSession session = event.getSession();
+                boolean resumed = session != null && session.getCreationTime() < startWallTime;
+                long duration = monotonicTimeMillis() - startTime;
+                mStatistics.onHandshakeCompleted(duration, resumed);
+                AppCenterLog.verbose(LOG_TAG, (resumed ? "Resumed" : "Full") + " TLS handshake with " + host + " completed in " + duration + " ms.");
+            }
+        });
+        if (host != null) {
+            synchronized (this) {
+                List<SSLSocket> sockets = getHostState(host).mSockets;
+                for (Iterator<SSLSocket> iterator = sockets.iterator(); iterator.hasNext(); ) {
+                    if (iterator.next().isClosed()) {
+                        iterator.remove();
+                    }
+                }
+                sockets.add(socket);
+            }
+        }
+    }
+
+    /**
+     * Let the server resume the session with a ticket, which does not require the server to keep a session cache.
+     *
+     * @param socket socket before the handshake.
+     */
+    @SuppressLint("NewApi")
+    private static void enableSessionTickets(SSLSocket socket) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && SSLSockets.isSupportedSocket(socket)) {
+            SSLSockets.setUseSessionTickets(socket, true);
+        }
+    }
+
+    /**
+     * Get or create the state of a host. Must be called while holding the lock.
+     *
+     * @param host host name.
+     * @return host state.
+     */
+    private HostState getHostState(String host) {
+        HostState hostState = mHosts.get(host);
+        if (hostState == null) {
+            hostState = new HostState();
+            mHosts.put(host, hostState);
+        }
+        return hostState;
+    }
+
+    /**
+     * Get a time that is not affected by clock changes.
+     *
+     * @return time in milliseconds.
+     */
+    @VisibleForTesting
+    long monotonicTimeMillis() {
+        return System.nanoTime() / 1000000L;
+    }
+
+    /**
+     * Connection state of a host.
+     */
+    private static class HostState {
+
+        /**
+         * Sockets opened to this host that may still be open.
+         */
+        final List<SSLSocket> mSockets = new ArrayList<>();
+
+        /**
+         * Number of calls to this host in progress.
+         */
+        int mActiveCalls;
+
+        /**
+         * Time when the last call to this host completed.
+         */
+        long mLastUsedTime;
+    }
+}
@@ -0,0 +1,504 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.http;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Connection reuse and TLS handshake statistics of the HTTPS calls made by the SDK,
+ * the time spent in each step of the calls that received a response,
+ * as well as round trip time and throughput estimates per host that timeouts are derived from.
+ */
+public class ConnectionStatistics {
+
+    /**
+     * Minimum request body size in bytes to measure throughput.
+     */
+    static final long MIN_THROUGHPUT_SAMPLE_SIZE = 16 * 1024;
+
+    /**
+     * Maximum number of times the read timeout of a host is doubled, enough for any timeout to reach its maximum.
+     */
+    static final int MAX_READ_TIMEOUT_BACKOFF = 6;
+
+    /**
+     * Number of calls that received a response.
+     */
+    private long mResponseCount;
+
+    /**
+     * Number of calls that had to open a new connection.
+     */
+    private long mNewConnectionCount;
+
+    /**
+     * Number of completed TLS handshakes.
+     */
+    private long mHandshakeCount;
+
+    /**
+     * Total duration of TLS handshakes in milliseconds.
+     */
+    private long mHandshakeTime;
+
+    /**
+     * Number of completed TLS handshakes that resumed a previous session.
+     */
+    private long mResumedHandshakeCount;
+
+    /**
+     * Total duration of resumed TLS handshakes in milliseconds.
+     */
+    private long mResumedHandshakeTime;
+
+    /**
+     * Number of calls that received a response and whose timing was recorded.
+     */
+    private long mTimedCallCount;
+
+    /**
+     * Total time waiting for a thread in milliseconds.
+     */
+    private long mQueueWaitTime;
+
+    /**
+     * Total time getting a connection in milliseconds.
+     */
+    private long mConnectTime;
+
+    /**
+     * Total time writing request bodies in milliseconds.
+     */
+    private long mRequestWriteTime;
+
+    /**
+     * Total time waiting for response status in milliseconds.
+     */
+    private long mTimeToFirstByte;
+
+    /**
+     * Total time reading response bodies in milliseconds.
+     */
+    private long mResponseReadTime;
+
+    /**
+     * Total request body bytes sent.
+     */
+    private long mBytesSent;
+
+    /**
+     * Total response body bytes received.
+     */
+    private long mBytesReceived;
+
+    /**
+     * Estimates per host name.
+     */
+    private final Map<String, HostEstimates> mHostEstimates = new HashMap<>();
+
+    /**
+     * Record a call that received a response.
+     *
+     * @param newConnection true if the call opened a new connection, false if it reused a pooled one.
+     */
+    synchronized void onResponse(boolean newConnection) {
+        mResponseCount++;
+        if (newConnection) {
+            mNewConnectionCount++;
+        }
+    }
+
+    /**
+     * Record a completed TLS handshake.
+     *
+     * @param duration handshake duration in milliseconds.
+     * @param resumed  true if a previous session was resumed, false for a full handshake.
+     */
+    synchronized void onHandshakeCompleted(long duration, boolean resumed) {
+        mHandshakeCount++;
+        mHandshakeTime += duration;
+        if (resumed) {
+            mResumedHandshakeCount++;
+            mResumedHandshakeTime += duration;
+        }
+    }
+
+    /**
+     * Record the timing of a call, calls that did not receive a response are ignored.
+     *
+     * @param timing call timing.
+     */
+    synchronized void onCallTiming(HttpCallTiming timing) {
+        if (timing.getStatusCode() == 0) {
+            return;
+        }
+        mTimedCallCount++;
+        mQueueWaitTime += timing.getQueueWaitTime();
+        mConnectTime += timing.getConnectTime();
+        mRequestWriteTime += timing.getRequestWriteTime();
+        mTimeToFirstByte += timing.getTimeToFirstByte();
+        mResponseReadTime += timing.getResponseReadTime();
+        mBytesSent += timing.getBytesSent();
+        mBytesReceived += timing.getBytesReceived();
+    }
+
+    /**
+     * Record the time between sending a request and receiving the response status.
+     * Smoothed like TCP retransmission timers (RFC 6298).
+     *
+     * @param host     host name.
+     * @param duration duration in milliseconds.
+     */
+    synchronized void onRoundTrip(String host, long duration) {
+        HostEstimates estimates = getHostEstimates(host);
+        if (estimates.mRoundTripTime == 0) {
+            estimates.mRoundTripTime = Math.max(duration, 1);
+            estimates.mRoundTripTimeVariation = duration / 2;
+        } else {
+            estimates.mRoundTripTimeVariation = (3 * estimates.mRoundTripTimeVariation + Math.abs(estimates.mRoundTripTime - duration)) / 4;
+            estimates.mRoundTripTime = Math.max((7 * estimates.mRoundTripTime + duration) / 8, 1);
+        }
+
+        /* A new measurement ends the backoff, as for TCP retransmission timers. */
+        estimates.mReadTimeoutBackoff = 0;
+    }
+
+    /**
+     * Record a read that timed out while waiting for a host, the read timeout of the host is doubled until it answers again.
+     * Backed off like TCP retransmission timers (RFC 6298).
+     *
+     * @param host host name.
+     */
+    synchronized void onReadTimeout(String host) {
+        HostEstimates estimates = getHostEstimates(host);
+        estimates.mReadTimeoutBackoff = Math.min(estimates.mReadTimeoutBackoff + 1, MAX_READ_TIMEOUT_BACKOFF);
+    }
+
+    /**
+     * Record a request body upload, from the start of the upload to the response status.
+     * Small bodies are ignored to measure throughput as they mostly measure latency.
+     *
+     * @param host     host name.
+     * @param length   body length in bytes.
+     * @param duration duration in milliseconds.
+     */
+    synchronized void onUpload(String host, long length, long duration) {
+        if (length == 0) {
+            return;
+        }
+        HostEstimates estimates = getHostEstimates(host);
+        if (estimates.mRequestBodyLength == 0) {
+            estimates.mRequestBodyLength = length;
+        } else {
+            estimates.mRequestBodyLength = (3 * estimates.mRequestBodyLength + length) / 4;
+        }
+        if (length < MIN_THROUGHPUT_SAMPLE_SIZE) {
+            return;
+        }
+        long throughput = length * 1000 / Math.max(duration, 1);
+        if (estimates.mThroughput == 0) {
+            estimates.mThroughput = throughput;
+        } else {
+            estimates.mThroughput = (3 * estimates.mThroughput + throughput) / 4;
+        }
+    }
+
+    /**
+     * Get the smoothed round trip time of a host, including server processing time.
+     *
+     * @param host host name.
+     * @return duration in milliseconds, 0 if no call to that host received a response yet.
+     */
+    public synchronized long getRoundTripTime(String host) {
+        HostEstimates estimates = mHostEstimates.get(host);
+        return estimates == null ? 0 : estimates.mRoundTripTime;
+    }
+
+    /**
+     * Get the round trip time variation of a host.
+     *
+     * @param host host name.
+     * @return duration in milliseconds, 0 if no call to that host received a response yet.
+     */
+    public synchronized long getRoundTripTimeVariation(String host) {
+        HostEstimates estimates = mHostEstimates.get(host);
+        return estimates == null ? 0 : estimates.mRoundTripTimeVariation;
+    }
+
+    /**
+     * Get the smoothed upload throughput to a host.
+     *
+     * @param host host name.
+     * @return throughput in bytes per second, 0 if not measured yet.
+     */
+    public synchronized long getThroughput(String host) {
+        HostEstimates estimates = mHostEstimates.get(host);
+        return estimates == null ? 0 : estimates.mThroughput;
+    }
+
+    /**
+     * Get the number of times the read timeout of a host is doubled after reads that timed out.
+     *
+     * @param host host name.
+     * @return number of times, 0 if the last call to that host did not time out.
+     */
+    public synchronized int getReadTimeoutBackoff(String host) {
+        HostEstimates estimates = mHostEstimates.get(host);
+        return estimates == null ? 0 : estimates.mReadTimeoutBackoff;
+    }
+
+    /**
+     * Get the smoothed length of the request bodies sent to a host, as sent on the wire.
+     *
+     * @param host host name.
+     * @return length in bytes, 0 if no body was sent to that host yet.
+     */
+    public synchronized long getRequestBodyLength(String host) {
+        HostEstimates estimates = mHostEstimates.get(host);
+        return estimates == null ? 0 : estimates.mRequestBodyLength;
+    }
+
+    /**
+     * Get or create the estimates of a host. Must be called while holding the lock.
+     *
+     * @param host host name.
+     * @return host estimates.
+     */
+    private HostEstimates getHostEstimates(String host) {
+        HostEstimates estimates = mHostEstimates.get(host);
+        if (estimates == null) {
+            estimates = new HostEstimates();
+            mHostEstimates.put(host, estimates);
+        }
+        return estimates;
+    }
+
+    /**
+     * Get the number of calls that received a response.
+     *
+     * @return number of calls.
+     */
+    public synchronized long getResponseCount() {
+        return mResponseCount;
+    }
+
+    /**
+     * Get the number of calls that opened a new connection.
+     *
+     * @return number of calls.
+     */
+    public synchronized long getNewConnectionCount() {
+        return mNewConnectionCount;
+    }
+
+    /**
+     * Get the number of calls that reused a pooled connection.
+     *
+     * @return number of calls.
+     */
+    public synchronized long getReusedConnectionCount() {
+        return mResponseCount - mNewConnectionCount;
+    }
+
+    /**
+     * Get the ratio of calls that reused a pooled connection.
+     *
+     * @return ratio between 0 and 1, 0 if no call received a response yet.
+     */
+    public synchronized double getConnectionReuseRate() {
+        return mResponseCount == 0 ? 0 : (double) (mResponseCount - mNewConnectionCount) / mResponseCount;
+    }
+
+    /**
+     * Get the number of completed TLS handshakes.
+     *
+     * @return number of handshakes.
+     */
+    public synchronized long getHandshakeCount() {
+        return mHandshakeCount;
+    }
+
+    /**
+     * Get the total duration of TLS handshakes.
+     *
+     * @return duration in milliseconds.
+     */
+    public synchronized long getTotalHandshakeTime() {
+        return mHandshakeTime;
+    }
+
+    /**
+     * Get the average duration of a TLS handshake.
+     *
+     * @return duration in milliseconds, 0 if no handshake completed yet.
+     */
+    public synchronized long getAverageHandshakeTime() {
+        return mHandshakeCount == 0 ? 0 : mHandshakeTime / mHandshakeCount;
+    }
+
+    /**
+     * Get the number of completed TLS handshakes that resumed a previous session.
+     *
+     * @return number of handshakes.
+     */
+    public synchronized long getResumedHandshakeCount() {
+        return mResumedHandshakeCount;
+    }
+
+    /**
+     * Get the number of completed full TLS handshakes.
+     *
+     * @return number of handshakes.
+     */
+    public synchronized long getFullHandshakeCount() {
+        return mHandshakeCount - mResumedHandshakeCount;
+    }
+
+    /**
+     * Get the average duration of a TLS handshake that resumed a previous session.
+     *
+     * @return duration in milliseconds, 0 if no such handshake completed yet.
+     */
+    public synchronized long getAverageResumedHandshakeTime() {
+        return mResumedHandshakeCount == 0 ? 0 : mResumedHandshakeTime / mResumedHandshakeCount;
+    }
+
+    /**
+     * Get the average duration of a full TLS handshake.
+     *
+     * @return duration in milliseconds, 0 if no such handshake completed yet.
+     */
+    public synchronized long getAverageFullHandshakeTime() {
+        long fullHandshakeCount = mHandshakeCount - mResumedHandshakeCount;
+        return fullHandshakeCount == 0 ? 0 : (mHandshakeTime - mResumedHandshakeTime) / fullHandshakeCount;
+    }
+
+    /**
+     * Get the average time a call waited for a thread.
+     *
+     * @return duration in milliseconds, 0 if no call received a response yet.
+     */
+    public synchronized long getAverageQueueWaitTime() {
+        return mTimedCallCount == 0 ? 0 : mQueueWaitTime / mTimedCallCount;
+    }
+
+    /**
+     * Get the average time a call took to get a connection, new or pooled.
+     *
+     * @return duration in milliseconds, 0 if no call received a response yet.
+     */
+    public synchronized long getAverageConnectTime() {
+        return mTimedCallCount == 0 ? 0 : mConnectTime / mTimedCallCount;
+    }
+
+    /**
+     * Get the average time a call took to write its request body.
+     *
+     * @return duration in milliseconds, 0 if no call received a response yet.
+     */
+    public synchronized long getAverageRequestWriteTime() {
+        return mTimedCallCount == 0 ? 0 : mRequestWriteTime / mTimedCallCount;
+    }
+
+    /**
+     * Get the average time between the end of a request and its response status.
+     *
+     * @return duration in milliseconds, 0 if no call received a response yet.
+     */
+    public synchronized long getAverageTimeToFirstByte() {
+        return mTimedCallCount == 0 ? 0 : mTimeToFirstByte / mTimedCallCount;
+    }
+
+    /**
+     * Get the average time a call took to read its response body.
+     *
+     * @return duration in milliseconds, 0 if no call received a response yet.
+     */
+    public synchronized long getAverageResponseReadTime() {
+        return mTimedCallCount == 0 ? 0 : mResponseReadTime / mTimedCallCount;
+    }
+
+    /**
+     * Get the total number of request body bytes sent by calls that received a response.
+     *
+     * @return number of bytes.
+     */
+    public synchronized long getBytesSent() {
+        return mBytesSent;
+    }
+
+    /**
+     * Get the total number of response body bytes received.
+     *
+     * @return number of bytes.
+     */
+    public synchronized long getBytesReceived() {
+        return mBytesReceived;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ConnectionStatistics{" +
+                "responseCount=" + mResponseCount +
+                ", newConnectionCount=" + mNewConnectionCount +
+                ", handshakeCount=" + mHandshakeCount +
+                ", handshakeTime=" + mHandshakeTime +
+                ", resumedHandshakeCount=" + mResumedHandshakeCount +
+                ", resumedHandshakeTime=" + mResumedHandshakeTime +
+                ", timedCallCount=" + mTimedCallCount +
+                ", queueWaitTime=" + mQueueWaitTime +
+                ", connectTime=" + mConnectTime +
+                ", requestWriteTime=" + mRequestWriteTime +
+                ", timeToFirstByte=" + mTimeToFirstByte +
+                ", responseReadTime=" + mResponseReadTime +
+                ", bytesSent=" + mBytesSent +
+                ", bytesReceived=" + mBytesReceived +
+                ", hostEstimates=" + mHostEstimates +
+                '}';
+    }
+
+    /**
+     * Network estimates of a host.
+     */
+    private static class HostEstimates {
+
+        /**
+         * Smoothed round trip time in milliseconds.
+         */
+        long mRoundTripTime;
+
+        /**
+         * Round trip time variation in milliseconds.
+         */
+        long mRoundTripTimeVariation;
+
+        /**
+         * Smoothed throughput in bytes per second.
+         */
+        long mThroughput;
+
+        /**
+         * Smoothed request body length in bytes.
+         */
+        long mRequestBodyLength;
+
+        /**
+         * Number of times the read timeout is doubled.
+         */
+        int mReadTimeoutBackoff;
+
+        @Override
+        public String toString() {
+            return "{roundTripTime=" + mRoundTripTime +
+                    ", roundTripTimeVariation=" + mRoundTripTimeVariation +
+                    ", throughput=" + mThroughput +
+                    ", requestBodyLength=" + mRequestBodyLength +
+                    ", readTimeoutBackoff=" + mReadTimeoutBackoff +
+                    '}';
+        }
+    }
+}
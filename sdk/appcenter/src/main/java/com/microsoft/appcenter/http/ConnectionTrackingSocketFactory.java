@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.http;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Socket factory that reports every socket it creates, so that new connections can be told apart
+ * from connections reused from the platform connection pool.
+ */
+class ConnectionTrackingSocketFactory extends SSLSocketFactory {
+
+    /**
+     * Socket factory.
+     *
+     * Do not rename it! See https://github.com/square/okhttp/issues/2323
+     */
+    private final SSLSocketFactory delegate;
+
+    /**
+     * Listener notified of created sockets.
+     */
+    private final Listener mListener;
+
+    /**
+     * Init.
+     *
+     * @param delegate socket factory creating the sockets.
+     * @param listener listener notified of created sockets.
+     */
+    ConnectionTrackingSocketFactory(SSLSocketFactory delegate, Listener listener) {
+        this.delegate = delegate;
+        mListener = listener;
+    }
+
+    /**
+     * Get the factory creating the sockets.
+     *
+     * @return socket factory.
+     */
+    SSLSocketFactory getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Report a created socket.
+     *
+     * @param socket socket.
+     * @param host   host name if known, null otherwise.
+     * @return that same socket for chaining calls.
+     */
+    private Socket track(Socket socket, String host) {
+        if (socket instanceof SSLSocket) {
+            mListener.onSocketCreated((SSLSocket) socket, host);
+        }
+        return socket;
+    }
+
+    @Override
+    public String[] getDefaultCipherSuites() {
+        return delegate.getDefaultCipherSuites();
+    }
+
+    @Override
+    public String[] getSupportedCipherSuites() {
+        return delegate.getSupportedCipherSuites();
+    }
+
+    @Override
+    public Socket createSocket() throws IOException {
+        return track(delegate.createSocket(), null);
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        return track(delegate.createSocket(host, port), host);
+    }
+
+    @Override
+    public Socket createSocket(InetAddress host, int port) throws IOException {
+        return track(delegate.createSocket(host, port), null);
+    }
+
+    @Override
+    public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+        return track(delegate.createSocket(host, port, localHost, localPort), host);
+    }
+
+    @Override
+    public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+        return track(delegate.createSocket(address, port, localAddress, localPort), null);
+    }
+
+    @Override
+    public Socket createSocket(Socket socket, String host, int port, boolean autoClose) throws IOException {
+        return track(delegate.createSocket(socket, host, port, autoClose), host);
+    }
+
+    /**
+     * Listener of created sockets.
+     */
+    interface Listener {
+
+        /**
+         * Called on the thread that opens the connection when a socket is created.
+         *
+         * @param socket created socket, the TLS handshake has not started yet.
+         * @param host   host name if known, null otherwise.
+         */
+        void onSocketCreated(SSLSocket socket, String host);
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.http;
+
+import androidx.annotation.NonNull;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream counting the bytes written through it.
+ */
+public class CountingOutputStream extends FilterOutputStream {
+
+    /**
+     * Number of bytes written.
+     */
+    private long mCount;
+
+    /**
+     * Init.
+     *
+     * @param out stream to write to.
+     */
+    public CountingOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    /**
+     * Get the number of bytes written so far.
+     *
+     * @return number of bytes.
+     */
+    public long getCount() {
+        return mCount;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        mCount++;
+    }
+
+    @Override
+    public void write(@NonNull byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        mCount += len;
+    }
+}
@@ -5,7 +5,6 @@
 
 package com.microsoft.appcenter.http;
 
-import android.os.AsyncTask;
 import androidx.annotation.VisibleForTesting;
 
 import com.microsoft.appcenter.utils.AppCenterLog;
@@ -38,6 +37,11 @@ public class DefaultHttpClient implements HttpClient, DefaultHttpClientCallTask.
      */
     public static final String METHOD_DELETE = "DELETE";
 
+    /**
+     * HTTP HEAD method.
+     */
+    public static final String METHOD_HEAD = "HEAD";
+
     /**
      * Retry after milliseconds duration header.
      */
@@ -56,7 +60,7 @@ public class DefaultHttpClient implements HttpClient, DefaultHttpClientCallTask.
     /**
      * Character encoding.
      */
-    static final String CHARSET_NAME = "UTF-8";
+    public static final String CHARSET_NAME = "UTF-8";
 
     /**
      * Content encoding header key.
@@ -95,12 +99,12 @@ public class DefaultHttpClient implements HttpClient, DefaultHttpClientCallTask.
     public ServiceCall callAsync(String url, String method, Map<String, String> headers, CallTemplate callTemplate, final ServiceCallback serviceCallback) {
         final DefaultHttpClientCallTask task = new DefaultHttpClientCallTask(url, method, headers, callTemplate, serviceCallback, this, mCompressionEnabled);
         try {
-            task.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+            task.executeOnExecutor(HttpCallExecutor.getSharedInstance());
         } catch (final RejectedExecutionException e) {
 
             /*
-             * When executor saturated (shared with app), we should use the retry mechanism
-             * rather than creating more threads to avoid putting too much pressure on the hosting app.
+             * The executor queue is unbounded so this is not expected, but if it happens
+             * we should use the retry mechanism rather than creating more threads.
              * Also we need to return the method before calling the listener,
              * so we post the callback on handler to make sure of that.
              */
@@ -117,8 +121,8 @@ public class DefaultHttpClient implements HttpClient, DefaultHttpClientCallTask.
             @Override
             public void cancel() {
 
-                /* This doesn't kill the AsyncTask, so we should check the state manually. */
-                task.cancel(true);
+                /* This doesn't interrupt the network operation in progress, the task checks the state between steps. */
+                task.cancel();
             }
         };
     }
@@ -138,10 +142,13 @@ public class DefaultHttpClient implements HttpClient, DefaultHttpClientCallTask.
         if (mTasks.size() > 0) {
             AppCenterLog.debug(LOG_TAG, "Cancelling " + mTasks.size() + " network call(s).");
             for (DefaultHttpClientCallTask task : mTasks) {
-                task.cancel(true);
+                task.cancel();
             }
             mTasks.clear();
         }
+
+        /* Release connections kept open for calls that will not happen. */
+        ConnectionPool.getSharedInstance().closeIdleSockets(true);
     }
 
     @Override
@@ -6,23 +6,34 @@
 package com.microsoft.appcenter.http;
 
 import android.net.TrafficStats;
-import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Process;
 import android.util.Log;
 
+import androidx.annotation.NonNull;
+
 import com.microsoft.appcenter.utils.AppCenterLog;
+import com.microsoft.appcenter.utils.HandlerUtils;
 
+import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.Reader;
+import java.net.SocketTimeoutException;
 import java.net.URL;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.regex.Pattern;
 import java.util.zip.GZIPOutputStream;
 
@@ -39,13 +50,16 @@ import static com.microsoft.appcenter.http.HttpUtils.READ_BUFFER_SIZE;
 import static com.microsoft.appcenter.http.HttpUtils.THREAD_STATS_TAG;
 import static com.microsoft.appcenter.http.HttpUtils.WRITE_BUFFER_SIZE;
 import static com.microsoft.appcenter.http.HttpUtils.createHttpsConnection;
+import static com.microsoft.appcenter.http.HttpUtils.getReadTimeout;
 import static java.lang.Math.max;
 import static java.lang.Math.min;
 
 /**
- * Async task for default HTTP client.
+ * Call task for default HTTP client.
+ * Runs on an executor and calls back on the main thread, or on the thread that started the call if it has a looper
+ * and the call options allow it, see {@link CallOptions#isCallerLooperCallback()}.
  */
-class DefaultHttpClientCallTask extends AsyncTask<Void, Void, Object> {
+class DefaultHttpClientCallTask implements Runnable {
 
     /**
      * Default string builder capacity.
@@ -77,6 +91,17 @@ class DefaultHttpClientCallTask extends AsyncTask<Void, Void, Object> {
      */
     private static final Pattern REDIRECT_URI_REGEX_JSON = Pattern.compile("redirect_uri\":\"[^\"]+\"");
 
+    /**
+     * Reusable buffer to discard response bodies.
+     */
+    private static final ThreadLocal<byte[]> DRAIN_BUFFER = new ThreadLocal<byte[]>() {
+
+        @Override
+        protected byte[] initialValue() {
+            return new byte[READ_BUFFER_SIZE];
+        }
+    };
+
     private final String mUrl;
 
     private final String mMethod;
@@ -85,29 +110,50 @@ class DefaultHttpClientCallTask extends AsyncTask<Void, Void, Object> {
 
     private final HttpClient.CallTemplate mCallTemplate;
 
+    private final CallOptions mCallOptions;
+
     private final ServiceCallback mServiceCallback;
 
     private final Tracker mTracker;
 
     private final boolean mCompressionEnabled;
 
+    /**
+     * Handler used for callbacks.
+     */
+    private Handler mCallbackHandler;
+
+    /**
+     * Cancellation flag, checked between the steps of the call.
+     */
+    private volatile boolean mCancelled;
+
+    /**
+     * Time when the call was created, right before being submitted to the executor.
+     */
+    private long mSubmitTime;
+
     DefaultHttpClientCallTask(String url, String method, Map<String, String> headers, HttpClient.CallTemplate callTemplate, ServiceCallback serviceCallback, Tracker tracker, boolean compressionEnabled) {
         mUrl = url;
         mMethod = method;
         mHeaders = headers;
         mCallTemplate = callTemplate;
+        mCallOptions = CallOptions.of(callTemplate);
         mServiceCallback = serviceCallback;
         mTracker = tracker;
         mCompressionEnabled = compressionEnabled;
+        mSubmitTime = ConnectionPool.getSharedInstance().monotonicTimeMillis();
     }
 
-    private static InputStream getInputStream(HttpsURLConnection httpsURLConnection) throws IOException {
+    private static CountingInputStream getInputStream(HttpsURLConnection httpsURLConnection) throws IOException {
         int status = httpsURLConnection.getResponseCode();
+        InputStream stream;
         if (status >= 200 && status < 400) {
-            return httpsURLConnection.getInputStream();
+            stream = httpsURLConnection.getInputStream();
         } else {
-            return httpsURLConnection.getErrorStream();
+            stream = httpsURLConnection.getErrorStream();
         }
+        return stream == null ? null : new CountingInputStream(stream);
     }
 
     /**
@@ -122,10 +168,83 @@ class DefaultHttpClientCallTask extends AsyncTask<Void, Void, Object> {
         }
     }
 
+    /**
+     * Stream payload from the call template to the connection, compressing on the fly if enabled.
+     * The bytes sent are copied to the body cache if any, so that retries do not serialize the payload again.
+     */
+    private void streamPayload(HttpsURLConnection httpsURLConnection, boolean shouldCompress, HttpCallTiming timing, RequestBodyCache bodyCache) throws IOException, JSONException {
+        CountingOutputStream out = new CountingOutputStream(httpsURLConnection.getOutputStream());
+        RequestBodyRecorder recorder = null;
+        if (bodyCache != null) {
+            recorder = new RequestBodyRecorder(out, bodyCache, shouldCompress);
+        }
+        timing.mRequestBodyLength = writeStreamingPayload(recorder != null ? recorder : out, shouldCompress);
+        timing.mBytesSent = out.getCount();
+        if (recorder != null) {
+            recorder.finish(timing.mRequestBodyLength);
+        }
+    }
+
+    /**
+     * Write payload from the call template, compressing on the fly if enabled, then close the stream.
+     *
+     * @return payload length before compression.
+     */
+    private long writeStreamingPayload(OutputStream out, boolean shouldCompress) throws IOException, JSONException {
+        if (shouldCompress) {
+            out = new GZIPOutputStream(out, WRITE_BUFFER_SIZE);
+        }
+        CountingOutputStream countingOut = new CountingOutputStream(out);
+
+        //noinspection TryFinallyCanBeTryWithResources
+        try {
+            ((HttpClient.StreamingCallTemplate) mCallTemplate).writeRequestBody(countingOut);
+        } finally {
+            countingOut.close();
+        }
+        return countingOut.getCount();
+    }
+
+    /**
+     * Declare how the payload will be sent, this must be done before connecting.
+     * The read timeout includes time to upload the payload, a streamed payload is expected
+     * to be as large as the previous ones sent to the host as its length is not known yet.
+     *
+     * @param payload payload of known length, null if streaming.
+     */
+    private static void prepareOutput(HttpsURLConnection httpsURLConnection, String host, byte[] payload) {
+        httpsURLConnection.setDoOutput(true);
+        if (payload == null) {
+            long expectedLength = ConnectionPool.getSharedInstance().getStatistics().getRequestBodyLength(host);
+            httpsURLConnection.setReadTimeout(getReadTimeout(host, expectedLength));
+            httpsURLConnection.setChunkedStreamingMode(0);
+        } else {
+            httpsURLConnection.setReadTimeout(getReadTimeout(host, payload.length));
+            httpsURLConnection.setFixedLengthStreamingMode(payload.length);
+        }
+    }
+
+    /**
+     * Send a payload of known length.
+     */
+    private void sendPayload(HttpsURLConnection httpsURLConnection, byte[] payload) throws IOException {
+        OutputStream out = httpsURLConnection.getOutputStream();
+
+        //noinspection TryFinallyCanBeTryWithResources
+        try {
+            writePayload(out, payload);
+        } finally {
+            out.close();
+        }
+    }
+
     /**
      * Dump response stream to a string.
      */
-    private String readResponse(HttpsURLConnection httpsURLConnection) throws IOException {
+    private String readResponse(HttpsURLConnection httpsURLConnection, InputStream stream) throws IOException {
+        if (stream == null) {
+            return "";
+        }
 
         /*
          * Though content length header value is less than actual payload length (gzip), we want to init
@@ -133,7 +252,6 @@ class DefaultHttpClientCallTask extends AsyncTask<Void, Void, Object> {
          * use case).
          */
         StringBuilder builder = new StringBuilder(max(httpsURLConnection.getContentLength(), DEFAULT_STRING_BUILDER_CAPACITY));
-        InputStream stream = getInputStream(httpsURLConnection);
 
         //noinspection TryFinallyCanBeTryWithResources
         try {
@@ -152,12 +270,66 @@ class DefaultHttpClientCallTask extends AsyncTask<Void, Void, Object> {
         }
     }
 
+    /**
+     * Read and discard response stream so that the connection can be reused.
+     */
+    private void drainResponse(InputStream stream) throws IOException {
+        if (stream == null) {
+            return;
+        }
+
+        //noinspection TryFinallyCanBeTryWithResources
+        try {
+            byte[] buffer = DRAIN_BUFFER.get();
+            while (stream.read(buffer) != -1) {
+                if (isCancelled()) {
+                    break;
+                }
+            }
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Copy response headers.
+     *
+     * @param names header names to copy, null to copy all headers.
+     */
+    private static Map<String, String> readResponseHeaders(HttpsURLConnection httpsURLConnection, Collection<String> names) {
+        if (names == null) {
+            Map<String, String> responseHeaders = new HashMap<>();
+            for (Map.Entry<String, List<String>> header : httpsURLConnection.getHeaderFields().entrySet()) {
+                responseHeaders.put(header.getKey(), header.getValue().iterator().next());
+            }
+            return responseHeaders;
+        }
+        if (names.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> responseHeaders = new HashMap<>(names.size());
+        for (String name : names) {
+            String value = httpsURLConnection.getHeaderField(name);
+            if (value != null) {
+                responseHeaders.put(name, value);
+            }
+        }
+        return responseHeaders;
+    }
+
     /**
      * Do http call.
      */
     private HttpResponse doHttpCall() throws Exception {
         URL url = new URL(mUrl);
         HttpsURLConnection httpsURLConnection = createHttpsConnection(url);
+        ConnectionPool connectionPool = ConnectionPool.getSharedInstance();
+        String host = url.getHost();
+        HttpCallTiming timing = new HttpCallTiming(mMethod, host);
+        timing.mQueueWaitTime = connectionPool.monotonicTimeMillis() - mSubmitTime;
+        connectionPool.onCallStarted(host);
+        boolean isConnected = false;
+        boolean isResponseConsumed = false;
         try {
 
             /* Build payload now if POST. */
@@ -166,7 +338,34 @@ class DefaultHttpClientCallTask extends AsyncTask<Void, Void, Object> {
             byte[] binaryPayload = null;
             boolean shouldCompress = false;
             boolean isPost = mMethod.equals(METHOD_POST);
-            if (isPost && mCallTemplate != null) {
+
+            /* Payload is built in memory when verbose to be able to log it. */
+            boolean isStreaming = isPost && mCallTemplate instanceof HttpClient.StreamingCallTemplate && AppCenterLog.getLogLevel() > Log.VERBOSE;
+
+            /* Payload that is already encoded as sent on the wire. */
+            byte[] encodedPayload = null;
+            RequestBodyCache bodyCache = null;
+            if (isPost && mCallOptions.getRequestBodyCache() != null) {
+                bodyCache = mCallOptions.getRequestBodyCache();
+                encodedPayload = bodyCache.getBody();
+            }
+            if (encodedPayload != null) {
+
+                /* Send the payload of the previous try as is. */
+                isStreaming = false;
+                shouldCompress = bodyCache.isCompressed();
+                timing.mRequestBodyLength = bodyCache.getUncompressedLength();
+                if (!mHeaders.containsKey(CONTENT_TYPE_KEY)) {
+                    mHeaders.put(CONTENT_TYPE_KEY, CONTENT_TYPE_VALUE);
+                }
+            } else if (isStreaming) {
+
+                /* Size is unknown before writing, always compress when enabled. */
+                shouldCompress = mCompressionEnabled;
+                if (!mHeaders.containsKey(CONTENT_TYPE_KEY)) {
+                    mHeaders.put(CONTENT_TYPE_KEY, CONTENT_TYPE_VALUE);
+                }
+            } else if (isPost && mCallTemplate != null) {
 
                 /* Get bytes, check if large enough to compress. */
                 payload = mCallTemplate.buildRequestBody();
@@ -197,8 +396,10 @@ class DefaultHttpClientCallTask extends AsyncTask<Void, Void, Object> {
                 mCallTemplate.onBeforeCalling(url, mHeaders);
             }
 
-            /* Send payload. */
-            if (binaryPayload != null) {
+            /* Encode payload as sent on the wire. */
+            if (encodedPayload != null) {
+                AppCenterLog.verbose(LOG_TAG, "Sending encoded payload of " + encodedPayload.length + " bytes.");
+            } else if (binaryPayload != null) {
 
                 /* Log payload. */
                 if (AppCenterLog.getLogLevel() <= Log.VERBOSE) {
@@ -212,6 +413,7 @@ class DefaultHttpClientCallTask extends AsyncTask<Void, Void, Object> {
                 }
 
                 /* Compress payload if large enough to be worth it. */
+                timing.mRequestBodyLength = binaryPayload.length;
                 if (shouldCompress) {
                     ByteArrayOutputStream gzipBuffer = new ByteArrayOutputStream(binaryPayload.length);
                     GZIPOutputStream gzipStream = new GZIPOutputStream(gzipBuffer);
@@ -220,25 +422,63 @@ class DefaultHttpClientCallTask extends AsyncTask<Void, Void, Object> {
                     binaryPayload = gzipBuffer.toByteArray();
                 }
 
-                /* Send payload on the wire. */
-                httpsURLConnection.setDoOutput(true);
-                httpsURLConnection.setFixedLengthStreamingMode(binaryPayload.length);
-                OutputStream out = httpsURLConnection.getOutputStream();
-
-                //noinspection TryFinallyCanBeTryWithResources
-                try {
-                    writePayload(out, binaryPayload);
-                } finally {
-                    out.close();
+                /* Keep the payload for retries. */
+                if (bodyCache != null) {
+                    bodyCache.setBody(binaryPayload, shouldCompress, timing.mRequestBodyLength);
                 }
+                encodedPayload = binaryPayload;
             }
+            if (isStreaming || encodedPayload != null) {
+                prepareOutput(httpsURLConnection, host, encodedPayload);
+            }
+
+            /* Connect, this is where a new connection resolves the host name and performs the TLS handshake. */
+            long connectStartTime = connectionPool.monotonicTimeMillis();
+            httpsURLConnection.connect();
+            isConnected = true;
+            long uploadStartTime = connectionPool.monotonicTimeMillis();
+            timing.mConnectTime = uploadStartTime - connectStartTime;
+            timing.mNewConnection = connectionPool.isNewConnection();
+
+            /* Send payload on the wire. */
+            if (isStreaming) {
+                streamPayload(httpsURLConnection, shouldCompress, timing, bodyCache);
+            } else if (encodedPayload != null) {
+                timing.mBytesSent = encodedPayload.length;
+                sendPayload(httpsURLConnection, encodedPayload);
+            }
+            long requestSentTime = connectionPool.monotonicTimeMillis();
+            timing.mRequestWriteTime = requestSentTime - uploadStartTime;
             if (isCancelled()) {
                 return null;
             }
 
-            /* Read response. */
+            /* Read response, measuring how long the host took to answer. */
             int status = httpsURLConnection.getResponseCode();
-            String response = readResponse(httpsURLConnection);
+            long responseTime = connectionPool.monotonicTimeMillis();
+            timing.mStatusCode = status;
+            timing.mTimeToFirstByte = responseTime - requestSentTime;
+            connectionPool.onResponse();
+            ConnectionStatistics statistics = connectionPool.getStatistics();
+            statistics.onRoundTrip(host, timing.mTimeToFirstByte);
+            statistics.onUpload(host, timing.mBytesSent, responseTime - uploadStartTime);
+            boolean isSuccess = status >= 200 && status < 300;
+
+            /* Failed responses are always read in full for the exception. */
+            boolean isBodyNeeded = !isSuccess || mCallOptions.isResponseBodyNeeded();
+
+            /* Body is still read when verbose to be able to log it. */
+            String response = "";
+            CountingInputStream stream = getInputStream(httpsURLConnection);
+            if (isBodyNeeded || AppCenterLog.getLogLevel() <= Log.VERBOSE) {
+                response = readResponse(httpsURLConnection, stream);
+            } else {
+                drainResponse(stream);
+            }
+            if (stream != null) {
+                timing.mBytesReceived = stream.getCount();
+            }
+            timing.mResponseReadTime = connectionPool.monotonicTimeMillis() - responseTime;
             if (AppCenterLog.getLogLevel() <= Log.VERBOSE) {
                 String contentType = httpsURLConnection.getHeaderField(CONTENT_TYPE_KEY);
                 String logPayload;
@@ -250,28 +490,103 @@ class DefaultHttpClientCallTask extends AsyncTask<Void, Void, Object> {
                 }
                 AppCenterLog.verbose(LOG_TAG, "HTTP response status=" + status + " payload=" + logPayload);
             }
-            Map<String, String> responseHeaders = new HashMap<>();
-            for (Map.Entry<String, List<String>> header : httpsURLConnection.getHeaderFields().entrySet()) {
-                responseHeaders.put(header.getKey(), header.getValue().iterator().next());
+            if (!isBodyNeeded) {
+                response = "";
             }
+
+            /* Response stream was read to the end and closed unless cancelled: connection is back in the pool. */
+            isResponseConsumed = !isCancelled();
+            Map<String, String> responseHeaders = readResponseHeaders(httpsURLConnection, isSuccess ? mCallOptions.getResponseHeaderNames() : null);
             HttpResponse httpResponse = new HttpResponse(status, response, responseHeaders);
 
             /* Accept all 2xx codes. */
-            if (status >= 200 && status < 300) {
+            if (isSuccess) {
                 return httpResponse;
             }
 
             /* Generate exception on failure. */
             throw new HttpException(httpResponse);
+        } catch (SocketTimeoutException e) {
+
+            /* Give the host more time on next call if it was too slow to answer, a connection timeout is not about the read timeout. */
+            if (isConnected) {
+                connectionPool.getStatistics().onReadTimeout(host);
+            }
+            throw e;
         } finally {
 
-            /* Release connection. */
-            httpsURLConnection.disconnect();
+            /* Disconnecting after a complete exchange could close a socket that can be reused. */
+            if (!isResponseConsumed) {
+                httpsURLConnection.disconnect();
+            }
+            connectionPool.onCallFinished(host);
+            connectionPool.onCallTiming(timing);
+        }
+    }
+
+    /**
+     * Get the priority of this call when waiting for a thread.
+     *
+     * @return priority.
+     */
+    int getPriority() {
+        return mCallOptions.getPriority();
+    }
+
+    /**
+     * Start the call. Must be called only once, on the thread that can receive callbacks.
+     *
+     * @param executor executor to run the call on.
+     * @return this task.
+     * @throws RejectedExecutionException if the executor does not accept the call.
+     */
+    DefaultHttpClientCallTask executeOnExecutor(Executor executor) {
+        mCallbackHandler = mCallOptions.isCallerLooperCallback() ? HandlerUtils.getCallerHandler() : HandlerUtils.getMainHandler();
+        onPreExecute();
+        try {
+            executor.execute(this);
+        } catch (RejectedExecutionException e) {
+            mTracker.onFinish(this);
+            throw e;
         }
+        return this;
+    }
+
+    /**
+     * Cancel the call. This doesn't interrupt a blocking network operation,
+     * the call stops at the next step and no callback is made unless a response was already received.
+     */
+    void cancel() {
+        mCancelled = true;
+    }
+
+    /**
+     * Check if the call was cancelled.
+     *
+     * @return true if cancelled.
+     */
+    boolean isCancelled() {
+        return mCancelled;
     }
 
     @Override
-    protected Object doInBackground(Void... params) {
+    public void run() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        final Object result = isCancelled() ? null : doInBackground();
+        mCallbackHandler.post(new Runnable() {
+
+            @Override
+            public void run() {
+                if (isCancelled()) {
+                    onCancelled(result);
+                } else {
+                    onPostExecute(result);
+                }
+            }
+        });
+    }
+
+    Object doInBackground() {
 
         /* Do tag socket to avoid strict mode issue. */
         TrafficStats.setThreadStatsTag(THREAD_STATS_TAG);
@@ -284,13 +599,11 @@ class DefaultHttpClientCallTask extends AsyncTask<Void, Void, Object> {
         }
     }
 
-    @Override
-    protected void onPreExecute() {
+    void onPreExecute() {
         mTracker.onStart(this);
     }
 
-    @Override
-    protected void onPostExecute(Object result) {
+    void onPostExecute(Object result) {
         mTracker.onFinish(this);
         if (result instanceof Exception) {
             mServiceCallback.onCallFailed((Exception) result);
@@ -300,8 +613,7 @@ class DefaultHttpClientCallTask extends AsyncTask<Void, Void, Object> {
         }
     }
 
-    @Override
-    protected void onCancelled(Object result) {
+    void onCancelled(Object result) {
 
         /* Handle the result even if it was cancelled. */
         if (result instanceof HttpResponse || result instanceof HttpException) {
@@ -311,6 +623,43 @@ class DefaultHttpClientCallTask extends AsyncTask<Void, Void, Object> {
         }
     }
 
+    /**
+     * Input stream counting the bytes read through it.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        /**
+         * Number of bytes read.
+         */
+        private long mCount;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        long getCount() {
+            return mCount;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b != -1) {
+                mCount++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(@NonNull byte[] b, int off, int len) throws IOException {
+            int read = in.read(b, off, len);
+            if (read > 0) {
+                mCount += read;
+            }
+            return read;
+        }
+    }
+
     /**
      * The callback used for maintain ongoing call tasks.
      */
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.http;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.microsoft.appcenter.http.HttpClient.PRIORITY_DEFAULT;
+
+/**
+ * Executor dedicated to the HTTP calls of the SDK, so that they don't compete with the application
+ * for the threads of {@link android.os.AsyncTask#THREAD_POOL_EXECUTOR}.
+ * A bounded number of calls run in parallel, waiting calls start by priority then in submission order.
+ * Threads are terminated when idle.
+ */
+class HttpCallExecutor implements Executor {
+
+    /**
+     * Maximum number of calls running in parallel.
+     */
+    @VisibleForTesting
+    static final int MAX_PARALLEL_CALLS = 4;
+
+    /**
+     * Time an idle thread waits for a new call before terminating, in milliseconds.
+     */
+    private static final long KEEP_ALIVE_TIME = 30 * 1000;
+
+    /**
+     * Thread name prefix.
+     */
+    private static final String THREAD_NAME_PREFIX = "AppCenter.Http-";
+
+    /**
+     * Shared instance.
+     */
+    private static HttpCallExecutor sInstance;
+
+    /**
+     * Thread pool running the calls.
+     */
+    private final ThreadPoolExecutor mThreadPool;
+
+    /**
+     * Submission counter to keep the order of calls with the same priority.
+     */
+    private final AtomicLong mSequence = new AtomicLong();
+
+    /**
+     * Thread counter for naming.
+     */
+    private final AtomicInteger mThreadCount = new AtomicInteger();
+
+    /**
+     * Init.
+     *
+     * @param maxParallelCalls maximum number of calls running in parallel.
+     */
+    @VisibleForTesting
+    HttpCallExecutor(int maxParallelCalls) {
+        mThreadPool = new ThreadPoolExecutor(maxParallelCalls, maxParallelCalls, KEEP_ALIVE_TIME, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+
+            @Override
+            public Thread newThread(@NonNull Runnable runnable) {
+                return new Thread(runnable, THREAD_NAME_PREFIX + mThreadCount.incrementAndGet());
+            }
+        });
+        mThreadPool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Get shared instance.
+     *
+     * @return shared instance.
+     */
+    static synchronized HttpCallExecutor getSharedInstance() {
+        if (sInstance == null) {
+            sInstance = new HttpCallExecutor(MAX_PARALLEL_CALLS);
+        }
+        return sInstance;
+    }
+
+    @Override
+    public void execute(@NonNull Runnable command) {
+        int priority = PRIORITY_DEFAULT;
+        if (command instanceof DefaultHttpClientCallTask) {
+            priority = ((DefaultHttpClientCallTask) command).getPriority();
+        }
+        mThreadPool.execute(new PrioritizedRunnable(command, priority, mSequence.getAndIncrement()));
+    }
+
+    /**
+     * Stop accepting calls and let the submitted ones complete.
+     */
+    @VisibleForTesting
+    void shutdown() {
+        mThreadPool.shutdown();
+    }
+
+    /**
+     * Runnable ordered in the queue.
+     */
+    private static class PrioritizedRunnable implements Runnable, Comparable<PrioritizedRunnable> {
+
+        /**
+         * Wrapped runnable.
+         */
+        private final Runnable mRunnable;
+
+        /**
+         * Priority.
+         */
+        private final int mPriority;
+
+        /**
+         * Submission order.
+         */
+        private final long mSequence;
+
+        /**
+         * Init.
+         */
+        PrioritizedRunnable(Runnable runnable, int priority, long sequence) {
+            mRunnable = runnable;
+            mPriority = priority;
+            mSequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            mRunnable.run();
+        }
+
+        @Override
+        public int compareTo(@NonNull PrioritizedRunnable other) {
+            if (mPriority != other.mPriority) {
+                return mPriority > other.mPriority ? -1 : 1;
+            }
+            return mSequence < other.mSequence ? -1 : (mSequence == other.mSequence ? 0 : 1);
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.http;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Timing breakdown of an HTTP call made by {@link DefaultHttpClient}, measured with a monotonic clock.
+ * Durations are in milliseconds, steps that were not reached have a duration of 0.
+ */
+public class HttpCallTiming {
+
+    /**
+     * HTTP method.
+     */
+    final String mMethod;
+
+    /**
+     * Host name.
+     */
+    final String mHost;
+
+    /**
+     * HTTP status code, 0 if no response was received.
+     */
+    int mStatusCode;
+
+    /**
+     * True if the call opened a new connection, false if it reused a pooled one.
+     */
+    boolean mNewConnection;
+
+    /**
+     * Time waiting for a thread.
+     */
+    long mQueueWaitTime;
+
+    /**
+     * Time to get a connection, including DNS resolution, TCP connect and TLS handshake for a new connection.
+     */
+    long mConnectTime;
+
+    /**
+     * Time writing the request body.
+     */
+    long mRequestWriteTime;
+
+    /**
+     * Time between the end of the request and the response status.
+     */
+    long mTimeToFirstByte;
+
+    /**
+     * Time reading the response body.
+     */
+    long mResponseReadTime;
+
+    /**
+     * Request body bytes sent, after compression.
+     */
+    long mBytesSent;
+
+    /**
+     * Request body length before compression, 0 if unknown.
+     */
+    long mRequestBodyLength;
+
+    /**
+     * Response body bytes received.
+     */
+    long mBytesReceived;
+
+    /**
+     * Init.
+     *
+     * @param method HTTP method.
+     * @param host   host name.
+     */
+    HttpCallTiming(String method, String host) {
+        mMethod = method;
+        mHost = host;
+    }
+
+    /**
+     * Get the HTTP method.
+     *
+     * @return HTTP method.
+     */
+    @NonNull
+    public String getMethod() {
+        return mMethod;
+    }
+
+    /**
+     * Get the host name.
+     *
+     * @return host name.
+     */
+    @NonNull
+    public String getHost() {
+        return mHost;
+    }
+
+    /**
+     * Get the HTTP status code.
+     *
+     * @return HTTP status code, 0 if no response was received.
+     */
+    public int getStatusCode() {
+        return mStatusCode;
+    }
+
+    /**
+     * Check if the call opened a new connection.
+     *
+     * @return true if the call opened a new connection, false if it reused a pooled one.
+     */
+    public boolean isNewConnection() {
+        return mNewConnection;
+    }
+
+    /**
+     * Get the time the call waited for a thread.
+     *
+     * @return duration in milliseconds.
+     */
+    public long getQueueWaitTime() {
+        return mQueueWaitTime;
+    }
+
+    /**
+     * Get the time to get a connection, including DNS resolution, TCP connect and TLS handshake for a new connection.
+     *
+     * @return duration in milliseconds.
+     */
+    public long getConnectTime() {
+        return mConnectTime;
+    }
+
+    /**
+     * Get the time writing the request body.
+     *
+     * @return duration in milliseconds.
+     */
+    public long getRequestWriteTime() {
+        return mRequestWriteTime;
+    }
+
+    /**
+     * Get the time between the end of the request and the response status, mostly network latency and server time.
+     *
+     * @return duration in milliseconds.
+     */
+    public long getTimeToFirstByte() {
+        return mTimeToFirstByte;
+    }
+
+    /**
+     * Get the time reading the response body.
+     *
+     * @return duration in milliseconds.
+     */
+    public long getResponseReadTime() {
+        return mResponseReadTime;
+    }
+
+    /**
+     * Get the total duration of the call, from the time it was submitted.
+     *
+     * @return duration in milliseconds.
+     */
+    public long getTotalTime() {
+        return mQueueWaitTime + mConnectTime + mRequestWriteTime + mTimeToFirstByte + mResponseReadTime;
+    }
+
+    /**
+     * Get the number of request body bytes sent, after compression.
+     *
+     * @return number of bytes.
+     */
+    public long getBytesSent() {
+        return mBytesSent;
+    }
+
+    /**
+     * Get the number of response body bytes received.
+     *
+     * @return number of bytes.
+     */
+    public long getBytesReceived() {
+        return mBytesReceived;
+    }
+
+    /**
+     * Get the size of the request body sent relative to its size before compression.
+     *
+     * @return ratio, 1 if the body was not compressed, 0 if the size before compression is unknown.
+     */
+    public double getCompressionRatio() {
+        return mRequestBodyLength == 0 ? 0 : (double) mBytesSent / mRequestBodyLength;
+    }
+
+    @Override
+    public String toString() {
+        return "HttpCallTiming{" +
+                "method=" + mMethod +
+                ", host=" + mHost +
+                ", statusCode=" + mStatusCode +
+                ", newConnection=" + mNewConnection +
+                ", queueWaitTime=" + mQueueWaitTime +
+                ", connectTime=" + mConnectTime +
+                ", requestWriteTime=" + mRequestWriteTime +
+                ", timeToFirstByte=" + mTimeToFirstByte +
+                ", responseReadTime=" + mResponseReadTime +
+                ", bytesSent=" + mBytesSent +
+                ", requestBodyLength=" + mRequestBodyLength +
+                ", bytesReceived=" + mBytesReceived +
+                '}';
+    }
+}
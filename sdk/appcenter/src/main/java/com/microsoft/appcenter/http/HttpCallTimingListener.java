@@ -0,0 +1,24 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.http;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+/**
+ * Listener of the timing of the HTTP calls made by {@link DefaultHttpClient}.
+ */
+public interface HttpCallTimingListener {
+
+    /**
+     * Called when a call completes, whether it succeeded, failed or was cancelled after it started.
+     * This is called on the thread that made the call and must return quickly.
+     *
+     * @param timing timing breakdown of the call.
+     */
+    @WorkerThread
+    void onCallCompleted(@NonNull HttpCallTiming timing);
+}
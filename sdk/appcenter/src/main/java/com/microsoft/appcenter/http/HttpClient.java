@@ -5,9 +5,13 @@
 
 package com.microsoft.appcenter.http;
 
+import androidx.annotation.Nullable;
+
 import org.json.JSONException;
 
 import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URL;
 import java.util.Map;
 
@@ -16,6 +20,21 @@ import java.util.Map;
  */
 public interface HttpClient extends Closeable {
 
+    /**
+     * Priority of calls that do not declare one.
+     */
+    int PRIORITY_DEFAULT = 0;
+
+    /**
+     * Priority of log uploads.
+     */
+    int PRIORITY_LOG_UPLOAD = 1;
+
+    /**
+     * Priority of log uploads containing critical logs.
+     */
+    int PRIORITY_CRITICAL_LOG_UPLOAD = 2;
+
     /**
      * Make an HTTP call.
      *
@@ -48,6 +67,30 @@ public interface HttpClient extends Closeable {
          * @param headers headers.
          */
         void onBeforeCalling(URL url, Map<String, String> headers);
+
+        /**
+         * Get the options of the call, the same instance must be returned for every try of the call.
+         *
+         * @return call options, null for the defaults.
+         */
+        @Nullable
+        CallOptions getCallOptions();
+    }
+
+    /**
+     * Call callbacks that can write the request body directly to the connection.
+     * {@link #buildRequestBody()} must still be implemented as clients are free to not stream.
+     */
+    interface StreamingCallTemplate extends CallTemplate {
+
+        /**
+         * Called when the method is POST to write request body.
+         *
+         * @param out stream to write body to, encoded in UTF-8. The stream must not be closed.
+         * @throws IOException   if the stream cannot be written.
+         * @throws JSONException callback can throw this to make the call fail if a JSON error occurs.
+         */
+        void writeRequestBody(OutputStream out) throws IOException, JSONException;
     }
 
     /**
@@ -23,7 +23,10 @@ abstract class HttpClientCallDecorator implements Runnable, ServiceCall, Service
 
     private final Map<String, String> mHeaders;
 
-    private final HttpClient.CallTemplate mCallTemplate;
+    /**
+     * Call template.
+     */
+    final HttpClient.CallTemplate mCallTemplate;
 
     /**
      * Callback.
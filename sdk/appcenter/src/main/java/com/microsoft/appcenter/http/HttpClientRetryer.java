@@ -7,25 +7,36 @@ package com.microsoft.appcenter.http;
 
 import android.os.Handler;
 import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 
 import com.microsoft.appcenter.AppCenter;
 import com.microsoft.appcenter.utils.AppCenterLog;
 
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.net.UnknownHostException;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import static com.microsoft.appcenter.http.DefaultHttpClient.X_MS_RETRY_AFTER_MS_HEADER;
 
 /**
  * Decorator managing retries.
+ * Calls to the same host share a {@link CircuitBreaker}, so they wait while the host is failing.
  */
 public class HttpClientRetryer extends HttpClientDecorator {
 
     /**
-     * Retry intervals to use, array index is to use the value for each retry. When we used all the array values, we give up and forward the last error.
+     * Retry intervals to use by default, array index is to use the value for each retry. When we used all the array values, we give up and forward the last error.
      */
     @VisibleForTesting
     static final long[] RETRY_INTERVALS = new long[]{
@@ -34,23 +45,70 @@ public class HttpClientRetryer extends HttpClientDecorator {
             TimeUnit.MINUTES.toMillis(20)
     };
 
+    /**
+     * Minimum retry delay for which the request body of a call is moved from memory to a file while waiting.
+     */
+    @VisibleForTesting
+    static final long MIN_DELAY_TO_STORE_BODY_IN_FILE = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * Time the request body file thread waits for a new operation before terminating, in milliseconds.
+     */
+    private static final long FILE_THREAD_KEEP_ALIVE_TIME = 30 * 1000;
+
+    /**
+     * Name of the request body file thread.
+     */
+    private static final String FILE_THREAD_NAME = "AppCenter.RequestBody";
+
+    /**
+     * Executor shared by retryers for request body file operations.
+     */
+    private static Executor sFileExecutor;
+
     /**
      * Android "timer" using the main thread loop.
      */
     private final Handler mHandler;
 
+    /**
+     * Directory to store request bodies in while waiting for long retries, null to keep them in memory.
+     */
+    private final File mRequestBodyDirectory;
+
+    /**
+     * Executor for request body file operations, to keep them off the thread of the callbacks.
+     * It must not be {@link HttpCallExecutor}: disk writes would hold threads needed by network calls.
+     */
+    private final Executor mFileExecutor;
+
     /**
      * Random object for interval randomness.
      */
     private final Random mRandom = new Random();
 
+    /**
+     * Circuit breaker and retry schedule shared by all retryers.
+     */
+    private final CircuitBreaker mCircuitBreaker = CircuitBreaker.getSharedInstance();
+
     /**
      * Init with default retry policy.
      *
      * @param decoratedApi API to decorate.
      */
     HttpClientRetryer(HttpClient decoratedApi) {
-        this(decoratedApi, new Handler(Looper.getMainLooper()));
+        this(decoratedApi, (File) null);
+    }
+
+    /**
+     * Init with default retry policy.
+     *
+     * @param decoratedApi         API to decorate.
+     * @param requestBodyDirectory directory to store request bodies in while waiting for long retries, null to keep them in memory.
+     */
+    HttpClientRetryer(HttpClient decoratedApi, @Nullable File requestBodyDirectory) {
+        this(decoratedApi, new Handler(Looper.getMainLooper()), requestBodyDirectory);
     }
 
     /**
@@ -61,8 +119,67 @@ public class HttpClientRetryer extends HttpClientDecorator {
      */
     @VisibleForTesting
     HttpClientRetryer(HttpClient decoratedApi, Handler handler) {
+        this(decoratedApi, handler, null);
+    }
+
+    /**
+     * Init.
+     *
+     * @param decoratedApi         API to decorate.
+     * @param handler              handler for timed retries.
+     * @param requestBodyDirectory directory to store request bodies in while waiting for long retries, null to keep them in memory.
+     */
+    @VisibleForTesting
+    HttpClientRetryer(HttpClient decoratedApi, Handler handler, @Nullable File requestBodyDirectory) {
+        this(decoratedApi, handler, requestBodyDirectory, getFileExecutor());
+    }
+
+    /**
+     * Init.
+     *
+     * @param decoratedApi         API to decorate.
+     * @param handler              handler for timed retries.
+     * @param requestBodyDirectory directory to store request bodies in while waiting for long retries, null to keep them in memory.
+     * @param fileExecutor         executor for request body file operations.
+     */
+    @VisibleForTesting
+    HttpClientRetryer(HttpClient decoratedApi, Handler handler, @Nullable final File requestBodyDirectory, Executor fileExecutor) {
         super(decoratedApi);
         mHandler = handler;
+        mRequestBodyDirectory = requestBodyDirectory;
+        mFileExecutor = fileExecutor;
+
+        /* Bodies stored by a process that was killed while waiting for a retry are never read again. */
+        if (requestBodyDirectory != null) {
+            mFileExecutor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    RequestBodyCache.deleteOrphanFiles(requestBodyDirectory);
+                }
+            });
+        }
+    }
+
+    /**
+     * Get the executor of request body file operations. Operations run one at a time in submission order,
+     * on a single thread that terminates when idle.
+     *
+     * @return shared executor.
+     */
+    private static synchronized Executor getFileExecutor() {
+        if (sFileExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, FILE_THREAD_KEEP_ALIVE_TIME, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+                @Override
+                public Thread newThread(@NonNull Runnable runnable) {
+                    return new Thread(runnable, FILE_THREAD_NAME);
+                }
+            });
+            executor.allowCoreThreadTimeOut(true);
+            sFileExecutor = executor;
+        }
+        return sFileExecutor;
     }
 
     @Override
@@ -79,6 +196,11 @@ public class HttpClientRetryer extends HttpClientDecorator {
      */
     private class RetryableCall extends HttpClientCallDecorator {
 
+        /**
+         * Host name used for the circuit breaker, null if the URL cannot be parsed.
+         */
+        private final String mHost;
+
         /**
          * Current retry counter. 0 means its the first try.
          */
@@ -86,36 +208,139 @@ public class HttpClientRetryer extends HttpClientDecorator {
 
         RetryableCall(HttpClient decoratedApi, String url, String method, Map<String, String> headers, CallTemplate callTemplate, ServiceCallback serviceCallback) {
             super(decoratedApi, url, method, headers, callTemplate, serviceCallback);
+            mHost = getHost(url);
+        }
+
+        @Override
+        public synchronized void run() {
+
+            /* Wait while the circuit of the host is open, unless this call is the one probing it. */
+            if (mHost != null) {
+                long delay = mCircuitBreaker.getCallDelay(mHost, this);
+                if (delay > 0) {
+                    AppCenterLog.debug(AppCenter.LOG_TAG, "Call to " + mHost + " is delayed by " + delay + " ms while the host is failing.");
+                    mHandler.postDelayed(this, delay);
+                    return;
+                }
+            }
+            super.run();
         }
 
         @Override
         public synchronized void cancel() {
             mHandler.removeCallbacks(this);
-            super.cancel();
+
+            /* The first try might still be waiting for the circuit breaker. */
+            if (mServiceCall != null) {
+                super.cancel();
+            }
+            if (mHost != null) {
+                mCircuitBreaker.releaseProbe(mHost, this);
+            }
+            releaseRequestBody();
+        }
+
+        @Override
+        public void onCallSucceeded(HttpResponse httpResponse) {
+            if (mHost != null) {
+                mCircuitBreaker.onCallSucceeded(mHost);
+            }
+            releaseRequestBody();
+            super.onCallSucceeded(httpResponse);
+        }
+
+        /**
+         * Get the request body kept between tries.
+         *
+         * @return request body cache or null if the call template does not keep the body.
+         */
+        private RequestBodyCache getRequestBodyCache() {
+            return CallOptions.of(mCallTemplate).getRequestBodyCache();
+        }
+
+        /**
+         * Get the host name of a URL.
+         *
+         * @param url URL.
+         * @return host name or null if the URL cannot be parsed.
+         */
+        private String getHost(String url) {
+            if (url == null) {
+                return null;
+            }
+            try {
+                return new URL(url).getHost();
+            } catch (MalformedURLException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Release the request body once there are no more tries.
+         */
+        private void releaseRequestBody() {
+            RequestBodyCache requestBodyCache = getRequestBodyCache();
+            if (requestBodyCache != null) {
+                requestBodyCache.clear();
+            }
         }
 
         @Override
         public void onCallFailed(Exception e) {
-            if (mRetryCount < RETRY_INTERVALS.length && HttpUtils.isRecoverableError(e)) {
-                long delay = 0;
-                if (e instanceof HttpException) {
-                    HttpException httpException = (HttpException) e;
-                    String retryAfterMs = httpException.getHttpResponse().getHeaders().get(X_MS_RETRY_AFTER_MS_HEADER);
-                    if (retryAfterMs != null) {
-                        delay = Long.parseLong(retryAfterMs);
-                    }
+            boolean recoverableError = HttpUtils.isRecoverableError(e);
+            long retryAfter = 0;
+            if (e instanceof HttpException) {
+                HttpException httpException = (HttpException) e;
+                String retryAfterMs = httpException.getHttpResponse().getHeaders().get(X_MS_RETRY_AFTER_MS_HEADER);
+                if (retryAfterMs != null) {
+                    retryAfter = Long.parseLong(retryAfterMs);
+                }
+            }
+
+            /*
+             * Let other calls to the host know whether it is failing, a non recoverable HTTP error still means the host answered.
+             * Any other error does not tell anything about the host but must still let another call probe it.
+             */
+            if (mHost != null) {
+                if (recoverableError) {
+                    mCircuitBreaker.onCallFailed(mHost, this, retryAfter, mRandom);
+                } else if (e instanceof HttpException) {
+                    mCircuitBreaker.onCallSucceeded(mHost);
+                } else {
+                    mCircuitBreaker.releaseProbe(mHost, this);
                 }
+            }
+            if (mRetryCount < mCircuitBreaker.getMaxRetries() && recoverableError) {
+                long delay = retryAfter;
                 if (delay == 0) {
-                    delay = RETRY_INTERVALS[mRetryCount++] / 2;
-                    delay += mRandom.nextInt((int) delay);
+                    delay = mCircuitBreaker.getBackoffDelay(mRetryCount++, mRandom);
                 }
                 String message = "Try #" + mRetryCount + " failed and will be retried in " + delay + " ms";
                 if (e instanceof UnknownHostException) {
                     message += " (UnknownHostException)";
                 }
                 AppCenterLog.warn(AppCenter.LOG_TAG, message, e);
+
+                /* Keep the request body for the retry, but not on the heap during long waits. */
+                final RequestBodyCache requestBodyCache = getRequestBodyCache();
+                if (requestBodyCache != null && mRequestBodyDirectory != null && delay >= MIN_DELAY_TO_STORE_BODY_IN_FILE) {
+                    mFileExecutor.execute(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            requestBodyCache.storeInFile(mRequestBodyDirectory);
+                        }
+                    });
+                }
                 mHandler.postDelayed(this, delay);
+
+                /* Notify after scheduling so that the callback can cancel the retry. */
+                if (mServiceCallback instanceof RetryAwareServiceCallback) {
+                    boolean requestBodyKept = requestBodyCache != null && requestBodyCache.hasBody();
+                    ((RetryAwareServiceCallback) mServiceCallback).onCallRetryScheduled(e, delay, requestBodyKept);
+                }
             } else {
+                releaseRequestBody();
                 mServiceCallback.onCallFailed(e);
             }
         }
@@ -6,13 +6,14 @@
 package com.microsoft.appcenter.http;
 
 import android.content.Context;
-import android.os.Build;
 import androidx.annotation.NonNull;
 import androidx.annotation.VisibleForTesting;
 
+import com.microsoft.appcenter.utils.AppCenterLog;
 import com.microsoft.appcenter.utils.NetworkStateHelper;
 
 import java.io.EOFException;
+import java.io.File;
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.net.SocketException;
@@ -20,7 +21,10 @@ import java.net.URL;
 import java.net.URLConnection;
 import java.net.UnknownHostException;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -28,6 +32,9 @@ import java.util.regex.Pattern;
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLException;
 
+import static com.microsoft.appcenter.AppCenter.LOG_TAG;
+import static com.microsoft.appcenter.http.DefaultHttpClient.METHOD_HEAD;
+
 /**
  * HTTP utilities.
  */
@@ -49,21 +56,57 @@ public class HttpUtils {
     public static final int WRITE_BUFFER_SIZE = 1024;
 
     /**
-     * HTTP connection timeout.
+     * HTTP connection timeout used until the round trip time of a host is known.
      */
     public static final int CONNECT_TIMEOUT = 10000;
 
     /**
-     * HTTP read timeout.
+     * HTTP read timeout used until the round trip time of a host is known.
      */
     public static final int READ_TIMEOUT = 10000;
 
+    /**
+     * Minimum HTTP connection timeout derived from round trip times.
+     */
+    @VisibleForTesting
+    static final int MIN_CONNECT_TIMEOUT = 3000;
+
+    /**
+     * Maximum HTTP connection timeout derived from round trip times.
+     */
+    @VisibleForTesting
+    static final int MAX_CONNECT_TIMEOUT = 30000;
+
+    /**
+     * Minimum HTTP read timeout derived from round trip times.
+     */
+    @VisibleForTesting
+    static final int MIN_READ_TIMEOUT = 5000;
+
+    /**
+     * Maximum HTTP read timeout, including the time to upload the request body.
+     */
+    @VisibleForTesting
+    static final int MAX_READ_TIMEOUT = 120000;
+
+    /**
+     * Throughput in bytes per second assumed to scale the read timeout with the request body size until it is measured.
+     */
+    @VisibleForTesting
+    static final long DEFAULT_THROUGHPUT = 8 * 1024;
+
     /**
      * Maximum characters to be displayed in a log for application secret.
      */
     @VisibleForTesting
     static final int MAX_CHARACTERS_DISPLAYED_FOR_SECRET = 8;
 
+    /**
+     * Directory, under the application cache directory, where request bodies are stored while waiting for retries.
+     */
+    @VisibleForTesting
+    static final String REQUEST_BODY_DIRECTORY = "appcenter-http";
+
     /**
      * Types of exception that can be retried, no matter what the details are. Sub-classes are included.
      */
@@ -195,7 +238,7 @@ public class HttpUtils {
     public static HttpClient createHttpClient(@NonNull Context context, boolean compressionEnabled) {
 
         /* Retryer should be applied last to avoid retries in offline. */
-        return new HttpClientRetryer(createHttpClientWithoutRetryer(context, compressionEnabled));
+        return new HttpClientRetryer(createHttpClientWithoutRetryer(context, compressionEnabled), getRequestBodyDirectory(context));
     }
 
     public static HttpClient createHttpClientWithoutRetryer(@NonNull Context context, boolean compressionEnabled) {
@@ -205,6 +248,161 @@ public class HttpUtils {
         return httpClient;
     }
 
+    /**
+     * Add the network state handling and retry behaviors of the SDK to another HTTP client implementation,
+     * typically before passing it to {@link com.microsoft.appcenter.DependencyConfiguration#setHttpClient(HttpClient)}.
+     *
+     * @param context    context.
+     * @param httpClient HTTP client making the calls.
+     * @return decorated HTTP client.
+     */
+    public static HttpClient decorateHttpClient(@NonNull Context context, @NonNull HttpClient httpClient) {
+        NetworkStateHelper networkStateHelper = NetworkStateHelper.getSharedInstance(context);
+
+        /* Retryer should be applied last to avoid retries in offline. */
+        return new HttpClientRetryer(new HttpClientNetworkStateHandler(httpClient, networkStateHelper), getRequestBodyDirectory(context));
+    }
+
+    /**
+     * Get the directory where request bodies are stored while waiting for retries.
+     */
+    private static File getRequestBodyDirectory(@NonNull Context context) {
+        return new File(context.getCacheDir(), REQUEST_BODY_DIRECTORY);
+    }
+
+    /**
+     * Get connection reuse and TLS handshake statistics of the HTTPS calls made by the SDK.
+     *
+     * @return statistics.
+     */
+    @NonNull
+    public static ConnectionStatistics getConnectionStatistics() {
+        return ConnectionPool.getSharedInstance().getStatistics();
+    }
+
+    /**
+     * Set how long connections can stay idle before being closed instead of reused.
+     *
+     * @param idleTimeout idle timeout in milliseconds, 0 to close connections as soon as no call uses them.
+     */
+    public static void setConnectionIdleTimeout(long idleTimeout) {
+        ConnectionPool.getSharedInstance().setIdleTimeout(idleTimeout);
+    }
+
+    /**
+     * Set a listener of the timing of every HTTP call made by the default HTTP client.
+     * Timings are also aggregated in {@link #getConnectionStatistics()} whether a listener is set or not.
+     *
+     * @param listener listener, null to remove it.
+     */
+    public static void setCallTimingListener(HttpCallTimingListener listener) {
+        ConnectionPool.getSharedInstance().setCallTimingListener(listener);
+    }
+
+    /**
+     * Retry failed calls using exponential backoff with full jitter instead of the default schedule.
+     * The delay before retry n (starting at 0) is random between 0 and {@code min(maxDelay, baseDelay * 2^n)}.
+     * The same delays are used for how long calls to a failing host wait, see {@link #setCircuitBreakerThreshold(int)}.
+     *
+     * @param maxRetries maximum number of retries of a call.
+     * @param baseDelay  base delay in milliseconds, 0 to restore the default schedule.
+     * @param maxDelay   maximum delay in milliseconds.
+     */
+    public static void setRetryBackoff(int maxRetries, long baseDelay, long maxDelay) {
+        CircuitBreaker.getSharedInstance().setBackoff(maxRetries, baseDelay, maxDelay);
+    }
+
+    /**
+     * Set how many consecutive failures to a host make all calls to that host wait before trying again.
+     * Once the wait is over, a single call probes the host before the others are made.
+     *
+     * @param failureThreshold number of consecutive failures, the default is 3.
+     */
+    public static void setCircuitBreakerThreshold(int failureThreshold) {
+        CircuitBreaker.getSharedInstance().setFailureThreshold(failureThreshold);
+    }
+
+    /**
+     * Open a connection to the host of a URL ahead of the first real call, so that this call does not wait for
+     * DNS resolution, TCP connect and TLS handshake. The connection is kept in the pool of the HTTP client.
+     * The request is a HEAD on the URL, its response is ignored and it is not retried.
+     * Calls are held by the HTTP client until the network is available.
+     *
+     * @param httpClient HTTP client that will make the real calls.
+     * @param url        URL of the real calls.
+     * @return call handle, to cancel it.
+     */
+    public static ServiceCall warmUpConnection(@NonNull HttpClient httpClient, @NonNull final String url) {
+
+        /* Skip the retryer: a failed warm-up must not make the real calls wait for the host in the circuit breaker. */
+        if (httpClient instanceof HttpClientRetryer) {
+            httpClient = ((HttpClientRetryer) httpClient).mDecoratedApi;
+        }
+        return httpClient.callAsync(url, METHOD_HEAD, new HashMap<String, String>(), new WarmUpCallTemplate(), new ServiceCallback() {
+
+            @Override
+            public void onCallSucceeded(HttpResponse httpResponse) {
+                AppCenterLog.debug(LOG_TAG, "Connection to " + url + " is warm.");
+            }
+
+            @Override
+            public void onCallFailed(Exception e) {
+
+                /* Any HTTP status means the connection was opened. */
+                if (e instanceof HttpException) {
+                    onCallSucceeded(((HttpException) e).getHttpResponse());
+                } else {
+                    AppCenterLog.debug(LOG_TAG, "Failed to warm up connection to " + url, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Get the connection timeout to use for a host.
+     * Connecting takes about 3 round trips with TLS, the round trip time includes a margin for its variation.
+     *
+     * @param host host name.
+     * @return timeout in milliseconds.
+     */
+    @VisibleForTesting
+    static int getConnectTimeout(String host) {
+        ConnectionStatistics statistics = getConnectionStatistics();
+        long roundTripTime = statistics.getRoundTripTime(host);
+        if (roundTripTime == 0) {
+            return CONNECT_TIMEOUT;
+        }
+        long timeout = 3 * (roundTripTime + 4 * statistics.getRoundTripTimeVariation(host));
+        return (int) Math.min(Math.max(timeout, MIN_CONNECT_TIMEOUT), MAX_CONNECT_TIMEOUT);
+    }
+
+    /**
+     * Get the read timeout to use for a host, scaled with the time to upload the request body.
+     * The timeout is doubled after each read that timed out until the host answers again.
+     *
+     * @param host          host name.
+     * @param payloadLength request body length in bytes, 0 if none or unknown.
+     * @return timeout in milliseconds.
+     */
+    @VisibleForTesting
+    static int getReadTimeout(String host, long payloadLength) {
+        ConnectionStatistics statistics = getConnectionStatistics();
+        long roundTripTime = statistics.getRoundTripTime(host);
+        long timeout = READ_TIMEOUT;
+        if (roundTripTime > 0) {
+            timeout = Math.max(2 * (roundTripTime + 4 * statistics.getRoundTripTimeVariation(host)), MIN_READ_TIMEOUT);
+        }
+        timeout <<= statistics.getReadTimeoutBackoff(host);
+
+        /* Allow twice the expected upload time. */
+        long throughput = statistics.getThroughput(host);
+        if (throughput == 0) {
+            throughput = DEFAULT_THROUGHPUT;
+        }
+        timeout += 2 * payloadLength * 1000 / throughput;
+        return (int) Math.min(timeout, MAX_READ_TIMEOUT);
+    }
+
     /**
      * Create HTTPS connection.
      *
@@ -225,26 +423,44 @@ public class HttpUtils {
             throw new IOException("App Center supports only HTTPS connection.");
         }
 
-        /*
-         * Make sure we use TLS 1.2 when the device supports it but not enabled by default.
-         * Don't hardcode TLS version when enabled by default to avoid unnecessary wrapping and
-         * to support future versions of TLS such as say 1.3 without having to patch this code.
-         *
-         * TLS 1.2 was enabled by default only on Android 5.0:
-         * https://developer.android.com/about/versions/android-5.0-changes#ssl
-         * https://developer.android.com/reference/javax/net/ssl/SSLSocket#default-configuration-for-different-android-versions
-         *
-         * There is a problem that TLS 1.2 is still disabled by default on some Samsung devices
-         * with API 21, so apply the rule to this API level as well.
-         * See https://github.com/square/okhttp/issues/2372#issuecomment-244807676
+        /* Use the same socket factory for all connections, pooled connections are only reused with the same factory. */
+        httpsURLConnection.setSSLSocketFactory(ConnectionPool.getSharedInstance().getSocketFactory());
+
+        /* Configure connection timeouts from what was observed with this host. */
+        String host = url.getHost();
+        httpsURLConnection.setConnectTimeout(getConnectTimeout(host));
+        httpsURLConnection.setReadTimeout(getReadTimeout(host, 0));
+        return httpsURLConnection;
+    }
+
+    /**
+     * Call template of connection warm up, the request has no body and the response is ignored.
+     */
+    private static class WarmUpCallTemplate implements HttpClient.CallTemplate {
+
+        /**
+         * Options of the call, only the status matters.
          */
-        if (Build.VERSION.SDK_INT <= Build.VERSION_CODES.LOLLIPOP) {
-            httpsURLConnection.setSSLSocketFactory(new TLS1_2SocketFactory());
+        private final CallOptions mCallOptions = new CallOptions();
+
+        WarmUpCallTemplate() {
+            mCallOptions.setResponseBodyNeeded(false);
+            mCallOptions.setResponseHeaderNames(Collections.<String>emptyList());
         }
 
-        /* Configure connection timeouts. */
-        httpsURLConnection.setConnectTimeout(CONNECT_TIMEOUT);
-        httpsURLConnection.setReadTimeout(READ_TIMEOUT);
-        return httpsURLConnection;
+        @Override
+        public String buildRequestBody() {
+            return null;
+        }
+
+        @Override
+        public void onBeforeCalling(URL url, Map<String, String> headers) {
+            AppCenterLog.verbose(LOG_TAG, "Warming up connection to " + url);
+        }
+
+        @Override
+        public CallOptions getCallOptions() {
+            return mCallOptions;
+        }
     }
 }
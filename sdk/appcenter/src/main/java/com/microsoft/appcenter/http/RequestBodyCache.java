@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.http;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.microsoft.appcenter.utils.AppCenterLog;
+import com.microsoft.appcenter.utils.storage.FileManager;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import static com.microsoft.appcenter.AppCenter.LOG_TAG;
+
+/**
+ * Request body of a call as sent on the wire, after serialization and compression.
+ * It is kept between the tries of a call so that retries send the same bytes without building them again.
+ * Bodies that clients stream to the connection are copied while sent, see {@link RequestBodyRecorder}.
+ * The body can be moved to a file while waiting for a retry so that it does not stay on the heap.
+ */
+public class RequestBodyCache {
+
+    /**
+     * Prefix of the files used to store bodies.
+     */
+    @VisibleForTesting
+    static final String FILE_PREFIX = "body-";
+
+    /**
+     * Directories where files of previous processes were deleted.
+     */
+    private static final Set<File> sCleanedDirectories = new HashSet<>();
+
+    /**
+     * Body in memory, null if not built yet or stored in {@link #mFile}.
+     */
+    private byte[] mBody;
+
+    /**
+     * File storing the body while waiting for a retry.
+     */
+    private File mFile;
+
+    /**
+     * Whether the body is compressed with gzip.
+     */
+    private boolean mCompressed;
+
+    /**
+     * Length of the body before compression.
+     */
+    private long mUncompressedLength;
+
+    /**
+     * Delete the body files left in a directory by previous processes, only the first time it's called for a directory.
+     * It's called before this process stores any body in the directory, so files of this process are never deleted.
+     *
+     * @param directory directory storing bodies.
+     */
+    static void deleteOrphanFiles(@NonNull File directory) {
+        synchronized (sCleanedDirectories) {
+            if (!sCleanedDirectories.add(directory)) {
+                return;
+            }
+            File[] files = directory.listFiles(new FilenameFilter() {
+
+                @Override
+                public boolean accept(File dir, String name) {
+                    return name.startsWith(FILE_PREFIX);
+                }
+            });
+            if (files != null && files.length > 0) {
+                AppCenterLog.debug(LOG_TAG, "Deleting " + files.length + " request body file(s) of a previous process.");
+                for (File file : files) {
+                    FileManager.delete(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Check if a body was stored.
+     *
+     * @return true if a body was stored and not cleared since.
+     */
+    public synchronized boolean hasBody() {
+        return mBody != null || mFile != null;
+    }
+
+    /**
+     * Check if the stored body is compressed with gzip.
+     *
+     * @return true if compressed.
+     */
+    public synchronized boolean isCompressed() {
+        return mCompressed;
+    }
+
+    /**
+     * Get the length of the stored body before compression, so that retries can report it without decompressing.
+     *
+     * @return length in bytes, 0 if no body stored.
+     */
+    public synchronized long getUncompressedLength() {
+        return mUncompressedLength;
+    }
+
+    /**
+     * Store the body sent by a call.
+     *
+     * @param body               body bytes as sent on the wire.
+     * @param compressed         true if body is compressed with gzip.
+     * @param uncompressedLength body length before compression.
+     */
+    public synchronized void setBody(@NonNull byte[] body, boolean compressed, long uncompressedLength) {
+        deleteFile();
+        mBody = body;
+        mCompressed = compressed;
+        mUncompressedLength = uncompressedLength;
+    }
+
+    /**
+     * Get the stored body, loading it back to memory if it was moved to a file.
+     *
+     * @return body bytes or null if no body stored or the file cannot be read.
+     */
+    @Nullable
+    public synchronized byte[] getBody() {
+        if (mBody == null && mFile != null) {
+            mBody = FileManager.readBytes(mFile);
+            deleteFile();
+        }
+        return mBody;
+    }
+
+    /**
+     * Move the body from memory to a file in the specified directory.
+     * The body is kept in memory if the file cannot be written.
+     *
+     * @param directory directory to store the file in, created if needed.
+     */
+    synchronized void storeInFile(@NonNull File directory) {
+        if (mBody == null) {
+            return;
+        }
+        File file = null;
+        try {
+            deleteOrphanFiles(directory);
+
+            //noinspection ResultOfMethodCallIgnored
+            directory.mkdirs();
+            file = File.createTempFile(FILE_PREFIX, null, directory);
+            FileOutputStream out = new FileOutputStream(file);
+
+            //noinspection TryFinallyCanBeTryWithResources
+            try {
+                out.write(mBody);
+            } finally {
+                out.close();
+            }
+            mFile = file;
+            mBody = null;
+        } catch (IOException e) {
+            AppCenterLog.warn(LOG_TAG, "Could not store request body in a file, keeping it in memory.", e);
+            if (file != null) {
+                FileManager.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Check if the body is currently stored in a file.
+     *
+     * @return true if stored in a file.
+     */
+    @VisibleForTesting
+    synchronized boolean isInFile() {
+        return mFile != null;
+    }
+
+    /**
+     * Release the body once there are no more tries, deleting its file if any.
+     */
+    public synchronized void clear() {
+        mBody = null;
+        mUncompressedLength = 0;
+        deleteFile();
+    }
+
+    private void deleteFile() {
+        if (mFile != null) {
+            FileManager.delete(mFile);
+            mFile = null;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.http;
+
+import androidx.annotation.NonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream that copies a streamed request body, as sent on the wire, while it is sent.
+ * The copy is stored in a {@link RequestBodyCache} so that retries do not serialize the body again.
+ */
+public class RequestBodyRecorder extends FilterOutputStream {
+
+    /**
+     * Where to store the copy.
+     */
+    private final RequestBodyCache mRequestBodyCache;
+
+    /**
+     * Whether the bytes written are compressed with gzip.
+     */
+    private final boolean mCompressed;
+
+    /**
+     * Copy of the bytes written.
+     */
+    private final ByteArrayOutputStream mCopy = new ByteArrayOutputStream();
+
+    /**
+     * Init.
+     *
+     * @param out              stream the body is sent to.
+     * @param requestBodyCache where to store the copy.
+     * @param compressed       true if the bytes written are compressed with gzip.
+     */
+    public RequestBodyRecorder(OutputStream out, @NonNull RequestBodyCache requestBodyCache, boolean compressed) {
+        super(out);
+        mRequestBodyCache = requestBodyCache;
+        mCompressed = compressed;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        mCopy.write(b);
+    }
+
+    @Override
+    public void write(@NonNull byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        mCopy.write(b, off, len);
+    }
+
+    /**
+     * Store the copy once the whole body was written. A body that failed to be sent is not stored.
+     *
+     * @param uncompressedLength body length before compression.
+     */
+    public void finish(long uncompressedLength) {
+        mRequestBodyCache.setBody(mCopy.toByteArray(), mCompressed, uncompressedLength);
+    }
+}
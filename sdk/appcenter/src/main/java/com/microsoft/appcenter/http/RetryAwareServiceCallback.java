@@ -0,0 +1,23 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.http;
+
+/**
+ * The callback used for client side asynchronous operations that also wants to know when a call waits for a retry.
+ */
+public interface RetryAwareServiceCallback extends ServiceCallback {
+
+    /**
+     * Called when a try failed with a recoverable error and the call will be made again after a delay.
+     * Either {@link #onCallSucceeded(HttpResponse)} or {@link #onCallFailed(Exception)} is still called once the call completes.
+     *
+     * @param e               the exception of the failed try.
+     * @param delay           the delay before the next try, in milliseconds.
+     * @param requestBodyKept true if the retry sends the request body kept from the failed try,
+     *                        the call template is then not asked to build the body again.
+     */
+    void onCallRetryScheduled(Exception e, long delay, boolean requestBodyKept);
+}
@@ -8,8 +8,6 @@ package com.microsoft.appcenter.http;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.Socket;
-import java.security.KeyManagementException;
-import java.security.NoSuchAlgorithmException;
 
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSocket;
@@ -40,19 +38,13 @@ class TLS1_2SocketFactory extends SSLSocketFactory {
     private final SSLSocketFactory delegate;
 
     TLS1_2SocketFactory() {
-        SSLSocketFactory socketFactory = null;
-        try {
-
-            /*
-             * Explicitly specify protocol for SSL context.
-             * See https://www.java.com/en/configure_crypto.html#enableTLSv1_2
-             */
-            SSLContext sc = SSLContext.getInstance(TLS1_2_PROTOCOL);
-            sc.init(null, null, null);
-            socketFactory = sc.getSocketFactory();
-        } catch (KeyManagementException | NoSuchAlgorithmException ignored) {
-        }
-        delegate = socketFactory != null ? socketFactory : getDefaultSSLSocketFactory();
+
+        /*
+         * Explicitly specify protocol for SSL context.
+         * See https://www.java.com/en/configure_crypto.html#enableTLSv1_2
+         */
+        SSLContext sc = ConnectionPool.createSSLContext(TLS1_2_PROTOCOL);
+        delegate = sc != null ? sc.getSocketFactory() : getDefaultSSLSocketFactory();
     }
 
     /**
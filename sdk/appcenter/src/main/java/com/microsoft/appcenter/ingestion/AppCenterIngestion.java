@@ -9,7 +9,9 @@ import androidx.annotation.NonNull;
 import androidx.annotation.VisibleForTesting;
 
 import com.microsoft.appcenter.http.AbstractAppCallTemplate;
+import com.microsoft.appcenter.http.CallOptions;
 import com.microsoft.appcenter.http.HttpClient;
+import com.microsoft.appcenter.http.RequestBodyCache;
 import com.microsoft.appcenter.http.ServiceCall;
 import com.microsoft.appcenter.http.ServiceCallback;
 import com.microsoft.appcenter.ingestion.models.LogContainer;
@@ -18,11 +20,16 @@ import com.microsoft.appcenter.ingestion.models.json.LogSerializer;
 import org.json.JSONException;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 
 import static com.microsoft.appcenter.Constants.APP_SECRET;
+import static com.microsoft.appcenter.http.DefaultHttpClient.CHARSET_NAME;
 import static com.microsoft.appcenter.http.DefaultHttpClient.METHOD_POST;
 
 /**
@@ -77,15 +84,24 @@ public class AppCenterIngestion extends AbstractAppCenterIngestion {
     /**
      * Inner class is used to be able to mock System.currentTimeMillis, does not work if using anonymous inner class...
      */
-    private static class IngestionCallTemplate extends AbstractAppCallTemplate {
+    private static class IngestionCallTemplate extends AbstractAppCallTemplate implements HttpClient.StreamingCallTemplate {
 
         private final LogSerializer mLogSerializer;
 
         private final LogContainer mLogContainer;
 
+        private final CallOptions mCallOptions = new CallOptions();
+
         IngestionCallTemplate(LogSerializer logSerializer, LogContainer logContainer) {
             mLogSerializer = logSerializer;
             mLogContainer = logContainer;
+
+            /* The acknowledgement returned by App Center ingestion is not used by the channel. */
+            mCallOptions.setResponseBodyNeeded(false);
+            mCallOptions.setResponseHeaderNames(Collections.<String>emptyList());
+            mCallOptions.setPriority(HttpClient.PRIORITY_LOG_UPLOAD);
+            mCallOptions.setRequestBodyCache(new RequestBodyCache());
+            mCallOptions.setCallerLooperCallback(true);
         }
 
         @Override
@@ -94,5 +110,19 @@ public class AppCenterIngestion extends AbstractAppCenterIngestion {
             /* Serialize payload. */
             return mLogSerializer.serializeContainer(mLogContainer);
         }
+
+        @Override
+        public void writeRequestBody(OutputStream out) throws IOException, JSONException {
+
+            /* Serialize payload directly to the connection. */
+            Writer writer = new OutputStreamWriter(out, CHARSET_NAME);
+            mLogSerializer.serializeContainer(writer, mLogContainer);
+            writer.flush();
+        }
+
+        @Override
+        public CallOptions getCallOptions() {
+            return mCallOptions;
+        }
     }
 }
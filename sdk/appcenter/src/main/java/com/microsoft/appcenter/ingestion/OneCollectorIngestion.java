@@ -9,8 +9,11 @@ import androidx.annotation.NonNull;
 import androidx.annotation.VisibleForTesting;
 
 import com.microsoft.appcenter.Constants;
+import com.microsoft.appcenter.Flags;
+import com.microsoft.appcenter.http.CallOptions;
 import com.microsoft.appcenter.http.HttpClient;
 import com.microsoft.appcenter.http.HttpUtils;
+import com.microsoft.appcenter.http.RequestBodyCache;
 import com.microsoft.appcenter.http.ServiceCall;
 import com.microsoft.appcenter.http.ServiceCallback;
 import com.microsoft.appcenter.ingestion.models.Log;
@@ -25,6 +28,7 @@ import org.json.JSONObject;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -45,7 +49,7 @@ public class OneCollectorIngestion extends AbstractAppCenterIngestion {
     /**
      * Default log URL.
      */
-    private static final String DEFAULT_LOG_URL = "https://mobile.events.data.microsoft.com/OneCollector/1.0";
+    public static final String DEFAULT_LOG_URL = "https://mobile.events.data.microsoft.com/OneCollector/1.0";
 
     /**
      * Content type header.
@@ -183,12 +187,44 @@ public class OneCollectorIngestion extends AbstractAppCenterIngestion {
          */
         private final LogContainer mLogContainer;
 
+        /**
+         * Call options, the same for every try as logs might not stay in memory between retries.
+         */
+        private final CallOptions mCallOptions = new CallOptions();
+
         /**
          * Init.
          */
         IngestionCallTemplate(LogSerializer logSerializer, LogContainer logContainer) {
             mLogSerializer = logSerializer;
             mLogContainer = logContainer;
+
+            /* The accepted log count returned by One Collector is not used by the channel. */
+            mCallOptions.setResponseBodyNeeded(false);
+            mCallOptions.setResponseHeaderNames(Collections.<String>emptyList());
+            mCallOptions.setPriority(computePriority(logContainer));
+            mCallOptions.setRequestBodyCache(new RequestBodyCache());
+            mCallOptions.setCallerLooperCallback(true);
+        }
+
+        /**
+         * Get the priority of a log upload.
+         *
+         * @param logContainer logs to send.
+         * @return priority of the call.
+         */
+        private static int computePriority(LogContainer logContainer) {
+
+            /* Logs keep the flags they were tracked with. */
+            for (Log log : logContainer.getLogs()) {
+                if (log instanceof CommonSchemaLog) {
+                    Long flags = ((CommonSchemaLog) log).getFlags();
+                    if (flags != null && Flags.getPersistenceFlag(flags.intValue(), false) == Flags.CRITICAL) {
+                        return HttpClient.PRIORITY_CRITICAL_LOG_UPLOAD;
+                    }
+                }
+            }
+            return HttpClient.PRIORITY_LOG_UPLOAD;
         }
 
         @Override
@@ -225,5 +261,10 @@ public class OneCollectorIngestion extends AbstractAppCenterIngestion {
                 AppCenterLog.verbose(LOG_TAG, "Headers: " + logHeaders);
             }
         }
+
+        @Override
+        public CallOptions getCallOptions() {
+            return mCallOptions;
+        }
     }
 }
@@ -6,8 +6,9 @@
 package com.microsoft.appcenter.ingestion.models;
 
 
-import androidx.annotation.VisibleForTesting;
+import android.util.JsonReader;
 
+import com.microsoft.appcenter.ingestion.models.json.DeviceOmittingWriter;
 import com.microsoft.appcenter.ingestion.models.json.JSONDateUtils;
 import com.microsoft.appcenter.ingestion.models.json.JSONUtils;
 
@@ -15,6 +16,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
 import java.util.Collections;
 import java.util.Date;
 import java.util.LinkedHashSet;
@@ -51,8 +53,7 @@ public abstract class AbstractLog implements Log {
     /**
      * device property.
      */
-    @VisibleForTesting
-    static final String DEVICE = "device";
+    public static final String DEVICE = "device";
 
     /**
      * Collection of transmissionTargetTokens that this log should be sent to.
@@ -166,13 +167,23 @@ public abstract class AbstractLog implements Log {
         JSONUtils.write(writer, SID, getSid());
         JSONUtils.write(writer, DISTRIBUTION_GROUP_ID, getDistributionGroupId());
         JSONUtils.write(writer, USER_ID, getUserId());
-        if (getDevice() != null) {
+        if (getDevice() != null && !isDeviceOmitted(writer)) {
             writer.key(DEVICE).object();
             getDevice().write(writer);
             writer.endObject();
         }
     }
 
+    /**
+     * Check whether the device is written separately by the caller of {@link #write(JSONStringer)}.
+     *
+     * @param writer writer.
+     * @return true if the device must not be written.
+     */
+    private static boolean isDeviceOmitted(JSONStringer writer) {
+        return writer instanceof DeviceOmittingWriter && ((DeviceOmittingWriter) writer).isDeviceOmitted();
+    }
+
     @Override
     public void read(JSONObject object) throws JSONException {
         if (!object.getString(TYPE).equals(getType())) {
@@ -191,6 +202,62 @@ public abstract class AbstractLog implements Log {
         }
     }
 
+    @Override
+    public void read(JsonReader reader) throws IOException, JSONException {
+        String type = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals(TYPE)) {
+                type = reader.nextString();
+            } else if (!readField(name, reader)) {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (!getType().equals(type)) {
+            throw new JSONException("Invalid type");
+        }
+        checkRequiredFields();
+    }
+
+    /**
+     * Read one field of this log from a JSON stream, subclasses handle their own fields then call super.
+     *
+     * @param name   field name.
+     * @param reader JSON stream positioned on the field value.
+     * @return true if the value was consumed, false if the field is unknown.
+     * @throws IOException   if the stream cannot be read.
+     * @throws JSONException if the value is invalid.
+     */
+    protected boolean readField(String name, JsonReader reader) throws IOException, JSONException {
+        if (name.equals(TIMESTAMP)) {
+            setTimestamp(JSONDateUtils.toDate(reader.nextString()));
+        } else if (name.equals(SID)) {
+            setSid(UUID.fromString(reader.nextString()));
+        } else if (name.equals(DISTRIBUTION_GROUP_ID)) {
+            setDistributionGroupId(reader.nextString());
+        } else if (name.equals(USER_ID)) {
+            setUserId(reader.nextString());
+        } else if (name.equals(DEVICE)) {
+            Device device = new Device();
+            device.read(reader);
+            setDevice(device);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Check fields that are mandatory were found after reading from a JSON stream.
+     *
+     * @throws JSONException if a mandatory field is missing.
+     */
+    protected void checkRequiredFields() throws JSONException {
+        JSONUtils.checkRequired(TIMESTAMP, getTimestamp());
+    }
+
     @SuppressWarnings("EqualsReplaceableByObjectsCall")
     @Override
     public boolean equals(Object o) {
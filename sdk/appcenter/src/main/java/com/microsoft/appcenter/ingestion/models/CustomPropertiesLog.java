@@ -5,6 +5,8 @@
 
 package com.microsoft.appcenter.ingestion.models;
 
+import android.util.JsonReader;
+
 import com.microsoft.appcenter.ingestion.models.json.JSONDateUtils;
 import com.microsoft.appcenter.ingestion.models.json.JSONUtils;
 
@@ -13,6 +15,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -62,6 +65,21 @@ public class CustomPropertiesLog extends AbstractLog {
         return properties;
     }
 
+    private static Map<String, Object> readProperties(JsonReader reader) throws IOException, JSONException {
+        Map<String, Object> properties = new HashMap<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+
+            /* Properties are small objects with a type discriminator, read them one at a time. */
+            JSONObject jProperty = JSONUtils.readObject(reader);
+            String key = jProperty.getString(PROPERTY_NAME);
+            Object value = readPropertyValue(jProperty);
+            properties.put(key, value);
+        }
+        reader.endArray();
+        return properties;
+    }
+
     @SuppressWarnings("IfCanBeSwitch")
     private static Object readPropertyValue(JSONObject object) throws JSONException {
         String type = object.getString(PROPERTY_TYPE);
@@ -149,6 +167,21 @@ public class CustomPropertiesLog extends AbstractLog {
         setProperties(readProperties(object));
     }
 
+    @Override
+    protected boolean readField(String name, JsonReader reader) throws IOException, JSONException {
+        if (name.equals(PROPERTIES)) {
+            setProperties(readProperties(reader));
+            return true;
+        }
+        return super.readField(name, reader);
+    }
+
+    @Override
+    protected void checkRequiredFields() throws JSONException {
+        super.checkRequiredFields();
+        JSONUtils.checkRequired(PROPERTIES, getProperties());
+    }
+
     @Override
     public void write(JSONStringer writer) throws JSONException {
         super.write(writer);
@@ -5,12 +5,16 @@
 
 package com.microsoft.appcenter.ingestion.models;
 
+import android.util.JsonReader;
+
 import com.microsoft.appcenter.ingestion.models.json.JSONUtils;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
+
 /**
  * Device characteristic log.
  */
@@ -439,6 +443,62 @@ public class Device extends WrapperSdk {
         setAppNamespace(object.optString(APP_NAMESPACE, null));
     }
 
+    @Override
+    protected boolean readField(String name, JsonReader reader) throws IOException {
+        if (name.equals(SDK_NAME)) {
+            setSdkName(reader.nextString());
+        } else if (name.equals(SDK_VERSION)) {
+            setSdkVersion(reader.nextString());
+        } else if (name.equals(MODEL)) {
+            setModel(reader.nextString());
+        } else if (name.equals(OEM_NAME)) {
+            setOemName(reader.nextString());
+        } else if (name.equals(OS_NAME)) {
+            setOsName(reader.nextString());
+        } else if (name.equals(OS_VERSION)) {
+            setOsVersion(reader.nextString());
+        } else if (name.equals(OS_BUILD)) {
+            setOsBuild(reader.nextString());
+        } else if (name.equals(OS_API_LEVEL)) {
+            setOsApiLevel(reader.nextInt());
+        } else if (name.equals(LOCALE)) {
+            setLocale(reader.nextString());
+        } else if (name.equals(TIME_ZONE_OFFSET)) {
+            setTimeZoneOffset(reader.nextInt());
+        } else if (name.equals(SCREEN_SIZE)) {
+            setScreenSize(reader.nextString());
+        } else if (name.equals(APP_VERSION)) {
+            setAppVersion(reader.nextString());
+        } else if (name.equals(CARRIER_NAME)) {
+            setCarrierName(reader.nextString());
+        } else if (name.equals(CARRIER_COUNTRY)) {
+            setCarrierCountry(reader.nextString());
+        } else if (name.equals(APP_BUILD)) {
+            setAppBuild(reader.nextString());
+        } else if (name.equals(APP_NAMESPACE)) {
+            setAppNamespace(reader.nextString());
+        } else {
+            return super.readField(name, reader);
+        }
+        return true;
+    }
+
+    @Override
+    protected void checkRequiredFields() throws JSONException {
+        super.checkRequiredFields();
+        JSONUtils.checkRequired(SDK_NAME, getSdkName());
+        JSONUtils.checkRequired(SDK_VERSION, getSdkVersion());
+        JSONUtils.checkRequired(MODEL, getModel());
+        JSONUtils.checkRequired(OEM_NAME, getOemName());
+        JSONUtils.checkRequired(OS_NAME, getOsName());
+        JSONUtils.checkRequired(OS_VERSION, getOsVersion());
+        JSONUtils.checkRequired(LOCALE, getLocale());
+        JSONUtils.checkRequired(TIME_ZONE_OFFSET, getTimeZoneOffset());
+        JSONUtils.checkRequired(SCREEN_SIZE, getScreenSize());
+        JSONUtils.checkRequired(APP_VERSION, getAppVersion());
+        JSONUtils.checkRequired(APP_BUILD, getAppBuild());
+    }
+
     @Override
     public void write(JSONStringer writer) throws JSONException {
         super.write(writer);
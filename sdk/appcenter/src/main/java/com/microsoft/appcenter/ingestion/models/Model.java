@@ -5,13 +5,19 @@
 
 package com.microsoft.appcenter.ingestion.models;
 
+import android.util.JsonReader;
+
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
+
 public interface Model {
 
     void read(JSONObject object) throws JSONException;
 
+    void read(JsonReader reader) throws IOException, JSONException;
+
     void write(JSONStringer writer) throws JSONException;
 }
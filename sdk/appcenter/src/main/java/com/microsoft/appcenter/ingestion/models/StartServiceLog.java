@@ -5,12 +5,15 @@
 
 package com.microsoft.appcenter.ingestion.models;
 
+import android.util.JsonReader;
+
 import com.microsoft.appcenter.ingestion.models.json.JSONUtils;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -60,6 +63,15 @@ public class StartServiceLog extends AbstractLog {
         setServices(JSONUtils.readStringArray(object, SERVICES));
     }
 
+    @Override
+    protected boolean readField(String name, JsonReader reader) throws IOException, JSONException {
+        if (name.equals(SERVICES)) {
+            setServices(JSONUtils.readStringArray(reader));
+            return true;
+        }
+        return super.readField(name, reader);
+    }
+
     @Override
     public void write(JSONStringer writer) throws JSONException {
         super.write(writer);
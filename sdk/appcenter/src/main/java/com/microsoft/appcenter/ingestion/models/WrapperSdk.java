@@ -5,12 +5,16 @@
 
 package com.microsoft.appcenter.ingestion.models;
 
+import android.util.JsonReader;
+
 import com.microsoft.appcenter.ingestion.models.json.JSONUtils;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
+
 public class WrapperSdk implements Model {
 
     private static final String WRAPPER_SDK_VERSION = "wrapperSdkVersion";
@@ -178,6 +182,54 @@ public class WrapperSdk implements Model {
         setLiveUpdatePackageHash(object.optString(LIVE_UPDATE_PACKAGE_HASH, null));
     }
 
+    @Override
+    public void read(JsonReader reader) throws IOException, JSONException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (!readField(name, reader)) {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        checkRequiredFields();
+    }
+
+    /**
+     * Read one field from a JSON stream, subclasses handle their own fields then call super.
+     *
+     * @param name   field name.
+     * @param reader JSON stream positioned on the field value.
+     * @return true if the value was consumed, false if the field is unknown.
+     * @throws IOException if the stream cannot be read.
+     */
+    protected boolean readField(String name, JsonReader reader) throws IOException {
+        if (name.equals(WRAPPER_SDK_VERSION)) {
+            setWrapperSdkVersion(reader.nextString());
+        } else if (name.equals(WRAPPER_SDK_NAME)) {
+            setWrapperSdkName(reader.nextString());
+        } else if (name.equals(WRAPPER_RUNTIME_VERSION)) {
+            setWrapperRuntimeVersion(reader.nextString());
+        } else if (name.equals(LIVE_UPDATE_RELEASE_LABEL)) {
+            setLiveUpdateReleaseLabel(reader.nextString());
+        } else if (name.equals(LIVE_UPDATE_DEPLOYMENT_KEY)) {
+            setLiveUpdateDeploymentKey(reader.nextString());
+        } else if (name.equals(LIVE_UPDATE_PACKAGE_HASH)) {
+            setLiveUpdatePackageHash(reader.nextString());
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Check fields that are mandatory were found after reading from a JSON stream.
+     *
+     * @throws JSONException if a mandatory field is missing.
+     */
+    protected void checkRequiredFields() throws JSONException {
+    }
+
     @Override
     public void write(JSONStringer writer) throws JSONException {
         JSONUtils.write(writer, WRAPPER_SDK_VERSION, getWrapperSdkVersion());
@@ -5,8 +5,14 @@
 
 package com.microsoft.appcenter.ingestion.models.json;
 
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.JsonWriter;
+
 import androidx.annotation.NonNull;
 
+import com.microsoft.appcenter.ingestion.models.AbstractLog;
+import com.microsoft.appcenter.ingestion.models.Device;
 import com.microsoft.appcenter.ingestion.models.Log;
 import com.microsoft.appcenter.ingestion.models.LogContainer;
 import com.microsoft.appcenter.ingestion.models.one.CommonSchemaLog;
@@ -16,6 +22,10 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -30,6 +40,16 @@ public class DefaultLogSerializer implements LogSerializer {
 
     private final Map<String, LogFactory> mLogFactories = new HashMap<>();
 
+    /**
+     * Device whose serialized form is cached, compared by reference.
+     */
+    private Device mCachedDevice;
+
+    /**
+     * Serialized form of {@link #mCachedDevice}.
+     */
+    private String mCachedDeviceJson;
+
     @NonNull
     private JSONStringer writeLog(JSONStringer writer, Log log) throws JSONException {
         writer.object();
@@ -38,6 +58,73 @@ public class DefaultLogSerializer implements LogSerializer {
         return writer;
     }
 
+    /**
+     * Write a log directly to a JSON stream.
+     *
+     * @param writer JSON stream.
+     * @param log    log to write.
+     * @throws JSONException if log cannot be serialized or stream cannot be written.
+     */
+    public void writeLog(@NonNull JsonWriter writer, @NonNull Log log) throws JSONException {
+        writeLog(new JsonWriterStringer(writer), log);
+    }
+
+    private void writeContainer(JsonWriterStringer writer, LogContainer logContainer) throws JSONException {
+        writer.object();
+        writer.key(LOGS).array();
+        for (Log log : logContainer.getLogs()) {
+            writeContainerLog(writer, log);
+        }
+        writer.endArray();
+        writer.endObject();
+    }
+
+    /**
+     * Write a log of a container, splicing the cached device JSON instead of serializing the device again.
+     *
+     * @param writer JSON stream.
+     * @param log    log to write.
+     * @throws JSONException if log cannot be serialized or stream cannot be written.
+     */
+    private void writeContainerLog(JsonWriterStringer writer, Log log) throws JSONException {
+        Device device = log.getDevice();
+        if (device == null || log instanceof CommonSchemaLog || !writer.canWriteRawField()) {
+            writeLog(writer, log);
+            return;
+        }
+        String deviceJson = getDeviceJson(device);
+        writer.object();
+
+        /* Write other fields without the device, the log itself is not modified as other threads can read it. */
+        writer.setDeviceOmitted(true);
+        try {
+            log.write(writer);
+        } finally {
+            writer.setDeviceOmitted(false);
+        }
+        writer.rawField(AbstractLog.DEVICE, deviceJson);
+        writer.endObject();
+    }
+
+    /**
+     * Get the serialized form of a device, logs of a batch usually share the same instance.
+     *
+     * @param device device.
+     * @return device JSON object.
+     * @throws JSONException if device cannot be serialized.
+     */
+    private synchronized String getDeviceJson(Device device) throws JSONException {
+        if (device != mCachedDevice) {
+            JSONStringer writer = new JSONStringer();
+            writer.object();
+            device.write(writer);
+            writer.endObject();
+            mCachedDeviceJson = writer.toString();
+            mCachedDevice = device;
+        }
+        return mCachedDeviceJson;
+    }
+
     @NonNull
     private Log readLog(JSONObject object, String type) throws JSONException {
         if (type == null) {
@@ -52,16 +139,71 @@ public class DefaultLogSerializer implements LogSerializer {
         return log;
     }
 
+    /**
+     * Read a log directly from a JSON stream, without building an intermediate {@link JSONObject}.
+     *
+     * @param reader JSON stream positioned on the log object.
+     * @param type   log type, it must be known in advance as it can appear anywhere in the stream.
+     * @return log.
+     * @throws JSONException if the log cannot be read.
+     */
+    @NonNull
+    public Log readLog(@NonNull JsonReader reader, @NonNull String type) throws JSONException {
+        LogFactory logFactory = mLogFactories.get(type);
+        if (logFactory == null) {
+            throw new JSONException("Unknown log type: " + type);
+        }
+        Log log = logFactory.create();
+        try {
+            log.read(reader);
+        } catch (IOException | IllegalStateException | IllegalArgumentException e) {
+            throw toJSONException(e);
+        }
+        return log;
+    }
+
+    /**
+     * Convert a JSON stream error to the exception used by the serializer.
+     *
+     * @param e stream error (malformed JSON, unexpected token or invalid value).
+     * @return JSON exception to throw.
+     */
+    private static JSONException toJSONException(Exception e) {
+        JSONException jsonException = new JSONException(e.getMessage());
+        jsonException.initCause(e);
+        return jsonException;
+    }
+
     @NonNull
     @Override
     public String serializeLog(@NonNull Log log) throws JSONException {
         return writeLog(new JSONStringer(), log).toString();
     }
 
+    @NonNull
+    @Override
+    public String serializeLogWithoutDevice(@NonNull Log log) throws JSONException {
+        return writeLog(new DeviceOmittingStringer(), log).toString();
+    }
+
     @NonNull
     @Override
     public Log deserializeLog(@NonNull String json, String type) throws JSONException {
-        return readLog(new JSONObject(json), type);
+        if (type == null) {
+            return readLog(new JSONObject(json), null);
+        }
+        JsonReader reader = new JsonReader(new StringReader(json));
+        try {
+            Log log = readLog(reader, type);
+            if (reader.peek() != JsonToken.END_DOCUMENT) {
+                throw new JSONException("Unexpected content after log");
+            }
+            return log;
+        } catch (IOException | IllegalStateException e) {
+            throw toJSONException(e);
+        } finally {
+            closeQuietly(reader);
+        }
     }
 
     @Override
@@ -73,23 +215,25 @@ public class DefaultLogSerializer implements LogSerializer {
     @Override
     public String serializeContainer(@NonNull LogContainer logContainer) throws JSONException {
 
-        /* Init JSON serializer. */
-        JSONStringer writer = new JSONStringer();
+        /* Use the same writer as streaming so that the cached device can be spliced. */
+        StringWriter stringWriter = new StringWriter();
+        serializeContainer(stringWriter, logContainer);
+        return stringWriter.toString();
+    }
 
-        /* Start writing JSON. */
-        writer.object();
-        writer.key(LOGS).array();
-        for (Log log : logContainer.getLogs()) {
-            writeLog(writer, log);
-        }
-        writer.endArray();
-        writer.endObject();
-        return writer.toString();
+    @Override
+    public void serializeContainer(@NonNull Writer writer, @NonNull LogContainer logContainer) throws JSONException {
+        JsonWriterStringer stringer = new JsonWriterStringer(writer);
+        writeContainer(stringer, logContainer);
+        stringer.flush();
     }
 
     @NonNull
     @Override
     public LogContainer deserializeContainer(@NonNull String json, String type) throws JSONException {
+        if (type != null) {
+            return readContainer(json, type);
+        }
         JSONObject jContainer = new JSONObject(json);
         LogContainer container = new LogContainer();
         JSONArray jLogs = jContainer.getJSONArray(LOGS);
@@ -103,8 +247,63 @@ public class DefaultLogSerializer implements LogSerializer {
         return container;
     }
 
+    private LogContainer readContainer(String json, String type) throws JSONException {
+        JsonReader reader = new JsonReader(new StringReader(json));
+        try {
+            List<Log> logs = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals(LOGS)) {
+                    logs = new ArrayList<>();
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        logs.add(readLog(reader, type));
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            JSONUtils.checkRequired(LOGS, logs);
+            LogContainer container = new LogContainer();
+            container.setLogs(logs);
+            return container;
+        } catch (IOException | IllegalStateException e) {
+            throw toJSONException(e);
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    private static void closeQuietly(JsonReader reader) {
+        try {
+            reader.close();
+        } catch (IOException ignored) {
+
+            /* Reading from a string, nothing to release. */
+        }
+    }
+
+    @Override
+    public synchronized void invalidateDeviceCache() {
+        mCachedDevice = null;
+        mCachedDeviceJson = null;
+    }
+
     @Override
     public void addLogFactory(@NonNull String logType, @NonNull LogFactory logFactory) {
         mLogFactories.put(logType, logFactory);
     }
+
+    /**
+     * {@link JSONStringer} that makes logs skip their device.
+     */
+    private static class DeviceOmittingStringer extends JSONStringer implements DeviceOmittingWriter {
+
+        @Override
+        public boolean isDeviceOmitted() {
+            return true;
+        }
+    }
 }
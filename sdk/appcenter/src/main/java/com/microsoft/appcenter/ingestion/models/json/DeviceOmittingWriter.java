@@ -0,0 +1,20 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.ingestion.models.json;
+
+/**
+ * Implemented by writers whose caller writes or stores the device of a log separately,
+ * so that the log must not write its own device.
+ */
+public interface DeviceOmittingWriter {
+
+    /**
+     * Check whether logs must skip their device field when writing to this writer.
+     *
+     * @return true to skip the device.
+     */
+    boolean isDeviceOmitted();
+}
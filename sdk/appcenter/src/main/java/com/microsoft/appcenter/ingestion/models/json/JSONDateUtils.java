@@ -22,7 +22,43 @@ import java.util.TimeZone;
 public final class JSONDateUtils {
 
     /**
-     * Date formatter.
+     * Length of a formatted date: yyyy-MM-ddTHH:mm:ss.SSSZ.
+     */
+    private static final int DATE_LENGTH = 24;
+
+    /**
+     * First time formatted without {@link SimpleDateFormat}: 1583-01-01T00:00:00.000Z.
+     * {@link SimpleDateFormat} switches to the Julian calendar before October 1582.
+     */
+    private static final long MIN_FAST_TIME = -12212553600000L;
+
+    /**
+     * First time formatted with more than 4 year digits: 10000-01-01T00:00:00.000Z.
+     */
+    private static final long MAX_FAST_TIME = 253402300800000L;
+
+    /**
+     * Milliseconds in a day.
+     */
+    private static final long MILLIS_PER_DAY = 86400000L;
+
+    /**
+     * Days from 0000-03-01 to 1970-01-01 in the proleptic Gregorian calendar.
+     */
+    private static final int DAYS_0000_TO_1970 = 719468;
+
+    /**
+     * Days in a 400 years cycle.
+     */
+    private static final int DAYS_PER_CYCLE = 146097;
+
+    /**
+     * Value returned by {@link #parseTime(String)} when the string is not in the canonical format.
+     */
+    private static final long INVALID_TIME = Long.MIN_VALUE;
+
+    /**
+     * Date formatter, used for dates out of the range handled by {@link #format(long)} and {@link #parseTime(String)}.
      */
     private static final ThreadLocal<DateFormat> DATE_FORMAT = new ThreadLocal<DateFormat>() {
 
@@ -34,6 +70,17 @@ public final class JSONDateUtils {
         }
     };
 
+    /**
+     * Reusable buffer to write date characters.
+     */
+    private static final ThreadLocal<char[]> BUFFER = new ThreadLocal<char[]>() {
+
+        @Override
+        protected char[] initialValue() {
+            return new char[DATE_LENGTH];
+        }
+    };
+
     /**
      * Check date parameter is null.
      *
@@ -55,7 +102,20 @@ public final class JSONDateUtils {
      */
     public static String toString(Date date) throws JSONException {
         checkNull(date);
-        return DATE_FORMAT.get().format(date);
+        return toString(date.getTime());
+    }
+
+    /**
+     * Convert time to string.
+     *
+     * @param time time in milliseconds since epoch.
+     * @return string.
+     */
+    public static String toString(long time) {
+        if (time < MIN_FAST_TIME || time >= MAX_FAST_TIME) {
+            return DATE_FORMAT.get().format(new Date(time));
+        }
+        return format(time);
     }
 
     /**
@@ -66,11 +126,157 @@ public final class JSONDateUtils {
      * @throws JSONException if string has a wrong format or is null.
      */
     public static Date toDate(String date) throws JSONException {
+        return new Date(toTime(date));
+    }
+
+    /**
+     * Convert string to time.
+     *
+     * @param date date.
+     * @return time in milliseconds since epoch.
+     * @throws JSONException if string has a wrong format or is null.
+     */
+    public static long toTime(String date) throws JSONException {
         checkNull(date);
+        long time = parseTime(date);
+        if (time != INVALID_TIME) {
+            return time;
+        }
+
+        /* Out of range or not written by toString, keep the previous parsing behavior. */
         try {
-            return DATE_FORMAT.get().parse(date);
+            return DATE_FORMAT.get().parse(date).getTime();
         } catch (ParseException e) {
             throw new JSONException(e.getMessage());
         }
     }
+
+    /**
+     * Format a time between {@link #MIN_FAST_TIME} and {@link #MAX_FAST_TIME}.
+     *
+     * @param time time in milliseconds since epoch.
+     * @return string.
+     */
+    private static String format(long time) {
+
+        /* Split days and time of day, rounding toward negative infinity for dates before epoch. */
+        long days = time / MILLIS_PER_DAY;
+        int millisOfDay = (int) (time % MILLIS_PER_DAY);
+        if (millisOfDay < 0) {
+            days--;
+            millisOfDay += MILLIS_PER_DAY;
+        }
+
+        /* Convert days to year, month and day with years starting in March so that leap day is last. */
+        long shiftedDays = days + DAYS_0000_TO_1970;
+        long cycle = shiftedDays / DAYS_PER_CYCLE;
+        int dayOfCycle = (int) (shiftedDays - cycle * DAYS_PER_CYCLE);
+        int yearOfCycle = (dayOfCycle - dayOfCycle / 1460 + dayOfCycle / 36524 - dayOfCycle / 146096) / 365;
+        int dayOfYear = dayOfCycle - (365 * yearOfCycle + yearOfCycle / 4 - yearOfCycle / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        int year = (int) (cycle * 400) + yearOfCycle + (month <= 2 ? 1 : 0);
+
+        /* Write digits. */
+        char[] buffer = BUFFER.get();
+        writeDigits(buffer, 0, 4, year);
+        buffer[4] = '-';
+        writeDigits(buffer, 5, 2, month);
+        buffer[7] = '-';
+        writeDigits(buffer, 8, 2, day);
+        buffer[10] = 'T';
+        writeDigits(buffer, 11, 2, millisOfDay / 3600000);
+        buffer[13] = ':';
+        writeDigits(buffer, 14, 2, millisOfDay / 60000 % 60);
+        buffer[16] = ':';
+        writeDigits(buffer, 17, 2, millisOfDay / 1000 % 60);
+        buffer[19] = '.';
+        writeDigits(buffer, 20, 3, millisOfDay % 1000);
+        buffer[23] = 'Z';
+        return new String(buffer);
+    }
+
+    /**
+     * Write a zero padded number.
+     *
+     * @param buffer destination.
+     * @param offset index of the first digit.
+     * @param count  number of digits.
+     * @param value  positive number.
+     */
+    private static void writeDigits(char[] buffer, int offset, int count, int value) {
+        for (int i = offset + count - 1; i >= offset; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    /**
+     * Parse a date written by {@link #format(long)}.
+     *
+     * @param date date.
+     * @return time in milliseconds since epoch or {@link #INVALID_TIME} if the date is not in the exact format or out of range.
+     */
+    private static long parseTime(String date) {
+        if (date.length() != DATE_LENGTH
+                || date.charAt(4) != '-' || date.charAt(7) != '-' || date.charAt(10) != 'T'
+                || date.charAt(13) != ':' || date.charAt(16) != ':' || date.charAt(19) != '.' || date.charAt(23) != 'Z') {
+            return INVALID_TIME;
+        }
+        int year = readDigits(date, 0, 4);
+        int month = readDigits(date, 5, 2);
+        int day = readDigits(date, 8, 2);
+        int hour = readDigits(date, 11, 2);
+        int minute = readDigits(date, 14, 2);
+        int second = readDigits(date, 17, 2);
+        int millis = readDigits(date, 20, 3);
+        if (year < 1583 || month < 1 || month > 12 || day < 1 || day > getDaysInMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59 || millis < 0) {
+            return INVALID_TIME;
+        }
+
+        /* Convert year, month and day to days since epoch, years starting in March. */
+        int shiftedYear = month <= 2 ? year - 1 : year;
+        int cycle = shiftedYear / 400;
+        int yearOfCycle = shiftedYear - cycle * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfCycle = yearOfCycle * 365 + yearOfCycle / 4 - yearOfCycle / 100 + dayOfYear;
+        long days = (long) cycle * DAYS_PER_CYCLE + dayOfCycle - DAYS_0000_TO_1970;
+        return days * MILLIS_PER_DAY + hour * 3600000L + minute * 60000L + second * 1000L + millis;
+    }
+
+    /**
+     * Read a fixed number of digits.
+     *
+     * @param date   string.
+     * @param offset index of the first digit.
+     * @param count  number of digits.
+     * @return number or -1 if a character is not a digit.
+     */
+    private static int readDigits(String date, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            char c = date.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + c - '0';
+        }
+        return value;
+    }
+
+    /**
+     * Get number of days in a month of the Gregorian calendar.
+     *
+     * @param year  year.
+     * @param month month from 1 to 12.
+     * @return number of days.
+     */
+    private static int getDaysInMonth(int year, int month) {
+        if (month == 2) {
+            return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
 }
@@ -5,6 +5,8 @@
 
 package com.microsoft.appcenter.ingestion.models.json;
 
+import android.util.JsonReader;
+
 import androidx.annotation.VisibleForTesting;
 
 import com.microsoft.appcenter.ingestion.models.Model;
@@ -14,6 +16,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -22,6 +25,11 @@ import java.util.Map;
 
 public class JSONUtils {
 
+    /**
+     * Initial list capacity when reading an array from a stream, as the size is not known in advance.
+     */
+    private static final int DEFAULT_LIST_CAPACITY = 10;
+
     @VisibleForTesting
     JSONUtils() {
     }
@@ -88,6 +96,129 @@ public class JSONUtils {
         return array;
     }
 
+    public static Map<String, String> readMap(JsonReader reader) throws IOException {
+        Map<String, String> properties = new HashMap<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            properties.put(reader.nextName(), reader.nextString());
+        }
+        reader.endObject();
+        return properties;
+    }
+
+    public static <M extends Model> List<M> readArray(JsonReader reader, ModelFactory<M> factory) throws IOException, JSONException {
+        List<M> array = factory.createList(DEFAULT_LIST_CAPACITY);
+        reader.beginArray();
+        while (reader.hasNext()) {
+            M model = factory.create();
+            model.read(reader);
+            array.add(model);
+        }
+        reader.endArray();
+        return array;
+    }
+
+    public static List<String> readStringArray(JsonReader reader) throws IOException {
+        List<String> array = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            array.add(reader.nextString());
+        }
+        reader.endArray();
+        return array;
+    }
+
+    /**
+     * Read any JSON value from a stream using the same types as {@link JSONObject#get(String)}.
+     *
+     * @param reader JSON stream.
+     * @return {@link JSONObject}, {@link JSONArray}, {@link String}, {@link Boolean}, {@link Integer},
+     * {@link Long}, {@link Double} or {@link JSONObject#NULL}.
+     * @throws IOException   if the stream cannot be read.
+     * @throws JSONException if the value cannot be represented.
+     */
+    public static Object readValue(JsonReader reader) throws IOException, JSONException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT:
+                return readObject(reader);
+
+            case BEGIN_ARRAY:
+                JSONArray array = new JSONArray();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    array.put(readValue(reader));
+                }
+                reader.endArray();
+                return array;
+
+            case STRING:
+                return reader.nextString();
+
+            case NUMBER:
+                return readNumber(reader.nextString());
+
+            case BOOLEAN:
+                return reader.nextBoolean();
+
+            case NULL:
+                reader.nextNull();
+                return JSONObject.NULL;
+
+            default:
+                throw new JSONException("Unexpected token " + reader.peek());
+        }
+    }
+
+    /**
+     * Read a JSON object from a stream.
+     *
+     * @param reader JSON stream.
+     * @return object.
+     * @throws IOException   if the stream cannot be read.
+     * @throws JSONException if a value cannot be represented.
+     */
+    public static JSONObject readObject(JsonReader reader) throws IOException, JSONException {
+        JSONObject object = new JSONObject();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            object.put(reader.nextName(), readValue(reader));
+        }
+        reader.endObject();
+        return object;
+    }
+
+    /**
+     * Check a mandatory field was found when reading a model from a stream.
+     *
+     * @param key   field name.
+     * @param value value read, null if the field was missing.
+     * @throws JSONException if the value is missing.
+     */
+    public static void checkRequired(String key, Object value) throws JSONException {
+        if (value == null) {
+            throw new JSONException("Missing " + key);
+        }
+    }
+
+    /**
+     * Convert a number literal the same way {@link JSONObject#JSONObject(String)} does.
+     */
+    private static Number readNumber(String literal) {
+        if (literal.indexOf('.') == -1 && literal.indexOf('e') == -1 && literal.indexOf('E') == -1) {
+            try {
+                long longValue = Long.parseLong(literal);
+                if (longValue <= Integer.MAX_VALUE && longValue >= Integer.MIN_VALUE) {
+                    return (int) longValue;
+                }
+                return longValue;
+            } catch (NumberFormatException ignored) {
+
+                /* Too big for a long, use a double like JSONObject. */
+            }
+        }
+        return Double.valueOf(literal);
+    }
+
     public static void write(JSONStringer writer, String key, Object value) throws JSONException {
         if (value != null) {
             writer.key(key).value(value);
@@ -0,0 +1,323 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.ingestion.models.json;
+
+import android.util.JsonWriter;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONStringer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+/**
+ * {@link JSONStringer} that forwards every token to a {@link JsonWriter} instead of building a string,
+ * so that models can be streamed with their existing {@link Model#write(JSONStringer)} implementation.
+ */
+class JsonWriterStringer extends JSONStringer implements DeviceOmittingWriter {
+
+    /**
+     * Scope of an object with no field yet.
+     */
+    private static final int SCOPE_EMPTY_OBJECT = 0;
+
+    /**
+     * Scope of an object with at least one complete field.
+     */
+    private static final int SCOPE_NONEMPTY_OBJECT = 1;
+
+    /**
+     * Scope of an object whose last field name waits for its value.
+     */
+    private static final int SCOPE_DANGLING_NAME = 2;
+
+    /**
+     * Scope of an array.
+     */
+    private static final int SCOPE_ARRAY = 3;
+
+    /**
+     * Destination writer.
+     */
+    private final JsonWriter mWriter;
+
+    /**
+     * Character stream {@link #mWriter} writes to, null if raw fields are not supported.
+     */
+    private final Writer mOut;
+
+    /**
+     * Scopes being written, innermost last, one of the SCOPE_* constants.
+     */
+    private final Deque<Integer> mScopes = new ArrayDeque<>();
+
+    /**
+     * Whether logs currently written must skip their device.
+     */
+    private boolean mDeviceOmitted;
+
+    /**
+     * Init.
+     *
+     * @param writer destination writer.
+     */
+    JsonWriterStringer(@NonNull JsonWriter writer) {
+        this(writer, null);
+    }
+
+    /**
+     * Init with support for raw fields. The {@link JsonWriter} is created here and never indented,
+     * so that raw fields written to the character stream match its output.
+     *
+     * @param out character stream to write to.
+     */
+    JsonWriterStringer(@NonNull Writer out) {
+        this(new JsonWriter(out), out);
+    }
+
+    /**
+     * Init.
+     *
+     * @param writer destination writer.
+     * @param out    character stream the writer writes to, null if raw fields are not supported.
+     */
+    private JsonWriterStringer(@NonNull JsonWriter writer, @Nullable Writer out) {
+        mWriter = writer;
+        mOut = out;
+    }
+
+    @Override
+    public boolean isDeviceOmitted() {
+        return mDeviceOmitted;
+    }
+
+    /**
+     * Set whether logs written from now on must skip their device.
+     *
+     * @param deviceOmitted true to skip the device.
+     */
+    void setDeviceOmitted(boolean deviceOmitted) {
+        mDeviceOmitted = deviceOmitted;
+    }
+
+    /**
+     * Check whether {@link #rawField(String, String)} can be used.
+     *
+     * @return true if raw fields are supported.
+     */
+    boolean canWriteRawField() {
+        return mOut != null;
+    }
+
+    /**
+     * Flush the destination writer.
+     *
+     * @throws JSONException if the stream cannot be written.
+     */
+    void flush() throws JSONException {
+        try {
+            mWriter.flush();
+        } catch (IOException e) {
+            throw toJSONException(e);
+        }
+    }
+
+    /**
+     * Update scopes after a value is written, the value completes a field if a name was waiting for it.
+     */
+    private void onValueWritten() {
+        if (!mScopes.isEmpty() && mScopes.peekLast() == SCOPE_DANGLING_NAME) {
+            mScopes.removeLast();
+            mScopes.addLast(SCOPE_NONEMPTY_OBJECT);
+        }
+    }
+
+    /**
+     * Convert a writer error to the exception used by the JSON models.
+     *
+     * @param e writer error.
+     * @return JSON exception to throw.
+     */
+    private static JSONException toJSONException(Exception e) {
+        JSONException jsonException = new JSONException(e.getMessage());
+        jsonException.initCause(e);
+        return jsonException;
+    }
+
+    @Override
+    public JSONStringer array() throws JSONException {
+        try {
+            mWriter.beginArray();
+        } catch (IOException | IllegalStateException e) {
+            throw toJSONException(e);
+        }
+        onValueWritten();
+        mScopes.addLast(SCOPE_ARRAY);
+        return this;
+    }
+
+    @Override
+    public JSONStringer endArray() throws JSONException {
+        try {
+            mWriter.endArray();
+        } catch (IOException | IllegalStateException e) {
+            throw toJSONException(e);
+        }
+        mScopes.removeLast();
+        return this;
+    }
+
+    @Override
+    public JSONStringer object() throws JSONException {
+        try {
+            mWriter.beginObject();
+        } catch (IOException | IllegalStateException e) {
+            throw toJSONException(e);
+        }
+        onValueWritten();
+        mScopes.addLast(SCOPE_EMPTY_OBJECT);
+        return this;
+    }
+
+    @Override
+    public JSONStringer endObject() throws JSONException {
+        try {
+            mWriter.endObject();
+        } catch (IOException | IllegalStateException e) {
+            throw toJSONException(e);
+        }
+        mScopes.removeLast();
+        return this;
+    }
+
+    @Override
+    public JSONStringer key(String name) throws JSONException {
+        if (name == null) {
+            throw new JSONException("Names must be non-null");
+        }
+        try {
+            mWriter.name(name);
+        } catch (IOException | IllegalStateException e) {
+            throw toJSONException(e);
+        }
+        mScopes.removeLast();
+        mScopes.addLast(SCOPE_DANGLING_NAME);
+        return this;
+    }
+
+    @Override
+    public JSONStringer value(boolean value) throws JSONException {
+        try {
+            mWriter.value(value);
+        } catch (IOException | IllegalStateException e) {
+            throw toJSONException(e);
+        }
+        onValueWritten();
+        return this;
+    }
+
+    @Override
+    public JSONStringer value(double value) throws JSONException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new JSONException("Forbidden numeric value: " + value);
+        }
+        try {
+            mWriter.value(value);
+        } catch (IOException | IllegalStateException e) {
+            throw toJSONException(e);
+        }
+        onValueWritten();
+        return this;
+    }
+
+    @Override
+    public JSONStringer value(long value) throws JSONException {
+        try {
+            mWriter.value(value);
+        } catch (IOException | IllegalStateException e) {
+            throw toJSONException(e);
+        }
+        onValueWritten();
+        return this;
+    }
+
+    /**
+     * Append a field whose value is already serialized as JSON to the current object, without parsing it again.
+     * {@link JsonWriter} has no API for raw values and writes every token straight to its stream without buffering,
+     * so the field is written to that stream after flushing the writer. The current object must already have
+     * a complete field: the writer then expects a separator before any next field, like the one written here.
+     *
+     * @param name field name.
+     * @param json serialized JSON value.
+     * @throws JSONException if raw fields are not supported, the current object has no field yet or the stream cannot be written.
+     */
+    void rawField(@NonNull String name, @NonNull String json) throws JSONException {
+        if (mOut == null) {
+            throw new JSONException("Raw fields are not supported by this writer.");
+        }
+        if (mScopes.isEmpty() || mScopes.peekLast() != SCOPE_NONEMPTY_OBJECT) {
+            throw new JSONException("Raw field must follow a complete field of the same object.");
+        }
+        try {
+            mWriter.flush();
+            mOut.write(',');
+            mOut.write(JSONObject.quote(name));
+            mOut.write(':');
+            mOut.write(json);
+        } catch (IOException e) {
+            throw toJSONException(e);
+        }
+    }
+
+    @Override
+    public JSONStringer value(Object value) throws JSONException {
+        if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            object();
+            for (Iterator<String> keys = object.keys(); keys.hasNext(); ) {
+                String key = keys.next();
+                key(key).value(object.opt(key));
+            }
+            return endObject();
+        }
+        if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            array();
+            for (int i = 0; i < array.length(); i++) {
+                value(array.opt(i));
+            }
+            return endArray();
+        }
+        if (value instanceof Boolean) {
+            return value(((Boolean) value).booleanValue());
+        }
+        if (value instanceof Double || value instanceof Float) {
+            return value(((Number) value).doubleValue());
+        }
+        try {
+            if (value == null || value == JSONObject.NULL) {
+                mWriter.nullValue();
+            } else if (value instanceof Number) {
+                mWriter.value((Number) value);
+            } else {
+                mWriter.value(value.toString());
+            }
+        } catch (IOException | IllegalStateException e) {
+            throw toJSONException(e);
+        }
+        onValueWritten();
+        return this;
+    }
+
+}
@@ -13,6 +13,7 @@ import com.microsoft.appcenter.ingestion.models.one.CommonSchemaLog;
 
 import org.json.JSONException;
 
+import java.io.Writer;
 import java.util.Collection;
 
 public interface LogSerializer {
@@ -20,6 +21,9 @@ public interface LogSerializer {
     @NonNull
     String serializeLog(@NonNull Log log) throws JSONException;
 
+    @NonNull
+    String serializeLogWithoutDevice(@NonNull Log log) throws JSONException;
+
     @NonNull
     Log deserializeLog(@NonNull String json, String type) throws JSONException;
 
@@ -28,8 +32,12 @@ public interface LogSerializer {
     @NonNull
     String serializeContainer(@NonNull LogContainer container) throws JSONException;
 
+    void serializeContainer(@NonNull Writer writer, @NonNull LogContainer container) throws JSONException;
+
     @NonNull
     LogContainer deserializeContainer(@NonNull String json, String type) throws JSONException;
 
     void addLogFactory(@NonNull String logType, @NonNull LogFactory logFactory);
+
+    void invalidateDeviceCache();
 }
@@ -5,6 +5,8 @@
 
 package com.microsoft.appcenter.ingestion.models.one;
 
+import android.util.JsonReader;
+
 import com.microsoft.appcenter.ingestion.models.Model;
 import com.microsoft.appcenter.ingestion.models.json.JSONUtils;
 
@@ -12,6 +14,8 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
+
 /**
  * This is the application extension. It contains data specified by the application.
  */
@@ -167,6 +171,28 @@ public class AppExtension implements Model {
         setUserId(object.optString(USER_ID, null));
     }
 
+    @Override
+    public void read(JsonReader reader) throws IOException, JSONException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals(ID)) {
+                setId(reader.nextString());
+            } else if (name.equals(VER)) {
+                setVer(reader.nextString());
+            } else if (name.equals(NAME)) {
+                setName(reader.nextString());
+            } else if (name.equals(LOCALE)) {
+                setLocale(reader.nextString());
+            } else if (name.equals(USER_ID)) {
+                setUserId(reader.nextString());
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
     @Override
     public void write(JSONStringer writer) throws JSONException {
         JSONUtils.write(writer, ID, getId());
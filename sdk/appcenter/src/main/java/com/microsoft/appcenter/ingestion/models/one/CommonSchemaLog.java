@@ -5,6 +5,8 @@
 
 package com.microsoft.appcenter.ingestion.models.one;
 
+import android.util.JsonReader;
+
 import com.microsoft.appcenter.ingestion.models.AbstractLog;
 import com.microsoft.appcenter.ingestion.models.json.JSONDateUtils;
 import com.microsoft.appcenter.ingestion.models.json.JSONUtils;
@@ -13,6 +15,8 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
+
 /**
  * Common schema has 1 log type with extensions, everything is called an event.
  * Part B can be used in the future for domain specific typing (like reflecting AppCenter log type).
@@ -287,6 +291,59 @@ public abstract class CommonSchemaLog extends AbstractLog {
         }
     }
 
+    @Override
+    public void read(JsonReader reader) throws IOException, JSONException {
+
+        /* Override abstract log JSON since it's Common Schema and not App Center schema: there is no type field. */
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (!readField(name, reader)) {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        checkRequiredFields();
+    }
+
+    @Override
+    protected boolean readField(String name, JsonReader reader) throws IOException, JSONException {
+
+        if (name.equals(VER)) {
+            setVer(reader.nextString());
+        } else if (name.equals(NAME)) {
+            setName(reader.nextString());
+        } else if (name.equals(TIME)) {
+            setTimestamp(JSONDateUtils.toDate(reader.nextString()));
+        } else if (name.equals(POP_SAMPLE)) {
+            setPopSample(reader.nextDouble());
+        } else if (name.equals(IKEY)) {
+            setIKey(reader.nextString());
+        } else if (name.equals(FLAGS)) {
+            setFlags(reader.nextLong());
+        } else if (name.equals(CV)) {
+            setCV(reader.nextString());
+        } else if (name.equals(EXT)) {
+            Extensions extensions = new Extensions();
+            extensions.read(reader);
+            setExt(extensions);
+        } else if (name.equals(DATA)) {
+            Data data = new Data();
+            data.read(reader);
+            setData(data);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    protected void checkRequiredFields() throws JSONException {
+        JSONUtils.checkRequired(VER, getVer());
+        JSONUtils.checkRequired(NAME, getName());
+        JSONUtils.checkRequired(TIME, getTimestamp());
+    }
+
     @Override
     public void write(JSONStringer writer) throws JSONException {
 
@@ -5,6 +5,8 @@
 
 package com.microsoft.appcenter.ingestion.models.one;
 
+import android.util.JsonReader;
+
 import com.microsoft.appcenter.ingestion.models.Model;
 import com.microsoft.appcenter.ingestion.models.json.JSONUtils;
 
@@ -12,6 +14,8 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
+
 /**
  * The "device" extension tracks common device elements that are not available in the core envelope.
  */
@@ -50,6 +54,20 @@ public class DeviceExtension implements Model {
         setLocalId(object.optString(LOCAL_ID, null));
     }
 
+    @Override
+    public void read(JsonReader reader) throws IOException, JSONException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals(LOCAL_ID)) {
+                setLocalId(reader.nextString());
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
     @Override
     public void write(JSONStringer writer) throws JSONException {
         JSONUtils.write(writer, LOCAL_ID, getLocalId());
@@ -5,12 +5,17 @@
 
 package com.microsoft.appcenter.ingestion.models.one;
 
+import android.util.JsonReader;
+
 import com.microsoft.appcenter.ingestion.models.Model;
+import com.microsoft.appcenter.ingestion.models.json.JSONUtils;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
+
 /**
  * Common Schema Part A extensions.
  */
@@ -337,6 +342,54 @@ public class Extensions implements Model {
         }
     }
 
+    @Override
+    public void read(JsonReader reader) throws IOException, JSONException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals(METADATA)) {
+                MetadataExtension metadata = new MetadataExtension();
+                metadata.read(reader);
+                setMetadata(metadata);
+            } else if (name.equals(PROTOCOL)) {
+                ProtocolExtension protocol = new ProtocolExtension();
+                protocol.read(reader);
+                setProtocol(protocol);
+            } else if (name.equals(USER)) {
+                UserExtension user = new UserExtension();
+                user.read(reader);
+                setUser(user);
+            } else if (name.equals(DEVICE)) {
+                DeviceExtension device = new DeviceExtension();
+                device.read(reader);
+                setDevice(device);
+            } else if (name.equals(OS)) {
+                OsExtension os = new OsExtension();
+                os.read(reader);
+                setOs(os);
+            } else if (name.equals(APP)) {
+                AppExtension app = new AppExtension();
+                app.read(reader);
+                setApp(app);
+            } else if (name.equals(NET)) {
+                NetExtension net = new NetExtension();
+                net.read(reader);
+                setNet(net);
+            } else if (name.equals(SDK)) {
+                SdkExtension sdk = new SdkExtension();
+                sdk.read(reader);
+                setSdk(sdk);
+            } else if (name.equals(LOC)) {
+                LocExtension loc = new LocExtension();
+                loc.read(reader);
+                setLoc(loc);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
     @Override
     public void write(JSONStringer writer) throws JSONException {
 
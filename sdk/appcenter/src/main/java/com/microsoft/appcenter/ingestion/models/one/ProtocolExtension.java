@@ -5,6 +5,8 @@
 
 package com.microsoft.appcenter.ingestion.models.one;
 
+import android.util.JsonReader;
+
 import com.microsoft.appcenter.ingestion.models.Model;
 import com.microsoft.appcenter.ingestion.models.json.JSONUtils;
 
@@ -12,6 +14,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -110,6 +113,24 @@ public class ProtocolExtension implements Model {
         setDevModel(object.optString(DEV_MODEL, null));
     }
 
+    @Override
+    public void read(JsonReader reader) throws IOException, JSONException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals(TICKET_KEYS)) {
+                setTicketKeys(JSONUtils.readStringArray(reader));
+            } else if (name.equals(DEV_MAKE)) {
+                setDevMake(reader.nextString());
+            } else if (name.equals(DEV_MODEL)) {
+                setDevModel(reader.nextString());
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
     @Override
     public void write(JSONStringer writer) throws JSONException {
         JSONUtils.writeStringArray(writer, TICKET_KEYS, getTicketKeys());
@@ -5,6 +5,8 @@
 
 package com.microsoft.appcenter.ingestion.models.one;
 
+import android.util.JsonReader;
+
 import com.microsoft.appcenter.ingestion.models.Model;
 import com.microsoft.appcenter.ingestion.models.json.JSONUtils;
 
@@ -12,6 +14,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
 import java.util.UUID;
 
 /**
@@ -144,6 +147,26 @@ public class SdkExtension implements Model {
         }
     }
 
+    @Override
+    public void read(JsonReader reader) throws IOException, JSONException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals(LIB_VER)) {
+                setLibVer(reader.nextString());
+            } else if (name.equals(EPOCH)) {
+                setEpoch(reader.nextString());
+            } else if (name.equals(SEQ)) {
+                setSeq(reader.nextLong());
+            } else if (name.equals(INSTALL_ID)) {
+                setInstallId(UUID.fromString(reader.nextString()));
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
     @Override
     public void write(JSONStringer writer) throws JSONException {
         JSONUtils.write(writer, LIB_VER, getLibVer());
@@ -5,10 +5,14 @@
 
 package com.microsoft.appcenter.ingestion.models.properties;
 
+import android.util.JsonReader;
+
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
+
 import static com.microsoft.appcenter.ingestion.models.CommonProperties.VALUE;
 
 public class BooleanTypedProperty extends TypedProperty {
@@ -49,6 +53,11 @@ public class BooleanTypedProperty extends TypedProperty {
         setValue(object.getBoolean(VALUE));
     }
 
+    @Override
+    protected void readValue(JsonReader reader) throws IOException, JSONException {
+        setValue(reader.nextBoolean());
+    }
+
     @Override
     public void write(JSONStringer writer) throws JSONException {
         super.write(writer);
@@ -5,12 +5,15 @@
 
 package com.microsoft.appcenter.ingestion.models.properties;
 
+import android.util.JsonReader;
+
 import com.microsoft.appcenter.ingestion.models.json.JSONDateUtils;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
 import java.util.Date;
 
 import static com.microsoft.appcenter.ingestion.models.CommonProperties.VALUE;
@@ -53,6 +56,11 @@ public class DateTimeTypedProperty extends TypedProperty {
         setValue(JSONDateUtils.toDate(object.getString(VALUE)));
     }
 
+    @Override
+    protected void readValue(JsonReader reader) throws IOException, JSONException {
+        setValue(JSONDateUtils.toDate(reader.nextString()));
+    }
+
     @Override
     public void write(JSONStringer writer) throws JSONException {
         super.write(writer);
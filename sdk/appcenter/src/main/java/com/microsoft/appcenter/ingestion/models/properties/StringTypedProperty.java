@@ -5,10 +5,14 @@
 
 package com.microsoft.appcenter.ingestion.models.properties;
 
+import android.util.JsonReader;
+
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
+
 import static com.microsoft.appcenter.ingestion.models.CommonProperties.VALUE;
 
 public class StringTypedProperty extends TypedProperty {
@@ -49,6 +53,11 @@ public class StringTypedProperty extends TypedProperty {
         setValue(object.getString(VALUE));
     }
 
+    @Override
+    protected void readValue(JsonReader reader) throws IOException, JSONException {
+        setValue(reader.nextString());
+    }
+
     @Override
     public void write(JSONStringer writer) throws JSONException {
         super.write(writer);
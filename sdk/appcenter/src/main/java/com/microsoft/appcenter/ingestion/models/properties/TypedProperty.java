@@ -5,14 +5,20 @@
 
 package com.microsoft.appcenter.ingestion.models.properties;
 
+import android.util.JsonReader;
+
 import com.microsoft.appcenter.ingestion.models.Model;
+import com.microsoft.appcenter.ingestion.models.json.JSONUtils;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.IOException;
+
 import static com.microsoft.appcenter.ingestion.models.CommonProperties.NAME;
 import static com.microsoft.appcenter.ingestion.models.CommonProperties.TYPE;
+import static com.microsoft.appcenter.ingestion.models.CommonProperties.VALUE;
 
 public abstract class TypedProperty implements Model {
 
@@ -54,6 +60,40 @@ public abstract class TypedProperty implements Model {
         setName(object.getString(NAME));
     }
 
+    @Override
+    public void read(JsonReader reader) throws IOException, JSONException {
+        String type = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            if (key.equals(TYPE)) {
+                type = reader.nextString();
+            } else if (key.equals(NAME)) {
+                setName(reader.nextString());
+            } else if (key.equals(VALUE)) {
+                readValue(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (!getType().equals(type)) {
+            throw new JSONException("Invalid type");
+        }
+        JSONUtils.checkRequired(NAME, getName());
+    }
+
+    /**
+     * Read the property value from a JSON stream, subclasses with a value override this.
+     *
+     * @param reader JSON stream positioned on the value.
+     * @throws IOException   if the stream cannot be read.
+     * @throws JSONException if the value is invalid.
+     */
+    protected void readValue(JsonReader reader) throws IOException, JSONException {
+        reader.skipValue();
+    }
+
     @Override
     public void write(JSONStringer writer) throws JSONException {
         writer.key(TYPE).value(getType());
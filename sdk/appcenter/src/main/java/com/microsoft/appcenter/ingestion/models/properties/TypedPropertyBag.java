@@ -0,0 +1,648 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.ingestion.models.properties;
+
+import androidx.annotation.NonNull;
+
+import com.microsoft.appcenter.ingestion.models.json.JSONDateUtils;
+
+import org.json.JSONException;
+import org.json.JSONStringer;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.RandomAccess;
+
+import static com.microsoft.appcenter.ingestion.models.CommonProperties.NAME;
+import static com.microsoft.appcenter.ingestion.models.CommonProperties.TYPE;
+import static com.microsoft.appcenter.ingestion.models.CommonProperties.VALUE;
+
+/**
+ * List of typed properties stored in parallel arrays of names, types and unboxed values.
+ * The typed accessors and {@link #write(JSONStringer)} work on the arrays directly,
+ * {@link TypedProperty} objects are only created when accessing elements through the {@link java.util.List} interface,
+ * the bag then keeps them so that modifying a returned object updates the bag. Added properties are copied,
+ * except properties of other {@link TypedProperty} subclasses which are kept as is since their values are unknown.
+ * Names are unique when properties are added with the put methods, the list methods do not check names.
+ * This class is not thread safe.
+ */
+public class TypedPropertyBag extends AbstractList<TypedProperty> implements RandomAccess {
+
+    /**
+     * Initial capacity when not specified.
+     */
+    private static final int DEFAULT_CAPACITY = 8;
+
+    /**
+     * Property names.
+     */
+    private String[] mNames;
+
+    /**
+     * Property types, one of the TYPE constants of the {@link TypedProperty} classes.
+     */
+    private String[] mTypes;
+
+    /**
+     * Long values, boolean values as 1 or 0 and double values as raw bits.
+     */
+    private long[] mPrimitiveValues;
+
+    /**
+     * String and date values.
+     */
+    private Object[] mObjectValues;
+
+    /**
+     * Objects returned by {@link #get(int)}, null until requested, or added properties of other subclasses.
+     * Once created, an object is the source of truth for the values of its property.
+     */
+    private TypedProperty[] mElements;
+
+    /**
+     * Number of properties.
+     */
+    private int mSize;
+
+    /**
+     * Init an empty bag.
+     */
+    public TypedPropertyBag() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Init an empty bag.
+     *
+     * @param capacity number of properties that can be added without growing the arrays.
+     */
+    public TypedPropertyBag(int capacity) {
+        mNames = new String[capacity];
+        mTypes = new String[capacity];
+        mPrimitiveValues = new long[capacity];
+        mObjectValues = new Object[capacity];
+        mElements = new TypedProperty[capacity];
+    }
+
+    /**
+     * Init a bag with a copy of the given properties.
+     *
+     * @param properties properties to copy.
+     */
+    public TypedPropertyBag(@NonNull Collection<? extends TypedProperty> properties) {
+        if (properties instanceof TypedPropertyBag) {
+            TypedPropertyBag bag = (TypedPropertyBag) properties;
+            bag.syncAll();
+            mSize = bag.mSize;
+            mNames = Arrays.copyOf(bag.mNames, mSize);
+            mTypes = Arrays.copyOf(bag.mTypes, mSize);
+            mPrimitiveValues = Arrays.copyOf(bag.mPrimitiveValues, mSize);
+            mObjectValues = Arrays.copyOf(bag.mObjectValues, mSize);
+            mElements = new TypedProperty[mSize];
+            for (int i = 0; i < mSize; i++) {
+                if (!isStoredInArrays(bag.mElements[i])) {
+                    mElements[i] = bag.mElements[i];
+                }
+            }
+        } else {
+            int capacity = properties.size();
+            mNames = new String[capacity];
+            mTypes = new String[capacity];
+            mPrimitiveValues = new long[capacity];
+            mObjectValues = new Object[capacity];
+            mElements = new TypedProperty[capacity];
+            addAll(properties);
+        }
+    }
+
+    /**
+     * Check whether the value of a property can be stored in the arrays.
+     *
+     * @param property property, can be null.
+     * @return true if null or one of the standard property types, false if the property object must be kept.
+     */
+    private static boolean isStoredInArrays(TypedProperty property) {
+        return property == null
+                || property instanceof BooleanTypedProperty
+                || property instanceof DateTimeTypedProperty
+                || property instanceof DoubleTypedProperty
+                || property instanceof LongTypedProperty
+                || property instanceof StringTypedProperty;
+    }
+
+    /**
+     * Get the value of a property when stored in a {@link TypedProperty} object.
+     *
+     * @param property property.
+     * @return value to store in primitive array.
+     */
+    private static long getPrimitiveValue(TypedProperty property) {
+        if (property instanceof BooleanTypedProperty) {
+            return ((BooleanTypedProperty) property).getValue() ? 1 : 0;
+        } else if (property instanceof DoubleTypedProperty) {
+            return Double.doubleToRawLongBits(((DoubleTypedProperty) property).getValue());
+        } else if (property instanceof LongTypedProperty) {
+            return ((LongTypedProperty) property).getValue();
+        }
+        return 0;
+    }
+
+    /**
+     * Get the value of a property when stored in a {@link TypedProperty} object.
+     *
+     * @param property property.
+     * @return value to store in object array.
+     */
+    private static Object getObjectValue(TypedProperty property) {
+        if (property instanceof DateTimeTypedProperty) {
+            return ((DateTimeTypedProperty) property).getValue();
+        } else if (property instanceof StringTypedProperty) {
+            return ((StringTypedProperty) property).getValue();
+        }
+        return null;
+    }
+
+    /**
+     * Grow arrays if needed.
+     *
+     * @param minCapacity minimum capacity.
+     */
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity > mNames.length) {
+            int capacity = Math.max(Math.max(DEFAULT_CAPACITY, mNames.length * 2), minCapacity);
+            mNames = Arrays.copyOf(mNames, capacity);
+            mTypes = Arrays.copyOf(mTypes, capacity);
+            mPrimitiveValues = Arrays.copyOf(mPrimitiveValues, capacity);
+            mObjectValues = Arrays.copyOf(mObjectValues, capacity);
+            mElements = Arrays.copyOf(mElements, capacity);
+        }
+    }
+
+    /**
+     * Copy the values of a property object returned by {@link #get(int)} back to the arrays.
+     *
+     * @param index property index.
+     */
+    private void sync(int index) {
+        TypedProperty property = mElements[index];
+        if (property != null) {
+            mNames[index] = property.getName();
+            mPrimitiveValues[index] = getPrimitiveValue(property);
+            mObjectValues[index] = getObjectValue(property);
+        }
+    }
+
+    /**
+     * Copy the values of all property objects returned by {@link #get(int)} back to the arrays.
+     */
+    private void syncAll() {
+        for (int i = 0; i < mSize; i++) {
+            sync(i);
+        }
+    }
+
+    /**
+     * Check an index of an existing property.
+     *
+     * @param index index.
+     */
+    private void checkIndex(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mSize);
+        }
+    }
+
+    /**
+     * Store a property.
+     *
+     * @param index          property index.
+     * @param name           property name.
+     * @param type           property type.
+     * @param primitiveValue value if primitive.
+     * @param objectValue    value if string or date.
+     */
+    private void store(int index, String name, String type, long primitiveValue, Object objectValue) {
+        mNames[index] = name;
+        mTypes[index] = type;
+        mPrimitiveValues[index] = primitiveValue;
+        mObjectValues[index] = objectValue;
+
+        /* A replaced property is detached from the object previously returned for it. */
+        mElements[index] = null;
+    }
+
+    /**
+     * Insert a property at the given position.
+     *
+     * @param index          property index.
+     * @param name           property name.
+     * @param type           property type.
+     * @param primitiveValue value if primitive.
+     * @param objectValue    value if string or date.
+     */
+    private void insert(int index, String name, String type, long primitiveValue, Object objectValue) {
+        ensureCapacity(mSize + 1);
+        int moved = mSize - index;
+        if (moved > 0) {
+            System.arraycopy(mNames, index, mNames, index + 1, moved);
+            System.arraycopy(mTypes, index, mTypes, index + 1, moved);
+            System.arraycopy(mPrimitiveValues, index, mPrimitiveValues, index + 1, moved);
+            System.arraycopy(mObjectValues, index, mObjectValues, index + 1, moved);
+            System.arraycopy(mElements, index, mElements, index + 1, moved);
+        }
+        store(index, name, type, primitiveValue, objectValue);
+        mSize++;
+        modCount++;
+    }
+
+    /**
+     * Add a property, replacing the property with the same name if any.
+     *
+     * @param name           property name.
+     * @param type           property type.
+     * @param primitiveValue value if primitive.
+     * @param objectValue    value if string or date.
+     */
+    private void put(String name, String type, long primitiveValue, Object objectValue) {
+        int index = indexOfName(name);
+        if (index < 0) {
+            insert(mSize, name, type, primitiveValue, objectValue);
+        } else {
+            store(index, name, type, primitiveValue, objectValue);
+        }
+    }
+
+    /**
+     * Add a property at the end without checking if the name already exists.
+     *
+     * @param name           property name.
+     * @param type           property type.
+     * @param primitiveValue value if primitive.
+     * @param objectValue    value if string or date.
+     */
+    void append(String name, String type, long primitiveValue, Object objectValue) {
+        insert(mSize, name, type, primitiveValue, objectValue);
+    }
+
+    /**
+     * Add or replace a boolean property.
+     *
+     * @param name  property name.
+     * @param value property value.
+     */
+    public void put(String name, boolean value) {
+        put(name, BooleanTypedProperty.TYPE, value ? 1 : 0, null);
+    }
+
+    /**
+     * Add or replace a date property.
+     *
+     * @param name  property name.
+     * @param value property value.
+     */
+    public void put(String name, Date value) {
+        put(name, DateTimeTypedProperty.TYPE, 0, value);
+    }
+
+    /**
+     * Add or replace a double property.
+     *
+     * @param name  property name.
+     * @param value property value.
+     */
+    public void put(String name, double value) {
+        put(name, DoubleTypedProperty.TYPE, Double.doubleToRawLongBits(value), null);
+    }
+
+    /**
+     * Add or replace a long property.
+     *
+     * @param name  property name.
+     * @param value property value.
+     */
+    public void put(String name, long value) {
+        put(name, LongTypedProperty.TYPE, value, null);
+    }
+
+    /**
+     * Add or replace a string property.
+     *
+     * @param name  property name.
+     * @param value property value.
+     */
+    public void put(String name, String value) {
+        put(name, StringTypedProperty.TYPE, 0, value);
+    }
+
+    /**
+     * Add properties of another bag.
+     *
+     * @param source   properties to add.
+     * @param override true to replace properties with the same name, false to keep them.
+     */
+    public void putAll(@NonNull TypedPropertyBag source, boolean override) {
+        source.syncAll();
+        for (int i = 0; i < source.mSize; i++) {
+            String name = source.mNames[i];
+            int index = indexOfName(name);
+            if (index < 0) {
+                insert(mSize, name, source.mTypes[i], source.mPrimitiveValues[i], source.mObjectValues[i]);
+            } else if (override) {
+                store(index, name, source.mTypes[i], source.mPrimitiveValues[i], source.mObjectValues[i]);
+            }
+        }
+    }
+
+    /**
+     * Get the position of a property.
+     *
+     * @param name property name.
+     * @return index or -1 if not found.
+     */
+    public int indexOfName(String name) {
+        for (int i = 0; i < mSize; i++) {
+            sync(i);
+            if (name == null ? mNames[i] == null : name.equals(mNames[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Remove a property.
+     *
+     * @param name property name.
+     * @return true if the property was found.
+     */
+    public boolean removeName(String name) {
+        int index = indexOfName(name);
+        if (index < 0) {
+            return false;
+        }
+        removeAt(index);
+        return true;
+    }
+
+    /**
+     * Get a property name.
+     *
+     * @param index property index.
+     * @return property name.
+     */
+    public String getName(int index) {
+        checkIndex(index);
+        sync(index);
+        return mNames[index];
+    }
+
+    /**
+     * Set a property name.
+     *
+     * @param index property index.
+     * @param name  property name.
+     */
+    public void setName(int index, String name) {
+        checkIndex(index);
+        mNames[index] = name;
+        if (mElements[index] != null) {
+            mElements[index].setName(name);
+        }
+    }
+
+    /**
+     * Get a property type.
+     *
+     * @param index property index.
+     * @return one of the TYPE constants of the {@link TypedProperty} classes.
+     */
+    public String getType(int index) {
+        checkIndex(index);
+        return mTypes[index];
+    }
+
+    /**
+     * Get the value of a boolean property.
+     *
+     * @param index property index.
+     * @return property value.
+     */
+    public boolean getBooleanValue(int index) {
+        checkIndex(index);
+        sync(index);
+        return mPrimitiveValues[index] != 0;
+    }
+
+    /**
+     * Get the value of a date property.
+     *
+     * @param index property index.
+     * @return property value.
+     */
+    public Date getDateValue(int index) {
+        checkIndex(index);
+        sync(index);
+        return (Date) mObjectValues[index];
+    }
+
+    /**
+     * Get the value of a double property.
+     *
+     * @param index property index.
+     * @return property value.
+     */
+    public double getDoubleValue(int index) {
+        checkIndex(index);
+        sync(index);
+        return Double.longBitsToDouble(mPrimitiveValues[index]);
+    }
+
+    /**
+     * Get the value of a long property.
+     *
+     * @param index property index.
+     * @return property value.
+     */
+    public long getLongValue(int index) {
+        checkIndex(index);
+        sync(index);
+        return mPrimitiveValues[index];
+    }
+
+    /**
+     * Get the value of a string property.
+     *
+     * @param index property index.
+     * @return property value.
+     */
+    public String getStringValue(int index) {
+        checkIndex(index);
+        sync(index);
+        return (String) mObjectValues[index];
+    }
+
+    /**
+     * Set the value of a string property.
+     *
+     * @param index property index.
+     * @param value property value.
+     */
+    public void setStringValue(int index, String value) {
+        checkIndex(index);
+        mObjectValues[index] = value;
+        if (mElements[index] instanceof StringTypedProperty) {
+            ((StringTypedProperty) mElements[index]).setValue(value);
+        }
+    }
+
+    /**
+     * Write properties as a JSON array of typed property objects.
+     *
+     * @param writer JSON writer.
+     * @throws JSONException if a property cannot be written.
+     */
+    public void write(JSONStringer writer) throws JSONException {
+        syncAll();
+        writer.array();
+        for (int i = 0; i < mSize; i++) {
+            writer.object();
+            if (!isStoredInArrays(mElements[i])) {
+                mElements[i].write(writer);
+                writer.endObject();
+                continue;
+            }
+            String type = mTypes[i];
+            writer.key(TYPE).value(type);
+            writer.key(NAME).value(mNames[i]);
+            writer.key(VALUE);
+            if (BooleanTypedProperty.TYPE.equals(type)) {
+                writer.value(mPrimitiveValues[i] != 0);
+            } else if (DateTimeTypedProperty.TYPE.equals(type)) {
+                writer.value(JSONDateUtils.toString((Date) mObjectValues[i]));
+            } else if (DoubleTypedProperty.TYPE.equals(type)) {
+                writer.value(Double.longBitsToDouble(mPrimitiveValues[i]));
+            } else if (LongTypedProperty.TYPE.equals(type)) {
+                writer.value(mPrimitiveValues[i]);
+            } else {
+                writer.value(mObjectValues[i]);
+            }
+            writer.endObject();
+        }
+        writer.endArray();
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    @Override
+    public TypedProperty get(int index) {
+        checkIndex(index);
+        if (mElements[index] != null) {
+            return mElements[index];
+        }
+        String type = mTypes[index];
+        TypedProperty property;
+        if (BooleanTypedProperty.TYPE.equals(type)) {
+            BooleanTypedProperty booleanProperty = new BooleanTypedProperty();
+            booleanProperty.setValue(mPrimitiveValues[index] != 0);
+            property = booleanProperty;
+        } else if (DateTimeTypedProperty.TYPE.equals(type)) {
+            DateTimeTypedProperty dateProperty = new DateTimeTypedProperty();
+            dateProperty.setValue((Date) mObjectValues[index]);
+            property = dateProperty;
+        } else if (DoubleTypedProperty.TYPE.equals(type)) {
+            DoubleTypedProperty doubleProperty = new DoubleTypedProperty();
+            doubleProperty.setValue(Double.longBitsToDouble(mPrimitiveValues[index]));
+            property = doubleProperty;
+        } else if (LongTypedProperty.TYPE.equals(type)) {
+            LongTypedProperty longProperty = new LongTypedProperty();
+            longProperty.setValue(mPrimitiveValues[index]);
+            property = longProperty;
+        } else {
+            StringTypedProperty stringProperty = new StringTypedProperty();
+            stringProperty.setValue((String) mObjectValues[index]);
+            property = stringProperty;
+        }
+        property.setName(mNames[index]);
+        mElements[index] = property;
+        return property;
+    }
+
+    @Override
+    public TypedProperty set(int index, TypedProperty property) {
+
+        /* The previous object keeps its values but no longer updates the bag. */
+        TypedProperty previous = get(index);
+        store(index, property.getName(), property.getType(), getPrimitiveValue(property), getObjectValue(property));
+        keepIfNotStored(index, property);
+        return previous;
+    }
+
+    @Override
+    public void add(int index, TypedProperty property) {
+        if (index < 0 || index > mSize) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mSize);
+        }
+        insert(index, property.getName(), property.getType(), getPrimitiveValue(property), getObjectValue(property));
+        keepIfNotStored(index, property);
+    }
+
+    /**
+     * Keep an added property object if its value cannot be stored in the arrays.
+     *
+     * @param index    property index.
+     * @param property added property.
+     */
+    private void keepIfNotStored(int index, TypedProperty property) {
+        if (!isStoredInArrays(property)) {
+            mElements[index] = property;
+        }
+    }
+
+    /**
+     * Remove a property without creating a {@link TypedProperty} object for it.
+     *
+     * @param index property index.
+     */
+    public void removeAt(int index) {
+        checkIndex(index);
+        int moved = mSize - index - 1;
+        if (moved > 0) {
+            System.arraycopy(mNames, index + 1, mNames, index, moved);
+            System.arraycopy(mTypes, index + 1, mTypes, index, moved);
+            System.arraycopy(mPrimitiveValues, index + 1, mPrimitiveValues, index, moved);
+            System.arraycopy(mObjectValues, index + 1, mObjectValues, index, moved);
+            System.arraycopy(mElements, index + 1, mElements, index, moved);
+        }
+        mSize--;
+        mNames[mSize] = null;
+        mTypes[mSize] = null;
+        mObjectValues[mSize] = null;
+        mElements[mSize] = null;
+        modCount++;
+    }
+
+    @Override
+    public TypedProperty remove(int index) {
+        TypedProperty previous = get(index);
+        removeAt(index);
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(mNames, 0, mSize, null);
+        Arrays.fill(mTypes, 0, mSize, null);
+        Arrays.fill(mObjectValues, 0, mSize, null);
+        Arrays.fill(mElements, 0, mSize, null);
+        mSize = 0;
+        modCount++;
+    }
+}
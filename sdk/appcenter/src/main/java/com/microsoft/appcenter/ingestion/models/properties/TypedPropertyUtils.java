@@ -5,17 +5,26 @@
 
 package com.microsoft.appcenter.ingestion.models.properties;
 
+import android.util.JsonReader;
+import android.util.JsonToken;
+
 import androidx.annotation.NonNull;
 
+import com.microsoft.appcenter.ingestion.models.json.JSONDateUtils;
+import com.microsoft.appcenter.ingestion.models.json.JSONUtils;
+
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import static com.microsoft.appcenter.ingestion.models.CommonProperties.NAME;
 import static com.microsoft.appcenter.ingestion.models.CommonProperties.TYPE;
 import static com.microsoft.appcenter.ingestion.models.CommonProperties.TYPED_PROPERTIES;
+import static com.microsoft.appcenter.ingestion.models.CommonProperties.VALUE;
 
 public class TypedPropertyUtils {
 
@@ -49,4 +58,106 @@ public class TypedPropertyUtils {
         }
         return null;
     }
+
+    /**
+     * Read typed properties from a JSON stream directly into a {@link TypedPropertyBag}.
+     *
+     * @param reader JSON stream positioned on the properties array.
+     * @return properties.
+     * @throws IOException   if the stream cannot be read.
+     * @throws JSONException if a property is invalid.
+     */
+    public static TypedPropertyBag read(JsonReader reader) throws IOException, JSONException {
+        TypedPropertyBag bag = new TypedPropertyBag();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            readProperty(reader, bag);
+        }
+        reader.endArray();
+        return bag;
+    }
+
+    /**
+     * Read a typed property object. The type can appear after the value,
+     * so the value is kept as read from the stream until the type is known.
+     *
+     * @param reader JSON stream positioned on the property object.
+     * @param bag    bag to add the property to.
+     * @throws IOException   if the stream cannot be read.
+     * @throws JSONException if the property is invalid.
+     */
+    private static void readProperty(JsonReader reader, TypedPropertyBag bag) throws IOException, JSONException {
+        String type = null;
+        String name = null;
+        String value = null;
+        Boolean booleanValue = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            if (key.equals(TYPE)) {
+                type = reader.nextString();
+            } else if (key.equals(NAME)) {
+                name = reader.nextString();
+            } else if (key.equals(VALUE) && reader.peek() == JsonToken.BOOLEAN) {
+                booleanValue = reader.nextBoolean();
+            } else if (key.equals(VALUE)) {
+
+                /* Strings and numbers, a null value is only valid for a string property. */
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                    value = null;
+                } else {
+                    value = reader.nextString();
+                }
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        JSONUtils.checkRequired(TYPE, type);
+        JSONUtils.checkRequired(NAME, name);
+        try {
+            if (BooleanTypedProperty.TYPE.equals(type)) {
+                if (booleanValue == null) {
+                    booleanValue = parseBoolean(value);
+                }
+                bag.append(name, type, booleanValue ? 1 : 0, null);
+            } else if (DateTimeTypedProperty.TYPE.equals(type)) {
+                JSONUtils.checkRequired(VALUE, value);
+                bag.append(name, type, 0, JSONDateUtils.toDate(value));
+            } else if (DoubleTypedProperty.TYPE.equals(type)) {
+                JSONUtils.checkRequired(VALUE, value);
+                bag.append(name, type, Double.doubleToRawLongBits(Double.parseDouble(value)), null);
+            } else if (LongTypedProperty.TYPE.equals(type)) {
+                JSONUtils.checkRequired(VALUE, value);
+                bag.append(name, type, Long.parseLong(value), null);
+            } else if (StringTypedProperty.TYPE.equals(type)) {
+                if (booleanValue != null) {
+                    value = booleanValue.toString();
+                }
+                bag.append(name, type, 0, value);
+            } else {
+                throw new JSONException("Unsupported type: " + type);
+            }
+        } catch (NumberFormatException e) {
+            throw new JSONException("Invalid value for property " + name + ": " + value);
+        }
+    }
+
+    /**
+     * Parse a boolean written as a string.
+     *
+     * @param value string value.
+     * @return boolean value.
+     * @throws JSONException if the value is missing or not a boolean.
+     */
+    private static boolean parseBoolean(String value) throws JSONException {
+        if ("true".equalsIgnoreCase(value)) {
+            return true;
+        }
+        if ("false".equalsIgnoreCase(value)) {
+            return false;
+        }
+        throw new JSONException("Invalid boolean value: " + value);
+    }
 }
@@ -10,6 +10,7 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
+import android.util.JsonReader;
 import androidx.annotation.IntRange;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -17,19 +18,24 @@ import androidx.annotation.VisibleForTesting;
 
 import com.microsoft.appcenter.Constants;
 import com.microsoft.appcenter.Flags;
+import com.microsoft.appcenter.ingestion.models.Device;
 import com.microsoft.appcenter.ingestion.models.Log;
 import com.microsoft.appcenter.ingestion.models.one.CommonSchemaLog;
 import com.microsoft.appcenter.ingestion.models.one.PartAUtils;
 import com.microsoft.appcenter.utils.AppCenterLog;
+import com.microsoft.appcenter.utils.HashUtils;
+import com.microsoft.appcenter.utils.IdHelper;
 import com.microsoft.appcenter.utils.crypto.CryptoUtils;
 import com.microsoft.appcenter.utils.storage.DatabaseManager;
 import com.microsoft.appcenter.utils.storage.FileManager;
 import com.microsoft.appcenter.utils.storage.SQLiteUtils;
 
 import org.json.JSONException;
+import org.json.JSONStringer;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -39,7 +45,6 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.UUID;
 
 import static com.microsoft.appcenter.AppCenter.LOG_TAG;
 import static com.microsoft.appcenter.utils.storage.DatabaseManager.PRIMARY_KEY;
@@ -80,10 +85,17 @@ public class DatabasePersistence extends Persistence {
     @VisibleForTesting
     static final int VERSION_TIMESTAMP_COLUMN = 5;
 
+    /**
+     * Last version where the device was serialized inside each log payload.
+     * Upgrading from this version keeps the logs and adds the device reference column.
+     */
+    @VisibleForTesting
+    static final int VERSION_INLINE_DEVICE = 6;
+
     /**
      * Current version of the schema.
      */
-    private static final int VERSION = 6;
+    private static final int VERSION = 7;
 
     /**
      * Project identifier part of the target token in clear text (the target token key).
@@ -102,6 +114,30 @@ public class DatabasePersistence extends Persistence {
      */
     private static final String COLUMN_DATA_TYPE = "type";
 
+    /**
+     * Name of the column referencing the device snapshot of a log, null if the device is in the log payload.
+     */
+    @VisibleForTesting
+    static final String COLUMN_DEVICE_HASH = "device_hash";
+
+    /**
+     * Device snapshots table name.
+     */
+    @VisibleForTesting
+    static final String DEVICES_TABLE = "devices";
+
+    /**
+     * Name of the content hash column in the device snapshots table.
+     */
+    @VisibleForTesting
+    static final String COLUMN_HASH = "hash";
+
+    /**
+     * Name of the device JSON column in the device snapshots table.
+     */
+    @VisibleForTesting
+    static final String COLUMN_DEVICE = "device";
+
     /**
      * Database name.
      */
@@ -112,7 +148,7 @@ public class DatabasePersistence extends Persistence {
      * Table schema for Persistence.
      */
     @VisibleForTesting
-    static final ContentValues SCHEMA = getContentValues("", "", "", "", "", 0);
+    static final ContentValues SCHEMA = getContentValues("", "", "", "", "", 0, "");
 
     /**
      * Order by clause to select logs.
@@ -146,7 +182,26 @@ public class DatabasePersistence extends Persistence {
             "`priority` INTEGER," +
             "`log` TEXT," +
             "`persistence_group` TEXT," +
-            "`target_key` TEXT);";
+            "`target_key` TEXT," +
+            "`device_hash` TEXT);";
+
+    /**
+     * SQL command to add the device reference column when upgrading from {@link #VERSION_INLINE_DEVICE}.
+     */
+    private static final String ADD_DEVICE_HASH_COLUMN_SQL = "ALTER TABLE `logs` ADD COLUMN `device_hash` TEXT";
+
+    /**
+     * SQL command to create device snapshots table.
+     */
+    @VisibleForTesting
+    static final String CREATE_DEVICES_SQL = "CREATE TABLE IF NOT EXISTS `devices`" +
+            "(`hash` TEXT PRIMARY KEY," +
+            "`device` TEXT);";
+
+    /**
+     * Where clause to select device snapshots that no log references anymore.
+     */
+    private static final String ORPHAN_DEVICES_WHERE = COLUMN_HASH + " NOT IN (SELECT " + COLUMN_DEVICE_HASH + " FROM " + TABLE + " WHERE " + COLUMN_DEVICE_HASH + " IS NOT NULL)";
 
     /**
      * SQL command to drop logs table
@@ -186,6 +241,16 @@ public class DatabasePersistence extends Persistence {
      */
     private final File mLargePayloadDirectory;
 
+    /**
+     * Last device snapshot stored, to avoid serializing and writing the same device for every log.
+     */
+    private Device mLastDevice;
+
+    /**
+     * Content hash of {@link #mLastDevice}.
+     */
+    private String mLastDeviceHash;
+
     /**
      * Initializes variables with default values.
      *
@@ -212,6 +277,10 @@ public class DatabasePersistence extends Persistence {
             @Override
             public void onCreate(SQLiteDatabase db) {
                 db.execSQL(CREATE_PRIORITY_INDEX_LOGS);
+                db.execSQL(CREATE_DEVICES_SQL);
+
+                /* Database can be re-created after corruption, device snapshots must be written again. */
+                resetLastDevice();
             }
 
             @Override
@@ -220,12 +289,17 @@ public class DatabasePersistence extends Persistence {
                 /*
                  * With version 3.0 of the SDK we decided to remove timestamp column and as
                  * it's a major SDK version and SQLite does not support removing column we just start over.
-                 * When adding a new column in a future version, update this code by something like
-                 * if (oldVersion <= VERSION_TIMESTAMP_COLUMN) {drop/create} else {add missing columns}
+                 * Later versions only add columns so existing logs are kept.
                  */
-                db.execSQL(DROP_LOGS_SQL);
-                db.execSQL(CREATE_LOGS_SQL);
-                db.execSQL(CREATE_PRIORITY_INDEX_LOGS);
+                if (oldVersion <= VERSION_TIMESTAMP_COLUMN) {
+                    db.execSQL(DROP_LOGS_SQL);
+                    db.execSQL(CREATE_LOGS_SQL);
+                    db.execSQL(CREATE_PRIORITY_INDEX_LOGS);
+                } else {
+                    db.execSQL(ADD_DEVICE_HASH_COLUMN_SQL);
+                }
+                db.execSQL(CREATE_DEVICES_SQL);
+                resetLastDevice();
             }
         });
         mLargePayloadDirectory = new File(Constants.FILES_PATH + PAYLOAD_LARGE_DIRECTORY);
@@ -242,9 +316,10 @@ public class DatabasePersistence extends Persistence {
      * @param targetToken The target token if the log is common schema.
      * @param targetKey   The project identifier part of the target token in clear text.
      * @param priority    The persistence priority.
+     * @param deviceHash  The device snapshot reference if the device is not in the payload.
      * @return A {@link ContentValues} instance.
      */
-    private static ContentValues getContentValues(@Nullable String group, @Nullable String logJ, String targetToken, String type, String targetKey, int priority) {
+    private static ContentValues getContentValues(@Nullable String group, @Nullable String logJ, String targetToken, String type, String targetKey, int priority, @Nullable String deviceHash) {
         ContentValues values = new ContentValues();
         values.put(COLUMN_GROUP, group);
         values.put(COLUMN_LOG, logJ);
@@ -252,9 +327,141 @@ public class DatabasePersistence extends Persistence {
         values.put(COLUMN_DATA_TYPE, type);
         values.put(COLUMN_TARGET_KEY, targetKey);
         values.put(COLUMN_PRIORITY, priority);
+        values.put(COLUMN_DEVICE_HASH, deviceHash);
         return values;
     }
 
+    /**
+     * Serialize a device snapshot.
+     *
+     * @param device device.
+     * @return JSON string.
+     * @throws JSONException if the device cannot be serialized.
+     */
+    private static String serializeDevice(Device device) throws JSONException {
+        JSONStringer writer = new JSONStringer();
+        writer.object();
+        device.write(writer);
+        writer.endObject();
+        return writer.toString();
+    }
+
+    /**
+     * Forget the last stored device snapshot, it will be stored again with the next log.
+     */
+    private void resetLastDevice() {
+        mLastDevice = null;
+        mLastDeviceHash = null;
+    }
+
+    /**
+     * Store a device snapshot once for all logs using it.
+     *
+     * @param device device.
+     * @return the device content hash to store with the log, or null if the device could not be stored and must stay in the log payload.
+     * @throws JSONException if the device cannot be serialized.
+     */
+    @Nullable
+    private String putDevice(@NonNull Device device) throws JSONException {
+
+        /* Logs of a session usually share the same instance, compare before serializing. */
+        if (device == mLastDevice || device.equals(mLastDevice)) {
+            return mLastDeviceHash;
+        }
+        String payload = serializeDevice(device);
+
+        /* Device changed (first log, wrapper SDK or configuration change): clean up snapshots no log uses anymore. */
+        deleteOrphanDevices();
+        String hash = HashUtils.sha256(payload);
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_HASH, hash);
+        values.put(COLUMN_DEVICE, payload);
+        if (!mDatabaseManager.insertIfAbsent(DEVICES_TABLE, values)) {
+            return null;
+        }
+        AppCenterLog.debug(LOG_TAG, "Stored device snapshot " + hash);
+        mLastDevice = device;
+        mLastDeviceHash = hash;
+        return hash;
+    }
+
+    /**
+     * Delete device snapshots that are not referenced by any log.
+     */
+    private void deleteOrphanDevices() {
+        int deletedCount = mDatabaseManager.deleteWhere(DEVICES_TABLE, ORPHAN_DEVICES_WHERE, null);
+        if (deletedCount > 0) {
+            AppCenterLog.debug(LOG_TAG, "Deleted " + deletedCount + " unused device snapshot(s).");
+        }
+        resetLastDevice();
+    }
+
+    /**
+     * Get a device snapshot, reading it from the database only once per batch.
+     *
+     * @param hash    device content hash.
+     * @param devices devices already read for this batch.
+     * @return device shared by all logs of the batch referencing it.
+     * @throws JSONException if the device is missing or cannot be read.
+     */
+    @NonNull
+    private Device getDevice(@NonNull String hash, @NonNull Map<String, Device> devices) throws JSONException {
+        Device device = devices.get(hash);
+        if (device == null) {
+            String payload = null;
+            SQLiteQueryBuilder builder = SQLiteUtils.newSQLiteQueryBuilder();
+            builder.appendWhere(COLUMN_HASH + " = ?");
+            try {
+                Cursor cursor = mDatabaseManager.getCursor(DEVICES_TABLE, builder, new String[]{COLUMN_DEVICE}, new String[]{hash}, null);
+                if (cursor != null) {
+                    try {
+                        if (cursor.moveToNext()) {
+                            payload = cursor.getString(0);
+                        }
+                    } finally {
+                        cursor.close();
+                    }
+                }
+            } catch (RuntimeException e) {
+                AppCenterLog.error(LOG_TAG, "Failed to get device snapshot: ", e);
+            }
+            if (payload == null) {
+                throw new JSONException("Device snapshot " + hash + " not found.");
+            }
+            device = readDevice(payload);
+            devices.put(hash, device);
+        }
+        return device;
+    }
+
+    /**
+     * Read a device snapshot from its stored JSON.
+     *
+     * @param payload device JSON.
+     * @return device.
+     * @throws JSONException if the device cannot be read.
+     */
+    @NonNull
+    private static Device readDevice(@NonNull String payload) throws JSONException {
+        Device device = new Device();
+        JsonReader reader = new JsonReader(new StringReader(payload));
+        try {
+            device.read(reader);
+            return device;
+        } catch (IOException | IllegalStateException e) {
+            JSONException jsonException = new JSONException(e.getMessage());
+            jsonException.initCause(e);
+            throw jsonException;
+        } finally {
+            try {
+                reader.close();
+            } catch (IOException ignored) {
+
+                /* Reading from a string, nothing to release. */
+            }
+        }
+    }
+
     @Override
     public boolean setMaxStorageSize(long maxStorageSizeInBytes) {
         return mDatabaseManager.setMaxSize(maxStorageSizeInBytes);
@@ -266,7 +473,16 @@ public class DatabasePersistence extends Persistence {
         /* Convert log to JSON string and put in the database. */
         try {
             AppCenterLog.debug(LOG_TAG, "Storing a log to the Persistence database for log type " + log.getType() + " with flags=" + flags);
-            String payload = getLogSerializer().serializeLog(log);
+
+            /* Store the device once in its own table, Common Schema logs don't serialize it anyway. */
+            Device device = log.getDevice();
+            String deviceHash = null;
+            if (device != null && !(log instanceof CommonSchemaLog)) {
+                deviceHash = putDevice(device);
+            }
+
+            /* Serialize without the device when stored separately, the log can be read by other threads so it's left untouched. */
+            String payload = deviceHash != null ? getLogSerializer().serializeLogWithoutDevice(log) : getLogSerializer().serializeLog(log);
             ContentValues contentValues;
 
             //noinspection CharsetObjectCanBeUsed min API level 19 required to fix this warning.
@@ -293,7 +509,7 @@ public class DatabasePersistence extends Persistence {
                 throw new PersistenceException("Log is too large (" + payloadSize + " bytes) to store in database. " +
                         "Current maximum database size is " + maxSize + " bytes.");
             }
-            contentValues = getContentValues(group, isLargePayload ? null : payload, targetToken, log.getType(), targetKey, Flags.getPersistenceFlag(flags, false));
+            contentValues = getContentValues(group, isLargePayload ? null : payload, targetToken, log.getType(), targetKey, Flags.getPersistenceFlag(flags, false), deviceHash);
             long databaseId = mDatabaseManager.put(contentValues, COLUMN_PRIORITY);
             if (databaseId == -1) {
                 throw new PersistenceException("Failed to store a log to the Persistence database for log type " + log.getType() + ".");
@@ -385,6 +601,7 @@ public class DatabasePersistence extends Persistence {
         /* Delete from database. */
         int deletedCount = mDatabaseManager.delete(COLUMN_GROUP, group);
         AppCenterLog.debug(LOG_TAG, "Deleted " + deletedCount + " logs.");
+        deleteOrphanDevices();
 
         /* Delete from pending state. */
         for (Iterator<String> iterator = mPendingDbIdentifiersGroups.keySet().iterator(); iterator.hasNext(); ) {
@@ -397,13 +614,32 @@ public class DatabasePersistence extends Persistence {
 
     @Override
     public int countLogs(@NonNull String group) {
+        SQLiteQueryBuilder builder = SQLiteUtils.newSQLiteQueryBuilder();
+        builder.appendWhere(COLUMN_GROUP + " = ?");
+        return countLogs(builder, new String[]{group});
+    }
 
-        /* Query database and get scanner. */
+    @Override
+    public int countLogs(@NonNull String group, int priority) {
         SQLiteQueryBuilder builder = SQLiteUtils.newSQLiteQueryBuilder();
         builder.appendWhere(COLUMN_GROUP + " = ?");
+        builder.appendWhere(" AND " + COLUMN_PRIORITY + " = ?");
+        return countLogs(builder, new String[]{group, String.valueOf(priority)});
+    }
+
+    /**
+     * Count the logs matching a query.
+     *
+     * @param builder       query builder with the selection.
+     * @param selectionArgs selection arguments.
+     * @return the number of logs, 0 if the query failed.
+     */
+    private int countLogs(SQLiteQueryBuilder builder, String[] selectionArgs) {
+
+        /* Query database and get scanner. */
         int count = 0;
         try {
-            Cursor cursor = mDatabaseManager.getCursor(builder, new String[]{"COUNT(*)"}, new String[]{group}, null);
+            Cursor cursor = mDatabaseManager.getCursor(builder, new String[]{"COUNT(*)"}, selectionArgs, null);
             try {
                 cursor.moveToNext();
                 count = cursor.getInt(0);
@@ -442,6 +678,7 @@ public class DatabasePersistence extends Persistence {
         /* Add logs to output parameter after deserialization if logs are not already sent. */
         int count = 0;
         Map<Long, Log> candidates = new LinkedHashMap<>();
+        Map<String, Device> devices = new HashMap<>();
         List<Long> failedDbIdentifiers = new ArrayList<>();
         File largePayloadGroupDirectory = getLargePayloadGroupDirectory(group);
         String[] selectionArgsArray = selectionArgs.toArray(new String[0]);
@@ -482,31 +719,8 @@ public class DatabasePersistence extends Persistence {
             if (!mPendingDbIdentifiers.contains(dbIdentifier)) {
                 try {
 
-                    /* Deserialize JSON to Log. */
-                    String logPayload;
-                    String databasePayload = values.getAsString(COLUMN_LOG);
-                    if (databasePayload == null) {
-                        File file = getLargePayloadFile(largePayloadGroupDirectory, dbIdentifier);
-                        AppCenterLog.debug(LOG_TAG, "Read payload file " + file);
-                        logPayload = FileManager.read(file);
-                        if (logPayload == null) {
-                            throw new JSONException("Log payload is null and not stored as a file.");
-                        }
-                    } else {
-                        logPayload = databasePayload;
-                    }
-                    String databasePayloadType = values.getAsString(COLUMN_DATA_TYPE);
-                    Log log = getLogSerializer().deserializeLog(logPayload, databasePayloadType);
-
-                    /* Restore target token. */
-                    String targetToken = values.getAsString(COLUMN_TARGET_TOKEN);
-                    if (targetToken != null) {
-                        CryptoUtils.DecryptedData data = CryptoUtils.getInstance(mContext).decrypt(targetToken);
-                        log.addTransmissionTarget(data.getDecryptedData());
-                    }
-
                     /* Add log to list and count. */
-                    candidates.put(dbIdentifier, log);
+                    candidates.put(dbIdentifier, readLog(values, dbIdentifier, largePayloadGroupDirectory, devices));
                     count++;
                 } catch (JSONException e) {
 
@@ -540,7 +754,7 @@ public class DatabasePersistence extends Persistence {
         }
 
         /* Generate an ID. */
-        String id = UUID.randomUUID().toString();
+        String id = IdHelper.generateId().toString();
 
         /* Log. */
         AppCenterLog.debug(LOG_TAG, "Returning " + candidates.size() + " log(s) with an ID, " + id);
@@ -567,6 +781,110 @@ public class DatabasePersistence extends Persistence {
         return id;
     }
 
+    @Nullable
+    @Override
+    public List<Long> getLogIdentifiers(@NonNull String group, @NonNull String batchId) {
+        List<Long> dbIdentifiers = mPendingDbIdentifiersGroups.get(group + batchId);
+        return dbIdentifiers != null ? new ArrayList<>(dbIdentifiers) : null;
+    }
+
+    @Override
+    public void reloadLogs(@NonNull String group, @NonNull Collection<Long> logIdentifiers, @NonNull Map<Long, Log> outLogs) {
+
+        /* Log. */
+        AppCenterLog.debug(LOG_TAG, "Reloading " + logIdentifiers.size() + " logs from the Persistence database for " + group);
+        if (logIdentifiers.isEmpty()) {
+            return;
+        }
+
+        /* Query database. */
+        SQLiteQueryBuilder builder = SQLiteUtils.newSQLiteQueryBuilder();
+        StringBuilder filter = new StringBuilder();
+        List<String> selectionArgs = new ArrayList<>();
+        selectionArgs.add(group);
+        for (Long logIdentifier : logIdentifiers) {
+            filter.append("?,");
+            selectionArgs.add(String.valueOf(logIdentifier));
+        }
+        filter.deleteCharAt(filter.length() - 1);
+        builder.appendWhere(COLUMN_GROUP + " = ? AND " + PRIMARY_KEY + " IN (" + filter.toString() + ")");
+
+        /* Read the logs, devices are shared like when the batch was built. */
+        Map<String, Device> devices = new HashMap<>();
+        File largePayloadGroupDirectory = getLargePayloadGroupDirectory(group);
+        Cursor cursor = null;
+        try {
+            cursor = mDatabaseManager.getCursor(builder, null, selectionArgs.toArray(new String[0]), null);
+        } catch (RuntimeException e) {
+            AppCenterLog.error(LOG_TAG, "Failed to reload logs: ", e);
+        }
+        if (cursor == null) {
+            return;
+        }
+        try {
+            ContentValues values;
+            while ((values = mDatabaseManager.nextValues(cursor)) != null) {
+                Long dbIdentifier = values.getAsLong(PRIMARY_KEY);
+                if (dbIdentifier != null) {
+                    try {
+                        outLogs.put(dbIdentifier, readLog(values, dbIdentifier, largePayloadGroupDirectory, devices));
+                    } catch (JSONException e) {
+                        AppCenterLog.error(LOG_TAG, "Cannot deserialize a reloaded log in the database", e);
+                    }
+                }
+            }
+        } finally {
+            try {
+                cursor.close();
+            } catch (RuntimeException ignore) {
+            }
+        }
+    }
+
+    /**
+     * Deserialize a log read from the database.
+     *
+     * @param values                     the database record.
+     * @param dbIdentifier               the log identifier.
+     * @param largePayloadGroupDirectory directory of the payloads too large to be stored in the database.
+     * @param devices                    devices already read for this batch.
+     * @return the log.
+     * @throws JSONException if the log cannot be read.
+     */
+    @NonNull
+    private Log readLog(ContentValues values, long dbIdentifier, File largePayloadGroupDirectory, Map<String, Device> devices) throws JSONException {
+
+        /* Deserialize JSON to Log. */
+        String logPayload;
+        String databasePayload = values.getAsString(COLUMN_LOG);
+        if (databasePayload == null) {
+            File file = getLargePayloadFile(largePayloadGroupDirectory, dbIdentifier);
+            AppCenterLog.debug(LOG_TAG, "Read payload file " + file);
+            logPayload = FileManager.read(file);
+            if (logPayload == null) {
+                throw new JSONException("Log payload is null and not stored as a file.");
+            }
+        } else {
+            logPayload = databasePayload;
+        }
+        String databasePayloadType = values.getAsString(COLUMN_DATA_TYPE);
+        Log log = getLogSerializer().deserializeLog(logPayload, databasePayloadType);
+
+        /* Restore device, logs of this batch share the same instance. */
+        String deviceHash = values.getAsString(COLUMN_DEVICE_HASH);
+        if (deviceHash != null) {
+            log.setDevice(getDevice(deviceHash, devices));
+        }
+
+        /* Restore target token. */
+        String targetToken = values.getAsString(COLUMN_TARGET_TOKEN);
+        if (targetToken != null) {
+            CryptoUtils.DecryptedData data = CryptoUtils.getInstance(mContext).decrypt(targetToken);
+            log.addTransmissionTarget(data.getDecryptedData());
+        }
+        return log;
+    }
+
     @Override
     public void clearPendingLogState() {
         mPendingDbIdentifiers.clear();
@@ -17,6 +17,7 @@ import java.io.Closeable;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Abstract class for Persistence service.
@@ -63,6 +64,15 @@ public abstract class Persistence implements Closeable {
      */
     public abstract int countLogs(@NonNull String group);
 
+    /**
+     * Gets the number of logs for the given {@code group} with the given persistence priority.
+     *
+     * @param group    The group of the storage for logs.
+     * @param priority The persistence priority, {@link com.microsoft.appcenter.Flags#CRITICAL} or {@link com.microsoft.appcenter.Flags#NORMAL}.
+     * @return The number of logs for the given {@code group} with that priority.
+     */
+    public abstract int countLogs(@NonNull String group, int priority);
+
     /**
      * Gets an array of logs for the given {@code group}.
      *
@@ -75,6 +85,26 @@ public abstract class Persistence implements Closeable {
     @Nullable
     public abstract String getLogs(@NonNull String group, @NonNull Collection<String> pausedTargetKeys, @IntRange(from = 0) int limit, @NonNull List<Log> outLogs);
 
+    /**
+     * Gets the log identifiers of a batch returned by {@link #getLogs(String, Collection, int, List)}.
+     *
+     * @param group   The group of the storage for logs.
+     * @param batchId The ID for a set of logs.
+     * @return Log identifiers of the batch in the order they were returned, {@code null} if the batch is not pending.
+     */
+    @Nullable
+    public abstract List<Long> getLogIdentifiers(@NonNull String group, @NonNull String batchId);
+
+    /**
+     * Reads again logs that are still in the storage, without changing their pending state.
+     * Unlike the other methods, this one can be called from any thread.
+     *
+     * @param group          The group of the storage for logs.
+     * @param logIdentifiers Some of the log identifiers returned by {@link #getLogIdentifiers(String, String)}.
+     * @param outLogs        A map to receive {@link Log} objects by identifier, logs that cannot be read anymore are skipped.
+     */
+    public abstract void reloadLogs(@NonNull String group, @NonNull Collection<Long> logIdentifiers, @NonNull Map<Long, Log> outLogs);
+
     /**
      * Clears all associations between logs of the {@code group} and ids returned by {@link #getLogs(String, Collection, int, List)}}.
      */
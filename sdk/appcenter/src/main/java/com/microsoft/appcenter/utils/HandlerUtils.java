@@ -41,4 +41,17 @@ public class HandlerUtils {
     public static Handler getMainHandler() {
         return sMainHandler;
     }
+
+    /**
+     * Get a handler to call back the current thread later.
+     *
+     * @return handler of the current thread looper, or main thread handler if the current thread has no looper.
+     */
+    public static Handler getCallerHandler() {
+        Looper looper = Looper.myLooper();
+        if (looper == null || looper == sMainHandler.getLooper()) {
+            return sMainHandler;
+        }
+        return new Handler(looper);
+    }
 }
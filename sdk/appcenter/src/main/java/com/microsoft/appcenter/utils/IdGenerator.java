@@ -0,0 +1,24 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.utils;
+
+import androidx.annotation.NonNull;
+
+import java.util.UUID;
+
+/**
+ * Generates unique identifiers for logs and log batches.
+ */
+public interface IdGenerator {
+
+    /**
+     * Generate a new identifier. Can be called from any thread.
+     *
+     * @return new identifier.
+     */
+    @NonNull
+    UUID nextId();
+}
@@ -6,6 +6,7 @@
 package com.microsoft.appcenter.utils;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.microsoft.appcenter.AppCenter;
 import com.microsoft.appcenter.utils.storage.SharedPreferencesManager;
@@ -16,6 +17,11 @@ import static com.microsoft.appcenter.utils.PrefStorageConstants.KEY_INSTALL_ID;
 
 public class IdHelper {
 
+    /**
+     * Generator for log and batch identifiers, created on first use.
+     */
+    private static volatile IdGenerator sIdGenerator;
+
     /**
      * Get the installID from the Shared preferences. In case this fails, will generate a new installId.
      *
@@ -34,4 +40,32 @@ public class IdHelper {
         }
         return installId;
     }
+
+    /**
+     * Generate a new identifier for a log or a batch of logs.
+     *
+     * @return new identifier.
+     */
+    @NonNull
+    public static UUID generateId() {
+        IdGenerator idGenerator = sIdGenerator;
+        if (idGenerator == null) {
+            synchronized (IdHelper.class) {
+                if (sIdGenerator == null) {
+                    sIdGenerator = new TimeOrderedIdGenerator();
+                }
+                idGenerator = sIdGenerator;
+            }
+        }
+        return idGenerator.nextId();
+    }
+
+    /**
+     * Replace the generator used by {@link #generateId()}.
+     *
+     * @param idGenerator generator, null to use the default one.
+     */
+    public static synchronized void setIdGenerator(@Nullable IdGenerator idGenerator) {
+        sIdGenerator = idGenerator;
+    }
 }
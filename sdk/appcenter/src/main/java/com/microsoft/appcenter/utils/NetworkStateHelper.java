@@ -12,6 +12,8 @@ import android.net.Network;
 import android.net.NetworkCapabilities;
 import android.net.NetworkInfo;
 import android.net.NetworkRequest;
+import android.os.Build;
+import androidx.annotation.RequiresApi;
 import androidx.annotation.VisibleForTesting;
 
 import java.io.Closeable;
@@ -44,6 +46,11 @@ public class NetworkStateHelper implements Closeable {
      */
     private final Set<Listener> mListeners = new CopyOnWriteArraySet<>();
 
+    /**
+     * Metered state listeners that will subscribe to us.
+     */
+    private final Set<MeteredListener> mMeteredListeners = new CopyOnWriteArraySet<>();
+
     /**
      * Network callback.
      */
@@ -55,6 +62,16 @@ public class NetworkStateHelper implements Closeable {
      */
     private final AtomicBoolean mConnected = new AtomicBoolean();
 
+    /**
+     * Whether the current network is metered (reported by {@link NetworkCapabilities}).
+     */
+    private final AtomicBoolean mMetered = new AtomicBoolean();
+
+    /**
+     * Whether the network callback registration waits for the first network state query.
+     */
+    private final AtomicBoolean mRegistrationDeferred = new AtomicBoolean();
+
     /**
      * Init.
      *
@@ -62,8 +79,24 @@ public class NetworkStateHelper implements Closeable {
      */
     @VisibleForTesting
     public NetworkStateHelper(Context context) {
+        this(context, false);
+    }
+
+    /**
+     * Init.
+     *
+     * @param context           any Android context.
+     * @param deferRegistration true to register the network callback only on first network state query
+     *                          or {@link #registerIfDeferred()} call.
+     */
+    @VisibleForTesting
+    NetworkStateHelper(Context context, boolean deferRegistration) {
         mConnectivityManager = (ConnectivityManager) context.getSystemService(CONNECTIVITY_SERVICE);
-        reopen();
+        if (deferRegistration) {
+            mRegistrationDeferred.set(true);
+        } else {
+            reopen();
+        }
     }
 
     public static synchronized void unsetInstance() {
@@ -77,16 +110,47 @@ public class NetworkStateHelper implements Closeable {
      * @return shared instance.
      */
     public static synchronized NetworkStateHelper getSharedInstance(Context context) {
+        return getSharedInstance(context, false);
+    }
+
+    /**
+     * Get shared instance.
+     *
+     * @param context           any context.
+     * @param deferRegistration if the shared instance is created by this call, register the network callback
+     *                          only on first network state query or {@link #registerIfDeferred()} call.
+     * @return shared instance.
+     */
+    public static synchronized NetworkStateHelper getSharedInstance(Context context, boolean deferRegistration) {
         if (sSharedInstance == null) {
-            sSharedInstance = new NetworkStateHelper(context);
+            sSharedInstance = new NetworkStateHelper(context, deferRegistration);
         }
         return sSharedInstance;
     }
 
+    /**
+     * Register the network callback now if its registration was deferred.
+     * Until then, network state is checked on every query.
+     */
+    public void registerIfDeferred() {
+        if (mRegistrationDeferred.compareAndSet(true, false)) {
+            AppCenterLog.debug(LOG_TAG, "Registering deferred network callback.");
+            register();
+        }
+    }
+
     /**
      * Make this helper active again after closing.
      */
     public void reopen() {
+        mRegistrationDeferred.set(false);
+        register();
+    }
+
+    /**
+     * Register the network callback.
+     */
+    private void register() {
         try {
             /*
              * Build query to get a working network listener.
@@ -104,6 +168,11 @@ public class NetworkStateHelper implements Closeable {
                     onNetworkAvailable(network);
                 }
 
+                @Override
+                public void onCapabilitiesChanged(Network network, NetworkCapabilities networkCapabilities) {
+                    onNetworkCapabilitiesChanged(network, networkCapabilities);
+                }
+
                 @Override
                 public void onLost(Network network) {
                     onNetworkLost(network);
@@ -129,9 +198,21 @@ public class NetworkStateHelper implements Closeable {
      * @return true for connected, false for disconnected.
      */
     public boolean isNetworkConnected() {
+        registerIfDeferred();
         return mConnected.get() || isAnyNetworkConnected();
     }
 
+    /**
+     * Check whether the current network is metered, as reported by the network capabilities.
+     * The network is considered unmetered when its capabilities are not known yet.
+     *
+     * @return true if metered, false otherwise.
+     */
+    public boolean isNetworkMetered() {
+        registerIfDeferred();
+        return mMetered.get();
+    }
+
     /**
      * Check if any network is connected.
      *
@@ -159,6 +240,39 @@ public class NetworkStateHelper implements Closeable {
         if (mConnected.compareAndSet(false, true)) {
             notifyNetworkStateUpdated(true);
         }
+
+        /* The new network can become the default one without reporting capabilities again. */
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            updateMeteredFromActiveNetwork();
+        }
+    }
+
+    /**
+     * Handle network capabilities update.
+     */
+    private void onNetworkCapabilitiesChanged(Network network, NetworkCapabilities capabilities) {
+
+        /*
+         * Only the default network carries our traffic when several networks are up.
+         * A change on another network can be the default network switching to it, so read the default network again.
+         */
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M && !network.equals(mConnectivityManager.getActiveNetwork())) {
+            updateMeteredFromActiveNetwork();
+            return;
+        }
+        updateMetered(!capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED));
+    }
+
+    /**
+     * Update metered state from the capabilities of the default network, if known.
+     */
+    @RequiresApi(api = Build.VERSION_CODES.M)
+    private void updateMeteredFromActiveNetwork() {
+        Network network = mConnectivityManager.getActiveNetwork();
+        NetworkCapabilities capabilities = network != null ? mConnectivityManager.getNetworkCapabilities(network) : null;
+        if (capabilities != null) {
+            updateMetered(!capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED));
+        }
     }
 
     /**
@@ -169,8 +283,32 @@ public class NetworkStateHelper implements Closeable {
         Network[] networks = mConnectivityManager.getAllNetworks();
         boolean noNetwork = networks == null || networks.length == 0 ||
                 Arrays.equals(networks, new Network[]{network});
-        if (noNetwork && mConnected.compareAndSet(true, false)) {
-            notifyNetworkStateUpdated(false);
+        if (noNetwork) {
+
+            /* Reset silently: metered listeners are only notified about the network they can send on. */
+            mMetered.set(false);
+            if (mConnected.compareAndSet(true, false)) {
+                notifyNetworkStateUpdated(false);
+            }
+        }
+
+        /* Another network takes over as the default one. */
+        else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            updateMeteredFromActiveNetwork();
+        }
+    }
+
+    /**
+     * Update metered state and notify listeners if it changed.
+     *
+     * @param metered whether the current network is metered.
+     */
+    private void updateMetered(boolean metered) {
+        if (mMetered.compareAndSet(!metered, metered)) {
+            AppCenterLog.debug(LOG_TAG, "Network is now " + (metered ? "metered." : "unmetered."));
+            for (MeteredListener listener : mMeteredListeners) {
+                listener.onNetworkMeteredUpdated(metered);
+            }
         }
     }
 
@@ -189,7 +327,12 @@ public class NetworkStateHelper implements Closeable {
     @Override
     public void close() {
         mConnected.set(false);
-        mConnectivityManager.unregisterNetworkCallback(mNetworkCallback);
+        mMetered.set(false);
+
+        /* Nothing to unregister if registration was still deferred. */
+        if (!mRegistrationDeferred.getAndSet(false)) {
+            mConnectivityManager.unregisterNetworkCallback(mNetworkCallback);
+        }
     }
 
     /**
@@ -210,6 +353,24 @@ public class NetworkStateHelper implements Closeable {
         mListeners.remove(listener);
     }
 
+    /**
+     * Add a metered state listener.
+     *
+     * @param listener listener to add.
+     */
+    public void addMeteredListener(MeteredListener listener) {
+        mMeteredListeners.add(listener);
+    }
+
+    /**
+     * Remove a metered state listener.
+     *
+     * @param listener listener to remove.
+     */
+    public void removeMeteredListener(MeteredListener listener) {
+        mMeteredListeners.remove(listener);
+    }
+
     /**
      * Network state listener specification.
      */
@@ -222,4 +383,17 @@ public class NetworkStateHelper implements Closeable {
          */
         void onNetworkStateUpdated(boolean connected);
     }
+
+    /**
+     * Metered state listener specification.
+     */
+    public interface MeteredListener {
+
+        /**
+         * Called whenever the current network switches between metered and unmetered.
+         *
+         * @param metered true if the current network is metered, false otherwise.
+         */
+        void onNetworkMeteredUpdated(boolean metered);
+    }
 }
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.utils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates version 7 style identifiers: a millisecond timestamp followed by random bits.
+ * {@link SecureRandom} is used only once for the seed, each identifier then costs an atomic increment
+ * and a few arithmetic operations instead of a synchronized {@link SecureRandom} call like {@link UUID#randomUUID()}.
+ */
+public class TimeOrderedIdGenerator implements IdGenerator {
+
+    /**
+     * Version 7 in the version nibble.
+     */
+    private static final long VERSION_BITS = 0x7000L;
+
+    /**
+     * Mask of the 12 bits following the version.
+     */
+    private static final long SEQUENCE_MASK = 0xfffL;
+
+    /**
+     * RFC 4122 variant in the 2 most significant bits.
+     */
+    private static final long VARIANT_BITS = 0x8000000000000000L;
+
+    /**
+     * Mask of the 62 bits following the variant.
+     */
+    private static final long RANDOM_MASK = 0x3fffffffffffffffL;
+
+    /**
+     * Odd constant spreading consecutive counter values over the whole 64 bits range.
+     */
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    /**
+     * Random seed.
+     */
+    private final long mSeed;
+
+    /**
+     * Number of identifiers generated.
+     */
+    private final AtomicLong mCounter = new AtomicLong();
+
+    /**
+     * Init with a secure random seed.
+     */
+    public TimeOrderedIdGenerator() {
+        this(new SecureRandom().nextLong());
+    }
+
+    /**
+     * Init with a given seed.
+     *
+     * @param seed random seed.
+     */
+    @VisibleForTesting
+    TimeOrderedIdGenerator(long seed) {
+        mSeed = seed;
+    }
+
+    /**
+     * Scramble bits, this is a bijection so that distinct counter values give distinct results.
+     *
+     * @param value value to scramble.
+     * @return scrambled value.
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+
+    @VisibleForTesting
+    long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    @NonNull
+    @Override
+    public UUID nextId() {
+        long count = mCounter.getAndIncrement();
+
+        /* 48 bits timestamp, version, then the low counter bits to keep ids ordered within a millisecond. */
+        long mostSigBits = (currentTimeMillis() << 16) | VERSION_BITS | (count & SEQUENCE_MASK);
+        long leastSigBits = (mix(mSeed + count * GOLDEN_GAMMA) & RANDOM_MASK) | VARIANT_BITS;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+}
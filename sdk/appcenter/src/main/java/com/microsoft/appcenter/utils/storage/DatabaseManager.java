@@ -220,6 +220,24 @@ public class DatabaseManager implements Closeable {
         return id;
     }
 
+    /**
+     * Stores an entry in another table than the default one, unless a row with the same unique key already exists.
+     * Unlike {@link #put(ContentValues, String)}, no entry is evicted if storage is full.
+     *
+     * @param table  The table to insert into.
+     * @param values The entry to be stored.
+     * @return true if the entry is now in the table (inserted or already present), false if insertion failed.
+     */
+    public boolean insertIfAbsent(@NonNull String table, @NonNull ContentValues values) {
+        try {
+            getDatabase().insertWithOnConflict(table, null, values, SQLiteDatabase.CONFLICT_IGNORE);
+            return true;
+        } catch (RuntimeException e) {
+            AppCenterLog.error(LOG_TAG, String.format("Failed to insert values (%s) to table %s of database %s.", values.toString(), table, mDatabase), e);
+            return false;
+        }
+    }
+
     /**
      * Deletes the entry by the identifier from the database.
      *
@@ -258,6 +276,23 @@ public class DatabaseManager implements Closeable {
         }
     }
 
+    /**
+     * Deletes the entries of a table that match a where clause.
+     *
+     * @param table       The table to perform the operation on.
+     * @param whereClause The where clause, without the WHERE keyword.
+     * @param whereArgs   The values for the where clause placeholders.
+     * @return the number of rows affected.
+     */
+    public int deleteWhere(@NonNull String table, @NonNull String whereClause, @Nullable String[] whereArgs) {
+        try {
+            return getDatabase().delete(table, whereClause, whereArgs);
+        } catch (RuntimeException e) {
+            AppCenterLog.error(LOG_TAG, String.format("Failed to delete values that match condition=\"%s\" and values=\"%s\" from table %s of database %s.", whereClause, Arrays.toString(whereArgs), table, mDatabase), e);
+            return 0;
+        }
+    }
+
     /**
      * Clears the table in the database.
      */
@@ -322,7 +357,7 @@ public class DatabaseManager implements Closeable {
      * @return A cursor for all rows that matches the given criteria.
      * @throws RuntimeException If an error occurs.
      */
-    Cursor getCursor(@NonNull String table, @Nullable SQLiteQueryBuilder queryBuilder, String[] columns, @Nullable String[] selectionArgs, @Nullable String sortOrder) throws RuntimeException {
+    public Cursor getCursor(@NonNull String table, @Nullable SQLiteQueryBuilder queryBuilder, String[] columns, @Nullable String[] selectionArgs, @Nullable String sortOrder) throws RuntimeException {
         if (queryBuilder == null) {
             queryBuilder = SQLiteUtils.newSQLiteQueryBuilder();
         }
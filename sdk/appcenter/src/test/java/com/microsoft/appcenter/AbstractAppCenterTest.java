@@ -15,11 +15,14 @@ import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.Looper;
 
+import androidx.annotation.NonNull;
+
 import com.microsoft.appcenter.channel.DefaultChannel;
 import com.microsoft.appcenter.ingestion.models.StartServiceLog;
 import com.microsoft.appcenter.ingestion.models.json.JSONUtils;
 import com.microsoft.appcenter.ingestion.models.json.LogFactory;
 import com.microsoft.appcenter.utils.AppCenterLog;
+import com.microsoft.appcenter.utils.AsyncTaskUtils;
 import com.microsoft.appcenter.utils.DeviceInfoHelper;
 import com.microsoft.appcenter.utils.IdHelper;
 import com.microsoft.appcenter.utils.InstrumentationRegistryHelper;
@@ -62,6 +65,7 @@ import static org.powermock.api.mockito.PowerMockito.whenNew;
         DefaultChannel.class,
         Constants.class,
         AppCenterLog.class,
+        AsyncTaskUtils.class,
         StartServiceLog.class,
         FileManager.class,
         SharedPreferencesManager.class,
@@ -72,7 +76,8 @@ import static org.powermock.api.mockito.PowerMockito.whenNew;
         CustomProperties.class,
         InstrumentationRegistryHelper.class,
         NetworkStateHelper.class,
-        JSONUtils.class
+        JSONUtils.class,
+        Looper.class
 })
 public class AbstractAppCenterTest {
 
@@ -116,6 +121,7 @@ public class AbstractAppCenterTest {
         AppCenter.unsetInstance();
         DummyService.sharedInstance = null;
         AnotherDummyService.sharedInstance = null;
+        ParallelDummyService.sharedInstance = null;
 
         whenNew(DefaultChannel.class).withAnyArguments().thenReturn(mChannel);
         whenNew(StartServiceLog.class).withAnyArguments().thenReturn(mStartServiceLog);
@@ -179,6 +185,7 @@ public class AbstractAppCenterTest {
 
         /* Mock network state helper. */
         when(NetworkStateHelper.getSharedInstance(any(Context.class))).thenReturn(mNetworkStateHelper);
+        when(NetworkStateHelper.getSharedInstance(any(Context.class), anyBoolean())).thenReturn(mNetworkStateHelper);
     }
 
     @After
@@ -262,6 +269,38 @@ public class AbstractAppCenterTest {
         }
     }
 
+    static class ParallelDummyService extends AbstractAppCenterService implements AppCenterService.ParallelInitializingService {
+
+        private static ParallelDummyService sharedInstance;
+
+        @SuppressWarnings({"WeakerAccess", "RedundantSuppression"})
+        public static ParallelDummyService getInstance() {
+            if (sharedInstance == null) {
+                sharedInstance = spy(new ParallelDummyService());
+            }
+            return sharedInstance;
+        }
+
+        @Override
+        public void onInitializing(@NonNull Context context) {
+        }
+
+        @Override
+        protected String getGroupName() {
+            return "group_parallel_dummy";
+        }
+
+        @Override
+        public String getServiceName() {
+            return "ParallelDummy";
+        }
+
+        @Override
+        protected String getLoggerTag() {
+            return "ParallelDummyLog";
+        }
+    }
+
     static class InvalidService extends AbstractAppCenterService {
 
         @Override
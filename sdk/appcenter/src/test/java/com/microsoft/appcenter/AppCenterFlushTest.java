@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter;
+
+import com.microsoft.appcenter.channel.Channel;
+import com.microsoft.appcenter.utils.async.AppCenterFuture;
+
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class AppCenterFlushTest extends AbstractAppCenterTest {
+
+    @Test
+    public void flushBeforeStart() {
+        assertNull(AppCenter.flush(1000).get());
+        verify(mChannel, never()).flush(anyLong(), any(Channel.FlushListener.class));
+    }
+
+    @Test
+    public void flushReportsRemainingLogs() {
+        AppCenter.start(mApplication, DUMMY_APP_SECRET, DummyService.class);
+        doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                ((Channel.FlushListener) invocation.getArguments()[1]).onFlushCompleted(3);
+                return null;
+            }
+        }).when(mChannel).flush(anyLong(), any(Channel.FlushListener.class));
+        FlushResult result = AppCenter.flush(1000).get();
+        verify(mChannel).flush(eq(1000L), any(Channel.FlushListener.class));
+        assertEquals(3, result.getRemainingLogCount());
+        assertFalse(result.isDrained());
+    }
+
+    @Test
+    public void flushDrained() {
+        AppCenter.start(mApplication, DUMMY_APP_SECRET, DummyService.class);
+        doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                ((Channel.FlushListener) invocation.getArguments()[1]).onFlushCompleted(0);
+                return null;
+            }
+        }).when(mChannel).flush(anyLong(), any(Channel.FlushListener.class));
+        AppCenterFuture<FlushResult> future = AppCenter.flush(1000);
+        assertTrue(future.get().isDrained());
+    }
+
+    @Test
+    public void flushWhenDisabled() {
+        AppCenter.start(mApplication, DUMMY_APP_SECRET, DummyService.class);
+        AppCenter.setEnabled(false);
+        assertNull(AppCenter.flush(1000).get());
+        verify(mChannel, never()).flush(anyLong(), any(Channel.FlushListener.class));
+    }
+}
@@ -7,15 +7,23 @@ package com.microsoft.appcenter;
 
 import android.app.Activity;
 import android.content.Context;
+import android.os.Looper;
+import android.os.MessageQueue;
 
 import com.microsoft.appcenter.channel.Channel;
 import com.microsoft.appcenter.channel.OneCollectorChannelListener;
+import com.microsoft.appcenter.http.HttpClient;
+import com.microsoft.appcenter.http.ServiceCallback;
+import com.microsoft.appcenter.ingestion.AppCenterIngestion;
+import com.microsoft.appcenter.ingestion.OneCollectorIngestion;
 import com.microsoft.appcenter.ingestion.models.CustomPropertiesLog;
 import com.microsoft.appcenter.ingestion.models.StartServiceLog;
 import com.microsoft.appcenter.ingestion.models.WrapperSdk;
 import com.microsoft.appcenter.utils.AppCenterLog;
 import com.microsoft.appcenter.utils.ApplicationLifecycleListener;
+import com.microsoft.appcenter.utils.AsyncTaskUtils;
 import com.microsoft.appcenter.utils.DeviceInfoHelper;
+import com.microsoft.appcenter.utils.NetworkStateHelper;
 import com.microsoft.appcenter.utils.PrefStorageConstants;
 import com.microsoft.appcenter.utils.ShutdownHelper;
 import com.microsoft.appcenter.utils.storage.SharedPreferencesManager;
@@ -25,6 +33,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatcher;
+import org.mockito.InOrder;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.powermock.core.classloader.annotations.PrepareForTest;
@@ -32,6 +41,7 @@ import org.powermock.modules.junit4.PowerMockRunner;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
@@ -42,6 +52,7 @@ import static com.microsoft.appcenter.AppCenter.KEY_VALUE_DELIMITER;
 import static com.microsoft.appcenter.AppCenter.LOG_TAG;
 import static com.microsoft.appcenter.AppCenter.PAIR_DELIMITER;
 import static com.microsoft.appcenter.Flags.DEFAULTS;
+import static com.microsoft.appcenter.http.DefaultHttpClient.METHOD_HEAD;
 import static com.microsoft.appcenter.utils.PrefStorageConstants.KEY_ENABLED;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -60,12 +71,15 @@ import static org.mockito.Matchers.isA;
 import static org.mockito.Matchers.isNull;
 import static org.mockito.Matchers.notNull;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.powermock.api.mockito.PowerMockito.doAnswer;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
 import static org.powermock.api.mockito.PowerMockito.verifyStatic;
 import static org.powermock.api.mockito.PowerMockito.whenNew;
 
@@ -867,6 +881,129 @@ public class AppCenterTest extends AbstractAppCenterTest {
         verify(listener, never()).setLogUrl(anyString());
     }
 
+    @SuppressWarnings("unchecked")
+    @Test
+    public void connectionWarmUp() {
+        HttpClient httpClient = mock(HttpClient.class);
+        DependencyConfiguration.setHttpClient(httpClient);
+        try {
+
+            /* Disabled by default. */
+            AppCenter.start(mApplication, DUMMY_APP_SECRET, DummyService.class);
+            verify(httpClient, never()).callAsync(anyString(), anyString(), any(Map.class), any(HttpClient.CallTemplate.class), any(ServiceCallback.class));
+
+            /* Enable then start with an app secret. */
+            AppCenter.unsetInstance();
+            AppCenter.setConnectionWarmUpEnabled(true);
+            AppCenter.start(mApplication, DUMMY_APP_SECRET, DummyService.class);
+            verify(httpClient).callAsync(eq(AppCenterIngestion.DEFAULT_LOG_URL), eq(METHOD_HEAD), any(Map.class), any(HttpClient.CallTemplate.class), any(ServiceCallback.class));
+
+            /* Enable then start with a target token. */
+            AppCenter.unsetInstance();
+            AppCenter.setConnectionWarmUpEnabled(true);
+            AppCenter.start(mApplication, "target=token", DummyService.class);
+            verify(httpClient).callAsync(eq(OneCollectorIngestion.DEFAULT_LOG_URL), eq(METHOD_HEAD), any(Map.class), any(HttpClient.CallTemplate.class), any(ServiceCallback.class));
+
+            /* Enabling after start has no effect. */
+            AppCenter.setConnectionWarmUpEnabled(false);
+            verifyStatic();
+            AppCenterLog.warn(eq(LOG_TAG), anyString());
+        } finally {
+            DependencyConfiguration.setHttpClient(null);
+        }
+    }
+
+    @Test
+    public void stagedInitialization() {
+        MessageQueue queue = mock(MessageQueue.class);
+        mockStatic(Looper.class);
+        when(Looper.myQueue()).thenReturn(queue);
+        AppCenter.setStagedInitializationEnabled(true);
+        AppCenter.start(mApplication, DUMMY_APP_SECRET, DummyService.class);
+
+        /* Storage, session history and network callback are not used at start. */
+        verify(mChannel).deferStorage();
+        verify(mChannel, never()).setMaxStorageSize(anyLong());
+        verify(mChannel, never()).loadDeferredStorage();
+        verifyStatic();
+        NetworkStateHelper.getSharedInstance(mApplication, true);
+        verify(mNetworkStateHelper, never()).registerIfDeferred();
+
+        /* They are when the App Center thread is idle. */
+        ArgumentCaptor<MessageQueue.IdleHandler> idleHandler = ArgumentCaptor.forClass(MessageQueue.IdleHandler.class);
+        verify(queue).addIdleHandler(idleHandler.capture());
+        assertFalse(idleHandler.getValue().queueIdle());
+        verify(mChannel).setMaxStorageSize(anyLong());
+        verify(mChannel).loadDeferredStorage();
+        verify(mNetworkStateHelper).registerIfDeferred();
+
+        /* Changing it after start has no effect. */
+        AppCenter.setStagedInitializationEnabled(false);
+        verifyStatic();
+        AppCenterLog.warn(eq(LOG_TAG), anyString());
+    }
+
+    @Test
+    public void startupTracing() {
+        AppCenter.setStartupTracingEnabled(true);
+        try {
+            AppCenter.start(mApplication, DUMMY_APP_SECRET, DummyService.class);
+            String serviceName = DummyService.getInstance().getServiceName();
+            StartupMetrics metrics = AppCenter.getStartupMetrics();
+            assertNotNull(metrics.getPhase(AppCenter.PHASE_CONFIGURE));
+            assertNotNull(metrics.getPhase(AppCenter.PHASE_FINISH_CONFIGURATION));
+            assertNotNull(metrics.getPhase(AppCenter.PHASE_FINISH_CONFIGURATION + ".channel"));
+            assertNotNull(metrics.getPhase(AppCenter.PHASE_START_SERVICE + "." + serviceName));
+            assertNotNull(metrics.getPhase(AppCenter.PHASE_ON_STARTED + "." + serviceName));
+        } finally {
+            StartupTracer.reset();
+        }
+    }
+
+    @Test
+    public void parallelInitialization() {
+        mockStatic(AsyncTaskUtils.class);
+        AppCenter.start(mApplication, DUMMY_APP_SECRET, ParallelDummyService.class, DummyService.class);
+        ArgumentCaptor<ServiceInitializationTask> task = ArgumentCaptor.forClass(ServiceInitializationTask.class);
+        verifyStatic();
+        AsyncTaskUtils.execute(eq(LOG_TAG), task.capture());
+
+        /* Other services start without waiting for the initialization, calls of the initializing service are held. */
+        Runnable heldCall = mock(Runnable.class);
+        ParallelDummyService.getInstance().post(heldCall);
+        verify(DummyService.getInstance()).onStarted(any(Context.class), any(Channel.class), eq(DUMMY_APP_SECRET), isNull(String.class), eq(true));
+        verify(ParallelDummyService.getInstance(), never()).onStarted(any(Context.class), any(Channel.class), anyString(), anyString(), anyBoolean());
+        verify(heldCall, never()).run();
+
+        /* The service starts once initialized, then its calls run. */
+        task.getValue().doInBackground();
+        InOrder inOrder = inOrder(ParallelDummyService.getInstance(), heldCall);
+        inOrder.verify(ParallelDummyService.getInstance()).onInitializing(mApplication);
+        inOrder.verify(ParallelDummyService.getInstance()).onStarted(any(Context.class), any(Channel.class), eq(DUMMY_APP_SECRET), isNull(String.class), eq(true));
+        inOrder.verify(heldCall).run();
+
+        /* Later calls are not held. */
+        Runnable call = mock(Runnable.class);
+        ParallelDummyService.getInstance().post(call);
+        verify(call).run();
+    }
+
+    @Test
+    public void parallelInitializationFailure() {
+        mockStatic(AsyncTaskUtils.class);
+        doThrow(new IllegalStateException()).when(ParallelDummyService.getInstance()).onInitializing(any(Context.class));
+        AppCenter.start(mApplication, DUMMY_APP_SECRET, ParallelDummyService.class);
+        ArgumentCaptor<ServiceInitializationTask> task = ArgumentCaptor.forClass(ServiceInitializationTask.class);
+        verifyStatic();
+        AsyncTaskUtils.execute(eq(LOG_TAG), task.capture());
+
+        /* The service is started anyway. */
+        task.getValue().doInBackground();
+        verify(ParallelDummyService.getInstance()).onStarted(any(Context.class), any(Channel.class), eq(DUMMY_APP_SECRET), isNull(String.class), eq(true));
+        verifyStatic();
+        AppCenterLog.error(eq(LOG_TAG), anyString(), any(IllegalStateException.class));
+    }
+
     @Test
     public void setOneCollectorUrlWhenTargetTokenUsed() throws Exception {
         OneCollectorChannelListener listener = mock(OneCollectorChannelListener.class);
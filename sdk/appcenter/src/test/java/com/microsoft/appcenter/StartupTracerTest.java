@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class StartupTracerTest {
+
+    @After
+    public void tearDown() {
+        StartupTracer.reset();
+    }
+
+    @Test
+    public void disabledByDefault() {
+        assertNull(StartupTracer.beginSection("test"));
+        assertNull(StartupTracer.beginSection("test", "detail"));
+        StartupTracer.endSection(null);
+        assertTrue(StartupTracer.getMetrics().getPhases().isEmpty());
+    }
+
+    @Test
+    public void recordPhases() {
+        AppCenter.setStartupTracingEnabled(true);
+        StartupTracer.Section outer = StartupTracer.beginSection("outer");
+        StartupTracer.Section inner = StartupTracer.beginSection("outer", "inner");
+        StartupTracer.endSection(inner);
+        StartupTracer.endSection(outer);
+
+        /* Phases are ordered by start time even if the inner one ended first. */
+        StartupMetrics metrics = AppCenter.getStartupMetrics();
+        List<StartupMetrics.Phase> phases = metrics.getPhases();
+        assertEquals(2, phases.size());
+        assertEquals("outer", phases.get(0).getName());
+        assertEquals("outer.inner", phases.get(1).getName());
+        assertEquals(Thread.currentThread().getName(), phases.get(0).getThreadName());
+        assertTrue(phases.get(0).getStartTime() >= 0);
+        assertTrue(phases.get(1).getStartTime() >= phases.get(0).getStartTime());
+        assertTrue(phases.get(0).getDuration() >= phases.get(1).getDuration());
+        assertNotNull(metrics.getPhase("outer.inner"));
+        assertNull(metrics.getPhase("missing"));
+        assertTrue(metrics.toString().contains("outer.inner"));
+    }
+
+    @Test
+    public void sectionEndedAfterDisabling() {
+        StartupTracer.setEnabled(true);
+        StartupTracer.Section section = StartupTracer.beginSection("test");
+        StartupTracer.setEnabled(false);
+        StartupTracer.endSection(section);
+        assertNull(StartupTracer.beginSection("other"));
+
+        /* The section that began while enabled is still recorded. */
+        assertEquals(1, StartupTracer.getMetrics().getPhases().size());
+    }
+
+    @Test
+    public void recordPhaseOnce() {
+        StartupTracer.setEnabled(true);
+        StartupTracer.Section section = StartupTracer.beginSection("test");
+        StartupTracer.endSection(section);
+        StartupMetrics.Phase phase = StartupTracer.getMetrics().getPhase("test");
+
+        /* Running the same section again, like when services are enabled again, keeps the startup phase. */
+        StartupTracer.setEnabled(false);
+        StartupTracer.setEnabled(true);
+        StartupTracer.endSection(StartupTracer.beginSection("test"));
+        List<StartupMetrics.Phase> phases = StartupTracer.getMetrics().getPhases();
+        assertEquals(1, phases.size());
+        assertSame(phase, phases.get(0));
+    }
+}
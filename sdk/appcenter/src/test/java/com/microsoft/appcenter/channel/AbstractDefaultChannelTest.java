@@ -7,6 +7,7 @@ package com.microsoft.appcenter.channel;
 
 import android.content.Context;
 import android.os.Handler;
+import android.os.SystemClock;
 
 import com.microsoft.appcenter.http.HttpResponse;
 import com.microsoft.appcenter.http.ServiceCallback;
@@ -44,7 +45,8 @@ import static org.powermock.api.mockito.PowerMockito.mockStatic;
         HandlerUtils.class,
         IdHelper.class,
         SharedPreferencesManager.class,
-        System.class
+        System.class,
+        SystemClock.class
 })
 public class AbstractDefaultChannelTest {
 
@@ -131,5 +133,6 @@ public class AbstractDefaultChannelTest {
         HandlerUtils.runOnUiThread(any(Runnable.class));
         mockStatic(SharedPreferencesManager.class);
         mockStatic(System.class);
+        mockStatic(SystemClock.class);
     }
 }
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.channel;
+
+import android.content.Context;
+
+import com.microsoft.appcenter.Flags;
+import com.microsoft.appcenter.http.ServiceCallback;
+import com.microsoft.appcenter.ingestion.AppCenterIngestion;
+import com.microsoft.appcenter.ingestion.models.Log;
+import com.microsoft.appcenter.ingestion.models.LogContainer;
+import com.microsoft.appcenter.persistence.Persistence;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.net.SocketException;
+import java.util.UUID;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DefaultChannelFlushTest extends AbstractDefaultChannelTest {
+
+    @Test
+    public void flushSendsRightAway() {
+        Persistence persistence = mock(Persistence.class);
+        when(persistence.getLogs(anyString(), anyListOf(String.class), anyInt(), anyListOf(Log.class))).then(getGetLogsAnswer());
+        when(persistence.countLogs(TEST_GROUP)).thenReturn(20).thenReturn(0);
+        AppCenterIngestion ingestion = mock(AppCenterIngestion.class);
+        when(ingestion.isEnabled()).thenReturn(true);
+        doAnswer(getSendAsyncAnswer()).when(ingestion).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), persistence, ingestion, mAppCenterHandler);
+
+        /* Pending logs would normally wait for the timer. */
+        channel.addGroup(TEST_GROUP, 50, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        verify(mAppCenterHandler).postDelayed(any(Runnable.class), eq(BATCH_TIME_INTERVAL));
+        verify(ingestion, never()).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+
+        /* Flush sends the partial batch without waiting. */
+        Channel.FlushListener listener = mock(Channel.FlushListener.class);
+        channel.flush(1000, listener);
+        verify(ingestion).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+        verify(listener).onFlushCompleted(0);
+
+        /* Timeout is cancelled. */
+        ArgumentCaptor<Runnable> timeout = ArgumentCaptor.forClass(Runnable.class);
+        verify(mAppCenterHandler).postDelayed(timeout.capture(), eq(1000L));
+        verify(mAppCenterHandler).removeCallbacks(timeout.getValue());
+    }
+
+    @Test
+    public void flushTimesOut() {
+        Persistence persistence = mock(Persistence.class);
+        when(persistence.getLogs(anyString(), anyListOf(String.class), anyInt(), anyListOf(Log.class))).then(getGetLogsAnswer(1));
+        when(persistence.countLogs(TEST_GROUP)).thenReturn(1);
+        AppCenterIngestion ingestion = mock(AppCenterIngestion.class);
+        when(ingestion.isEnabled()).thenReturn(true);
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), persistence, ingestion, mAppCenterHandler);
+        channel.addGroup(TEST_GROUP, 50, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+
+        /* Ingestion never answers. */
+        Channel.FlushListener listener = mock(Channel.FlushListener.class);
+        channel.flush(1000, listener);
+        verify(ingestion).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+        verify(listener, never()).onFlushCompleted(anyInt());
+
+        /* Expire timeout. */
+        ArgumentCaptor<Runnable> timeout = ArgumentCaptor.forClass(Runnable.class);
+        verify(mAppCenterHandler).postDelayed(timeout.capture(), eq(1000L));
+        timeout.getValue().run();
+        verify(listener).onFlushCompleted(1);
+
+        /* Listener is called only once. */
+        timeout.getValue().run();
+        verify(listener).onFlushCompleted(anyInt());
+    }
+
+    @Test
+    public void flushCompletesOnRecoverableError() {
+        Persistence persistence = mock(Persistence.class);
+        when(persistence.getLogs(anyString(), anyListOf(String.class), anyInt(), anyListOf(Log.class))).then(getGetLogsAnswer(1));
+        when(persistence.countLogs(TEST_GROUP)).thenReturn(0).thenReturn(1);
+        AppCenterIngestion ingestion = mock(AppCenterIngestion.class);
+        when(ingestion.isEnabled()).thenReturn(true);
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), persistence, ingestion, mAppCenterHandler);
+        channel.addGroup(TEST_GROUP, 50, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        doAnswer(getSendAsyncAnswer(new SocketException())).when(ingestion).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+        Channel.FlushListener listener = mock(Channel.FlushListener.class);
+        channel.flush(1000, listener);
+        verify(listener).onFlushCompleted(1);
+    }
+
+    @Test
+    public void flushInOfflineMode() {
+        Persistence persistence = mock(Persistence.class);
+        when(persistence.countLogs(TEST_GROUP)).thenReturn(5);
+        AppCenterIngestion ingestion = mock(AppCenterIngestion.class);
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), persistence, ingestion, mAppCenterHandler);
+        channel.addGroup(TEST_GROUP, 50, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        Channel.FlushListener listener = mock(Channel.FlushListener.class);
+        channel.flush(1000, listener);
+        verify(ingestion, never()).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+        verify(listener).onFlushCompleted(5);
+        verify(mAppCenterHandler).removeCallbacks(any(Runnable.class));
+    }
+
+    @Test
+    public void flushWithoutGroups() {
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mock(Persistence.class), mock(AppCenterIngestion.class), mAppCenterHandler);
+        Channel.FlushListener listener = mock(Channel.FlushListener.class);
+        channel.flush(-1, listener);
+        verify(mAppCenterHandler).postDelayed(any(Runnable.class), anyLong());
+        verify(listener).onFlushCompleted(0);
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.channel;
+
+import android.content.Context;
+
+import com.microsoft.appcenter.Flags;
+import com.microsoft.appcenter.http.ServiceCallback;
+import com.microsoft.appcenter.ingestion.AppCenterIngestion;
+import com.microsoft.appcenter.ingestion.models.Log;
+import com.microsoft.appcenter.ingestion.models.LogContainer;
+import com.microsoft.appcenter.persistence.Persistence;
+import com.microsoft.appcenter.utils.NetworkStateHelper;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.UUID;
+
+import static com.microsoft.appcenter.channel.DefaultChannel.METERED_BATCH_TIME_INTERVAL_FACTOR;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DefaultChannelMeteredNetworkTest extends AbstractDefaultChannelTest {
+
+    @Test
+    public void normalLogsWaitLongerOnMeteredNetwork() {
+        NetworkStateHelper networkStateHelper = mock(NetworkStateHelper.class);
+        when(networkStateHelper.isNetworkMetered()).thenReturn(true);
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mock(Persistence.class), mock(AppCenterIngestion.class), mAppCenterHandler, networkStateHelper);
+        verify(networkStateHelper).addMeteredListener(channel);
+        channel.addGroup(TEST_GROUP, 50, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+
+        /* Normal log is held back for a longer interval. */
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.NORMAL);
+        verify(mAppCenterHandler).postDelayed(any(Runnable.class), eq(BATCH_TIME_INTERVAL * METERED_BATCH_TIME_INTERVAL_FACTOR));
+        verify(mAppCenterHandler, never()).postDelayed(any(Runnable.class), eq(BATCH_TIME_INTERVAL));
+    }
+
+    @Test
+    public void criticalLogsUseRegularIntervalOnMeteredNetwork() {
+        NetworkStateHelper networkStateHelper = mock(NetworkStateHelper.class);
+        when(networkStateHelper.isNetworkMetered()).thenReturn(true);
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mock(Persistence.class), mock(AppCenterIngestion.class), mAppCenterHandler, networkStateHelper);
+        channel.addGroup(TEST_GROUP, 50, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.CRITICAL);
+        assertEquals(1, channel.getGroupState(TEST_GROUP).mPendingCriticalLogCount);
+        verify(mAppCenterHandler).postDelayed(any(Runnable.class), eq(BATCH_TIME_INTERVAL));
+    }
+
+    @Test
+    public void criticalLogsSentAloneOnMeteredNetwork() {
+        Persistence persistence = mock(Persistence.class);
+        when(persistence.getLogs(anyString(), anyListOf(String.class), anyInt(), anyListOf(Log.class))).then(getGetLogsAnswer(1));
+        AppCenterIngestion ingestion = mock(AppCenterIngestion.class);
+        when(ingestion.isEnabled()).thenReturn(true);
+        NetworkStateHelper networkStateHelper = mock(NetworkStateHelper.class);
+        when(networkStateHelper.isNetworkMetered()).thenReturn(true);
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), persistence, ingestion, mAppCenterHandler, networkStateHelper);
+        channel.addGroup(TEST_GROUP, 50, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.NORMAL);
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.CRITICAL);
+
+        /* Only the critical log is fetched when the regular interval elapses. */
+        ArgumentCaptor<Runnable> timer = ArgumentCaptor.forClass(Runnable.class);
+        verify(mAppCenterHandler).postDelayed(timer.capture(), eq(BATCH_TIME_INTERVAL));
+        timer.getValue().run();
+        verify(persistence).getLogs(eq(TEST_GROUP), anyListOf(String.class), eq(1), anyListOf(Log.class));
+        verify(ingestion).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+
+        /* The normal log keeps waiting. */
+        assertEquals(1, channel.getGroupState(TEST_GROUP).mPendingLogCount);
+        assertEquals(0, channel.getGroupState(TEST_GROUP).mPendingCriticalLogCount);
+    }
+
+    @Test
+    public void pendingCriticalLogsCountedFromStorage() {
+        Persistence persistence = mock(Persistence.class);
+        when(persistence.countLogs(TEST_GROUP)).thenReturn(3);
+        when(persistence.countLogs(TEST_GROUP, Flags.CRITICAL)).thenReturn(1);
+        NetworkStateHelper networkStateHelper = mock(NetworkStateHelper.class);
+        when(networkStateHelper.isNetworkMetered()).thenReturn(true);
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), persistence, mock(AppCenterIngestion.class), mAppCenterHandler, networkStateHelper);
+        channel.addGroup(TEST_GROUP, 50, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+
+        /* The critical log stored by a previous process is scheduled at the regular pace. */
+        assertEquals(1, channel.getGroupState(TEST_GROUP).mPendingCriticalLogCount);
+        verify(mAppCenterHandler).postDelayed(any(Runnable.class), eq(BATCH_TIME_INTERVAL));
+    }
+
+    @Test
+    public void customMeteredNetworkPolicy() {
+        Persistence persistence = mock(Persistence.class);
+        when(persistence.getLogs(anyString(), anyListOf(String.class), anyInt(), anyListOf(Log.class))).then(getGetLogsAnswer(2));
+        AppCenterIngestion ingestion = mock(AppCenterIngestion.class);
+        when(ingestion.isEnabled()).thenReturn(true);
+        NetworkStateHelper networkStateHelper = mock(NetworkStateHelper.class);
+        when(networkStateHelper.isNetworkMetered()).thenReturn(true);
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), persistence, ingestion, mAppCenterHandler, networkStateHelper);
+        channel.addGroup(TEST_GROUP, 1, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        channel.setMeteredNetworkPolicy(TEST_GROUP, BATCH_TIME_INTERVAL * 2, 2);
+        channel.setMeteredNetworkPolicy("unknown", BATCH_TIME_INTERVAL, 1);
+
+        /* First normal log waits for the metered interval even if the regular batch size is reached. */
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.NORMAL);
+        verify(mAppCenterHandler).postDelayed(any(Runnable.class), eq(BATCH_TIME_INTERVAL * 2));
+        verify(ingestion, never()).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+
+        /* Reaching the metered batch size sends both logs together. */
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.NORMAL);
+        verify(persistence).getLogs(eq(TEST_GROUP), anyListOf(String.class), eq(2), anyListOf(Log.class));
+        verify(ingestion).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+    }
+
+    @Test
+    public void removeMeteredListenerOnShutdown() {
+        NetworkStateHelper networkStateHelper = mock(NetworkStateHelper.class);
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mock(Persistence.class), mock(AppCenterIngestion.class), mAppCenterHandler, networkStateHelper);
+        channel.shutdown();
+        verify(networkStateHelper).removeMeteredListener(channel);
+    }
+
+    @Test
+    public void regularIntervalOnUnmeteredNetwork() {
+        NetworkStateHelper networkStateHelper = mock(NetworkStateHelper.class);
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mock(Persistence.class), mock(AppCenterIngestion.class), mAppCenterHandler, networkStateHelper);
+        channel.addGroup(TEST_GROUP, 50, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.NORMAL);
+        verify(mAppCenterHandler).postDelayed(any(Runnable.class), eq(BATCH_TIME_INTERVAL));
+    }
+
+    @Test
+    public void flushWhenNetworkBecomesUnmetered() {
+        Persistence persistence = mock(Persistence.class);
+        when(persistence.getLogs(anyString(), anyListOf(String.class), anyInt(), anyListOf(Log.class))).then(getGetLogsAnswer(2));
+        AppCenterIngestion ingestion = mock(AppCenterIngestion.class);
+        when(ingestion.isEnabled()).thenReturn(true);
+        NetworkStateHelper networkStateHelper = mock(NetworkStateHelper.class);
+        when(networkStateHelper.isNetworkMetered()).thenReturn(true);
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), persistence, ingestion, mAppCenterHandler, networkStateHelper);
+        channel.addGroup(TEST_GROUP, 50, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.NORMAL);
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.NORMAL);
+        verify(ingestion, never()).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+
+        /* Switching to metered does nothing. */
+        channel.onNetworkMeteredUpdated(true);
+        verify(ingestion, never()).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+
+        /* Switching to unmetered sends right away. */
+        when(networkStateHelper.isNetworkMetered()).thenReturn(false);
+        channel.onNetworkMeteredUpdated(false);
+        verify(ingestion).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+        assertEquals(0, channel.getGroupState(TEST_GROUP).mPendingLogCount);
+    }
+
+    @Test
+    public void doNotFlushWhenDisabled() {
+        AppCenterIngestion ingestion = mock(AppCenterIngestion.class);
+        when(ingestion.isEnabled()).thenReturn(true);
+        NetworkStateHelper networkStateHelper = mock(NetworkStateHelper.class);
+        when(networkStateHelper.isNetworkMetered()).thenReturn(true);
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mock(Persistence.class), ingestion, mAppCenterHandler, networkStateHelper);
+        channel.addGroup(TEST_GROUP, 50, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.NORMAL);
+        channel.setEnabled(false);
+        channel.onNetworkMeteredUpdated(false);
+        verify(ingestion, never()).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+    }
+}
@@ -19,6 +19,7 @@ import org.mockito.Matchers;
 import java.util.List;
 import java.util.UUID;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
@@ -214,4 +215,38 @@ public class DefaultChannelOtherOperationsTest extends AbstractDefaultChannelTes
         assertTrue(channel.setMaxStorageSize(20480));
         assertFalse(channel.setMaxStorageSize(2));
     }
+
+    @Test
+    public void deferStorage() {
+        Persistence persistence = mock(Persistence.class);
+        when(persistence.countLogs(TEST_GROUP)).thenReturn(1);
+        AppCenterIngestion ingestion = mock(AppCenterIngestion.class);
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), persistence, ingestion, mAppCenterHandler);
+        channel.deferStorage();
+        channel.addGroup(TEST_GROUP, 50, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+
+        /* Storage is not used when adding group. */
+        verifyNoMoreInteractions(persistence);
+        assertEquals(0, channel.getGroupState(TEST_GROUP).mPendingLogCount);
+
+        /* Loading storage counts pending logs and schedules sending them, only once. */
+        channel.loadDeferredStorage();
+        channel.loadDeferredStorage();
+        verify(persistence).countLogs(TEST_GROUP);
+        assertEquals(1, channel.getGroupState(TEST_GROUP).mPendingLogCount);
+        verify(mAppCenterHandler).postDelayed(any(Runnable.class), eq(BATCH_TIME_INTERVAL));
+    }
+
+    @Test
+    public void enqueueLoadsDeferredStorage() throws Persistence.PersistenceException {
+        Persistence persistence = mock(Persistence.class);
+        when(persistence.countLogs(TEST_GROUP)).thenReturn(2);
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), persistence, mock(AppCenterIngestion.class), mAppCenterHandler);
+        channel.deferStorage();
+        channel.addGroup(TEST_GROUP, 50, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        verify(persistence).countLogs(TEST_GROUP);
+        verify(persistence).putLog(any(Log.class), eq(TEST_GROUP), anyInt());
+        assertEquals(3, channel.getGroupState(TEST_GROUP).mPendingLogCount);
+    }
 }
@@ -12,18 +12,21 @@ import com.microsoft.appcenter.CancellationException;
 import com.microsoft.appcenter.Flags;
 import com.microsoft.appcenter.http.HttpException;
 import com.microsoft.appcenter.http.HttpResponse;
+import com.microsoft.appcenter.http.RetryAwareServiceCallback;
 import com.microsoft.appcenter.http.ServiceCallback;
 import com.microsoft.appcenter.ingestion.AppCenterIngestion;
 import com.microsoft.appcenter.ingestion.Ingestion;
 import com.microsoft.appcenter.ingestion.models.Device;
 import com.microsoft.appcenter.ingestion.models.Log;
 import com.microsoft.appcenter.ingestion.models.LogContainer;
+import com.microsoft.appcenter.ingestion.models.StartServiceLog;
 import com.microsoft.appcenter.persistence.Persistence;
 import com.microsoft.appcenter.utils.DeviceInfoHelper;
 import com.microsoft.appcenter.utils.storage.SharedPreferencesManager;
 
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Matchers;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
@@ -31,21 +34,33 @@ import org.mockito.stubbing.Answer;
 import java.io.IOException;
 import java.net.SocketException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import static com.microsoft.appcenter.Flags.NORMAL;
 import static com.microsoft.appcenter.channel.DefaultChannel.START_TIMER_PREFIX;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyMapOf;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -570,6 +585,120 @@ public class DefaultChannelTest extends AbstractDefaultChannelTest {
         verify(mAppCenterHandler, never()).removeCallbacks(any(Runnable.class));
     }
 
+    @Test
+    public void releaseBatchWhileWaitingForRetry() throws Persistence.PersistenceException {
+        Persistence mockPersistence = mock(Persistence.class);
+        Ingestion mockIngestion = mock(Ingestion.class);
+        Channel.GroupListener mockListener = mock(Channel.GroupListener.class);
+        when(mockPersistence.getLogs(any(String.class), anyListOf(String.class), anyInt(), anyListOf(Log.class))).then(getGetLogsAnswer(1));
+        when(mockPersistence.getLogIdentifiers(eq(TEST_GROUP), anyString())).thenReturn(Collections.singletonList(42L));
+        when(mockIngestion.isEnabled()).thenReturn(true);
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mockPersistence, mockIngestion, mAppCenterHandler);
+        channel.addGroup(TEST_GROUP, 1, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, mockListener);
+
+        /* Send a batch. */
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        ArgumentCaptor<LogContainer> logContainer = ArgumentCaptor.forClass(LogContainer.class);
+        ArgumentCaptor<ServiceCallback> serviceCallback = ArgumentCaptor.forClass(ServiceCallback.class);
+        verify(mockIngestion).sendAsync(anyString(), any(UUID.class), logContainer.capture(), serviceCallback.capture());
+        assertEquals(1, logContainer.getValue().getLogs().size());
+        Log sentLog = logContainer.getValue().getLogs().get(0);
+        verify(mockListener).onBeforeSending(sentLog);
+
+        /* Logs are released while waiting for a retry that sends the kept body. */
+        assertTrue(serviceCallback.getValue() instanceof RetryAwareServiceCallback);
+        ((RetryAwareServiceCallback) serviceCallback.getValue()).onCallRetryScheduled(new SocketException(), CUSTOM_INTERVAL, true);
+        DefaultChannel.SendingBatch sendingBatch = (DefaultChannel.SendingBatch) logContainer.getValue();
+        assertTrue(sendingBatch.isReleased());
+
+        /* Logs that are still used are not reloaded, the listener gets the same instances. */
+        assertSame(sentLog, sendingBatch.getLogs().get(0));
+        serviceCallback.getValue().onCallSucceeded(new HttpResponse(200, ""));
+        verify(mockListener).onSuccess(sentLog);
+        verify(mockPersistence, never()).reloadLogs(anyString(), anyCollectionOf(Long.class), anyMapOf(Long.class, Log.class));
+        assertTrue(channel.getGroupState(TEST_GROUP).mSendingBatches.isEmpty());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void reloadReleasedLogsNotUsedAnymore() {
+        Persistence mockPersistence = mock(Persistence.class);
+        final List<Long> logIdentifiers = Arrays.asList(1L, 2L);
+        final Log reloadedLog = new StartServiceLog();
+        doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                for (Long logIdentifier : (Collection<Long>) invocation.getArguments()[1]) {
+                    ((Map<Long, Log>) invocation.getArguments()[2]).put(logIdentifier, reloadedLog);
+                }
+                return null;
+            }
+        }).when(mockPersistence).reloadLogs(eq(TEST_GROUP), anyCollectionOf(Long.class), anyMapOf(Long.class, Log.class));
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mockPersistence, mock(Ingestion.class), mAppCenterHandler);
+        Log usedLog = new StartServiceLog();
+        List<Log> logs = new ArrayList<>();
+        logs.add(usedLog);
+        logs.add(new StartServiceLog());
+        DefaultChannel.SendingBatch sendingBatch = channel.new SendingBatch(TEST_GROUP, logs);
+
+        /* Identifiers that do not match the logs are ignored. */
+        sendingBatch.release(Collections.singletonList(1L));
+        assertFalse(sendingBatch.isReleased());
+        sendingBatch.release(logIdentifiers);
+        assertTrue(sendingBatch.isReleased());
+        //noinspection UnusedAssignment
+        logs = null;
+
+        /* Only the log that is not used anymore is reloaded, order is kept. */
+        List<Log> result = sendingBatch.getLogs();
+        for (int i = 0; i < 100 && result.get(1) != reloadedLog; i++) {
+            System.gc();
+            result = sendingBatch.getLogs();
+        }
+        assertEquals(Arrays.asList(usedLog, reloadedLog), result);
+        verify(mockPersistence, atLeastOnce()).reloadLogs(eq(TEST_GROUP), eq(Collections.singletonList(2L)), anyMapOf(Long.class, Log.class));
+    }
+
+    @Test
+    public void keepBatchWhenRetryBuildsBody() throws Persistence.PersistenceException {
+        Persistence mockPersistence = mock(Persistence.class);
+        Ingestion mockIngestion = mock(Ingestion.class);
+        when(mockPersistence.getLogs(any(String.class), anyListOf(String.class), anyInt(), anyListOf(Log.class))).then(getGetLogsAnswer(1));
+        when(mockIngestion.isEnabled()).thenReturn(true);
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mockPersistence, mockIngestion, mAppCenterHandler);
+        channel.addGroup(TEST_GROUP, 1, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        ArgumentCaptor<LogContainer> logContainer = ArgumentCaptor.forClass(LogContainer.class);
+        ArgumentCaptor<ServiceCallback> serviceCallback = ArgumentCaptor.forClass(ServiceCallback.class);
+        verify(mockIngestion).sendAsync(anyString(), any(UUID.class), logContainer.capture(), serviceCallback.capture());
+
+        /* The retry serializes logs again on the HTTP thread, they must not be reloaded there. */
+        ((RetryAwareServiceCallback) serviceCallback.getValue()).onCallRetryScheduled(new SocketException(), CUSTOM_INTERVAL, false);
+        verify(mockPersistence, never()).getLogIdentifiers(anyString(), anyString());
+        assertFalse(((DefaultChannel.SendingBatch) logContainer.getValue()).isReleased());
+    }
+
+    @Test
+    public void keepBatchWhenLogIdentifiersAreUnknown() throws Persistence.PersistenceException {
+        Persistence mockPersistence = mock(Persistence.class);
+        Ingestion mockIngestion = mock(Ingestion.class);
+        when(mockPersistence.getLogs(any(String.class), anyListOf(String.class), anyInt(), anyListOf(Log.class))).then(getGetLogsAnswer(1));
+        when(mockIngestion.isEnabled()).thenReturn(true);
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), mockPersistence, mockIngestion, mAppCenterHandler);
+        channel.addGroup(TEST_GROUP, 1, BATCH_TIME_INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        ArgumentCaptor<LogContainer> logContainer = ArgumentCaptor.forClass(LogContainer.class);
+        ArgumentCaptor<ServiceCallback> serviceCallback = ArgumentCaptor.forClass(ServiceCallback.class);
+        verify(mockIngestion).sendAsync(anyString(), any(UUID.class), logContainer.capture(), serviceCallback.capture());
+        ((RetryAwareServiceCallback) serviceCallback.getValue()).onCallRetryScheduled(new SocketException(), CUSTOM_INTERVAL, true);
+
+        /* Persistence does not know the batch anymore, logs stay in memory. */
+        verify(mockPersistence).getLogIdentifiers(eq(TEST_GROUP), anyString());
+        assertEquals(1, logContainer.getValue().getLogs().size());
+        verify(mockPersistence, never()).reloadLogs(anyString(), anyCollectionOf(Long.class), anyMapOf(Long.class, Log.class));
+    }
+
     @Test
     public void errorLogDiscarded() {
         Channel.GroupListener mockListener = mock(Channel.GroupListener.class);
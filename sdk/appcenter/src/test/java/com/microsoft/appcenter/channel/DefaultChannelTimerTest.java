@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.channel;
+
+import android.content.Context;
+import android.os.SystemClock;
+
+import com.microsoft.appcenter.Flags;
+import com.microsoft.appcenter.http.ServiceCallback;
+import com.microsoft.appcenter.ingestion.AppCenterIngestion;
+import com.microsoft.appcenter.ingestion.models.Log;
+import com.microsoft.appcenter.ingestion.models.LogContainer;
+import com.microsoft.appcenter.persistence.Persistence;
+import com.microsoft.appcenter.utils.storage.SharedPreferencesManager;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.UUID;
+
+import static com.microsoft.appcenter.channel.DefaultChannel.START_TIMER_PREFIX;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DefaultChannelTimerTest extends AbstractDefaultChannelTest {
+
+    private static final String OTHER_GROUP = TEST_GROUP + "2";
+
+    private static final long INTERVAL = 3000;
+
+    private DefaultChannel createChannel(AppCenterIngestion ingestion) {
+        Persistence persistence = mock(Persistence.class);
+        when(persistence.getLogs(anyString(), anyListOf(String.class), anyInt(), anyListOf(Log.class))).then(getGetLogsAnswer(1));
+        when(ingestion.isEnabled()).thenReturn(true);
+        DefaultChannel channel = new DefaultChannel(mock(Context.class), UUID.randomUUID().toString(), persistence, ingestion, mAppCenterHandler);
+        channel.addGroup(TEST_GROUP, 50, INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        channel.addGroup(OTHER_GROUP, 50, INTERVAL, MAX_PARALLEL_BATCHES, null, null);
+        return channel;
+    }
+
+    @Test
+    public void coalesceGroupsWithinSlack() {
+        AppCenterIngestion ingestion = mock(AppCenterIngestion.class);
+        DefaultChannel channel = createChannel(ingestion);
+        ArgumentCaptor<Runnable> timer = ArgumentCaptor.forClass(Runnable.class);
+        when(mAppCenterHandler.postDelayed(timer.capture(), anyLong())).thenReturn(true);
+
+        /* First group schedules the timer. */
+        when(SystemClock.uptimeMillis()).thenReturn(0L);
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        verify(mAppCenterHandler).postDelayed(any(Runnable.class), eq(INTERVAL));
+
+        /* Second group is due within the slack: no new wake up. */
+        when(SystemClock.uptimeMillis()).thenReturn(500L);
+        channel.enqueue(mock(Log.class), OTHER_GROUP, Flags.DEFAULTS);
+        verify(mAppCenterHandler).postDelayed(any(Runnable.class), anyLong());
+        verify(mAppCenterHandler, never()).removeCallbacks(any(Runnable.class));
+
+        /* Both groups are sent by the same timer. */
+        when(SystemClock.uptimeMillis()).thenReturn(INTERVAL);
+        timer.getValue().run();
+        verify(ingestion, times(2)).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+        verify(mAppCenterHandler).postDelayed(any(Runnable.class), anyLong());
+    }
+
+    @Test
+    public void noCoalescingWithoutSlack() {
+        AppCenterIngestion ingestion = mock(AppCenterIngestion.class);
+        DefaultChannel channel = createChannel(ingestion);
+        channel.setTimerSlack(0);
+        ArgumentCaptor<Runnable> timer = ArgumentCaptor.forClass(Runnable.class);
+        when(mAppCenterHandler.postDelayed(timer.capture(), anyLong())).thenReturn(true);
+        when(SystemClock.uptimeMillis()).thenReturn(0L);
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        when(SystemClock.uptimeMillis()).thenReturn(500L);
+        channel.enqueue(mock(Log.class), OTHER_GROUP, Flags.DEFAULTS);
+        verify(mAppCenterHandler).postDelayed(any(Runnable.class), eq(INTERVAL));
+
+        /* First timer only sends first group and re-arms for the second one. */
+        when(SystemClock.uptimeMillis()).thenReturn(INTERVAL);
+        timer.getValue().run();
+        verify(ingestion).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+        verify(mAppCenterHandler).postDelayed(any(Runnable.class), eq(500L));
+
+        /* Second timer sends the other group and does not re-arm. */
+        when(SystemClock.uptimeMillis()).thenReturn(INTERVAL + 500);
+        timer.getValue().run();
+        verify(ingestion, times(2)).sendAsync(anyString(), any(UUID.class), any(LogContainer.class), any(ServiceCallback.class));
+        verify(mAppCenterHandler, times(2)).postDelayed(any(Runnable.class), anyLong());
+        verify(mAppCenterHandler, never()).removeCallbacks(any(Runnable.class));
+    }
+
+    @Test
+    public void rescheduleWhenEarliestGroupCancelled() {
+        AppCenterIngestion ingestion = mock(AppCenterIngestion.class);
+        DefaultChannel channel = createChannel(ingestion);
+        channel.setTimerSlack(0);
+        when(SystemClock.uptimeMillis()).thenReturn(0L);
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        when(SystemClock.uptimeMillis()).thenReturn(2000L);
+        channel.enqueue(mock(Log.class), OTHER_GROUP, Flags.DEFAULTS);
+
+        /* Removing the earliest group moves the timer to the other group deadline. */
+        channel.removeGroup(TEST_GROUP);
+        verify(mAppCenterHandler).removeCallbacks(any(Runnable.class));
+        verify(mAppCenterHandler, times(2)).postDelayed(any(Runnable.class), eq(INTERVAL));
+
+        /* Removing the last group removes the timer. */
+        channel.removeGroup(OTHER_GROUP);
+        verify(mAppCenterHandler, times(2)).removeCallbacks(any(Runnable.class));
+    }
+
+    @Test
+    public void customIntervalNotTriggeredLate() {
+        AppCenterIngestion ingestion = mock(AppCenterIngestion.class);
+        DefaultChannel channel = createChannel(ingestion);
+        String customGroup = TEST_GROUP + "Custom";
+        channel.addGroup(customGroup, 50, INTERVAL * 2, MAX_PARALLEL_BATCHES, null, null);
+        when(SystemClock.uptimeMillis()).thenReturn(0L);
+        channel.enqueue(mock(Log.class), TEST_GROUP, Flags.DEFAULTS);
+        verify(mAppCenterHandler).postDelayed(any(Runnable.class), eq(INTERVAL));
+
+        /* Custom interval persisted by a previous launch is due 500ms before the current timer. */
+        when(System.currentTimeMillis()).thenReturn(10000L);
+        when(SharedPreferencesManager.getLong(eq(START_TIMER_PREFIX + customGroup))).thenReturn(10000L - INTERVAL * 2 + 1500);
+        when(SystemClock.uptimeMillis()).thenReturn(1000L);
+        channel.enqueue(mock(Log.class), customGroup, Flags.DEFAULTS);
+
+        /* Timer is moved to the custom deadline even if it's within the slack of the current one. */
+        verify(mAppCenterHandler).removeCallbacks(any(Runnable.class));
+        verify(mAppCenterHandler).postDelayed(any(Runnable.class), eq(1500L));
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.http;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static com.microsoft.appcenter.http.CircuitBreaker.DEFAULT_FAILURE_THRESHOLD;
+import static com.microsoft.appcenter.http.HttpClientRetryer.RETRY_INTERVALS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class CircuitBreakerTest {
+
+    private static final String HOST = "in.appcenter.ms";
+
+    private static final String OTHER_HOST = "mobile.events.data.microsoft.com";
+
+    /**
+     * Random returning the middle of every range.
+     */
+    private final Random mRandom = new Random() {
+
+        @Override
+        public double nextDouble() {
+            return 0.5;
+        }
+
+        @Override
+        public int nextInt(int bound) {
+            return bound / 2;
+        }
+    };
+
+    @After
+    public void tearDown() {
+        CircuitBreaker.unsetSharedInstance();
+    }
+
+    @Test
+    public void openAfterConsecutiveFailuresThenProbe() {
+        TestCircuitBreaker circuitBreaker = new TestCircuitBreaker();
+        Object call1 = new Object();
+        Object call2 = new Object();
+
+        /* Circuit stays closed below the threshold. */
+        for (int i = 0; i < DEFAULT_FAILURE_THRESHOLD - 1; i++) {
+            circuitBreaker.onCallFailed(HOST, call1, 0, mRandom);
+        }
+        assertEquals(0, circuitBreaker.getCallDelay(HOST, call2));
+
+        /* Circuit opens for every call to the host. */
+        circuitBreaker.onCallFailed(HOST, call2, 0, mRandom);
+        long openDuration = RETRY_INTERVALS[0] / 2 + RETRY_INTERVALS[0] / 4;
+        assertEquals(openDuration, circuitBreaker.getCallDelay(HOST, call1));
+        assertEquals(openDuration, circuitBreaker.getCallDelay(HOST, call2));
+        assertEquals(0, circuitBreaker.getCallDelay(OTHER_HOST, call1));
+        circuitBreaker.mTime = 1000;
+        assertEquals(openDuration - 1000, circuitBreaker.getCallDelay(HOST, call1));
+
+        /* Half open: a single call probes while the other waits. */
+        circuitBreaker.mTime = openDuration;
+        assertEquals(0, circuitBreaker.getCallDelay(HOST, call1));
+        assertEquals(openDuration, circuitBreaker.getCallDelay(HOST, call2));
+        assertEquals(0, circuitBreaker.getCallDelay(HOST, call1));
+
+        /* Failed probe opens the circuit for longer. */
+        circuitBreaker.onCallFailed(HOST, call1, 0, mRandom);
+        long secondOpenDuration = RETRY_INTERVALS[1] / 2 + RETRY_INTERVALS[1] / 4;
+        assertEquals(secondOpenDuration, circuitBreaker.getCallDelay(HOST, call2));
+
+        /* Successful probe closes the circuit. */
+        circuitBreaker.mTime += secondOpenDuration;
+        assertEquals(0, circuitBreaker.getCallDelay(HOST, call2));
+        assertEquals(secondOpenDuration, circuitBreaker.getCallDelay(HOST, call1));
+        circuitBreaker.onCallSucceeded(HOST);
+        assertEquals(0, circuitBreaker.getCallDelay(HOST, call1));
+        assertEquals(0, circuitBreaker.getCallDelay(HOST, call2));
+
+        /* Failure count starts over. */
+        circuitBreaker.onCallFailed(HOST, call1, 0, mRandom);
+        assertEquals(0, circuitBreaker.getCallDelay(HOST, call2));
+    }
+
+    @Test
+    public void releasedProbeLetsAnotherCallProbe() {
+        TestCircuitBreaker circuitBreaker = new TestCircuitBreaker();
+        circuitBreaker.setFailureThreshold(1);
+        Object call1 = new Object();
+        Object call2 = new Object();
+        circuitBreaker.onCallFailed(HOST, call1, 0, mRandom);
+        circuitBreaker.mTime = RETRY_INTERVALS[0];
+        assertEquals(0, circuitBreaker.getCallDelay(HOST, call1));
+        assertEquals(RETRY_INTERVALS[0] * 3 / 4, circuitBreaker.getCallDelay(HOST, call2));
+
+        /* Releasing another call does not change the probe. */
+        circuitBreaker.releaseProbe(HOST, call2);
+        assertEquals(RETRY_INTERVALS[0] * 3 / 4, circuitBreaker.getCallDelay(HOST, call2));
+
+        /* Releasing the probe does. */
+        circuitBreaker.releaseProbe(HOST, call1);
+        assertEquals(0, circuitBreaker.getCallDelay(HOST, call2));
+    }
+
+    @Test
+    public void retryAfterAppliesToAllCallsToTheHost() {
+        TestCircuitBreaker circuitBreaker = new TestCircuitBreaker();
+        Object call1 = new Object();
+        Object call2 = new Object();
+        circuitBreaker.onCallFailed(HOST, call1, 2000, mRandom);
+        assertEquals(2000, circuitBreaker.getCallDelay(HOST, call2));
+        assertEquals(0, circuitBreaker.getCallDelay(OTHER_HOST, call2));
+
+        /* A shorter delay does not reduce the wait. */
+        circuitBreaker.onCallFailed(HOST, call2, 500, mRandom);
+        circuitBreaker.mTime = 1000;
+        assertEquals(1000, circuitBreaker.getCallDelay(HOST, call1));
+        circuitBreaker.mTime = 2000;
+        assertEquals(0, circuitBreaker.getCallDelay(HOST, call1));
+    }
+
+    @Test
+    public void exponentialBackoff() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+        /* Default schedule. */
+        assertEquals(RETRY_INTERVALS.length, circuitBreaker.getMaxRetries());
+        assertEquals(RETRY_INTERVALS[0] * 3 / 4, circuitBreaker.getBackoffDelay(0, mRandom));
+        assertEquals(RETRY_INTERVALS[2] * 3 / 4, circuitBreaker.getBackoffDelay(10, mRandom));
+
+        /* Full jitter, capped. */
+        circuitBreaker.setBackoff(5, 1000, 8000);
+        assertEquals(5, circuitBreaker.getMaxRetries());
+        assertEquals(500, circuitBreaker.getBackoffDelay(0, mRandom));
+        assertEquals(1000, circuitBreaker.getBackoffDelay(1, mRandom));
+        assertEquals(4000, circuitBreaker.getBackoffDelay(3, mRandom));
+        assertEquals(4000, circuitBreaker.getBackoffDelay(4, mRandom));
+        assertEquals(4000, circuitBreaker.getBackoffDelay(100, mRandom));
+
+        /* Restore default schedule. */
+        circuitBreaker.setBackoff(5, 0, 0);
+        assertEquals(RETRY_INTERVALS.length, circuitBreaker.getMaxRetries());
+        assertEquals(RETRY_INTERVALS[1] * 3 / 4, circuitBreaker.getBackoffDelay(1, mRandom));
+    }
+
+    @Test
+    public void sharedInstance() {
+        CircuitBreaker circuitBreaker = CircuitBreaker.getSharedInstance();
+        assertSame(circuitBreaker, CircuitBreaker.getSharedInstance());
+        HttpUtils.setRetryBackoff(10, 1000, 60000);
+        assertEquals(10, circuitBreaker.getMaxRetries());
+        HttpUtils.setCircuitBreakerThreshold(1);
+        circuitBreaker.onCallFailed(HOST, new Object(), 0, mRandom);
+        assertEquals(500, circuitBreaker.getCallDelay(HOST, new Object()), 100);
+    }
+
+    private static class TestCircuitBreaker extends CircuitBreaker {
+
+        long mTime;
+
+        @Override
+        long monotonicTimeMillis() {
+            return mTime;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.http;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.net.Socket;
+
+import javax.net.ssl.HandshakeCompletedEvent;
+import javax.net.ssl.HandshakeCompletedListener;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+import static com.microsoft.appcenter.http.ConnectionPool.DEFAULT_IDLE_TIMEOUT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ConnectionPoolTest {
+
+    private static final String HOST = "in.appcenter.ms";
+
+    @Test
+    public void reuseStatistics() throws Exception {
+        SSLSocketFactory delegate = mock(SSLSocketFactory.class);
+        SSLSocket socket = mock(SSLSocket.class);
+        Socket rawSocket = mock(Socket.class);
+        when(delegate.createSocket(rawSocket, HOST, 443, true)).thenReturn(socket);
+        TestConnectionPool pool = new TestConnectionPool(delegate);
+
+        /* First call opens a connection. */
+        pool.mTime = 1000;
+        pool.onCallStarted(HOST);
+        assertSame(socket, pool.getSocketFactory().createSocket(rawSocket, HOST, 443, true));
+
+        /* TLS handshake is timed from socket creation. */
+        ArgumentCaptor<HandshakeCompletedListener> listener = ArgumentCaptor.forClass(HandshakeCompletedListener.class);
+        verify(socket).addHandshakeCompletedListener(listener.capture());
+        pool.mTime = 1100;
+        listener.getValue().handshakeCompleted(mock(HandshakeCompletedEvent.class));
+        pool.onResponse();
+        pool.onCallFinished(HOST);
+
+        /* Second call reuses it. */
+        pool.onCallStarted(HOST);
+        pool.onResponse();
+        pool.onCallFinished(HOST);
+
+        /* Call failing before response is not counted. */
+        pool.onCallStarted(HOST);
+        pool.onCallFinished(HOST);
+        ConnectionStatistics statistics = pool.getStatistics();
+        assertEquals(2, statistics.getResponseCount());
+        assertEquals(1, statistics.getNewConnectionCount());
+        assertEquals(1, statistics.getReusedConnectionCount());
+        assertEquals(0.5, statistics.getConnectionReuseRate(), 0);
+        assertEquals(1, statistics.getHandshakeCount());
+        assertEquals(100, statistics.getAverageHandshakeTime());
+        verify(socket, never()).close();
+    }
+
+    @Test
+    public void resumedHandshakeStatistics() throws Exception {
+        SSLSocketFactory delegate = mock(SSLSocketFactory.class);
+        SSLSocket firstSocket = mock(SSLSocket.class);
+        SSLSocket secondSocket = mock(SSLSocket.class);
+        when(delegate.createSocket(HOST, 443)).thenReturn(firstSocket).thenReturn(secondSocket);
+        TestConnectionPool pool = new TestConnectionPool(delegate);
+        pool.setIdleTimeout(0);
+
+        /* First connection creates a session. */
+        pool.onCallStarted(HOST);
+        pool.getSocketFactory().createSocket(HOST, 443);
+        SSLSession session = mock(SSLSession.class);
+        when(session.getCreationTime()).thenReturn(System.currentTimeMillis() + 1000);
+        completeHandshake(pool, firstSocket, session, 300);
+        pool.onCallFinished(HOST);
+
+        /* Second connection resumes it. */
+        when(session.getCreationTime()).thenReturn(0L);
+        pool.onCallStarted(HOST);
+        pool.getSocketFactory().createSocket(HOST, 443);
+        completeHandshake(pool, secondSocket, session, 100);
+        pool.onCallFinished(HOST);
+        ConnectionStatistics statistics = pool.getStatistics();
+        assertEquals(2, statistics.getHandshakeCount());
+        assertEquals(1, statistics.getFullHandshakeCount());
+        assertEquals(1, statistics.getResumedHandshakeCount());
+        assertEquals(300, statistics.getAverageFullHandshakeTime());
+        assertEquals(100, statistics.getAverageResumedHandshakeTime());
+        assertEquals(200, statistics.getAverageHandshakeTime());
+    }
+
+    @Test
+    public void createSSLContextWithSessionCache() {
+        SSLContext sslContext = ConnectionPool.createSSLContext(ConnectionPool.DEFAULT_PROTOCOL);
+        assertNotNull(sslContext);
+        assertEquals(ConnectionPool.SESSION_CACHE_SIZE, sslContext.getClientSessionContext().getSessionCacheSize());
+        assertEquals(ConnectionPool.SESSION_TIMEOUT, sslContext.getClientSessionContext().getSessionTimeout());
+        assertNull(ConnectionPool.createSSLContext("unknown"));
+    }
+
+    @Test
+    public void callTimingStatistics() {
+        ConnectionPool pool = new ConnectionPool(mock(SSLSocketFactory.class));
+        HttpCallTimingListener listener = mock(HttpCallTimingListener.class);
+        pool.setCallTimingListener(listener);
+
+        /* Calls with a response are aggregated. */
+        HttpCallTiming first = new HttpCallTiming("POST", HOST);
+        first.mStatusCode = 200;
+        first.mQueueWaitTime = 10;
+        first.mConnectTime = 300;
+        first.mRequestWriteTime = 40;
+        first.mTimeToFirstByte = 100;
+        first.mResponseReadTime = 2;
+        first.mBytesSent = 500;
+        first.mRequestBodyLength = 2000;
+        first.mBytesReceived = 2;
+        pool.onCallTiming(first);
+        HttpCallTiming second = new HttpCallTiming("POST", HOST);
+        second.mStatusCode = 503;
+        second.mTimeToFirstByte = 300;
+        second.mBytesSent = 500;
+        pool.onCallTiming(second);
+
+        /* Calls without a response are only reported to the listener. */
+        HttpCallTiming failed = new HttpCallTiming("POST", HOST);
+        failed.mConnectTime = 10000;
+        pool.onCallTiming(failed);
+        verify(listener).onCallCompleted(first);
+        verify(listener).onCallCompleted(second);
+        verify(listener).onCallCompleted(failed);
+        assertEquals(0.25, first.getCompressionRatio(), 0);
+        assertEquals(0, second.getCompressionRatio(), 0);
+        assertEquals(452, first.getTotalTime());
+        ConnectionStatistics statistics = pool.getStatistics();
+        assertEquals(5, statistics.getAverageQueueWaitTime());
+        assertEquals(150, statistics.getAverageConnectTime());
+        assertEquals(20, statistics.getAverageRequestWriteTime());
+        assertEquals(200, statistics.getAverageTimeToFirstByte());
+        assertEquals(1, statistics.getAverageResponseReadTime());
+        assertEquals(1000, statistics.getBytesSent());
+        assertEquals(2, statistics.getBytesReceived());
+
+        /* Listener can be removed. */
+        pool.setCallTimingListener(null);
+        pool.onCallTiming(first);
+        verify(listener).onCallCompleted(first);
+    }
+
+    @Test
+    public void callTimingListenerFailure() {
+        ConnectionPool pool = new ConnectionPool(mock(SSLSocketFactory.class));
+        HttpCallTimingListener listener = mock(HttpCallTimingListener.class);
+        HttpCallTiming timing = new HttpCallTiming("POST", HOST);
+        timing.mStatusCode = 200;
+        timing.mBytesSent = 500;
+        doThrow(new IllegalStateException()).when(listener).onCallCompleted(timing);
+        pool.setCallTimingListener(listener);
+
+        /* Failure is not propagated and statistics are still recorded. */
+        pool.onCallTiming(timing);
+        verify(listener).onCallCompleted(timing);
+        assertEquals(500, pool.getStatistics().getBytesSent());
+    }
+
+    @Test
+    public void closeIdleSockets() throws Exception {
+        SSLSocketFactory delegate = mock(SSLSocketFactory.class);
+        SSLSocket socket = mock(SSLSocket.class);
+        when(delegate.createSocket(any(Socket.class), anyString(), anyInt(), anyBoolean())).thenReturn(socket);
+        TestConnectionPool pool = new TestConnectionPool(delegate);
+
+        /* Socket is not closed while a call uses the host. */
+        pool.onCallStarted(HOST);
+        pool.getSocketFactory().createSocket(mock(Socket.class), HOST, 443, true);
+        pool.onCallStarted("other.host");
+        pool.closeIdleSockets(true);
+        verify(socket, never()).close();
+        pool.onCallFinished(HOST);
+        verify(socket, never()).close();
+
+        /* Closed when starting a call after the idle timeout. */
+        pool.mTime = DEFAULT_IDLE_TIMEOUT - 1;
+        pool.onCallFinished("other.host");
+        verify(socket, never()).close();
+        pool.mTime = DEFAULT_IDLE_TIMEOUT;
+        pool.onCallStarted("other.host");
+        verify(socket).close();
+    }
+
+    @Test
+    public void closeSocketsWithoutIdleTimeout() throws Exception {
+        SSLSocketFactory delegate = mock(SSLSocketFactory.class);
+        SSLSocket socket = mock(SSLSocket.class);
+        when(delegate.createSocket(HOST, 443)).thenReturn(socket);
+        ConnectionPool pool = new ConnectionPool(delegate);
+        pool.setIdleTimeout(0);
+        pool.onCallStarted(HOST);
+        pool.getSocketFactory().createSocket(HOST, 443);
+        pool.onCallFinished(HOST);
+        verify(socket).close();
+    }
+
+    @Test
+    public void sharedInstance() {
+        ConnectionPool.unsetSharedInstance();
+        ConnectionPool pool = ConnectionPool.getSharedInstance();
+        assertSame(pool, ConnectionPool.getSharedInstance());
+        assertSame(pool.getStatistics(), HttpUtils.getConnectionStatistics());
+        HttpUtils.setConnectionIdleTimeout(0);
+        ConnectionPool.unsetSharedInstance();
+    }
+
+    private static void completeHandshake(TestConnectionPool pool, SSLSocket socket, SSLSession session, long duration) {
+        ArgumentCaptor<HandshakeCompletedListener> listener = ArgumentCaptor.forClass(HandshakeCompletedListener.class);
+        verify(socket).addHandshakeCompletedListener(listener.capture());
+        HandshakeCompletedEvent event = mock(HandshakeCompletedEvent.class);
+        when(event.getSession()).thenReturn(session);
+        long startTime = pool.mTime;
+        pool.mTime += duration;
+        listener.getValue().handshakeCompleted(event);
+        pool.mTime = startTime;
+    }
+
+    private static class TestConnectionPool extends ConnectionPool {
+
+        long mTime;
+
+        TestConnectionPool(SSLSocketFactory socketFactory) {
+            super(socketFactory);
+        }
+
+        @Override
+        long monotonicTimeMillis() {
+            return mTime;
+        }
+    }
+}
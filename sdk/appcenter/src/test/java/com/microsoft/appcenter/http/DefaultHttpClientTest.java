@@ -20,6 +20,7 @@ import org.junit.After;
 import org.junit.Rule;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.ArgumentMatcher;
 import org.mockito.Captor;
 import org.mockito.invocation.InvocationOnMock;
@@ -35,6 +36,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.Collections;
@@ -47,6 +49,7 @@ import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
 import javax.net.ssl.HttpsURLConnection;
@@ -56,7 +59,9 @@ import static com.microsoft.appcenter.http.DefaultHttpClient.METHOD_GET;
 import static com.microsoft.appcenter.http.DefaultHttpClient.METHOD_POST;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyMapOf;
@@ -65,6 +70,7 @@ import static org.mockito.Matchers.argThat;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
@@ -97,6 +103,7 @@ public class DefaultHttpClientTest {
     @After
     public void tearDown() throws Exception {
         TestUtils.setInternalState(Build.VERSION.class, "SDK_INT", 0);
+        ConnectionPool.unsetSharedInstance();
     }
 
     /**
@@ -169,25 +176,25 @@ public class DefaultHttpClientTest {
 
         /* Configure mock HTTPS. */
         mockCall();
-        testTls1_2Setting(Build.VERSION_CODES.LOLLIPOP, 1);
+        testTls1_2Setting(Build.VERSION_CODES.LOLLIPOP, true);
         for (int apiLevel = Build.VERSION_CODES.LOLLIPOP_MR1; apiLevel <= Build.VERSION_CODES.O_MR1; apiLevel++) {
-            testTls1_2Setting(apiLevel, 0);
+            testTls1_2Setting(apiLevel, false);
         }
     }
 
-    private void testTls1_2Setting(int apiLevel, int tlsSetExpectedCalls) throws Exception {
+    private void testTls1_2Setting(int apiLevel, boolean tls1_2Expected) throws Exception {
         String urlString = "https://mock/logs?api-version=1.0.0";
         HttpsURLConnection urlConnection = mockConnection(urlString);
         DefaultHttpClient httpClient = new DefaultHttpClient();
         TestUtils.setInternalState(Build.VERSION.class, "SDK_INT", apiLevel);
+        ConnectionPool.unsetSharedInstance();
         httpClient.callAsync(urlString, METHOD_POST, new HashMap<String, String>(), null, mock(ServiceCallback.class));
-        verify(urlConnection, times(tlsSetExpectedCalls)).setSSLSocketFactory(argThat(new ArgumentMatcher<SSLSocketFactory>() {
 
-            @Override
-            public boolean matches(Object argument) {
-                return argument instanceof TLS1_2SocketFactory;
-            }
-        }));
+        /* The shared tracking factory is always set, it wraps the TLS 1.2 factory only when needed. */
+        ArgumentCaptor<SSLSocketFactory> socketFactory = ArgumentCaptor.forClass(SSLSocketFactory.class);
+        verify(urlConnection).setSSLSocketFactory(socketFactory.capture());
+        assertSame(ConnectionPool.getSharedInstance().getSocketFactory(), socketFactory.getValue());
+        assertEquals(tls1_2Expected, ((ConnectionTrackingSocketFactory) socketFactory.getValue()).getDelegate() instanceof TLS1_2SocketFactory);
     }
 
     @Test
@@ -234,7 +241,7 @@ public class DefaultHttpClientTest {
         verify(urlConnection).setRequestProperty("Install-ID", installId.toString());
         verify(urlConnection).setRequestMethod("POST");
         verify(urlConnection).setDoOutput(true);
-        verify(urlConnection).disconnect();
+        verify(urlConnection, never()).disconnect();
         verify(callTemplate).onBeforeCalling(any(URL.class), anyMapOf(String.class, String.class));
         verify(callTemplate).buildRequestBody();
         httpClient.close();
@@ -285,7 +292,7 @@ public class DefaultHttpClientTest {
         verify(urlConnection).setRequestProperty("Install-ID", installId.toString());
         verify(urlConnection).setRequestMethod("POST");
         verify(urlConnection, never()).setDoOutput(true);
-        verify(urlConnection).disconnect();
+        verify(urlConnection, never()).disconnect();
         httpClient.close();
 
         /* Verify payload. */
@@ -293,6 +300,46 @@ public class DefaultHttpClientTest {
         assertEquals("", sentPayload);
     }
 
+    @Test
+    public void callTiming() throws Exception {
+
+        /* Configure mock HTTPS. */
+        String urlString = "https://mock/logs?api-version=1.0.0";
+        HttpsURLConnection urlConnection = mockConnection(urlString);
+        when(urlConnection.getResponseCode()).thenReturn(200);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        when(urlConnection.getOutputStream()).thenReturn(buffer);
+        when(urlConnection.getInputStream()).thenReturn(new ByteArrayInputStream("OK".getBytes()));
+        HttpClient.CallTemplate callTemplate = mock(HttpClient.CallTemplate.class);
+        when(callTemplate.buildRequestBody()).thenReturn("{a:1,b:2}");
+        HttpCallTimingListener listener = mock(HttpCallTimingListener.class);
+        HttpUtils.setCallTimingListener(listener);
+        try {
+
+            /* Make the call. */
+            DefaultHttpClient httpClient = new DefaultHttpClient();
+            mockCall();
+            httpClient.callAsync(urlString, METHOD_POST, new HashMap<String, String>(), callTemplate, mock(ServiceCallback.class));
+
+            /* Output is declared before connecting. */
+            InOrder inOrder = inOrder(urlConnection);
+            inOrder.verify(urlConnection).setFixedLengthStreamingMode(9);
+            inOrder.verify(urlConnection).connect();
+            inOrder.verify(urlConnection).getOutputStream();
+
+            /* Verify timing. */
+            ArgumentCaptor<HttpCallTiming> timing = ArgumentCaptor.forClass(HttpCallTiming.class);
+            verify(listener).onCallCompleted(timing.capture());
+            assertEquals(METHOD_POST, timing.getValue().getMethod());
+            assertEquals(200, timing.getValue().getStatusCode());
+            assertEquals(9, timing.getValue().getBytesSent());
+            assertEquals(2, timing.getValue().getBytesReceived());
+            assertEquals(1, timing.getValue().getCompressionRatio(), 0);
+        } finally {
+            HttpUtils.setCallTimingListener(null);
+        }
+    }
+
     @Test
     public void get200() throws Exception {
 
@@ -326,7 +373,7 @@ public class DefaultHttpClientTest {
         verify(urlConnection).setRequestProperty("Install-ID", installId.toString());
         verify(urlConnection).setRequestMethod("GET");
         verify(urlConnection, never()).setDoOutput(true);
-        verify(urlConnection).disconnect();
+        verify(urlConnection, never()).disconnect();
         verify(inputStream).close();
         verify(callTemplate).onBeforeCalling(any(URL.class), anyMapOf(String.class, String.class));
         verify(callTemplate, never()).buildRequestBody();
@@ -387,7 +434,7 @@ public class DefaultHttpClientTest {
         httpClient.callAsync(urlString, METHOD_POST, headers, null, serviceCallback);
         verify(serviceCallback).onCallFailed(new HttpException(new HttpResponse(100, "Continue")));
         verifyNoMoreInteractions(serviceCallback);
-        verify(urlConnection).disconnect();
+        verify(urlConnection, never()).disconnect();
     }
 
     @Test
@@ -421,7 +468,7 @@ public class DefaultHttpClientTest {
         verify(urlConnection).setRequestProperty("Install-ID", installId.toString());
         verify(urlConnection).setRequestMethod("GET");
         verify(urlConnection, never()).setDoOutput(true);
-        verify(urlConnection).disconnect();
+        verify(urlConnection, never()).disconnect();
         httpClient.close();
     }
 
@@ -454,7 +501,7 @@ public class DefaultHttpClientTest {
         verifyNoMoreInteractions(serviceCallback);
         verify(urlConnection).setRequestMethod("GET");
         verify(urlConnection, never()).setDoOutput(true);
-        verify(urlConnection).disconnect();
+        verify(urlConnection, never()).disconnect();
         verify(inputStream).close();
         verify(callTemplate).onBeforeCalling(any(URL.class), anyMapOf(String.class, String.class));
         verify(callTemplate, never()).buildRequestBody();
@@ -514,7 +561,7 @@ public class DefaultHttpClientTest {
         verifyNoMoreInteractions(serviceCallback);
         verify(urlConnection).setRequestMethod("GET");
         verify(urlConnection, never()).setDoOutput(true);
-        verify(urlConnection).disconnect();
+        verify(urlConnection, never()).disconnect();
         verify(inputStream).close();
         verify(callTemplate).onBeforeCalling(any(URL.class), anyMapOf(String.class, String.class));
         verify(callTemplate, never()).buildRequestBody();
@@ -568,7 +615,7 @@ public class DefaultHttpClientTest {
         verifyNoMoreInteractions(serviceCallback);
         verify(urlConnection).setRequestMethod("GET");
         verify(urlConnection, never()).setDoOutput(true);
-        verify(urlConnection).disconnect();
+        verify(urlConnection, never()).disconnect();
         verify(inputStream).close();
         verify(callTemplate).onBeforeCalling(any(URL.class), anyMapOf(String.class, String.class));
         verify(callTemplate, never()).buildRequestBody();
@@ -643,7 +690,7 @@ public class DefaultHttpClientTest {
         httpClient.callAsync(urlString, METHOD_POST, headers, callTemplate, serviceCallback);
         verify(serviceCallback).onCallFailed(new HttpException(new HttpResponse(503, "Busy")));
         verifyNoMoreInteractions(serviceCallback);
-        verify(urlConnection).disconnect();
+        verify(urlConnection, never()).disconnect();
 
         /* Verify socket tagged to avoid strict mode error. */
         verifyStatic();
@@ -665,7 +712,7 @@ public class DefaultHttpClientTest {
 
         /* Cancel and verify. */
         call.cancel();
-        verify(mockCall).cancel(true);
+        verify(mockCall).cancel();
     }
 
     @Test
@@ -708,7 +755,7 @@ public class DefaultHttpClientTest {
 
         /* Close and verify. */
         httpClient.close();
-        verify(callTask.get()).cancel(true);
+        verify(callTask.get()).cancel();
         assertEquals(0, httpClient.getTasks().size());
     }
 
@@ -1056,7 +1103,7 @@ public class DefaultHttpClientTest {
         verify(urlConnection).setRequestProperty("Content-Encoding", "gzip");
         verify(urlConnection).setRequestMethod("POST");
         verify(urlConnection).setDoOutput(true);
-        verify(urlConnection).disconnect();
+        verify(urlConnection, never()).disconnect();
         verify(callTemplate).onBeforeCalling(any(URL.class), anyMapOf(String.class, String.class));
         verify(callTemplate).buildRequestBody();
         httpClient.close();
@@ -1118,7 +1165,7 @@ public class DefaultHttpClientTest {
         verify(urlConnection, never()).setRequestProperty("Content-Encoding", "gzip");
         verify(urlConnection).setRequestMethod("POST");
         verify(urlConnection).setDoOutput(true);
-        verify(urlConnection).disconnect();
+        verify(urlConnection, never()).disconnect();
         verify(callTemplate).onBeforeCalling(any(URL.class), anyMapOf(String.class, String.class));
         verify(callTemplate).buildRequestBody();
         httpClient.close();
@@ -1180,7 +1227,7 @@ public class DefaultHttpClientTest {
         verify(urlConnection, never()).setRequestProperty("Content-Encoding", "gzip");
         verify(urlConnection).setRequestMethod("POST");
         verify(urlConnection).setDoOutput(true);
-        verify(urlConnection).disconnect();
+        verify(urlConnection, never()).disconnect();
         verify(callTemplate).onBeforeCalling(any(URL.class), anyMapOf(String.class, String.class));
         verify(callTemplate).buildRequestBody();
         httpClient.close();
@@ -1249,7 +1296,7 @@ public class DefaultHttpClientTest {
         verify(urlConnection).setRequestProperty("Content-Encoding", "gzip");
         verify(urlConnection).setRequestMethod("POST");
         verify(urlConnection).setDoOutput(true);
-        verify(urlConnection).disconnect();
+        verify(urlConnection, never()).disconnect();
         verify(callTemplate).onBeforeCalling(any(URL.class), anyMapOf(String.class, String.class));
         verify(callTemplate).buildRequestBody();
         httpClient.close();
@@ -1316,4 +1363,355 @@ public class DefaultHttpClientTest {
         verifyZeroInteractions(callTemplate);
         verifyZeroInteractions(serviceCallback);
     }
+
+    @Test
+    public void streamGzipWithoutVerboseLogging() throws Exception {
+
+        /* Mock no verbose logging. */
+        mockStatic(AppCenterLog.class);
+        when(AppCenterLog.getLogLevel()).thenReturn(Log.DEBUG);
+
+        /* Configure mock HTTPS. */
+        String urlString = "https://mock";
+        HttpsURLConnection urlConnection = mockConnection(urlString);
+        when(urlConnection.getResponseCode()).thenReturn(200);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        when(urlConnection.getOutputStream()).thenReturn(buffer);
+        when(urlConnection.getInputStream()).thenReturn(new ByteArrayInputStream("OK".getBytes()));
+
+        /* Configure API client. */
+        HttpClient.StreamingCallTemplate callTemplate = mock(HttpClient.StreamingCallTemplate.class);
+        doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                ((OutputStream) invocation.getArguments()[0]).write("{a:1}".getBytes(StandardCharsets.UTF_8));
+                return null;
+            }
+        }).when(callTemplate).writeRequestBody(any(OutputStream.class));
+        DefaultHttpClient httpClient = new DefaultHttpClient();
+
+        /* Test calling code. */
+        ServiceCallback serviceCallback = mock(ServiceCallback.class);
+        mockCall();
+        httpClient.callAsync(urlString, METHOD_POST, new HashMap<String, String>(), callTemplate, serviceCallback);
+        verify(serviceCallback).onCallSucceeded(new HttpResponse(200, "OK", Collections.<String, String>emptyMap()));
+        verifyNoMoreInteractions(serviceCallback);
+        verify(urlConnection).setRequestProperty("Content-Type", "application/json");
+        verify(urlConnection).setRequestProperty("Content-Encoding", "gzip");
+        verify(urlConnection).setDoOutput(true);
+        verify(urlConnection).setChunkedStreamingMode(0);
+        verify(urlConnection, never()).setFixedLengthStreamingMode(anyInt());
+        verify(urlConnection, never()).disconnect();
+        verify(callTemplate).onBeforeCalling(any(URL.class), anyMapOf(String.class, String.class));
+        verify(callTemplate, never()).buildRequestBody();
+        httpClient.close();
+
+        /* Verify payload was compressed on the fly. */
+        InputStreamReader reader = new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(buffer.toByteArray())), StandardCharsets.UTF_8);
+        char[] chars = new char[16];
+        int length = reader.read(chars);
+        assertEquals("{a:1}", new String(chars, 0, length));
+    }
+
+    @Test
+    public void sendStoredPayloadOnRetry() throws Exception {
+
+        /* Mock no verbose logging. */
+        mockStatic(AppCenterLog.class);
+        when(AppCenterLog.getLogLevel()).thenReturn(Log.DEBUG);
+
+        /* Configure mock HTTPS for 3 calls. */
+        String urlString = "https://mock";
+        HttpsURLConnection urlConnection = mockConnection(urlString);
+        when(urlConnection.getResponseCode()).thenReturn(200);
+        ByteArrayOutputStream streamedBuffer = new ByteArrayOutputStream();
+        ByteArrayOutputStream firstBuffer = new ByteArrayOutputStream();
+        ByteArrayOutputStream secondBuffer = new ByteArrayOutputStream();
+        when(urlConnection.getOutputStream()).thenReturn(streamedBuffer, firstBuffer, secondBuffer);
+        when(urlConnection.getInputStream()).thenReturn(new ByteArrayInputStream("OK".getBytes()), new ByteArrayInputStream("OK".getBytes()), new ByteArrayInputStream("OK".getBytes()));
+
+        /* Configure API client. */
+        HttpClient.StreamingCallTemplate callTemplate = mock(HttpClient.StreamingCallTemplate.class);
+        RequestBodyCache requestBodyCache = new RequestBodyCache();
+        CallOptions callOptions = new CallOptions();
+        callOptions.setRequestBodyCache(requestBodyCache);
+        when(callTemplate.getCallOptions()).thenReturn(callOptions);
+        doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                ((OutputStream) invocation.getArguments()[0]).write("{a:1}".getBytes(StandardCharsets.UTF_8));
+                return null;
+            }
+        }).when(callTemplate).writeRequestBody(any(OutputStream.class));
+        DefaultHttpClient httpClient = new DefaultHttpClient();
+        HttpCallTimingListener listener = mock(HttpCallTimingListener.class);
+        HttpUtils.setCallTimingListener(listener);
+
+        /* First try is streamed and the bytes sent are kept. */
+        ServiceCallback serviceCallback = mock(ServiceCallback.class);
+        mockCall();
+        httpClient.callAsync(urlString, METHOD_POST, new HashMap<String, String>(), callTemplate, serviceCallback);
+        verify(urlConnection).setChunkedStreamingMode(0);
+        assertArrayEquals(streamedBuffer.toByteArray(), requestBodyCache.getBody());
+
+        /* Call twice with the same template like retries. */
+        httpClient.callAsync(urlString, METHOD_POST, new HashMap<String, String>(), callTemplate, serviceCallback);
+        httpClient.callAsync(urlString, METHOD_POST, new HashMap<String, String>(), callTemplate, serviceCallback);
+        verify(serviceCallback, times(3)).onCallSucceeded(new HttpResponse(200, "OK", Collections.<String, String>emptyMap()));
+
+        /* Body was serialized once, compressed and sent again with known length by both retries. */
+        verify(callTemplate).writeRequestBody(any(OutputStream.class));
+        verify(callTemplate, never()).buildRequestBody();
+        verify(callTemplate, times(3)).onBeforeCalling(any(URL.class), anyMapOf(String.class, String.class));
+        verify(urlConnection, times(3)).setRequestProperty("Content-Encoding", "gzip");
+        verify(urlConnection, times(2)).setFixedLengthStreamingMode(firstBuffer.size());
+        verify(urlConnection).setChunkedStreamingMode(anyInt());
+        assertArrayEquals(streamedBuffer.toByteArray(), firstBuffer.toByteArray());
+        assertArrayEquals(firstBuffer.toByteArray(), secondBuffer.toByteArray());
+        InputStreamReader reader = new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(secondBuffer.toByteArray())), StandardCharsets.UTF_8);
+        char[] chars = new char[16];
+        int length = reader.read(chars);
+        assertEquals("{a:1}", new String(chars, 0, length));
+
+        /* Tries sending the stored body still report its uncompressed length. */
+        ArgumentCaptor<HttpCallTiming> timing = ArgumentCaptor.forClass(HttpCallTiming.class);
+        verify(listener, times(3)).onCallCompleted(timing.capture());
+        for (HttpCallTiming value : timing.getAllValues()) {
+            assertEquals(5, value.mRequestBodyLength);
+        }
+        HttpUtils.setCallTimingListener(null);
+        httpClient.close();
+    }
+
+    @Test
+    public void storePayloadForRetries() throws Exception {
+
+        /* Configure mock HTTPS. */
+        String urlString = "https://mock";
+        HttpsURLConnection urlConnection = mockConnection(urlString);
+        when(urlConnection.getResponseCode()).thenReturn(503);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        when(urlConnection.getOutputStream()).thenReturn(buffer);
+        when(urlConnection.getErrorStream()).thenReturn(new ByteArrayInputStream("Busy".getBytes()));
+
+        /* Configure API client. */
+        HttpClient.CallTemplate callTemplate = mock(HttpClient.CallTemplate.class);
+        RequestBodyCache requestBodyCache = new RequestBodyCache();
+        CallOptions callOptions = new CallOptions();
+        callOptions.setRequestBodyCache(requestBodyCache);
+        when(callTemplate.getCallOptions()).thenReturn(callOptions);
+        when(callTemplate.buildRequestBody()).thenReturn("mockPayload");
+        DefaultHttpClient httpClient = new DefaultHttpClient();
+
+        /* Body is kept even if the call fails. */
+        ServiceCallback serviceCallback = mock(ServiceCallback.class);
+        mockCall();
+        httpClient.callAsync(urlString, METHOD_POST, new HashMap<String, String>(), callTemplate, serviceCallback);
+        verify(serviceCallback).onCallFailed(any(HttpException.class));
+        assertFalse(requestBodyCache.isCompressed());
+        assertArrayEquals("mockPayload".getBytes(StandardCharsets.UTF_8), requestBodyCache.getBody());
+        assertArrayEquals(requestBodyCache.getBody(), buffer.toByteArray());
+        httpClient.close();
+    }
+
+    @Test
+    public void streamWhenCompressionDisabled() throws Exception {
+
+        /* Configure mock HTTPS. */
+        String urlString = "https://mock";
+        HttpsURLConnection urlConnection = mockConnection(urlString);
+        when(urlConnection.getResponseCode()).thenReturn(200);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        when(urlConnection.getOutputStream()).thenReturn(buffer);
+        when(urlConnection.getInputStream()).thenReturn(new ByteArrayInputStream("OK".getBytes()));
+
+        /* Configure API client. */
+        HttpClient.StreamingCallTemplate callTemplate = mock(HttpClient.StreamingCallTemplate.class);
+        doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                ((OutputStream) invocation.getArguments()[0]).write("{a:1}".getBytes(StandardCharsets.UTF_8));
+                return null;
+            }
+        }).when(callTemplate).writeRequestBody(any(OutputStream.class));
+        DefaultHttpClient httpClient = new DefaultHttpClient(false);
+
+        /* Streamed body is expected to be as large as the previous ones, the mocked URL has no host. */
+        HttpUtils.getConnectionStatistics().onUpload(null, HttpUtils.DEFAULT_THROUGHPUT, 1000);
+
+        /* Test calling code. */
+        ServiceCallback serviceCallback = mock(ServiceCallback.class);
+        mockCall();
+        httpClient.callAsync(urlString, METHOD_POST, new HashMap<String, String>(), callTemplate, serviceCallback);
+        verify(serviceCallback).onCallSucceeded(new HttpResponse(200, "OK", Collections.<String, String>emptyMap()));
+        verify(urlConnection, never()).setRequestProperty(eq("Content-Encoding"), anyString());
+        verify(urlConnection).setChunkedStreamingMode(0);
+        verify(urlConnection).setReadTimeout(HttpUtils.READ_TIMEOUT + 2000);
+        httpClient.close();
+        assertEquals("{a:1}", buffer.toString("UTF-8"));
+    }
+
+    @Test
+    public void doNotStreamWithVerboseLogging() throws Exception {
+
+        /* Mock verbose logging. */
+        mockStatic(AppCenterLog.class);
+        when(AppCenterLog.getLogLevel()).thenReturn(Log.VERBOSE);
+        JSONObject jsonObject = mock(JSONObject.class);
+        whenNew(JSONObject.class).withAnyArguments().thenReturn(jsonObject);
+
+        /* Configure mock HTTPS. */
+        String urlString = "https://mock";
+        HttpsURLConnection urlConnection = mockConnection(urlString);
+        when(urlConnection.getResponseCode()).thenReturn(200);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        when(urlConnection.getOutputStream()).thenReturn(buffer);
+        when(urlConnection.getInputStream()).thenReturn(new ByteArrayInputStream("OK".getBytes()));
+
+        /* Configure API client. */
+        HttpClient.StreamingCallTemplate callTemplate = mock(HttpClient.StreamingCallTemplate.class);
+        when(callTemplate.buildRequestBody()).thenReturn("{a:1}");
+        DefaultHttpClient httpClient = new DefaultHttpClient();
+
+        /* Payload is built in memory to be logged. */
+        ServiceCallback serviceCallback = mock(ServiceCallback.class);
+        mockCall();
+        httpClient.callAsync(urlString, METHOD_POST, new HashMap<String, String>(), callTemplate, serviceCallback);
+        verify(serviceCallback).onCallSucceeded(new HttpResponse(200, "OK", Collections.<String, String>emptyMap()));
+        verify(callTemplate, never()).writeRequestBody(any(OutputStream.class));
+        verify(urlConnection, never()).setChunkedStreamingMode(anyInt());
+        verify(urlConnection).setFixedLengthStreamingMode(5);
+        httpClient.close();
+        assertEquals("{a:1}", buffer.toString("UTF-8"));
+    }
+
+    @Test
+    public void backOffReadTimeoutAfterReadTimeout() throws Exception {
+
+        /* Configure mock HTTPS, the mocked URL has no host. */
+        String urlString = "https://mock";
+        HttpsURLConnection urlConnection = mockConnection(urlString);
+        SocketTimeoutException connectException = new SocketTimeoutException("connect timed out");
+        doThrow(connectException).doNothing().when(urlConnection).connect();
+        SocketTimeoutException readException = new SocketTimeoutException("timeout");
+        when(urlConnection.getResponseCode()).thenThrow(readException).thenReturn(200);
+        when(urlConnection.getInputStream()).thenReturn(new ByteArrayInputStream("OK".getBytes()));
+        DefaultHttpClient httpClient = new DefaultHttpClient(false);
+        ServiceCallback serviceCallback = mock(ServiceCallback.class);
+        mockCall();
+
+        /* Connection timeout does not change the read timeout. */
+        httpClient.callAsync(urlString, METHOD_GET, new HashMap<String, String>(), null, serviceCallback);
+        verify(serviceCallback).onCallFailed(connectException);
+        assertEquals(0, HttpUtils.getConnectionStatistics().getReadTimeoutBackoff(null));
+
+        /* Read timeout doubles it for the next call. */
+        httpClient.callAsync(urlString, METHOD_GET, new HashMap<String, String>(), null, serviceCallback);
+        verify(serviceCallback).onCallFailed(readException);
+        assertEquals(1, HttpUtils.getConnectionStatistics().getReadTimeoutBackoff(null));
+        httpClient.callAsync(urlString, METHOD_GET, new HashMap<String, String>(), null, serviceCallback);
+        verify(urlConnection).setReadTimeout(2 * HttpUtils.READ_TIMEOUT);
+
+        /* Until the host answers again. */
+        verify(serviceCallback).onCallSucceeded(new HttpResponse(200, "OK", Collections.<String, String>emptyMap()));
+        assertEquals(0, HttpUtils.getConnectionStatistics().getReadTimeoutBackoff(null));
+        httpClient.close();
+    }
+
+    @Test
+    public void failedToStreamPayload() throws Exception {
+
+        /* Configure mock HTTPS. */
+        String urlString = "https://mock";
+        HttpsURLConnection urlConnection = mockConnection(urlString);
+        OutputStream outputStream = mock(OutputStream.class);
+        when(urlConnection.getOutputStream()).thenReturn(outputStream);
+
+        /* Configure API client. */
+        HttpClient.StreamingCallTemplate callTemplate = mock(HttpClient.StreamingCallTemplate.class);
+        JSONException exception = new JSONException("mock");
+        doThrow(exception).when(callTemplate).writeRequestBody(any(OutputStream.class));
+        DefaultHttpClient httpClient = new DefaultHttpClient(false);
+
+        /* Verify failure and stream closed. */
+        ServiceCallback serviceCallback = mock(ServiceCallback.class);
+        mockCall();
+        httpClient.callAsync(urlString, METHOD_POST, new HashMap<String, String>(), callTemplate, serviceCallback);
+        verify(serviceCallback).onCallFailed(exception);
+        verify(outputStream).close();
+        verify(urlConnection).disconnect();
+        httpClient.close();
+    }
+
+    @Test
+    public void discardUnusedResponseOnSuccess() throws Exception {
+
+        /* Mock no verbose logging. */
+        mockStatic(AppCenterLog.class);
+        when(AppCenterLog.getLogLevel()).thenReturn(Log.DEBUG);
+
+        /* Configure mock HTTPS. */
+        String urlString = "https://mock";
+        HttpsURLConnection urlConnection = mockConnection(urlString);
+        when(urlConnection.getResponseCode()).thenReturn(200);
+        when(urlConnection.getOutputStream()).thenReturn(new ByteArrayOutputStream());
+        InputStream inputStream = spy(new ByteArrayInputStream(new byte[5000]));
+        when(urlConnection.getInputStream()).thenReturn(inputStream);
+        when(urlConnection.getHeaderField("ETag")).thenReturn("mockETag");
+
+        /* Configure API client. */
+        HttpClient.CallTemplate callTemplate = mock(HttpClient.CallTemplate.class);
+        when(callTemplate.buildRequestBody()).thenReturn("mockPayload");
+        CallOptions callOptions = new CallOptions();
+        callOptions.setResponseBodyNeeded(false);
+        callOptions.setResponseHeaderNames(Collections.singletonList("ETag"));
+        when(callTemplate.getCallOptions()).thenReturn(callOptions);
+        DefaultHttpClient httpClient = new DefaultHttpClient();
+
+        /* Body is drained but not returned, only requested headers are copied. */
+        ServiceCallback serviceCallback = mock(ServiceCallback.class);
+        mockCall();
+        httpClient.callAsync(urlString, METHOD_POST, new HashMap<String, String>(), callTemplate, serviceCallback);
+        verify(serviceCallback).onCallSucceeded(new HttpResponse(200, "", Collections.singletonMap("ETag", "mockETag")));
+        verifyNoMoreInteractions(serviceCallback);
+        assertEquals(0, inputStream.available());
+        verify(inputStream).close();
+        verify(urlConnection, never()).getHeaderFields();
+        httpClient.close();
+    }
+
+    @Test
+    public void keepFullResponseOnFailure() throws Exception {
+
+        /* Configure mock HTTPS. */
+        String urlString = "https://mock";
+        HttpsURLConnection urlConnection = mockConnection(urlString);
+        when(urlConnection.getResponseCode()).thenReturn(503);
+        when(urlConnection.getOutputStream()).thenReturn(new ByteArrayOutputStream());
+        when(urlConnection.getErrorStream()).thenReturn(new ByteArrayInputStream("Busy".getBytes()));
+        Map<String, List<String>> responseHeaders = new HashMap<>();
+        responseHeaders.put("x-ms-retry-after-ms", Collections.singletonList("1000"));
+        when(urlConnection.getHeaderFields()).thenReturn(responseHeaders);
+
+        /* Configure API client. */
+        HttpClient.CallTemplate callTemplate = mock(HttpClient.CallTemplate.class);
+        when(callTemplate.buildRequestBody()).thenReturn("mockPayload");
+        CallOptions callOptions = spy(new CallOptions());
+        callOptions.setResponseBodyNeeded(false);
+        callOptions.setResponseHeaderNames(Collections.<String>emptyList());
+        when(callTemplate.getCallOptions()).thenReturn(callOptions);
+        DefaultHttpClient httpClient = new DefaultHttpClient();
+
+        /* Verify error details are still available. */
+        ServiceCallback serviceCallback = mock(ServiceCallback.class);
+        mockCall();
+        httpClient.callAsync(urlString, METHOD_POST, new HashMap<String, String>(), callTemplate, serviceCallback);
+        verify(serviceCallback).onCallFailed(new HttpException(new HttpResponse(503, "Busy", Collections.singletonMap("x-ms-retry-after-ms", "1000"))));
+        verifyNoMoreInteractions(serviceCallback);
+        verify(callOptions, never()).isResponseBodyNeeded();
+        httpClient.close();
+    }
 }
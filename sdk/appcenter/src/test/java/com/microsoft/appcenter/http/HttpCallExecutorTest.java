@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.http;
+
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.microsoft.appcenter.http.HttpClient.PRIORITY_CRITICAL_LOG_UPLOAD;
+import static com.microsoft.appcenter.http.HttpClient.PRIORITY_DEFAULT;
+import static com.microsoft.appcenter.http.HttpClient.PRIORITY_LOG_UPLOAD;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class HttpCallExecutorTest {
+
+    private static DefaultHttpClientCallTask mockTask(int priority, final List<DefaultHttpClientCallTask> runOrder, final CountDownLatch done) {
+        final DefaultHttpClientCallTask task = mock(DefaultHttpClientCallTask.class);
+        when(task.getPriority()).thenReturn(priority);
+        doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                runOrder.add(task);
+                done.countDown();
+                return null;
+            }
+        }).when(task).run();
+        return task;
+    }
+
+    @Test
+    public void runByPriorityThenSubmissionOrder() throws Exception {
+        HttpCallExecutor executor = new HttpCallExecutor(1);
+
+        /* Block the only thread so that the next calls are queued. */
+        final CountDownLatch blocker = new CountDownLatch(1);
+        final List<String> threadNames = new ArrayList<>();
+        executor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                threadNames.add(Thread.currentThread().getName());
+                try {
+                    blocker.await();
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+        List<DefaultHttpClientCallTask> runOrder = Collections.synchronizedList(new ArrayList<DefaultHttpClientCallTask>());
+        CountDownLatch done = new CountDownLatch(4);
+        DefaultHttpClientCallTask distribute = mockTask(PRIORITY_DEFAULT, runOrder, done);
+        DefaultHttpClientCallTask firstUpload = mockTask(PRIORITY_LOG_UPLOAD, runOrder, done);
+        DefaultHttpClientCallTask critical = mockTask(PRIORITY_CRITICAL_LOG_UPLOAD, runOrder, done);
+        DefaultHttpClientCallTask secondUpload = mockTask(PRIORITY_LOG_UPLOAD, runOrder, done);
+        executor.execute(distribute);
+        executor.execute(firstUpload);
+        executor.execute(critical);
+        executor.execute(secondUpload);
+
+        /* Release and verify order. */
+        blocker.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(critical, firstUpload, secondUpload, distribute), runOrder);
+        assertEquals(1, threadNames.size());
+        assertTrue(threadNames.get(0).startsWith("AppCenter.Http-"));
+        executor.shutdown();
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void rejectAfterShutdown() {
+        HttpCallExecutor executor = new HttpCallExecutor(1);
+        executor.shutdown();
+        executor.execute(mock(Runnable.class));
+    }
+
+    @Test
+    public void sharedInstance() {
+        HttpCallExecutor executor = HttpCallExecutor.getSharedInstance();
+        assertNotNull(executor);
+        assertSame(executor, HttpCallExecutor.getSharedInstance());
+    }
+}
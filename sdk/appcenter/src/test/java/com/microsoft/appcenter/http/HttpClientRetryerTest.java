@@ -7,19 +7,32 @@ package com.microsoft.appcenter.http;
 
 import android.os.Handler;
 
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatcher;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
+import java.io.File;
 import java.net.SocketException;
 import java.net.UnknownHostException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executor;
 
 import static com.microsoft.appcenter.http.DefaultHttpClient.CONTENT_TYPE_KEY;
 import static com.microsoft.appcenter.http.DefaultHttpClient.CONTENT_TYPE_VALUE;
 import static com.microsoft.appcenter.http.DefaultHttpClient.X_MS_RETRY_AFTER_MS_HEADER;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyMapOf;
 import static org.mockito.Matchers.anyString;
@@ -28,12 +41,29 @@ import static org.mockito.Matchers.longThat;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
 
 @SuppressWarnings("unused")
 public class HttpClientRetryerTest {
 
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    @Before
+    public void setUp() {
+        CircuitBreaker.unsetSharedInstance();
+    }
+
+    @After
+    public void tearDown() {
+        CircuitBreaker.unsetSharedInstance();
+    }
+
     private static void simulateRetryAfterDelay(Handler handler) {
         doAnswer(new Answer() {
 
@@ -46,6 +76,19 @@ public class HttpClientRetryerTest {
         }).when(handler).postDelayed(any(Runnable.class), anyLong());
     }
 
+    private static Executor mockDirectExecutor() {
+        Executor executor = mock(Executor.class);
+        doAnswer(new Answer() {
+
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                ((Runnable) invocation.getArguments()[0]).run();
+                return null;
+            }
+        }).when(executor).execute(any(Runnable.class));
+        return executor;
+    }
+
     private static void verifyDelay(Handler handler, final int retryIndex) {
         verify(handler).postDelayed(any(Runnable.class), longThat(new ArgumentMatcher<Long>() {
 
@@ -118,6 +161,142 @@ public class HttpClientRetryerTest {
         verifyNoMoreInteractions(callback);
     }
 
+    @Test
+    public void notifyRetryScheduled() {
+        final SocketException exception = new SocketException();
+        final RetryAwareServiceCallback callback = mock(RetryAwareServiceCallback.class);
+        HttpClient httpClient = mock(HttpClient.class);
+        doAnswer(new Answer<ServiceCall>() {
+
+            @Override
+            public ServiceCall answer(InvocationOnMock invocationOnMock) {
+                ((ServiceCallback) invocationOnMock.getArguments()[4]).onCallFailed(exception);
+                return mock(ServiceCall.class);
+            }
+        }).doAnswer(new Answer<ServiceCall>() {
+
+            @Override
+            public ServiceCall answer(InvocationOnMock invocationOnMock) {
+                ((ServiceCallback) invocationOnMock.getArguments()[4]).onCallSucceeded(new HttpResponse(200, ""));
+                return mock(ServiceCall.class);
+            }
+        }).when(httpClient).callAsync(anyString(), anyString(), anyMapOf(String.class, String.class), any(HttpClient.CallTemplate.class), any(ServiceCallback.class));
+        Handler handler = mock(Handler.class);
+        HttpClient retryer = new HttpClientRetryer(httpClient, handler);
+        retryer.callAsync(null, null, null, null, callback);
+
+        /* Notified with the same delay as the scheduled retry. */
+        ArgumentCaptor<Long> delay = ArgumentCaptor.forClass(Long.class);
+        verify(callback).onCallRetryScheduled(eq(exception), delay.capture(), eq(false));
+        verify(handler).postDelayed(any(Runnable.class), eq(delay.getValue()));
+        verifyNoMoreInteractions(callback);
+
+        /* Not notified when the call completes. */
+        simulateRetryAfterDelay(handler);
+        retryer.callAsync(null, null, null, null, callback);
+        verify(callback).onCallSucceeded(new HttpResponse(200, ""));
+        verify(callback).onCallRetryScheduled(any(Exception.class), anyLong(), anyBoolean());
+    }
+
+    @Test
+    public void callsWaitWhileHostIsFailing() {
+        HttpUtils.setCircuitBreakerThreshold(1);
+        final ServiceCallback callback = mock(ServiceCallback.class);
+        HttpClient httpClient = mock(HttpClient.class);
+        doAnswer(new Answer<ServiceCall>() {
+
+            @Override
+            public ServiceCall answer(InvocationOnMock invocationOnMock) {
+                ((ServiceCallback) invocationOnMock.getArguments()[4]).onCallFailed(new SocketException());
+                return mock(ServiceCall.class);
+            }
+        }).when(httpClient).callAsync(anyString(), anyString(), anyMapOf(String.class, String.class), any(HttpClient.CallTemplate.class), any(ServiceCallback.class));
+        Handler handler = mock(Handler.class);
+        HttpClient retryer = new HttpClientRetryer(httpClient, handler);
+
+        /* First call fails and opens the circuit of the host. */
+        retryer.callAsync("https://mock.host/logs", "POST", new HashMap<String, String>(), null, callback);
+        verify(httpClient).callAsync(eq("https://mock.host/logs"), anyString(), anyMapOf(String.class, String.class), any(HttpClient.CallTemplate.class), any(ServiceCallback.class));
+        verifyDelay(handler, 0);
+
+        /* Another call to the same host waits, even from another retryer, and can be canceled before its first try. */
+        HttpClient otherRetryer = new HttpClientRetryer(httpClient, handler);
+        ServiceCall call = otherRetryer.callAsync("https://mock.host/other", "POST", new HashMap<String, String>(), null, callback);
+        verify(httpClient, never()).callAsync(eq("https://mock.host/other"), anyString(), anyMapOf(String.class, String.class), any(HttpClient.CallTemplate.class), any(ServiceCallback.class));
+        verify(handler, times(2)).postDelayed(any(Runnable.class), longThat(new ArgumentMatcher<Long>() {
+
+            @Override
+            public boolean matches(Object argument) {
+                long delay = (Long) argument;
+                return delay > 0 && delay <= HttpClientRetryer.RETRY_INTERVALS[0];
+            }
+        }));
+        call.cancel();
+        verify(handler).removeCallbacks((Runnable) call);
+
+        /* Calls to other hosts are not affected. */
+        retryer.callAsync("https://other.host/logs", "POST", new HashMap<String, String>(), null, callback);
+        verify(httpClient).callAsync(eq("https://other.host/logs"), anyString(), anyMapOf(String.class, String.class), any(HttpClient.CallTemplate.class), any(ServiceCallback.class));
+        verifyNoMoreInteractions(callback);
+    }
+
+    @Test
+    public void releaseProbeOnErrorNotReachingHost() {
+        HttpUtils.setCircuitBreakerThreshold(1);
+        CircuitBreaker circuitBreaker = spy(CircuitBreaker.getSharedInstance());
+        CircuitBreaker.setSharedInstance(circuitBreaker);
+        final ServiceCallback callback = mock(ServiceCallback.class);
+        HttpClient httpClient = mock(HttpClient.class);
+        doAnswer(new Answer<ServiceCall>() {
+
+            @Override
+            public ServiceCall answer(InvocationOnMock invocationOnMock) {
+                ((ServiceCallback) invocationOnMock.getArguments()[4]).onCallFailed(new IllegalStateException());
+                return mock(ServiceCall.class);
+            }
+        }).when(httpClient).callAsync(anyString(), anyString(), anyMapOf(String.class, String.class), any(HttpClient.CallTemplate.class), any(ServiceCallback.class));
+        Handler handler = mock(Handler.class);
+        HttpClient retryer = new HttpClientRetryer(httpClient, handler);
+
+        /* A non recoverable error that is not an HTTP answer neither opens the circuit nor keeps the probe. */
+        ServiceCall call = retryer.callAsync("https://mock.host/logs", "POST", new HashMap<String, String>(), null, callback);
+        verify(callback).onCallFailed(any(IllegalStateException.class));
+        verify(circuitBreaker).releaseProbe("mock.host", call);
+        verify(circuitBreaker, never()).onCallFailed(anyString(), any(), anyLong(), any(Random.class));
+        verify(circuitBreaker, never()).onCallSucceeded(anyString());
+    }
+
+    @Test
+    public void exponentialBackoff() {
+        HttpUtils.setRetryBackoff(1, 1000, 1000);
+        final ServiceCallback callback = mock(ServiceCallback.class);
+        HttpClient httpClient = mock(HttpClient.class);
+        doAnswer(new Answer<ServiceCall>() {
+
+            @Override
+            public ServiceCall answer(InvocationOnMock invocationOnMock) {
+                ((ServiceCallback) invocationOnMock.getArguments()[4]).onCallFailed(new SocketException());
+                return mock(ServiceCall.class);
+            }
+        }).when(httpClient).callAsync(anyString(), anyString(), anyMapOf(String.class, String.class), any(HttpClient.CallTemplate.class), any(ServiceCallback.class));
+        Handler handler = mock(Handler.class);
+        HttpClient retryer = new HttpClientRetryer(httpClient, handler);
+        simulateRetryAfterDelay(handler);
+        retryer.callAsync(null, null, null, null, callback);
+
+        /* Single retry with full jitter, then failure. */
+        verify(handler).postDelayed(any(Runnable.class), longThat(new ArgumentMatcher<Long>() {
+
+            @Override
+            public boolean matches(Object argument) {
+                long delay = (Long) argument;
+                return delay >= 0 && delay < 1000;
+            }
+        }));
+        verify(httpClient, times(2)).callAsync(anyString(), anyString(), anyMapOf(String.class, String.class), any(HttpClient.CallTemplate.class), any(ServiceCallback.class));
+        verify(callback).onCallFailed(any(SocketException.class));
+    }
+
     @Test
     public void retryOnceThenFail() {
         final HttpException expectedException = new HttpException(new HttpResponse(403));
@@ -236,4 +415,129 @@ public class HttpClientRetryerTest {
         verifyNoMoreInteractions(callback);
         verify(call).cancel();
     }
+
+    @Test
+    public void keepRequestBodyInFileDuringLongRetries() throws Exception {
+        final byte[] body = "mockBody".getBytes();
+        final RequestBodyCache requestBodyCache = new RequestBodyCache();
+        HttpClient.CallTemplate callTemplate = mock(HttpClient.CallTemplate.class);
+        CallOptions callOptions = new CallOptions();
+        callOptions.setRequestBodyCache(requestBodyCache);
+        when(callTemplate.getCallOptions()).thenReturn(callOptions);
+        ServiceCallback callback = mock(ServiceCallback.class);
+        HttpClient httpClient = mock(HttpClient.class);
+        doAnswer(new Answer<ServiceCall>() {
+
+            @Override
+            public ServiceCall answer(InvocationOnMock invocationOnMock) {
+
+                /* Client keeps the body it sends. */
+                requestBodyCache.setBody(body, true, 10);
+                ((ServiceCallback) invocationOnMock.getArguments()[4]).onCallFailed(new SocketException());
+                return mock(ServiceCall.class);
+            }
+        }).doAnswer(new Answer<ServiceCall>() {
+
+            @Override
+            public ServiceCall answer(InvocationOnMock invocationOnMock) {
+
+                /* Short retry delay: body stayed in memory. */
+                assertFalse(requestBodyCache.isInFile());
+                ((ServiceCallback) invocationOnMock.getArguments()[4]).onCallFailed(new SocketException());
+                return mock(ServiceCall.class);
+            }
+        }).doAnswer(new Answer<ServiceCall>() {
+
+            @Override
+            public ServiceCall answer(InvocationOnMock invocationOnMock) {
+
+                /* Long retry delay: body was moved to a file and is loaded back. */
+                assertTrue(requestBodyCache.isInFile());
+                assertArrayEquals(body, requestBodyCache.getBody());
+                assertTrue(requestBodyCache.isCompressed());
+                ((ServiceCallback) invocationOnMock.getArguments()[4]).onCallSucceeded(new HttpResponse(200));
+                return mock(ServiceCall.class);
+            }
+        }).when(httpClient).callAsync(anyString(), anyString(), anyMapOf(String.class, String.class), any(HttpClient.CallTemplate.class), any(ServiceCallback.class));
+        Handler handler = mock(Handler.class);
+        File directory = new File(mTemporaryFolder.getRoot(), "bodies");
+        Executor executor = mockDirectExecutor();
+        HttpClient retryer = new HttpClientRetryer(httpClient, handler, directory, executor);
+        simulateRetryAfterDelay(handler);
+        retryer.callAsync("", "", new HashMap<String, String>(), callTemplate, callback);
+        verifyDelay(handler, 0);
+        verifyDelay(handler, 1);
+        verify(callback).onCallSucceeded(new HttpResponse(200));
+
+        /* File operations ran on the executor: orphan files cleanup and storing the body once. */
+        verify(executor, times(2)).execute(any(Runnable.class));
+
+        /* Body released after success. */
+        assertFalse(requestBodyCache.hasBody());
+        String[] files = directory.list();
+        assertEquals(0, files == null ? 0 : files.length);
+    }
+
+    @Test
+    public void deleteOrphanRequestBodyFiles() throws Exception {
+        File directory = mTemporaryFolder.newFolder();
+        File orphan = new File(directory, RequestBodyCache.FILE_PREFIX + "orphan");
+        File other = new File(directory, "other");
+        assertTrue(orphan.createNewFile());
+        assertTrue(other.createNewFile());
+        Executor executor = mockDirectExecutor();
+        new HttpClientRetryer(mock(HttpClient.class), mock(Handler.class), directory, executor);
+        assertFalse(orphan.exists());
+        assertTrue(other.exists());
+
+        /* Only done once per process so that bodies of live calls are kept. */
+        assertTrue(orphan.createNewFile());
+        new HttpClientRetryer(mock(HttpClient.class), mock(Handler.class), directory, executor);
+        assertTrue(orphan.exists());
+
+        /* Nothing to do without a directory. */
+        Executor unusedExecutor = mock(Executor.class);
+        new HttpClientRetryer(mock(HttpClient.class), mock(Handler.class), null, unusedExecutor);
+        verify(unusedExecutor, never()).execute(any(Runnable.class));
+    }
+
+    @Test
+    public void releaseRequestBodyOnFailure() {
+        RequestBodyCache requestBodyCache = new RequestBodyCache();
+        requestBodyCache.setBody(new byte[]{1}, false, 1);
+        HttpClient.CallTemplate callTemplate = mock(HttpClient.CallTemplate.class);
+        CallOptions callOptions = new CallOptions();
+        callOptions.setRequestBodyCache(requestBodyCache);
+        when(callTemplate.getCallOptions()).thenReturn(callOptions);
+        ServiceCallback callback = mock(ServiceCallback.class);
+        HttpClient httpClient = mock(HttpClient.class);
+        doAnswer(new Answer<ServiceCall>() {
+
+            @Override
+            public ServiceCall answer(InvocationOnMock invocationOnMock) {
+                ((ServiceCallback) invocationOnMock.getArguments()[4]).onCallFailed(new HttpException(new HttpResponse(400)));
+                return mock(ServiceCall.class);
+            }
+        }).when(httpClient).callAsync(anyString(), anyString(), anyMapOf(String.class, String.class), any(HttpClient.CallTemplate.class), any(ServiceCallback.class));
+        HttpClient retryer = new HttpClientRetryer(httpClient, mock(Handler.class), mTemporaryFolder.getRoot());
+        retryer.callAsync("", "", new HashMap<String, String>(), callTemplate, callback);
+        verify(callback).onCallFailed(new HttpException(new HttpResponse(400)));
+        assertFalse(requestBodyCache.hasBody());
+    }
+
+    @Test
+    public void releaseRequestBodyOnCancel() {
+        RequestBodyCache requestBodyCache = new RequestBodyCache();
+        HttpClient.CallTemplate callTemplate = mock(HttpClient.CallTemplate.class);
+        CallOptions callOptions = new CallOptions();
+        callOptions.setRequestBodyCache(requestBodyCache);
+        when(callTemplate.getCallOptions()).thenReturn(callOptions);
+        HttpClient httpClient = mock(HttpClient.class);
+        when(httpClient.callAsync(anyString(), anyString(), anyMapOf(String.class, String.class), any(HttpClient.CallTemplate.class), any(ServiceCallback.class))).thenReturn(mock(ServiceCall.class));
+        HttpClient retryer = new HttpClientRetryer(httpClient, mock(Handler.class));
+        ServiceCall call = retryer.callAsync("", "", new HashMap<String, String>(), callTemplate, mock(ServiceCallback.class));
+        requestBodyCache.setBody(new byte[]{1}, false, 1);
+        call.cancel();
+        assertFalse(requestBodyCache.hasBody());
+    }
 }
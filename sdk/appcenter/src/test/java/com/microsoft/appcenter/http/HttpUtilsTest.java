@@ -8,12 +8,23 @@ package com.microsoft.appcenter.http;
 import android.content.Context;
 
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.util.Map;
 
 import static com.microsoft.appcenter.http.HttpUtils.MAX_CHARACTERS_DISPLAYED_FOR_SECRET;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @SuppressWarnings("unused")
 public class HttpUtilsTest {
@@ -98,6 +109,157 @@ public class HttpUtilsTest {
         assertFalse(defaultHttpClient.isCompressionEnabled());
     }
 
+    @Test
+    public void decorateHttpClient() {
+        HttpClient httpClient = mock(HttpClient.class);
+        HttpClientDecorator decorated = (HttpClientDecorator) HttpUtils.decorateHttpClient(mock(Context.class), httpClient);
+        assertTrue(decorated instanceof HttpClientRetryer);
+        HttpClientDecorator networkStateHandler = (HttpClientDecorator) decorated.getDecoratedApi();
+        assertTrue(networkStateHandler instanceof HttpClientNetworkStateHandler);
+        assertSame(httpClient, networkStateHandler.getDecoratedApi());
+    }
+
+    @Test
+    public void timeoutsFromRoundTripTimes() {
+        ConnectionPool.unsetSharedInstance();
+        String host = "in.appcenter.ms";
+        try {
+
+            /* Defaults until a round trip is measured, still scaled with the body size. */
+            assertEquals(HttpUtils.CONNECT_TIMEOUT, HttpUtils.getConnectTimeout(host));
+            assertEquals(HttpUtils.READ_TIMEOUT, HttpUtils.getReadTimeout(host, 0));
+            assertEquals(HttpUtils.READ_TIMEOUT + 2000, HttpUtils.getReadTimeout(host, HttpUtils.DEFAULT_THROUGHPUT));
+
+            /* Fast host gets the minimum timeouts. */
+            ConnectionStatistics statistics = HttpUtils.getConnectionStatistics();
+            statistics.onRoundTrip(host, 100);
+            assertEquals(100, statistics.getRoundTripTime(host));
+            assertEquals(50, statistics.getRoundTripTimeVariation(host));
+            assertEquals(HttpUtils.MIN_CONNECT_TIMEOUT, HttpUtils.getConnectTimeout(host));
+            assertEquals(HttpUtils.MIN_READ_TIMEOUT, HttpUtils.getReadTimeout(host, 0));
+
+            /* Slow host gets longer timeouts, up to the maximum. */
+            for (int i = 0; i < 20; i++) {
+                statistics.onRoundTrip(host, 2000);
+            }
+            long timeout = statistics.getRoundTripTime(host) + 4 * statistics.getRoundTripTimeVariation(host);
+            assertTrue(statistics.getRoundTripTime(host) > 1500);
+            assertEquals(Math.min(3 * timeout, HttpUtils.MAX_CONNECT_TIMEOUT), HttpUtils.getConnectTimeout(host));
+            assertEquals(2 * timeout, HttpUtils.getReadTimeout(host, 0));
+            for (int i = 0; i < 20; i++) {
+                statistics.onRoundTrip(host, 60000);
+            }
+            assertEquals(HttpUtils.MAX_CONNECT_TIMEOUT, HttpUtils.getConnectTimeout(host));
+            assertEquals(HttpUtils.MAX_READ_TIMEOUT, HttpUtils.getReadTimeout(host, 0));
+
+            /* Read timeout scales with the measured throughput, small uploads are not measured. */
+            String otherHost = "mobile.events.data.microsoft.com";
+            statistics.onRoundTrip(otherHost, 100);
+            statistics.onUpload(otherHost, 1024, 1000);
+            assertEquals(0, statistics.getThroughput(otherHost));
+            statistics.onUpload(otherHost, 100 * 1024, 1000);
+            assertEquals(100 * 1024, statistics.getThroughput(otherHost));
+            statistics.onUpload(otherHost, 100 * 1024, 500);
+            assertEquals(125 * 1024, statistics.getThroughput(otherHost));
+            assertEquals(HttpUtils.MIN_READ_TIMEOUT + 2000, HttpUtils.getReadTimeout(otherHost, 125 * 1024));
+            assertEquals(HttpUtils.MAX_READ_TIMEOUT, HttpUtils.getReadTimeout(otherHost, 100 * 1024 * 1024));
+            assertTrue(statistics.toString().contains(otherHost));
+        } finally {
+            ConnectionPool.unsetSharedInstance();
+        }
+    }
+
+    @Test
+    public void readTimeoutBackoff() {
+        ConnectionPool.unsetSharedInstance();
+        String host = "in.appcenter.ms";
+        try {
+
+            /* Each timeout doubles the read timeout, up to the maximum. */
+            ConnectionStatistics statistics = HttpUtils.getConnectionStatistics();
+            statistics.onReadTimeout(host);
+            assertEquals(1, statistics.getReadTimeoutBackoff(host));
+            assertEquals(2 * HttpUtils.READ_TIMEOUT, HttpUtils.getReadTimeout(host, 0));
+            statistics.onReadTimeout(host);
+            assertEquals(4 * HttpUtils.READ_TIMEOUT, HttpUtils.getReadTimeout(host, 0));
+            for (int i = 0; i < 20; i++) {
+                statistics.onReadTimeout(host);
+            }
+            assertEquals(ConnectionStatistics.MAX_READ_TIMEOUT_BACKOFF, statistics.getReadTimeoutBackoff(host));
+            assertEquals(HttpUtils.MAX_READ_TIMEOUT, HttpUtils.getReadTimeout(host, 0));
+
+            /* An answer ends the backoff. */
+            statistics.onRoundTrip(host, 100);
+            assertEquals(0, statistics.getReadTimeoutBackoff(host));
+            assertEquals(HttpUtils.MIN_READ_TIMEOUT, HttpUtils.getReadTimeout(host, 0));
+            statistics.onReadTimeout(host);
+            assertEquals(2 * HttpUtils.MIN_READ_TIMEOUT, HttpUtils.getReadTimeout(host, 0));
+
+            /* Other hosts are not affected. */
+            assertEquals(HttpUtils.READ_TIMEOUT, HttpUtils.getReadTimeout("mobile.events.data.microsoft.com", 0));
+        } finally {
+            ConnectionPool.unsetSharedInstance();
+        }
+    }
+
+    @Test
+    public void requestBodyLengthEstimate() {
+        ConnectionPool.unsetSharedInstance();
+        String host = "in.appcenter.ms";
+        try {
+            ConnectionStatistics statistics = HttpUtils.getConnectionStatistics();
+            assertEquals(0, statistics.getRequestBodyLength(host));
+
+            /* Calls without body are ignored. */
+            statistics.onUpload(host, 0, 100);
+            assertEquals(0, statistics.getRequestBodyLength(host));
+            statistics.onUpload(host, 1000, 100);
+            assertEquals(1000, statistics.getRequestBodyLength(host));
+            statistics.onUpload(host, 5000, 100);
+            assertEquals(2000, statistics.getRequestBodyLength(host));
+        } finally {
+            ConnectionPool.unsetSharedInstance();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void warmUpConnection() throws Exception {
+        HttpClient httpClient = mock(HttpClient.class);
+        ServiceCall call = mock(ServiceCall.class);
+        String url = "https://in.appcenter.ms";
+        ArgumentCaptor<HttpClient.CallTemplate> templateCaptor = ArgumentCaptor.forClass(HttpClient.CallTemplate.class);
+        ArgumentCaptor<ServiceCallback> callbackCaptor = ArgumentCaptor.forClass(ServiceCallback.class);
+        when(httpClient.callAsync(eq(url), eq(DefaultHttpClient.METHOD_HEAD), any(Map.class), templateCaptor.capture(), callbackCaptor.capture())).thenReturn(call);
+        assertSame(call, HttpUtils.warmUpConnection(httpClient, url));
+
+        /* No body either way. */
+        HttpClient.CallTemplate template = templateCaptor.getValue();
+        assertNull(template.buildRequestBody());
+        assertFalse(template.getCallOptions().isResponseBodyNeeded());
+        assertTrue(template.getCallOptions().getResponseHeaderNames().isEmpty());
+
+        /* Any answer is fine. */
+        ServiceCallback callback = callbackCaptor.getValue();
+        callback.onCallSucceeded(new HttpResponse(200));
+        callback.onCallFailed(new HttpException(new HttpResponse(404)));
+        callback.onCallFailed(new IOException());
+        verify(call, never()).cancel();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void warmUpConnectionSkipsRetryer() {
+        HttpClient httpClient = mock(HttpClient.class);
+        ServiceCall call = mock(ServiceCall.class);
+        String url = "https://in.appcenter.ms";
+        when(httpClient.callAsync(eq(url), eq(DefaultHttpClient.METHOD_HEAD), any(Map.class), any(HttpClient.CallTemplate.class), any(ServiceCallback.class))).thenReturn(call);
+
+        /* The decorated client gets the call directly, so it is neither retried nor tracked by the circuit breaker. */
+        assertSame(call, HttpUtils.warmUpConnection(new HttpClientRetryer(httpClient), url));
+        verify(httpClient).callAsync(eq(url), eq(DefaultHttpClient.METHOD_HEAD), any(Map.class), any(HttpClient.CallTemplate.class), any(ServiceCallback.class));
+    }
+
     private DefaultHttpClient getDefaultHttpClient(HttpClientDecorator httpClientDecorator) {
         httpClientDecorator = (HttpClientDecorator) httpClientDecorator.getDecoratedApi();
         return (DefaultHttpClient) httpClientDecorator.getDecoratedApi();
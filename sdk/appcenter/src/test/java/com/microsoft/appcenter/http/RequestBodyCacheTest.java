@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.http;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+import static com.microsoft.appcenter.http.RequestBodyCache.FILE_PREFIX;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RequestBodyCacheTest {
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void keepInMemory() {
+        RequestBodyCache cache = new RequestBodyCache();
+        assertFalse(cache.hasBody());
+        assertNull(cache.getBody());
+        byte[] body = {1, 2, 3};
+        cache.setBody(body, true, 10);
+        assertTrue(cache.hasBody());
+        assertTrue(cache.isCompressed());
+        assertEquals(10, cache.getUncompressedLength());
+        assertArrayEquals(body, cache.getBody());
+        cache.clear();
+        assertFalse(cache.hasBody());
+        assertNull(cache.getBody());
+        assertEquals(0, cache.getUncompressedLength());
+    }
+
+    @Test
+    public void recordStreamedBody() throws Exception {
+        RequestBodyCache cache = new RequestBodyCache();
+        ByteArrayOutputStream sent = new ByteArrayOutputStream();
+        RequestBodyRecorder recorder = new RequestBodyRecorder(sent, cache, true);
+        recorder.write(1);
+        recorder.write(new byte[]{2, 3, 4}, 1, 2);
+
+        /* Nothing is stored before the body is complete. */
+        assertFalse(cache.hasBody());
+        recorder.finish(10);
+        assertArrayEquals(new byte[]{1, 3, 4}, sent.toByteArray());
+        assertArrayEquals(sent.toByteArray(), cache.getBody());
+        assertTrue(cache.isCompressed());
+        assertEquals(10, cache.getUncompressedLength());
+    }
+
+    @Test
+    public void storeInFileThenLoadBack() {
+        File directory = new File(mTemporaryFolder.getRoot(), "bodies");
+        RequestBodyCache cache = new RequestBodyCache();
+
+        /* Nothing to store. */
+        cache.storeInFile(directory);
+        assertFalse(cache.isInFile());
+
+        /* Body moved to a file. */
+        byte[] body = {1, 2, 3};
+        cache.setBody(body, false, body.length);
+        cache.storeInFile(directory);
+        assertTrue(cache.isInFile());
+        assertTrue(cache.hasBody());
+        File[] files = directory.listFiles();
+        assertEquals(1, files.length);
+        assertTrue(files[0].getName().startsWith(FILE_PREFIX));
+
+        /* Loaded back to memory and file deleted. */
+        assertArrayEquals(body, cache.getBody());
+        assertFalse(cache.isInFile());
+        assertFalse(cache.isCompressed());
+        assertEquals(0, directory.listFiles().length);
+    }
+
+    @Test
+    public void clearDeletesFile() {
+        File directory = mTemporaryFolder.getRoot();
+        RequestBodyCache cache = new RequestBodyCache();
+        cache.setBody(new byte[]{1}, false, 1);
+        cache.storeInFile(directory);
+        assertEquals(1, directory.listFiles().length);
+        cache.clear();
+        assertFalse(cache.hasBody());
+        assertEquals(0, directory.listFiles().length);
+    }
+
+    @Test
+    public void keepInMemoryIfFileCannotBeWritten() throws Exception {
+
+        /* Use a file as directory. */
+        File directory = mTemporaryFolder.newFile();
+        RequestBodyCache cache = new RequestBodyCache();
+        byte[] body = {1, 2, 3};
+        cache.setBody(body, false, body.length);
+        cache.storeInFile(directory);
+        assertFalse(cache.isInFile());
+        assertArrayEquals(body, cache.getBody());
+    }
+}
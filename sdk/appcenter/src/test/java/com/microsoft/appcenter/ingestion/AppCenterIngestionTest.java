@@ -5,7 +5,9 @@
 
 package com.microsoft.appcenter.ingestion;
 
+
 import com.microsoft.appcenter.Constants;
+import com.microsoft.appcenter.http.CallOptions;
 import com.microsoft.appcenter.http.HttpClient;
 import com.microsoft.appcenter.http.HttpUtils;
 import com.microsoft.appcenter.http.ServiceCall;
@@ -28,6 +30,8 @@ import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.rule.PowerMockRule;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -39,8 +43,11 @@ import java.util.concurrent.atomic.AtomicReference;
 import static com.microsoft.appcenter.http.DefaultHttpClient.METHOD_POST;
 import static com.microsoft.appcenter.utils.PrefStorageConstants.ALLOWED_NETWORK_REQUEST;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.anyMapOf;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.contains;
@@ -122,6 +129,49 @@ public class AppCenterIngestionTest {
         verify(mHttpClient).reopen();
     }
 
+    @Test
+    public void streamRequestBody() throws Exception {
+
+        /* Build some payload. */
+        LogContainer container = new LogContainer();
+        List<Log> logs = new ArrayList<>();
+        logs.add(mock(Log.class));
+        container.setLogs(logs);
+        LogSerializer serializer = mock(LogSerializer.class);
+
+        /* Capture call template. */
+        final AtomicReference<HttpClient.CallTemplate> callTemplate = new AtomicReference<>();
+        when(mHttpClient.callAsync(anyString(), anyString(), anyMapOf(String.class, String.class), any(HttpClient.CallTemplate.class), any(ServiceCallback.class))).then(new Answer<ServiceCall>() {
+            @Override
+            public ServiceCall answer(InvocationOnMock invocation) {
+                callTemplate.set((HttpClient.CallTemplate) invocation.getArguments()[3]);
+                return mock(ServiceCall.class);
+            }
+        });
+        AppCenterIngestion ingestion = new AppCenterIngestion(mHttpClient, serializer);
+        ingestion.sendAsync(UUID.randomUUID().toString(), UUID.randomUUID(), container, mock(ServiceCallback.class));
+
+        /* Verify the template streams the container. */
+        assertTrue(callTemplate.get() instanceof HttpClient.StreamingCallTemplate);
+        OutputStream out = mock(OutputStream.class);
+        ((HttpClient.StreamingCallTemplate) callTemplate.get()).writeRequestBody(out);
+        verify(serializer).serializeContainer(any(Writer.class), eq(container));
+        verify(serializer, never()).serializeContainer(container);
+        verify(out).flush();
+        verify(out, never()).close();
+
+        /* Verify the response body and headers are not needed. */
+        CallOptions callOptions = callTemplate.get().getCallOptions();
+        assertFalse(callOptions.isResponseBodyNeeded());
+        assertTrue(callOptions.getResponseHeaderNames().isEmpty());
+        assertEquals(HttpClient.PRIORITY_LOG_UPLOAD, callOptions.getPriority());
+        assertTrue(callOptions.isCallerLooperCallback());
+
+        /* Verify the encoded body can be kept between retries. */
+        assertSame(callOptions, callTemplate.get().getCallOptions());
+        assertNotNull(callOptions.getRequestBodyCache());
+    }
+
     @Test
     public void failedSerialization() throws Exception {
 
@@ -279,4 +329,4 @@ public class AppCenterIngestionTest {
         assertEquals(call, ingestion.sendAsync(appSecret, UUID.randomUUID(), mock(LogContainer.class), mock(ServiceCallback.class)));
         return callTemplate.get();
     }
-}
\ No newline at end of file
+}
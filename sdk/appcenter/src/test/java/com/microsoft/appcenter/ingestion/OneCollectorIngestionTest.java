@@ -6,7 +6,9 @@
 package com.microsoft.appcenter.ingestion;
 
 import com.microsoft.appcenter.Constants;
+import com.microsoft.appcenter.Flags;
 import com.microsoft.appcenter.http.DefaultHttpClient;
+import com.microsoft.appcenter.http.CallOptions;
 import com.microsoft.appcenter.http.HttpClient;
 import com.microsoft.appcenter.http.HttpUtils;
 import com.microsoft.appcenter.http.ServiceCall;
@@ -54,6 +56,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.anyMapOf;
 import static org.mockito.Matchers.anyString;
@@ -172,6 +175,22 @@ public class OneCollectorIngestionTest {
         verify(mHttpClient).callAsync(eq("http://mock"), eq(METHOD_POST), eq(expectedHeaders), notNull(HttpClient.CallTemplate.class), eq(serviceCallback));
         assertNotNull(callTemplate.getValue());
         assertEquals("mockPayload1\nmockPayload2\n", callTemplate.getValue().buildRequestBody());
+        CallOptions callOptions = callTemplate.getValue().getCallOptions();
+        assertFalse(callOptions.isResponseBodyNeeded());
+        assertTrue(callOptions.getResponseHeaderNames().isEmpty());
+        assertTrue(callOptions.isCallerLooperCallback());
+
+        /* Verify the encoded body can be kept between retries. */
+        assertSame(callOptions, callTemplate.getValue().getCallOptions());
+        assertNotNull(callOptions.getRequestBodyCache());
+
+        /* Verify priority is raised by critical logs, it is computed when sending. */
+        assertEquals(HttpClient.PRIORITY_LOG_UPLOAD, callOptions.getPriority());
+        when(log1.getFlags()).thenReturn((long) Flags.NORMAL);
+        when(log2.getFlags()).thenReturn((long) Flags.CRITICAL);
+        assertEquals(HttpClient.PRIORITY_LOG_UPLOAD, callOptions.getPriority());
+        ingestion.sendAsync(null, null, container, serviceCallback);
+        assertEquals(HttpClient.PRIORITY_CRITICAL_LOG_UPLOAD, callTemplate.getValue().getCallOptions().getPriority());
 
         /* Verify close. */
         ingestion.close();
@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.ingestion.models.properties;
+
+import org.json.JSONException;
+import org.json.JSONStringer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TypedPropertyBagTest {
+
+    private static List<TypedProperty> generateProperties() {
+        List<TypedProperty> properties = new ArrayList<>();
+        BooleanTypedProperty booleanProperty = new BooleanTypedProperty();
+        booleanProperty.setName("a");
+        booleanProperty.setValue(true);
+        properties.add(booleanProperty);
+        DateTimeTypedProperty dateProperty = new DateTimeTypedProperty();
+        dateProperty.setName("b");
+        dateProperty.setValue(new Date(100));
+        properties.add(dateProperty);
+        DoubleTypedProperty doubleProperty = new DoubleTypedProperty();
+        doubleProperty.setName("c");
+        doubleProperty.setValue(1.5);
+        properties.add(doubleProperty);
+        LongTypedProperty longProperty = new LongTypedProperty();
+        longProperty.setName("d");
+        longProperty.setValue(Long.MIN_VALUE);
+        properties.add(longProperty);
+        StringTypedProperty stringProperty = new StringTypedProperty();
+        stringProperty.setName("e");
+        stringProperty.setValue("value");
+        properties.add(stringProperty);
+        return properties;
+    }
+
+    @Test
+    public void sameAsList() {
+        List<TypedProperty> properties = generateProperties();
+        TypedPropertyBag bag = new TypedPropertyBag(properties);
+        assertEquals(properties, bag);
+        assertEquals(bag, properties);
+        assertEquals(properties.hashCode(), bag.hashCode());
+        assertEquals(5, bag.size());
+
+        /* Values are copied. */
+        assertNotSame(properties.get(0), bag.get(0));
+        ((StringTypedProperty) properties.get(4)).setValue("other");
+        assertEquals("value", bag.getStringValue(4));
+
+        /* Typed accessors. */
+        assertTrue(bag.getBooleanValue(0));
+        assertEquals(new Date(100), bag.getDateValue(1));
+        assertEquals(1.5, bag.getDoubleValue(2), 0);
+        assertEquals(Long.MIN_VALUE, bag.getLongValue(3));
+        assertEquals(StringTypedProperty.TYPE, bag.getType(4));
+    }
+
+    @Test
+    public void putReplacesByName() {
+        TypedPropertyBag bag = new TypedPropertyBag();
+        bag.put("a", "value");
+        bag.put("b", 1L);
+        bag.put("a", 2.0);
+        assertEquals(2, bag.size());
+        assertEquals(0, bag.indexOfName("a"));
+        assertEquals(DoubleTypedProperty.TYPE, bag.getType(0));
+        assertEquals(2.0, bag.getDoubleValue(0), 0);
+        assertEquals(-1, bag.indexOfName("c"));
+
+        /* Grow past initial capacity. */
+        for (int i = 0; i < 100; i++) {
+            bag.put("key" + i, i % 2 == 0);
+        }
+        assertEquals(102, bag.size());
+        assertTrue(bag.getBooleanValue(bag.indexOfName("key98")));
+        assertFalse(bag.getBooleanValue(bag.indexOfName("key99")));
+    }
+
+    @Test
+    public void removeAndSet() {
+        TypedPropertyBag bag = new TypedPropertyBag(generateProperties());
+        assertTrue(bag.removeName("b"));
+        assertFalse(bag.removeName("b"));
+        assertEquals(4, bag.size());
+        assertEquals("c", bag.getName(1));
+        bag.removeAt(3);
+        assertEquals(3, bag.size());
+        assertEquals(-1, bag.indexOfName("e"));
+        TypedProperty removed = bag.remove(0);
+        assertEquals("a", removed.getName());
+        assertEquals("c", bag.getName(0));
+
+        /* Update in place. */
+        bag.setName(0, "x");
+        StringTypedProperty property = new StringTypedProperty();
+        property.setName("y");
+        property.setValue("v");
+        bag.set(1, property);
+        bag.setStringValue(1, "w");
+        assertEquals("x", bag.get(0).getName());
+        assertEquals("w", ((StringTypedProperty) bag.get(1)).getValue());
+        assertEquals("v", property.getValue());
+        bag.clear();
+        assertEquals(0, bag.size());
+    }
+
+    @Test
+    public void modifyReturnedProperties() {
+        TypedPropertyBag bag = new TypedPropertyBag(generateProperties());
+        StringTypedProperty property = (StringTypedProperty) bag.get(4);
+        assertSame(property, bag.get(4));
+
+        /* Modifying a returned object updates the bag. */
+        property.setName("f");
+        property.setValue("other");
+        assertEquals("f", bag.getName(4));
+        assertEquals("other", bag.getStringValue(4));
+        assertEquals(4, bag.indexOfName("f"));
+        ((LongTypedProperty) bag.get(3)).setValue(1);
+        assertEquals(1, bag.getLongValue(3));
+
+        /* And the other way around. */
+        bag.setStringValue(4, "again");
+        assertEquals("again", property.getValue());
+
+        /* Copies and merges see the modification. */
+        TypedPropertyBag copy = new TypedPropertyBag(bag);
+        assertEquals(bag, copy);
+        property.setValue("later");
+        assertEquals("again", copy.getStringValue(4));
+        TypedPropertyBag merged = new TypedPropertyBag();
+        merged.putAll(bag, true);
+        assertEquals("later", merged.getStringValue(4));
+
+        /* Indexes follow structural changes. */
+        bag.removeAt(0);
+        assertSame(property, bag.get(3));
+        bag.add(0, generateProperties().get(0));
+        assertSame(property, bag.get(4));
+
+        /* Replaced property is detached. */
+        bag.put("f", "replaced");
+        assertEquals("later", property.getValue());
+        assertEquals("replaced", ((StringTypedProperty) bag.get(4)).getValue());
+    }
+
+    @Test
+    public void putAll() {
+        TypedPropertyBag target = new TypedPropertyBag();
+        target.put("a", "target");
+        target.put("b", "target");
+        TypedPropertyBag source = new TypedPropertyBag();
+        source.put("b", "source");
+        source.put("c", "source");
+
+        /* Without override. */
+        TypedPropertyBag merged = new TypedPropertyBag(target);
+        merged.putAll(source, false);
+        assertEquals(3, merged.size());
+        assertEquals("target", merged.getStringValue(merged.indexOfName("b")));
+        assertEquals("source", merged.getStringValue(merged.indexOfName("c")));
+
+        /* With override. */
+        merged = new TypedPropertyBag(target);
+        merged.putAll(source, true);
+        assertEquals(3, merged.size());
+        assertEquals("source", merged.getStringValue(merged.indexOfName("b")));
+        assertEquals(2, target.size());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getOutOfBounds() {
+        new TypedPropertyBag().getName(0);
+    }
+
+    @Test
+    public void keepUnknownProperty() throws JSONException {
+        TypedProperty unknownProperty = new TypedProperty() {
+
+            @Override
+            public String getType() {
+                return "unknown";
+            }
+
+            @Override
+            public void write(JSONStringer writer) throws JSONException {
+                writer.key("custom");
+            }
+        };
+        unknownProperty.setName("u");
+        List<TypedProperty> properties = generateProperties();
+        properties.add(2, unknownProperty);
+        TypedPropertyBag bag = new TypedPropertyBag(properties);
+
+        /* The property can't be copied, it's kept along with its type. */
+        assertSame(unknownProperty, bag.get(2));
+        assertEquals("unknown", bag.getType(2));
+        assertSame(unknownProperty, new TypedPropertyBag(bag).get(2));
+        bag.set(0, unknownProperty);
+        assertSame(unknownProperty, bag.get(0));
+
+        /* The property writes its own fields. */
+        JSONStringer writer = mock(JSONStringer.class);
+        when(writer.key(anyString())).thenReturn(writer);
+        bag.write(writer);
+        verify(writer, times(2)).key("custom");
+        verify(writer, times(6)).object();
+        verify(writer, times(6)).endObject();
+    }
+}
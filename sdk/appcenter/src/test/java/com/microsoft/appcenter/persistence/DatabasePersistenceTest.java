@@ -13,6 +13,7 @@ import android.database.sqlite.SQLiteDiskIOException;
 import android.database.sqlite.SQLiteQueryBuilder;
 
 import com.microsoft.appcenter.AppCenter;
+import com.microsoft.appcenter.ingestion.models.Device;
 import com.microsoft.appcenter.ingestion.models.Log;
 import com.microsoft.appcenter.ingestion.models.json.LogSerializer;
 import com.microsoft.appcenter.persistence.Persistence.PersistenceException;
@@ -20,6 +21,7 @@ import com.microsoft.appcenter.utils.AppCenterLog;
 import com.microsoft.appcenter.utils.storage.DatabaseManager;
 
 import org.json.JSONException;
+import org.json.JSONObject;
 import org.junit.Rule;
 import org.junit.Test;
 import org.mockito.invocation.InvocationOnMock;
@@ -35,6 +37,7 @@ import java.util.List;
 import static com.microsoft.appcenter.Flags.NORMAL;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
@@ -423,6 +426,78 @@ public class DatabasePersistenceTest {
         persistence.putLog(mock(Log.class), "test-p1", NORMAL);
     }
 
+    @Test
+    public void getLogsSharesDeviceInBatch() throws Exception {
+
+        /* Two logs referencing the same device snapshot. */
+        List<ContentValues> fieldValues = new ArrayList<>();
+        for (long id = 1; id <= 2; id++) {
+            ContentValues contentValues = mock(ContentValues.class);
+            when(contentValues.getAsLong(DatabaseManager.PRIMARY_KEY)).thenReturn(id);
+            when(contentValues.getAsString(DatabasePersistence.COLUMN_LOG)).thenReturn("{}");
+            when(contentValues.getAsString(DatabasePersistence.COLUMN_DEVICE_HASH)).thenReturn("hash");
+            fieldValues.add(contentValues);
+        }
+
+        /* Mock instances. */
+        DatabaseManager databaseManager = mock(DatabaseManager.class);
+        whenNew(DatabaseManager.class).withAnyArguments().thenReturn(databaseManager);
+        when(databaseManager.nextValues(any(Cursor.class))).thenCallRealMethod();
+        MockCursor mockCursor = new MockCursor(fieldValues);
+        mockCursor.mockBuildValues(databaseManager);
+        when(databaseManager.getCursor(any(SQLiteQueryBuilder.class), any(String[].class), any(String[].class), anyString())).thenReturn(mockCursor);
+        Cursor deviceCursor = mock(Cursor.class);
+        when(deviceCursor.moveToNext()).thenReturn(true);
+        when(deviceCursor.getString(0)).thenReturn("{}");
+        when(databaseManager.getCursor(eq(DatabasePersistence.DEVICES_TABLE), any(SQLiteQueryBuilder.class), any(String[].class), any(String[].class), anyString())).thenReturn(deviceCursor);
+        Device device = mock(Device.class);
+        whenNew(Device.class).withNoArguments().thenReturn(device);
+        Log log1 = mock(Log.class);
+        Log log2 = mock(Log.class);
+        LogSerializer logSerializer = mock(LogSerializer.class);
+        when(logSerializer.deserializeLog(anyString(), anyString())).thenReturn(log1).thenReturn(log2);
+        DatabasePersistence persistence = new DatabasePersistence(mock(Context.class));
+        persistence.setLogSerializer(logSerializer);
+
+        /* Get logs. */
+        List<Log> outLogs = new ArrayList<>();
+        persistence.getLogs("test", Collections.<String>emptyList(), 10, outLogs);
+        assertEquals(2, outLogs.size());
+
+        /* Device read once and shared. */
+        verify(log1).setDevice(device);
+        verify(log2).setDevice(device);
+        verify(databaseManager).getCursor(eq(DatabasePersistence.DEVICES_TABLE), any(SQLiteQueryBuilder.class), any(String[].class), any(String[].class), anyString());
+        verify(device).read(any(JSONObject.class));
+        verify(deviceCursor).close();
+    }
+
+    @Test
+    public void getLogsWithDeviceCursorException() throws Exception {
+        mockStatic(AppCenterLog.class);
+        ContentValues contentValues = mock(ContentValues.class);
+        when(contentValues.getAsLong(DatabaseManager.PRIMARY_KEY)).thenReturn(1L);
+        when(contentValues.getAsString(DatabasePersistence.COLUMN_LOG)).thenReturn("{}");
+        when(contentValues.getAsString(DatabasePersistence.COLUMN_DEVICE_HASH)).thenReturn("hash");
+        DatabaseManager databaseManager = mock(DatabaseManager.class);
+        whenNew(DatabaseManager.class).withAnyArguments().thenReturn(databaseManager);
+        when(databaseManager.nextValues(any(Cursor.class))).thenCallRealMethod();
+        MockCursor mockCursor = new MockCursor(Collections.singletonList(contentValues));
+        mockCursor.mockBuildValues(databaseManager);
+        when(databaseManager.getCursor(any(SQLiteQueryBuilder.class), any(String[].class), any(String[].class), anyString())).thenReturn(mockCursor);
+        when(databaseManager.getCursor(eq(DatabasePersistence.DEVICES_TABLE), any(SQLiteQueryBuilder.class), any(String[].class), any(String[].class), anyString())).thenThrow(new RuntimeException());
+        LogSerializer logSerializer = mock(LogSerializer.class);
+        when(logSerializer.deserializeLog(anyString(), anyString())).thenReturn(mock(Log.class));
+        DatabasePersistence persistence = new DatabasePersistence(mock(Context.class));
+        persistence.setLogSerializer(logSerializer);
+
+        /* Log without its device is discarded. */
+        List<Log> outLogs = new ArrayList<>();
+        assertNull(persistence.getLogs("test", Collections.<String>emptyList(), 10, outLogs));
+        assertEquals(0, outLogs.size());
+        verify(databaseManager).delete(1L);
+    }
+
     private static class MockCursor extends CursorWrapper {
 
         private final List<ContentValues> mList;
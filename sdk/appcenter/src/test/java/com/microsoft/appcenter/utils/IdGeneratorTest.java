@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License.
+ */
+
+package com.microsoft.appcenter.utils;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+public class IdGeneratorTest {
+
+    @After
+    public void tearDown() {
+        IdHelper.setIdGenerator(null);
+    }
+
+    @Test
+    public void formatCompatibleWithUUID() {
+        TimeOrderedIdGenerator generator = spy(new TimeOrderedIdGenerator(42));
+        when(generator.currentTimeMillis()).thenReturn(0x0123456789abL);
+        UUID id = generator.nextId();
+        assertEquals(7, id.version());
+        assertEquals(2, id.variant());
+        assertEquals(0x0123456789abL, id.getMostSignificantBits() >>> 16);
+        assertEquals(id, UUID.fromString(id.toString()));
+        assertTrue(id.toString().startsWith("01234567-89ab-7000-"));
+
+        /* Second id in the same millisecond sorts after the first one. */
+        UUID secondId = generator.nextId();
+        assertTrue(id.toString().compareTo(secondId.toString()) < 0);
+        assertNotEquals(id.getLeastSignificantBits(), secondId.getLeastSignificantBits());
+    }
+
+    @Test
+    public void uniqueAcrossThreads() throws InterruptedException {
+        final IdGenerator generator = new TimeOrderedIdGenerator();
+        final Set<UUID> ids = Collections.synchronizedSet(new HashSet<UUID>());
+        final int idsPerThread = 10000;
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread() {
+
+                @Override
+                public void run() {
+                    for (int j = 0; j < idsPerThread; j++) {
+                        ids.add(generator.nextId());
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(threads.size() * idsPerThread, ids.size());
+    }
+
+    @Test
+    public void differentSeeds() {
+        assertNotEquals(new TimeOrderedIdGenerator(1).nextId().getLeastSignificantBits(), new TimeOrderedIdGenerator(2).nextId().getLeastSignificantBits());
+    }
+
+    @Test
+    public void idHelperGenerator() {
+        UUID firstId = IdHelper.generateId();
+        assertNotNull(firstId);
+        assertEquals(7, firstId.version());
+        assertNotEquals(firstId, IdHelper.generateId());
+
+        /* Custom generator. */
+        IdGenerator generator = mock(IdGenerator.class);
+        UUID id = UUID.randomUUID();
+        when(generator.nextId()).thenReturn(id);
+        IdHelper.setIdGenerator(generator);
+        assertSame(id, IdHelper.generateId());
+
+        /* Back to default. */
+        IdHelper.setIdGenerator(null);
+        assertEquals(7, IdHelper.generateId().version());
+    }
+}
@@ -22,6 +22,7 @@ import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
@@ -158,6 +159,100 @@ public class NetworkStateHelperTestFromLollipop extends AbstractNetworkStateHelp
         verify(mContext, never()).unregisterReceiver(any(BroadcastReceiver.class));
     }
 
+    @Test
+    public void listenMeteredState() {
+        NetworkStateHelper helper = new NetworkStateHelper(mContext);
+        ArgumentCaptor<ConnectivityManager.NetworkCallback> callback = ArgumentCaptor.forClass(ConnectivityManager.NetworkCallback.class);
+        verify(mConnectivityManager).registerNetworkCallback(any(NetworkRequest.class), callback.capture());
+        NetworkStateHelper.MeteredListener listener = mock(NetworkStateHelper.MeteredListener.class);
+        helper.addMeteredListener(listener);
+
+        /* Unknown until capabilities are reported. */
+        assertFalse(helper.isNetworkMetered());
+
+        /* Switch to a metered cellular network. */
+        Network network = mock(Network.class);
+        NetworkCapabilities cellular = mock(NetworkCapabilities.class);
+        callback.getValue().onCapabilitiesChanged(network, cellular);
+        assertTrue(helper.isNetworkMetered());
+        verify(listener).onNetworkMeteredUpdated(true);
+
+        /* Same metered state does not notify again. */
+        callback.getValue().onCapabilitiesChanged(network, cellular);
+        verify(listener).onNetworkMeteredUpdated(true);
+
+        /* Switch to unmetered Wi-Fi. */
+        NetworkCapabilities wifi = mock(NetworkCapabilities.class);
+        when(wifi.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED)).thenReturn(true);
+        callback.getValue().onCapabilitiesChanged(network, wifi);
+        assertFalse(helper.isNetworkMetered());
+        verify(listener).onNetworkMeteredUpdated(false);
+
+        /* Back to metered then lose all networks. */
+        callback.getValue().onCapabilitiesChanged(network, cellular);
+        when(mConnectivityManager.getAllNetworks()).thenReturn(new Network[]{});
+        callback.getValue().onLost(network);
+        assertFalse(helper.isNetworkMetered());
+
+        /* Losing the network resets the state without notifying, there is nothing to send on. */
+        verify(listener, times(2)).onNetworkMeteredUpdated(true);
+        verify(listener).onNetworkMeteredUpdated(false);
+
+        /* Reconnecting to a metered network notifies again. */
+        callback.getValue().onCapabilitiesChanged(network, cellular);
+        verify(listener, times(3)).onNetworkMeteredUpdated(true);
+
+        /* No more calls after removing listener. */
+        helper.removeMeteredListener(listener);
+        callback.getValue().onCapabilitiesChanged(network, wifi);
+        verify(listener).onNetworkMeteredUpdated(false);
+        verifyNoMoreInteractions(listener);
+
+        /* Close resets state. */
+        helper.close();
+        assertFalse(helper.isNetworkMetered());
+    }
+
+    @Test
+    public void readCapabilitiesOfDefaultNetworkFromAndroidM() throws Exception {
+        TestUtils.setInternalState(Build.VERSION.class, "SDK_INT", Build.VERSION_CODES.M);
+        NetworkStateHelper helper = new NetworkStateHelper(mContext);
+        ArgumentCaptor<ConnectivityManager.NetworkCallback> callback = ArgumentCaptor.forClass(ConnectivityManager.NetworkCallback.class);
+        verify(mConnectivityManager).registerNetworkCallback(any(NetworkRequest.class), callback.capture());
+        Network active = mock(Network.class);
+        Network other = mock(Network.class);
+        when(mConnectivityManager.getActiveNetwork()).thenReturn(active);
+        NetworkCapabilities cellular = mock(NetworkCapabilities.class);
+        NetworkCapabilities wifi = mock(NetworkCapabilities.class);
+        when(wifi.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED)).thenReturn(true);
+        when(mConnectivityManager.getNetworkCapabilities(active)).thenReturn(wifi);
+
+        /* Capabilities of another network don't apply. */
+        callback.getValue().onCapabilitiesChanged(other, cellular);
+        assertFalse(helper.isNetworkMetered());
+        callback.getValue().onCapabilitiesChanged(active, cellular);
+        assertTrue(helper.isNetworkMetered());
+
+        /* Default network switches to the other network before its next capabilities update. */
+        when(mConnectivityManager.getNetworkCapabilities(other)).thenReturn(wifi);
+        when(mConnectivityManager.getActiveNetwork()).thenReturn(other);
+        when(mConnectivityManager.getAllNetworks()).thenReturn(new Network[]{other});
+        callback.getValue().onLost(active);
+        assertFalse(helper.isNetworkMetered());
+
+        /* A new metered default network is read when it becomes available. */
+        Network next = mock(Network.class);
+        when(mConnectivityManager.getNetworkCapabilities(next)).thenReturn(cellular);
+        when(mConnectivityManager.getActiveNetwork()).thenReturn(next);
+        callback.getValue().onAvailable(next);
+        assertTrue(helper.isNetworkMetered());
+
+        /* Unknown capabilities of the default network keep the current state. */
+        when(mConnectivityManager.getActiveNetwork()).thenReturn(null);
+        callback.getValue().onCapabilitiesChanged(other, wifi);
+        assertTrue(helper.isNetworkMetered());
+    }
+
     @Test
     public void verifyRequestedCapabilitiesBeforeAndroidM() throws Exception {
         NetworkRequest.Builder builder = mock(NetworkRequest.Builder.class);
@@ -176,4 +271,31 @@ public class NetworkStateHelperTestFromLollipop extends AbstractNetworkStateHelp
         verify(builder).addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET);
         verify(builder, never()).addCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED);
     }
+
+    @Test
+    public void deferredRegistration() {
+        NetworkStateHelper helper = new NetworkStateHelper(mContext, true);
+        verify(mConnectivityManager, never()).registerNetworkCallback(any(NetworkRequest.class), any(ConnectivityManager.NetworkCallback.class));
+
+        /* First query registers the callback, only once. */
+        assertFalse(helper.isNetworkConnected());
+        assertFalse(helper.isNetworkMetered());
+        helper.registerIfDeferred();
+        verify(mConnectivityManager).registerNetworkCallback(any(NetworkRequest.class), any(ConnectivityManager.NetworkCallback.class));
+    }
+
+    @Test
+    public void closeWhileRegistrationDeferred() {
+        NetworkStateHelper helper = new NetworkStateHelper(mContext, true);
+
+        /* Nothing to unregister and nothing registered later while closed. */
+        helper.close();
+        helper.registerIfDeferred();
+        verify(mConnectivityManager, never()).registerNetworkCallback(any(NetworkRequest.class), any(ConnectivityManager.NetworkCallback.class));
+        verify(mConnectivityManager, never()).unregisterNetworkCallback(any(ConnectivityManager.NetworkCallback.class));
+
+        /* Reopening registers. */
+        helper.reopen();
+        verify(mConnectivityManager).registerNetworkCallback(any(NetworkRequest.class), any(ConnectivityManager.NetworkCallback.class));
+    }
 }
@@ -73,6 +73,22 @@ public class DatabaseManagerTest {
         AppCenterLog.error(eq(AppCenter.LOG_TAG), anyString(), any(RuntimeException.class));
     }
 
+    @Test
+    public void insertIfAbsentFailed() {
+        DatabaseManager databaseManagerMock = getDatabaseManagerMock();
+        assertFalse(databaseManagerMock.insertIfAbsent("other", new ContentValues()));
+        verifyStatic();
+        AppCenterLog.error(eq(AppCenter.LOG_TAG), anyString(), any(RuntimeException.class));
+    }
+
+    @Test
+    public void deleteWhereFailed() {
+        DatabaseManager databaseManagerMock = getDatabaseManagerMock();
+        assertEquals(0, databaseManagerMock.deleteWhere("other", "1", null));
+        verifyStatic();
+        AppCenterLog.error(eq(AppCenter.LOG_TAG), anyString(), any(RuntimeException.class));
+    }
+
     @Test
     public void clearFailed() {
         DatabaseManager databaseManagerMock = getDatabaseManagerMock();